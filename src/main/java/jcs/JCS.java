@@ -127,6 +127,7 @@ public class JCS {
       Runtime.getRuntime().addShutdownHook(new Thread(() -> {
         Logger.info("JCS " + version + " shutting down...");
         ProcessFactory.getInstance().shutdown();
+        PersistenceFactory.shutdown();
       }, "JCS-shutdown"));
 
     }
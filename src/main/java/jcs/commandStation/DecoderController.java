@@ -16,6 +16,7 @@
 package jcs.commandStation;
 
 import java.awt.Image;
+import java.net.URI;
 import java.util.List;
 import jcs.commandStation.events.LocomotiveDirectionEventListener;
 import jcs.commandStation.events.LocomotiveFunctionEventListener;
@@ -59,6 +60,24 @@ public interface DecoderController extends GenericController {
 
   Image getLocomotiveFunctionImage(String icon);
 
+  /**
+   * @param icon the name of the locomotive image
+   * @return the location of the PNG image on the command station, or null when the image is only available through
+   * getLocomotiveImage
+   */
+  default URI getLocomotiveImageURI(String icon) {
+    return null;
+  }
+
+  /**
+   * @param icon the name of the function image
+   * @return the location of the PNG image on the command station, or null when the image is only available through
+   * getLocomotiveFunctionImage
+   */
+  default URI getLocomotiveFunctionImageURI(String icon) {
+    return null;
+  }
+
   boolean isSupportTrackMeasurements();
 
   void addMeasurementEventListener(MeasurementEventListener listener);
@@ -35,7 +35,9 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 import javax.imageio.ImageIO;
 import javax.swing.SwingUtilities;
 import jcs.commandStation.events.AccessoryEvent;
@@ -62,6 +64,8 @@ import jcs.entities.LocomotiveBean.DecoderType;
 import jcs.entities.LocomotiveBean.Direction;
 import jcs.entities.SensorBean;
 import jcs.persistence.PersistenceFactory;
+import jcs.util.metrics.LatencyHistogram;
+import jcs.util.metrics.MetricsRegistry;
 import org.tinylog.Logger;
 import jcs.commandStation.events.ConnectionEventListener;
 import jcs.commandStation.events.AllSensorEventsListener;
@@ -98,7 +102,8 @@ public class JCSCommandStation {
 
   private ExecutorService executor;
 
-  private final BlockingQueue<SensorEvent> sensorEventQueue;
+  private final SensorEventDebouncer sensorEventDebouncer;
+  private final SensorStateTable sensorStateTable;
   private final BlockingQueue<AccessoryEvent> accessoryEventQueue;
   private final BlockingQueue<LocomotiveEvent> locomotiveEventQueue;
 
@@ -146,11 +151,16 @@ public class JCSCommandStation {
     locomotiveEventQueue = new LinkedBlockingQueue<>();
     accessoryEventQueue = new LinkedBlockingQueue<>();
 
-    sensorEventQueue = new LinkedBlockingQueue<>();
+    sensorEventDebouncer = new SensorEventDebouncer();
+    sensorStateTable = new SensorStateTable();
 
-    sensorEventHandlerThread = new EventHandlerThread<>(threadGroup, "SENSOR-EVENT-HANDLER", sensorEventQueue, this::handleSensorEvent);
-    accessoryEventHandlerThread = new EventHandlerThread<>(threadGroup, "ACCESSORY-EVENT-HANDLER", accessoryEventQueue, this::handleAccessoryEvent);
-    locomotiveEventHandlerThread = new EventHandlerThread<>(threadGroup, "LOCOMOTIVE-EVENT-HANDLER", locomotiveEventQueue, this::handleLocomotiveEvent);
+    sensorEventHandlerThread = new EventHandlerThread<>(threadGroup, "SENSOR-EVENT-HANDLER", "jcs.sensor", sensorEventDebouncer::poll, SensorEvent::getReceivedNanos, this::handleSensorEvent);
+    accessoryEventHandlerThread = new EventHandlerThread<>(threadGroup, "ACCESSORY-EVENT-HANDLER", "jcs.accessory", accessoryEventQueue::poll, AccessoryEvent::getReceivedNanos, this::handleAccessoryEvent);
+    locomotiveEventHandlerThread = new EventHandlerThread<>(threadGroup, "LOCOMOTIVE-EVENT-HANDLER", "jcs.locomotive", locomotiveEventQueue::poll, LocomotiveEvent::getReceivedNanos, this::handleLocomotiveEvent);
+
+    MetricsRegistry.gauge("jcs.sensor.queue", sensorEventDebouncer::size);
+    MetricsRegistry.gauge("jcs.accessory.queue", accessoryEventQueue::size);
+    MetricsRegistry.gauge("jcs.locomotive.queue", locomotiveEventQueue::size);
 
     try {
       if (decoderController != null && (decoderController.getCommandStationBean() != null || !accessoryControllers.isEmpty() || !feedbackControllers.isEmpty()) && autoConnectController) {
@@ -393,6 +403,8 @@ public class JCSCommandStation {
     }
 
     if (feedbackCntrConnected > 0 && !alreadyConnected) {
+      sensorStateTable.registerAll(PersistenceFactory.getService().getSensors());
+
       for (FeedbackController fc : feedbackControllers.values()) {
         if (fc.isConnected()) {
           fc.addAllSensorEventsListener(new AllSensorEventsHandler(this));
@@ -902,12 +914,26 @@ public class JCSCommandStation {
     return new ArrayList<>(feedbackControllers.values());
   }
 
+  /**
+   * @return the debounce stage of the sensor events, which also counts the suppressed events
+   */
+  public SensorEventDebouncer getSensorEventDebouncer() {
+    return sensorEventDebouncer;
+  }
+
+  /**
+   * @return the in memory state of all sensors, updated before the sensor listeners are notified
+   */
+  public SensorStateTable getSensorStateTable() {
+    return sensorStateTable;
+  }
+
   public SensorBean getSensorStatus(SensorBean sensorBean) {
     for (FeedbackController fbc : feedbackControllers.values()) {
       SensorBean sb = fbc.getSensorStatus(sensorBean);
       SensorEvent se = new SensorEvent(sb);
       if (sb != null) {
-        sensorEventQueue.offer(se);
+        sensorEventDebouncer.offer(se);
         sensorBean.setActive(sb.isActive());
       }
     }
@@ -941,7 +967,7 @@ public class JCSCommandStation {
     @Override
     public void onSensorChange(SensorEvent sensorEvent) {
       Logger.trace("Enqueued SensorEvent ID: " + sensorEvent.getSensorId() + " Active: " + sensorEvent.isActive());
-      commandStation.sensorEventQueue.offer(sensorEvent);
+      commandStation.sensorEventDebouncer.offer(sensorEvent);
     }
   }
 
@@ -968,6 +994,7 @@ public class JCSCommandStation {
 
       PersistenceFactory.getService().persist(sb);
     }
+    sensorStateTable.update(sb, newValue);
 
     if (sb.getId() != null && sensorListeners.containsKey(sb.getId())) {
       //Avoid concurrent modification exceptions
@@ -1013,8 +1040,10 @@ public class JCSCommandStation {
         List<AccessoryEventListener> snapshot = new ArrayList<>(accessoryEventListeners.get(dbab.getId()));
         //Logger.trace("Obtaining listener for accessory " + dbab.getId() + " which has " + snapshot.size() + " listeners to set to value " + event.getValue());
 
+        AccessoryEvent dbEvent = new AccessoryEvent(dbab);
+        dbEvent.setReceivedNanos(event.getReceivedNanos());
         for (AccessoryEventListener al : snapshot) {
-          al.onAccessoryChange(new AccessoryEvent(dbab));
+          al.onAccessoryChange(dbEvent);
         }
       }
     }
@@ -1204,25 +1233,49 @@ public class JCSCommandStation {
     }
   }
 
+  /**
+   * Source of the events for an EventHandlerThread
+   *
+   * @param <T> the event type
+   */
+  @FunctionalInterface
+  interface EventSource<T> {
+
+    T poll(long timeout, TimeUnit unit) throws InterruptedException;
+  }
+
   /**
    * Universal handler Thread<br>
    * Handles events via a Queue of:<br>
    * - Sensors<br>
    * - Accessories<br>
    * - Locomotives<br>
+   * Per handler the number of events, the latency from reception until the handler starts, the handling time and the latency from
+   * reception until all listeners are called are measured.
    *
    * @param <T> the Class which contains the handler method
    */
   class EventHandlerThread<T> extends Thread {
 
-    private final BlockingQueue<T> queue;
+    private final EventSource<T> queue;
+    private final ToLongFunction<T> receivedNanos;
     private final Consumer<T> handler;
     private volatile boolean running = false;
 
-    EventHandlerThread(ThreadGroup group, String name, BlockingQueue<T> queue, Consumer<T> handler) {
+    private final LongAdder events;
+    private final LatencyHistogram latency;
+    private final LatencyHistogram handleTime;
+    private final LatencyHistogram endToEnd;
+
+    EventHandlerThread(ThreadGroup group, String name, String metricName, EventSource<T> queue, ToLongFunction<T> receivedNanos, Consumer<T> handler) {
       super(group, name);
       this.queue = queue;
+      this.receivedNanos = receivedNanos;
       this.handler = handler;
+      events = MetricsRegistry.counter(metricName + ".events");
+      latency = MetricsRegistry.histogram(metricName + ".latency");
+      handleTime = MetricsRegistry.histogram(metricName + ".handle");
+      endToEnd = MetricsRegistry.histogram(metricName + ".end-to-end");
     }
 
     boolean isRunning() {
@@ -1243,7 +1296,16 @@ public class JCSCommandStation {
         try {
           T event = queue.poll(100, TimeUnit.MILLISECONDS);
           if (event != null) {
+            long start = System.nanoTime();
+            long received = receivedNanos.applyAsLong(event);
+            events.increment();
+            latency.record(start - received);
+
             handler.accept(event);
+
+            long done = System.nanoTime();
+            handleTime.record(done - start);
+            endToEnd.record(done - received);
           }
         } catch (InterruptedException ex) {
           Thread.currentThread().interrupt();
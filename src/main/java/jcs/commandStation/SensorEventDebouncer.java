@@ -0,0 +1,340 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import jcs.commandStation.events.SensorEvent;
+import jcs.entities.SensorBean;
+import org.tinylog.Logger;
+
+/**
+ * Debounce and coalescing stage for sensor events.<br>
+ * An event is held for the hold time of its sensor. When newer events of the same sensor arrive during the hold time
+ * they replace the held event, so only the latest state is delivered.<br>
+ * When the events during the hold time end in the state which was delivered last, it can be a bounce but also a real
+ * pulse which is shorter than the hold time, like a wheel crossing a short contact or a passing magnet on a reed switch.
+ * Such a pulse is delivered as a pair of events once the hold time expires: the first event with the other state,
+ * directly followed by the last event. Repeated reports of the delivered state only are suppressed.<br>
+ * The number of sensors with a held event is bounded; the overflow policy decides what happens when it is full.
+ */
+public class SensorEventDebouncer {
+
+  public enum OverflowPolicy {
+    /**
+     * The caller waits until there is room
+     */
+    BLOCK,
+    /**
+     * The new event is dropped
+     */
+    DROP_NEWEST,
+    /**
+     * The held event which is released first is dropped
+     */
+    DROP_OLDEST
+  }
+
+  private final int capacity;
+  private final long defaultHoldMillis;
+  private final OverflowPolicy overflowPolicy;
+
+  private final ReentrantLock lock;
+  private final Condition notFull;
+  private final DelayQueue<HeldEvent> released;
+  private final Map<String, HeldEvent> held;
+  private final Map<String, Long> holdTimes;
+  private final Map<String, Boolean> lastDelivered;
+
+  private long received;
+  private long delivered;
+  private long suppressed;
+  private long dropped;
+
+  public SensorEventDebouncer() {
+    this(Integer.getInteger("sensor.event.queue.size", 1024),
+            Long.getLong("sensor.debounce.millis", 20L),
+            OverflowPolicy.valueOf(System.getProperty("sensor.event.overflow", OverflowPolicy.BLOCK.name()).toUpperCase()));
+  }
+
+  public SensorEventDebouncer(int capacity, long defaultHoldMillis, OverflowPolicy overflowPolicy) {
+    this.capacity = capacity;
+    this.defaultHoldMillis = defaultHoldMillis;
+    this.overflowPolicy = overflowPolicy;
+    lock = new ReentrantLock();
+    notFull = lock.newCondition();
+    released = new DelayQueue<>();
+    held = new HashMap<>();
+    holdTimes = new HashMap<>();
+    lastDelivered = new HashMap<>();
+  }
+
+  /**
+   * A sensor is identified by its physical contact, as that is what bounces.
+   */
+  private static String key(SensorBean sensor) {
+    if (sensor.getDeviceId() != null && sensor.getContactId() != null) {
+      return sensor.getDeviceId() + "-" + sensor.getContactId();
+    } else {
+      return "#" + sensor.getId();
+    }
+  }
+
+  /**
+   * Set the hold time for one sensor, overriding the default.
+   *
+   * @param sensor the sensor
+   * @param holdMillis the hold time in ms, 0 disables the debounce for this sensor
+   */
+  public void setHoldTime(SensorBean sensor, long holdMillis) {
+    lock.lock();
+    try {
+      holdTimes.put(key(sensor), holdMillis);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getHoldTime(SensorBean sensor) {
+    lock.lock();
+    try {
+      return holdTimes.getOrDefault(key(sensor), defaultHoldMillis);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Add an event.
+   *
+   * @param event the sensor event
+   * @return false when the event is dropped because the stage is full
+   */
+  public boolean offer(SensorEvent event) {
+    String key = key(event.getSensorBean());
+    lock.lock();
+    try {
+      received++;
+      HeldEvent h = held.get(key);
+      if (h != null) {
+        //Latest state wins, the event keeps the release time of the held event
+        h.event = event;
+        h.coalesced = true;
+        h.keepPulse(event, lastDelivered.get(key));
+        suppressed++;
+        return true;
+      }
+
+      while (held.size() >= capacity) {
+        switch (overflowPolicy) {
+          case BLOCK -> {
+            try {
+              notFull.await();
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+              dropped++;
+              return false;
+            }
+          }
+          case DROP_NEWEST -> {
+            dropped++;
+            Logger.warn("Sensor event stage full, dropping " + event);
+            return false;
+          }
+          case DROP_OLDEST -> {
+            HeldEvent oldest = released.peek();
+            if (oldest != null) {
+              released.remove(oldest);
+            } else {
+              //The oldest is just being taken by the handler
+              oldest = held.values().iterator().next();
+            }
+            held.remove(oldest.key);
+            dropped++;
+            Logger.warn("Sensor event stage full, dropping " + oldest.event);
+          }
+        }
+      }
+
+      long holdMillis = holdTimes.getOrDefault(key, defaultHoldMillis);
+      h = new HeldEvent(key, event, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(holdMillis));
+      h.keepPulse(event, lastDelivered.get(key));
+      held.put(key, h);
+      released.add(h);
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Take the next event of which the hold time has expired.
+   *
+   * @param timeout how long to wait
+   * @param unit the unit of the timeout
+   * @return the event or null when none was released within the timeout
+   * @throws InterruptedException when interrupted while waiting
+   */
+  public SensorEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    long remaining = unit.toNanos(timeout);
+    while (remaining > 0) {
+      HeldEvent h = released.poll(remaining, TimeUnit.NANOSECONDS);
+      if (h == null) {
+        return null;
+      }
+
+      lock.lock();
+      try {
+        if (held.get(h.key) != h) {
+          //Dropped while it was taken
+          remaining = deadline - System.nanoTime();
+          continue;
+        }
+        boolean active = h.event.isActive();
+        Boolean last = lastDelivered.get(h.key);
+        if (h.coalesced && last != null && last == active && h.pulse != null) {
+          //A pulse within the hold time, deliver it now and the return to the delivered state right after it
+          HeldEvent back = new HeldEvent(h.key, h.event, System.nanoTime());
+          held.put(h.key, back);
+          released.add(back);
+          lastDelivered.put(h.key, !active);
+          suppressed--;
+          delivered++;
+          return h.pulse;
+        }
+
+        held.remove(h.key);
+        notFull.signal();
+        if (h.coalesced && last != null && last == active) {
+          //Only the delivered state was reported again
+          suppressed++;
+          remaining = deadline - System.nanoTime();
+          continue;
+        }
+        lastDelivered.put(h.key, active);
+        delivered++;
+        return h.event;
+      } finally {
+        lock.unlock();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the number of sensors with a held event
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return held.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getReceivedCount() {
+    lock.lock();
+    try {
+      return received;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getDeliveredCount() {
+    lock.lock();
+    try {
+      return delivered;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of events which were replaced by a newer event of the same sensor or only repeated the delivered state
+   */
+  public long getSuppressedCount() {
+    lock.lock();
+    try {
+      return suppressed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of events lost because of the overflow policy
+   */
+  public long getDroppedCount() {
+    lock.lock();
+    try {
+      return dropped;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.lock();
+    try {
+      return "SensorEventDebouncer{received=" + received + ", delivered=" + delivered + ", suppressed=" + suppressed + ", dropped=" + dropped + ", held=" + held.size() + "}";
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static class HeldEvent implements Delayed {
+
+    private final String key;
+    private final long releaseNanos;
+    private SensorEvent event;
+    private boolean coalesced;
+    private SensorEvent pulse;
+
+    HeldEvent(String key, SensorEvent event, long releaseNanos) {
+      this.key = key;
+      this.event = event;
+      this.releaseNanos = releaseNanos;
+    }
+
+    /**
+     * Keep the first event which left the delivered state, it is the start of a pulse when the events return to that state.
+     */
+    void keepPulse(SensorEvent event, Boolean lastDelivered) {
+      if (pulse == null && lastDelivered != null && lastDelivered != event.isActive()) {
+        pulse = event;
+      }
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(releaseNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(releaseNanos, ((HeldEvent) other).releaseNanos);
+    }
+  }
+}
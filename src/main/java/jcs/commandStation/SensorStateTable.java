@@ -0,0 +1,221 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import jcs.entities.SensorBean;
+
+/**
+ * In memory state of all sensors, indexed by deviceId and contactId.<br>
+ * Per contact one long holds the state and the time of the last change, so a sensor can be read without a database query.<br>
+ * Reads and updates are lock free; the contacts of a device are kept in pages of 64, which are created on first use.
+ * ContactIds from 0 up to 65535 are supported.
+ */
+public class SensorStateTable {
+
+  private static final long ACTIVE = 1L;
+  private static final long KNOWN = 2L;
+  private static final int STATE_BITS = 2;
+
+  private static final int PAGE_BITS = 6;
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+  private static final int MAX_CONTACTS = 65536;
+
+  private final ConcurrentHashMap<Integer, AtomicReferenceArray<AtomicLongArray>> devices;
+  private final ConcurrentHashMap<Integer, Long> sensorIds;
+  private final ConcurrentHashMap<Long, Integer> addresses;
+
+  public SensorStateTable() {
+    devices = new ConcurrentHashMap<>();
+    sensorIds = new ConcurrentHashMap<>();
+    addresses = new ConcurrentHashMap<>();
+  }
+
+  private static long address(int deviceId, int contactId) {
+    return ((long) deviceId << 32) | (contactId & 0xFFFFFFFFL);
+  }
+
+  private static boolean isSupported(int contactId) {
+    return contactId >= 0 && contactId < MAX_CONTACTS;
+  }
+
+  private AtomicLongArray page(int deviceId, int contactId, boolean create) {
+    AtomicReferenceArray<AtomicLongArray> pages = devices.get(deviceId);
+    if (pages == null) {
+      if (!create) {
+        return null;
+      }
+      pages = devices.computeIfAbsent(deviceId, k -> new AtomicReferenceArray<>(MAX_CONTACTS / PAGE_SIZE));
+    }
+
+    int p = contactId >>> PAGE_BITS;
+    AtomicLongArray page = pages.get(p);
+    if (page == null && create) {
+      pages.compareAndSet(p, null, new AtomicLongArray(PAGE_SIZE));
+      page = pages.get(p);
+    }
+    return page;
+  }
+
+  private long state(int deviceId, int contactId) {
+    if (!isSupported(contactId)) {
+      return 0;
+    }
+    AtomicLongArray page = page(deviceId, contactId, false);
+    return page != null ? page.get(contactId & (PAGE_SIZE - 1)) : 0;
+  }
+
+  /**
+   * Set the state of a contact.<br>
+   * The time of the last change is only updated when the state really changes.
+   *
+   * @param deviceId the device (module) of the contact
+   * @param contactId the contact
+   * @param active the new state
+   * @param millis the time of the change
+   * @return true when the state has changed
+   */
+  public boolean update(int deviceId, int contactId, boolean active, long millis) {
+    if (!isSupported(contactId)) {
+      return false;
+    }
+    AtomicLongArray page = page(deviceId, contactId, true);
+    int idx = contactId & (PAGE_SIZE - 1);
+    long newState = (millis << STATE_BITS) | KNOWN | (active ? ACTIVE : 0);
+    while (true) {
+      long current = page.get(idx);
+      if ((current & KNOWN) != 0 && ((current & ACTIVE) != 0) == active) {
+        return false;
+      }
+      if (page.compareAndSet(idx, current, newState)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Update the state of a sensor with the state of the bean.
+   *
+   * @param sensor the sensor
+   * @return true when the state has changed
+   */
+  public boolean update(SensorBean sensor) {
+    return update(sensor, sensor.isActive());
+  }
+
+  /**
+   * Update the state of a sensor.
+   *
+   * @param sensor the sensor
+   * @param active the new state
+   * @return true when the state has changed
+   */
+  public boolean update(SensorBean sensor, boolean active) {
+    if (sensor.getDeviceId() == null || sensor.getContactId() == null) {
+      return false;
+    }
+    if (sensor.getId() != null) {
+      map(sensor);
+    }
+    return update(sensor.getDeviceId(), sensor.getContactId(), active, System.currentTimeMillis());
+  }
+
+  /**
+   * Make the sensor known by its id.<br>
+   * The state of the bean is only used when the table does not yet know the state of the contact.
+   *
+   * @param sensor the sensor
+   */
+  public void register(SensorBean sensor) {
+    if (sensor.getId() == null || sensor.getDeviceId() == null || sensor.getContactId() == null) {
+      return;
+    }
+    map(sensor);
+
+    if (!isKnown(sensor.getDeviceId(), sensor.getContactId()) && isSupported(sensor.getContactId())) {
+      Long updated = sensor.getLastUpdatedMillis();
+      AtomicLongArray page = page(sensor.getDeviceId(), sensor.getContactId(), true);
+      long state = ((updated != null ? updated : 0L) << STATE_BITS) | KNOWN | (sensor.isActive() ? ACTIVE : 0);
+      page.compareAndSet(sensor.getContactId() & (PAGE_SIZE - 1), 0L, state);
+    }
+  }
+
+  private void map(SensorBean sensor) {
+    long address = address(sensor.getDeviceId(), sensor.getContactId());
+    sensorIds.put(sensor.getId(), address);
+    addresses.put(address, sensor.getId());
+  }
+
+  public void registerAll(List<SensorBean> sensors) {
+    for (SensorBean sensor : sensors) {
+      register(sensor);
+    }
+  }
+
+  public boolean isKnown(int deviceId, int contactId) {
+    return (state(deviceId, contactId) & KNOWN) != 0;
+  }
+
+  public boolean isActive(int deviceId, int contactId) {
+    return (state(deviceId, contactId) & ACTIVE) != 0;
+  }
+
+  /**
+   * @param deviceId the device (module) of the contact
+   * @param contactId the contact
+   * @return the time of the last state change in ms, 0 when not known
+   */
+  public long getLastChangeMillis(int deviceId, int contactId) {
+    return state(deviceId, contactId) >>> STATE_BITS;
+  }
+
+  public boolean isKnown(Integer sensorId) {
+    Long address = sensorId != null ? sensorIds.get(sensorId) : null;
+    return address != null && isKnown((int) (address >> 32), (int) (long) address);
+  }
+
+  /**
+   * @param sensorId the id of the sensor
+   * @return true when the sensor is active, false when it is not active or not known
+   */
+  public boolean isActive(Integer sensorId) {
+    Long address = sensorId != null ? sensorIds.get(sensorId) : null;
+    return address != null && isActive((int) (address >> 32), (int) (long) address);
+  }
+
+  public long getLastChangeMillis(Integer sensorId) {
+    Long address = sensorId != null ? sensorIds.get(sensorId) : null;
+    return address != null ? getLastChangeMillis((int) (address >> 32), (int) (long) address) : 0;
+  }
+
+  /**
+   * @param deviceId the device (module) of the contact
+   * @param contactId the contact
+   * @return the id of the sensor or null when it is not registered
+   */
+  public Integer getSensorId(int deviceId, int contactId) {
+    return addresses.get(address(deviceId, contactId));
+  }
+
+  public void clear() {
+    devices.clear();
+    sensorIds.clear();
+    addresses.clear();
+  }
+}
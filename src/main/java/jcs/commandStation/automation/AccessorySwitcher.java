@@ -0,0 +1,207 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jcs.commandStation.events.AccessoryEvent;
+import jcs.commandStation.events.AccessoryEventListener;
+import jcs.entities.AccessoryBean;
+import jcs.entities.AccessoryBean.AccessoryValue;
+import org.tinylog.Logger;
+
+/**
+ * Switches the accessories of a route in parallel.<br>
+ * Accessories on different decoders are switched at the same time. Commands for the same decoder are paced by the switch time
+ * of the accessory, also when the commands come from different dispatchers. A route is set up as soon as all accessories have
+ * confirmed their new position with an AccessoryEvent, or when the confirm timeout has passed.
+ */
+class AccessorySwitcher {
+
+  /**
+   * The part of the command station used to switch the accessories.
+   */
+  interface CommandStation {
+
+    void switchAccessory(AccessoryBean accessory, AccessoryValue value);
+
+    void addAccessoryEventListener(String accessoryId, AccessoryEventListener listener);
+
+    void removeAccessoryEventListener(String accessoryId, AccessoryEventListener listener);
+  }
+
+  /**
+   * An accessory to switch to a value.
+   */
+  record Command(AccessoryBean accessory, AccessoryValue value) {
+
+  }
+
+  private final CommandStation commandStation;
+  private final ScheduledExecutorService scheduler;
+  private final long defaultSwitchTime;
+  private final long confirmTimeout;
+
+  //Per decoder the time in nanos from which the next command may be sent
+  private final Map<String, Long> decoderFreeAt;
+  //Per route the last setup time in millis
+  private final Map<String, Long> setupTimes;
+
+  AccessorySwitcher(CommandStation commandStation) {
+    this.commandStation = commandStation;
+    this.defaultSwitchTime = Integer.getInteger("accessory.switch.time", 250);
+    this.confirmTimeout = Integer.getInteger("accessory.confirm.timeout", 5000);
+    this.decoderFreeAt = new HashMap<>();
+    this.setupTimes = new ConcurrentHashMap<>();
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.scheduler = Executors.newScheduledThreadPool(Math.max(1, Integer.getInteger("accessory.switch.threads", 4)), r -> {
+      Thread t = new Thread(r, "ACCESSORY-SWITCHER-" + threadCount.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  /**
+   * Switch the accessories and wait until all have confirmed.
+   *
+   * @param routeId the route which is set up, used for the latency report
+   * @param commands the accessories to switch
+   * @return true when all accessories confirmed within the confirm timeout
+   */
+  boolean switchAll(String routeId, List<Command> commands) {
+    long started = System.nanoTime();
+    CountDownLatch confirmed = new CountDownLatch(commands.size());
+    List<Confirmation> confirmations = new ArrayList<>(commands.size());
+
+    for (Command command : commands) {
+      Confirmation confirmation = new Confirmation(command, confirmed);
+      confirmations.add(confirmation);
+      commandStation.addAccessoryEventListener(command.accessory().getId(), confirmation);
+    }
+
+    try {
+      for (Command command : commands) {
+        long delay = reserveSlot(command.accessory(), started) - started;
+        scheduler.schedule(() -> send(command), delay, TimeUnit.NANOSECONDS);
+      }
+
+      boolean allConfirmed;
+      try {
+        allConfirmed = confirmed.await(confirmTimeout, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        allConfirmed = false;
+      }
+
+      long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+      setupTimes.put(routeId, millis);
+      if (allConfirmed) {
+        Logger.tag(RailController.TAG).debug("Route " + routeId + " set up in " + millis + " ms, " + commands.size() + " accessories");
+      } else {
+        Logger.tag(RailController.TAG).warn("Route " + routeId + " " + confirmed.getCount() + " of " + commands.size() + " accessories not confirmed after " + millis + " ms");
+      }
+      return allConfirmed;
+    } finally {
+      for (Confirmation confirmation : confirmations) {
+        commandStation.removeAccessoryEventListener(confirmation.command.accessory().getId(), confirmation);
+      }
+    }
+  }
+
+  /**
+   * @param routeId the route
+   * @return the time in ms the last setup of the route took, or null when the route was not set up yet
+   */
+  Long getSetupTime(String routeId) {
+    return setupTimes.get(routeId);
+  }
+
+  Map<String, Long> getSetupTimes() {
+    return new HashMap<>(setupTimes);
+  }
+
+  void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Accessories with the same decoder share the address block of 4 addresses when the decoder is not known.
+   */
+  static String decoderKey(AccessoryBean accessory) {
+    String protocol = accessory.getProtocol() != null ? accessory.getProtocol().getValue() : "";
+    if (accessory.getDecoder() != null && !accessory.getDecoder().isBlank()) {
+      return protocol + ":" + accessory.getDecoder();
+    }
+    Integer address = accessory.getAddress();
+    return protocol + ":" + (address != null ? (address - 1) / 4 : accessory.getId());
+  }
+
+  /**
+   * @return the time in nanos at which the command may be sent to the decoder of the accessory
+   */
+  private long reserveSlot(AccessoryBean accessory, long now) {
+    long switchTime = accessory.getSwitchTime() != null && accessory.getSwitchTime() > 0 ? accessory.getSwitchTime() : defaultSwitchTime;
+    String decoder = decoderKey(accessory);
+    synchronized (decoderFreeAt) {
+      long at = Math.max(now, decoderFreeAt.getOrDefault(decoder, now));
+      decoderFreeAt.put(decoder, at + TimeUnit.MILLISECONDS.toNanos(switchTime));
+      return at;
+    }
+  }
+
+  private void send(Command command) {
+    try {
+      Logger.trace("Switching accessory " + command.accessory().getId() + " to " + command.value());
+      commandStation.switchAccessory(command.accessory(), command.value());
+    } catch (Exception e) {
+      Logger.tag(RailController.TAG).error("Error switching accessory " + command.accessory().getId() + " to " + command.value() + " Cause: " + e.getMessage());
+    }
+  }
+
+  private static class Confirmation implements AccessoryEventListener {
+
+    private final Command command;
+    private final CountDownLatch confirmed;
+    private boolean done;
+
+    Confirmation(Command command, CountDownLatch confirmed) {
+      this.command = command;
+      this.confirmed = confirmed;
+    }
+
+    @Override
+    public void onAccessoryChange(AccessoryEvent accessoryEvent) {
+      if (accessoryEvent.isEventFor(command.accessory()) && command.value() == accessoryEvent.getValue()) {
+        synchronized (this) {
+          if (done) {
+            return;
+          }
+          done = true;
+        }
+        confirmed.countDown();
+      }
+    }
+  }
+}
@@ -20,7 +20,6 @@ import static jcs.commandStation.automation.AbstractState.State.APPROACH;
 import static jcs.commandStation.automation.RailController.TAG;
 import jcs.entities.BlockBean;
 import jcs.entities.RouteBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
@@ -51,8 +50,8 @@ class ApproachingState extends AbstractState {
     departureBlock.setBlockState(BlockBean.BlockState.OUTBOUND);
     destinationBlock.setBlockState(BlockBean.BlockState.INBOUND);
 
-    PersistenceFactory.getService().persist(departureBlock);
-    PersistenceFactory.getService().persist(destinationBlock);
+    dispatcher.getPersistenceService().persist(departureBlock);
+    dispatcher.getPersistenceService().persist(destinationBlock);
 
     dispatcher.showBlockState(departureBlock);
     dispatcher.getRouteManager().showRoute(route, Color.magenta);
@@ -24,7 +24,6 @@ import jcs.entities.LocomotiveBean;
 import jcs.entities.RouteBean;
 import jcs.entities.StationBean;
 import jcs.entities.StationBlockBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
@@ -79,14 +78,14 @@ class ArrivedState extends AbstractState {
     departureBlock.setLocomotive(null);
     departureBlock.setArrivalSuffix(null);
     departureBlock.setLogicalDirection(null);
-    PersistenceFactory.getService().persist(departureBlock);
+    dispatcher.getPersistenceService().persist(departureBlock);
 
     destinationBlock.setBlockState(BlockBean.BlockState.OCCUPIED);
     LocomotiveBean locomotive = dispatcher.getLocomotiveBean();
     destinationBlock.setLocomotive(locomotive);
     destinationBlock.setLogicalDirection(locomotive.getDirection().getDirection());
     destinationBlock.setArrivalSuffix(dispatcher.getRouteBean().getToSuffix());
-    PersistenceFactory.getService().persist(destinationBlock);
+    dispatcher.getPersistenceService().persist(destinationBlock);
 
     dispatcher.showBlockState(departureBlock);
     dispatcher.showBlockState(destinationBlock);
@@ -99,14 +98,14 @@ class ArrivedState extends AbstractState {
       //Set the arrival time
       StationBlockBean sbb = station.getStationBlockBean(destinationBlock);
       sbb.setLastUpdated(new Date());
-      PersistenceFactory.getService().persist(station);
+      dispatcher.getPersistenceService().persist(station);
     }
 
     //Now Clear the route as we have arrived
     RouteBean route = dispatcher.getRouteBean();
     Logger.trace("resetting old route " + route.getId());
     route.setLocked(false);
-    PersistenceFactory.getService().persist(route);
+    dispatcher.getPersistenceService().persist(route);
     dispatcher.resetRoute(route);
     dispatcher.setRouteBean(null);
 
@@ -157,8 +156,8 @@ class ArrivedState extends AbstractState {
       Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " Departure: " + departureBlock.getId() + " Occupancy Sensor: " + occupancySensorId + " Exit Sensor: " + exitSensorId);
       Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " Destination: " + destinationBlock.getId() + " Enter Sensor: " + enterSensorId + " In Sensor: " + inSensorId);
 
-      PersistenceFactory.getService().persist(departureBlock);
-      PersistenceFactory.getService().persist(destinationBlock);
+      dispatcher.getPersistenceService().persist(departureBlock);
+      dispatcher.getPersistenceService().persist(destinationBlock);
 
       dispatcher.showBlockState(departureBlock);
       dispatcher.showBlockState(destinationBlock);
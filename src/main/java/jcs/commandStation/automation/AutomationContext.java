@@ -0,0 +1,189 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.util.Random;
+import jcs.JCS;
+import jcs.commandStation.SensorStateTable;
+import jcs.commandStation.events.AccessoryEventListener;
+import jcs.commandStation.events.AllSensorEventsListener;
+import jcs.entities.AccessoryBean;
+import jcs.entities.AccessoryBean.AccessoryValue;
+import jcs.entities.AccessoryBean.SignalValue;
+import jcs.entities.CommandStationBean;
+import jcs.entities.LocomotiveBean;
+import jcs.entities.LocomotiveBean.Direction;
+import jcs.entities.SensorBean;
+import jcs.persistence.PersistenceFactory;
+import jcs.persistence.PersistenceService;
+
+/**
+ * The services the automatic driving depends on: the persistence, the command station, the clock and the layout view.<br>
+ * The RailController of the application uses the JCS singletons. The LayoutSimulator injects a layout in memory, a virtual command
+ * station and a virtual clock, so it drives the real Dispatchers and State Machines without a database or hardware.
+ */
+interface AutomationContext {
+
+  PersistenceService getPersistenceService();
+
+  CommandStation getCommandStation();
+
+  /**
+   * @return the scheduler of the State Machines, which is also the clock of the timers and delays in the states
+   */
+  StateMachineScheduler getScheduler();
+
+  /**
+   * @return the source of the random choices, like the wait time in a block and the choice between free routes
+   */
+  Random getRandom();
+
+  /**
+   * @return true when the states of the blocks and routes are shown on the tiles of the layout
+   */
+  boolean isLayoutShown();
+
+  /**
+   * The part of the command station used during automatic driving.
+   */
+  interface CommandStation extends AccessorySwitcher.CommandStation {
+
+    CommandStationBean getCommandStationBean();
+
+    boolean isPowerOn();
+
+    void switchPower(boolean on);
+
+    void changeLocomotiveSpeed(Integer newVelocity, LocomotiveBean locomotive);
+
+    void changeLocomotiveDirection(Direction newDirection, LocomotiveBean locomotive);
+
+    void changeLocomotiveFunction(Boolean newValue, Integer functionNumber, LocomotiveBean locomotive);
+
+    void switchAccessory(AccessoryBean accessory, SignalValue value);
+
+    SensorStateTable getSensorStateTable();
+
+    SensorBean getSensorStatus(SensorBean sensorBean);
+
+    void addAllSensorEventsListener(AllSensorEventsListener listener);
+
+    void removeAllSensorEventsListener(AllSensorEventsListener listener);
+  }
+
+  /**
+   * The context of the application, every call goes to the current persistence service and command station.
+   */
+  final class Jcs implements AutomationContext, CommandStation {
+
+    private final Random random = new Random();
+
+    @Override
+    public PersistenceService getPersistenceService() {
+      return PersistenceFactory.getService();
+    }
+
+    @Override
+    public CommandStation getCommandStation() {
+      return this;
+    }
+
+    @Override
+    public StateMachineScheduler getScheduler() {
+      return StateMachineScheduler.SHARED;
+    }
+
+    @Override
+    public Random getRandom() {
+      return random;
+    }
+
+    @Override
+    public boolean isLayoutShown() {
+      return true;
+    }
+
+    @Override
+    public CommandStationBean getCommandStationBean() {
+      return JCS.getJcsCommandStation().getCommandStationBean();
+    }
+
+    @Override
+    public boolean isPowerOn() {
+      return JCS.getJcsCommandStation().isPowerOn();
+    }
+
+    @Override
+    public void switchPower(boolean on) {
+      JCS.getJcsCommandStation().switchPower(on);
+    }
+
+    @Override
+    public void changeLocomotiveSpeed(Integer newVelocity, LocomotiveBean locomotive) {
+      JCS.getJcsCommandStation().changeLocomotiveSpeed(newVelocity, locomotive);
+    }
+
+    @Override
+    public void changeLocomotiveDirection(Direction newDirection, LocomotiveBean locomotive) {
+      JCS.getJcsCommandStation().changeLocomotiveDirection(newDirection, locomotive);
+    }
+
+    @Override
+    public void changeLocomotiveFunction(Boolean newValue, Integer functionNumber, LocomotiveBean locomotive) {
+      JCS.getJcsCommandStation().changeLocomotiveFunction(newValue, functionNumber, locomotive);
+    }
+
+    @Override
+    public void switchAccessory(AccessoryBean accessory, SignalValue value) {
+      JCS.getJcsCommandStation().switchAccessory(accessory, value);
+    }
+
+    @Override
+    public void switchAccessory(AccessoryBean accessory, AccessoryValue value) {
+      JCS.getJcsCommandStation().switchAccessory(accessory, value);
+    }
+
+    @Override
+    public void addAccessoryEventListener(String accessoryId, AccessoryEventListener listener) {
+      JCS.getJcsCommandStation().addAccessoryEventListener(accessoryId, listener);
+    }
+
+    @Override
+    public void removeAccessoryEventListener(String accessoryId, AccessoryEventListener listener) {
+      JCS.getJcsCommandStation().removeAccessoryEventListener(accessoryId, listener);
+    }
+
+    @Override
+    public SensorStateTable getSensorStateTable() {
+      return JCS.getJcsCommandStation().getSensorStateTable();
+    }
+
+    @Override
+    public SensorBean getSensorStatus(SensorBean sensorBean) {
+      return JCS.getJcsCommandStation().getSensorStatus(sensorBean);
+    }
+
+    @Override
+    public void addAllSensorEventsListener(AllSensorEventsListener listener) {
+      JCS.getJcsCommandStation().addAllSensorEventsListener(listener);
+    }
+
+    @Override
+    public void removeAllSensorEventsListener(AllSensorEventsListener listener) {
+      JCS.getJcsCommandStation().removeAllSensorEventsListener(listener);
+    }
+  }
+}
@@ -23,7 +23,6 @@ import jcs.commandStation.events.SensorEvent;
 import jcs.entities.BlockBean;
 import jcs.entities.LocomotiveBean;
 import jcs.entities.RouteBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
@@ -68,8 +67,8 @@ class BrakingState extends AbstractState implements SensorEventCallback {
     departureBlock.setBlockState(BlockBean.BlockState.OUTBOUND);
     destinationBlock.setBlockState(BlockBean.BlockState.INBOUND);
 
-    PersistenceFactory.getService().persist(departureBlock);
-    PersistenceFactory.getService().persist(destinationBlock);
+    dispatcher.getPersistenceService().persist(departureBlock);
+    dispatcher.getPersistenceService().persist(destinationBlock);
 
     dispatcher.showBlockState(departureBlock);
     dispatcher.getRouteManager().showRoute(route, Color.magenta);
@@ -19,7 +19,6 @@ import static jcs.commandStation.automation.AbstractState.State.DEPARTING;
 import static jcs.commandStation.automation.RailController.TAG;
 import jcs.entities.BlockBean;
 import jcs.entities.LocomotiveBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
@@ -36,7 +35,7 @@ class DepartingState extends AbstractState {
 
   @Override
   AbstractState execute() {
-    LocomotiveBean locomotive = PersistenceFactory.getService().getLocomotive(dispatcher.getLocomotiveId());
+    LocomotiveBean locomotive = dispatcher.getPersistenceService().getLocomotive(dispatcher.getLocomotiveId());
 
     boolean delay = dispatcher.handleSignal(state);
 
@@ -45,7 +44,7 @@ class DepartingState extends AbstractState {
       long startDelayTime = Long.getLong("default.start-delaytime", 2000L);
       Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " Delaying departure by " + startDelayTime + "ms due to signal proccessing...");
       try {
-        Thread.sleep(startDelayTime);
+        dispatcher.getScheduler().sleep(startDelayTime);
       } catch (InterruptedException ie) {
         Thread.currentThread().interrupt();
         Logger.tag(TAG).warn("Dispatcher {} departure delay interrupted!", dispatcher.getName());
@@ -70,8 +69,8 @@ class DepartingState extends AbstractState {
 
     locomotive.setVelocity((int) velocity);
     departureBlock.setLocomotive(locomotive);
-    PersistenceFactory.getService().persist(departureBlock);
-    PersistenceFactory.getService().persist(destinationBlock);
+    dispatcher.getPersistenceService().persist(departureBlock);
+    dispatcher.getPersistenceService().persist(destinationBlock);
 
     dispatcher.showBlockState(departureBlock);
     dispatcher.showBlockState(destinationBlock);
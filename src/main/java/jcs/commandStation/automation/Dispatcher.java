@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
-import jcs.JCS;
 import jcs.commandStation.automation.AbstractState.State;
 import static jcs.commandStation.automation.AbstractState.State.DEPARTING;
 import static jcs.commandStation.automation.RailController.TAG;
@@ -34,7 +33,7 @@ import jcs.entities.RouteBean;
 import jcs.entities.RouteElementBean;
 import jcs.entities.StationBean;
 import jcs.entities.StationBlockBean;
-import jcs.persistence.PersistenceFactory;
+import jcs.persistence.PersistenceService;
 import jcs.ui.layout.tiles.TileCache;
 import jcs.ui.layout.tiles.Tile;
 import org.tinylog.Logger;
@@ -95,11 +94,18 @@ public class Dispatcher {
     stateEventListeners = new ArrayList<>();
   }
 
-  @SuppressWarnings("unused")
   RailController getRailController() {
     return railController;
   }
 
+  PersistenceService getPersistenceService() {
+    return railController.getContext().getPersistenceService();
+  }
+
+  StateMachineScheduler getScheduler() {
+    return railController.getContext().getScheduler();
+  }
+
   SensorMonitor getSensorMonitor() {
     return railController.getSensorMonitor();
   }
@@ -118,7 +124,7 @@ public class Dispatcher {
 
   //Convenience; Pass through a "fresh" locomotive
   public LocomotiveBean getLocomotiveBean() {
-    return PersistenceFactory.getService().getLocomotive(locomotiveId);
+    return getPersistenceService().getLocomotive(locomotiveId);
   }
 
   RouteBean getRouteBean() {
@@ -162,7 +168,7 @@ public class Dispatcher {
   public void startLocomotive(boolean force) {
     if (railController.isAutoModeActive()) {
       if (stateMachine != null && !stateMachine.isRunning()) {
-        stateMachine.startStateMachineThread();
+        stateMachine.start();
         locomotiveStarted = stateMachine.isRunning();
       } else {
         Logger.tag(TAG).debug("There is a running dispatcher.");
@@ -172,13 +178,13 @@ public class Dispatcher {
     }
     if (force) {
       BlockBean departure = getDepartureBlock();
-      StationBean station = PersistenceFactory.getService().getStation(departure);
+      StationBean station = getPersistenceService().getStation(departure);
       if (station != null) {
         StationBlockBean stb = station.getStationBlockBean(departure);
         // force Last updated to yesterday, so this must be the first locomotive to leave ;)
         Date yesterday = Date.from(LocalDate.now().minusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant());
         stb.setLastUpdated(yesterday);
-        PersistenceFactory.getService().persist(station);
+        getPersistenceService().persist(station);
       }
 
     }
@@ -192,7 +198,7 @@ public class Dispatcher {
   }
 
   public boolean isLocomotiveStarted() {
-    if (stateMachine != null && stateMachine.isThreadEnabled()) {
+    if (stateMachine != null && stateMachine.isEnabled()) {
       return stateMachine.isRunning();
     } else {
       return locomotiveStarted;
@@ -202,7 +208,7 @@ public class Dispatcher {
   public void stopLocomotive() {
     if (stateMachine != null) {
       locomotiveStarted = !stateMachine.getCurrentState().canStopLocomotive();
-      stateMachine.stopStateMachineThread();
+      stateMachine.stop();
     } else {
       locomotiveStarted = false;
     }
@@ -212,10 +218,6 @@ public class Dispatcher {
     return stateMachine;
   }
 
-  ThreadGroup getThreadGroup() {
-    return railController.getThreadGroup();
-  }
-
   public void reset() {
     if (stateMachine != null) {
       stateMachine.reset();
@@ -235,7 +237,7 @@ public class Dispatcher {
       destination.setLocomotive(null);
       destination.setBlockState(BlockBean.BlockState.FREE);
       destination.setArrivalSuffix(null);
-      PersistenceFactory.getService().persist(destination);
+      getPersistenceService().persist(destination);
       showBlockState(destination);
     }
 
@@ -246,17 +248,17 @@ public class Dispatcher {
     if (route != null) {
       route.setLocked(false);
       departure.setDepartureSuffix(route.getFromSuffix());
-      PersistenceFactory.getService().persist(route);
+      getPersistenceService().persist(route);
       resetRoute(route);
     }
-    PersistenceFactory.getService().persist(departure);
+    getPersistenceService().persist(departure);
     showBlockState(departure);
 
     RouteBean nextRoute = getNextRouteBean();
     if (nextRoute != null) {
       nextRoute.setLocked(false);
       resetRoute(nextRoute);
-      PersistenceFactory.getService().persist(nextRoute);
+      getPersistenceService().persist(nextRoute);
     }
 
     setRouteBean(null);
@@ -276,12 +278,12 @@ public class Dispatcher {
   BlockBean getDepartureBlock() {
     BlockBean departureBlock;
     if (departureBlockId != null) {
-      departureBlock = PersistenceFactory.getService().getBlock(departureBlockId);
+      departureBlock = getPersistenceService().getBlock(departureBlockId);
     } else if (routeBean != null) {
-      departureBlock = PersistenceFactory.getService().getBlockByTileId(routeBean.getFromTileId());
+      departureBlock = getPersistenceService().getBlockByTileId(routeBean.getFromTileId());
       departureBlockId = departureBlock.getId();
     } else {
-      departureBlock = PersistenceFactory.getService().getBlockByLocomotiveId(locomotiveId);
+      departureBlock = getPersistenceService().getBlockByLocomotiveId(locomotiveId);
       departureBlockId = departureBlock.getId();
     }
 
@@ -297,7 +299,7 @@ public class Dispatcher {
         }
         Logger.trace("Arrival Suffix is not set! Setting it to: " + newArrivalSuffix);
         departureBlock.setArrivalSuffix(newArrivalSuffix);
-        PersistenceFactory.getService().persist(departureBlock);
+        getPersistenceService().persist(departureBlock);
       }
     }
 
@@ -307,9 +309,9 @@ public class Dispatcher {
   BlockBean getDestinationBlock() {
     BlockBean destinationBlock = null;
     if (destinationBlockId != null) {
-      destinationBlock = PersistenceFactory.getService().getBlock(destinationBlockId);
+      destinationBlock = getPersistenceService().getBlock(destinationBlockId);
     } else if (routeBean != null) {
-      destinationBlock = PersistenceFactory.getService().getBlockByTileId(routeBean.getToTileId());
+      destinationBlock = getPersistenceService().getBlockByTileId(routeBean.getToTileId());
       destinationBlockId = destinationBlock.getId();
     }
     return destinationBlock;
@@ -322,14 +324,14 @@ public class Dispatcher {
   BlockBean getNextDestinationBlock() {
     if (nextRouteBean != null) {
       String nextDestinationBlockId = nextRouteBean.getToTileId();
-      return PersistenceFactory.getService().getBlockByTileId(nextDestinationBlockId);
+      return getPersistenceService().getBlockByTileId(nextDestinationBlockId);
     } else {
       return null;
     }
   }
 
   StationBean getStation(BlockBean blockBean) {
-    return PersistenceFactory.getService().getStation(blockBean);
+    return getPersistenceService().getStation(blockBean);
   }
 
   public String getStateName() {
@@ -382,9 +384,9 @@ public class Dispatcher {
 
   private AccessoryBean getDepartureSignal(String departureSuffix, BlockBean departureBlock) {
     if ("-".equals(departureSuffix) && departureBlock.getMinSignalId() != null) {
-      return PersistenceFactory.getService().getAccessory(departureBlock.getMinSignalId());
+      return getPersistenceService().getAccessory(departureBlock.getMinSignalId());
     } else if ("+".equals(departureSuffix) && departureBlock.getPlusSignalId() != null) {
-      return PersistenceFactory.getService().getAccessory(departureBlock.getPlusSignalId());
+      return getPersistenceService().getAccessory(departureBlock.getPlusSignalId());
     } else {
       return null;
     }
@@ -427,7 +429,7 @@ public class Dispatcher {
       case PREPNEXTROUTE -> {
         RouteBean nextRoute = getNextRouteBean();
         if (nextRoute != null) {
-          BlockBean departureBlock = PersistenceFactory.getService().getBlockByTileId(nextRoute.getFromTileId());
+          BlockBean departureBlock = getPersistenceService().getBlockByTileId(nextRoute.getFromTileId());
           String departureSuffix = getNextRouteBean().getFromSuffix();
           signal = getDepartureSignal(departureSuffix, departureBlock);
           setActiveSignal(signal);
@@ -443,7 +445,7 @@ public class Dispatcher {
     if (signal != null && newValue != SignalValue.OFF) {
       Logger.trace("Setting Signal " + signal.getId() + " set to: " + newValue + "...");
 
-      JCS.getJcsCommandStation().switchAccessory(signal, newValue);
+      railController.getContext().getCommandStation().switchAccessory(signal, newValue);
       if (SignalValue.Hp0 == newValue) {
         setActiveSignal(null);
         Logger.trace("Signal {} set to: {} Signal is marked {}.", signal.getId(), newValue, (getActiveSignal() != null ? "active" : "not active"));
@@ -459,7 +461,7 @@ public class Dispatcher {
       LocomotiveBean locomotive = getLocomotiveBean();
       locomotive.setVelocity(newVelocity);
 
-      JCS.getJcsCommandStation().changeLocomotiveSpeed(newVelocity, locomotive);
+      railController.getContext().getCommandStation().changeLocomotiveSpeed(newVelocity, locomotive);
     } catch (Exception e) {
       Logger.tag(TAG).error("Error changing velocity of locomotive " + locomotiveId + " to " + velocity + " Cause: " + e.getMessage());
     }
@@ -468,7 +470,7 @@ public class Dispatcher {
   void changeLocomotiveDirection(Direction newDirection) {
     try {
       LocomotiveBean locomotive = getLocomotiveBean();
-      JCS.getJcsCommandStation().changeLocomotiveDirection(newDirection, locomotive);
+      railController.getContext().getCommandStation().changeLocomotiveDirection(newDirection, locomotive);
     } catch (Exception e) {
       Logger.tag(TAG).error("Error changing direction of locomotive " + locomotiveId + " to " + newDirection + " Cause: " + e.getMessage());
     }
@@ -493,6 +495,9 @@ public class Dispatcher {
   }
 
   void resetRoute(RouteBean route) {
+    if (!railController.getContext().isLayoutShown()) {
+      return;
+    }
     List<RouteElementBean> routeElements = route.getRouteElements();
     for (RouteElementBean re : routeElements) {
       String tileId = re.getTileId();
@@ -516,6 +521,9 @@ public class Dispatcher {
   }
 
   void showBlockState(BlockBean blockBean) {
+    if (!railController.getContext().isLayoutShown()) {
+      return;
+    }
     Tile tile = TileCache.findTile(blockBean.getTileId());
     if (tile != null) {
       tile.setBlockBean(blockBean);
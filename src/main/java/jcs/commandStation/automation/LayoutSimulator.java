@@ -0,0 +1,778 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import jcs.commandStation.SensorStateTable;
+import jcs.commandStation.events.AccessoryEventListener;
+import jcs.commandStation.events.AllSensorEventsListener;
+import jcs.commandStation.events.SensorEvent;
+import static jcs.commandStation.automation.RailController.TAG;
+import jcs.entities.AccessoryBean;
+import jcs.entities.AccessoryBean.AccessoryValue;
+import jcs.entities.AccessoryBean.SignalValue;
+import jcs.entities.BlockBean;
+import jcs.entities.CommandStationBean;
+import jcs.entities.LocomotiveBean;
+import jcs.entities.LocomotiveBean.Direction;
+import jcs.entities.RouteBean;
+import jcs.entities.RouteElementBean;
+import jcs.entities.SensorBean;
+import jcs.persistence.PersistenceFactory;
+import jcs.persistence.PersistenceService;
+import org.tinylog.Logger;
+
+/**
+ * Discrete event simulation of the automatic driving, to load test a layout.<br>
+ * The simulation drives the real RailController, Dispatchers, State Machines and SensorMonitor. They get a layout in memory, a
+ * virtual command station and a virtual clock, so hours of operation take seconds. All random choices, like the wait times and
+ * the choice between free routes, come from one seeded Random so a run is reproducible from its seed.<br>
+ * The virtual command station moves the trains with the velocity the dispatchers set, over the tiles of their route, and
+ * reports the sensors the head of a train reaches and the tail of a train leaves.<br>
+ * The State Machines run one at a time on the virtual clock. A state which waits, like the departure delay, gives the turn to
+ * the next event until its time has come.<br>
+ * A deadlock is reported when every train has failed to find a route since the last departure or arrival, so nothing can change
+ * anymore.
+ */
+public class LayoutSimulator {
+
+  /**
+   * A train in the simulation.
+   *
+   * @param name of the train
+   * @param length in mm
+   * @param speed in mm/s at full velocity
+   * @param commuter when true the train may reverse in a block which allows a direction change
+   * @param blockTileId the block the train starts in
+   */
+  public record Train(String name, int length, int speed, boolean commuter, String blockTileId) {
+
+  }
+
+  /**
+   * @param time the virtual time in ms of the deadlock
+   * @param positions per train the block it is in
+   */
+  public record Deadlock(long time, Map<String, String> positions) {
+
+  }
+
+  /**
+   * The outcome of a simulation.
+   *
+   * @param seed of the run
+   * @param simulatedMillis the virtual time which has been simulated
+   * @param blockTransitions number of times a train arrived in a block
+   * @param routeSearches number of route searches
+   * @param failedSearches number of route searches which did not find a free route or could not lock it
+   * @param failedLocks number of chosen routes which could not be locked
+   * @param routeWaits number of measured route wait times
+   * @param totalRouteWaitMillis sum of the times trains waited for a free route after their block wait time
+   * @param maxRouteWaitMillis longest wait for a free route
+   * @param transitionsPerTrain the block transitions per train
+   * @param deadlock the deadlock which ended the run, or null
+   */
+  public record Report(long seed, long simulatedMillis, int blockTransitions, int routeSearches, int failedSearches, int failedLocks, int routeWaits,
+          long totalRouteWaitMillis, long maxRouteWaitMillis, Map<String, Integer> transitionsPerTrain, Deadlock deadlock) {
+
+    public double getTransitionsPerMinute() {
+      return simulatedMillis == 0 ? 0 : blockTransitions * 60000.0 / simulatedMillis;
+    }
+
+    public double getAverageRouteWaitMillis() {
+      return routeWaits == 0 ? 0 : (double) totalRouteWaitMillis / routeWaits;
+    }
+
+    public boolean isDeadlocked() {
+      return deadlock != null;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("Seed ").append(seed).append(" simulated ").append(simulatedMillis / 1000).append(" s\n");
+      sb.append("Block transitions: ").append(blockTransitions).append(" (").append(String.format("%.2f", getTransitionsPerMinute())).append("/min)\n");
+      sb.append("Route searches: ").append(routeSearches).append(" failed: ").append(failedSearches).append(" lock failures: ").append(failedLocks).append("\n");
+      sb.append("Route wait avg: ").append(String.format("%.0f", getAverageRouteWaitMillis())).append(" ms max: ").append(maxRouteWaitMillis).append(" ms\n");
+      sb.append("Per train: ").append(transitionsPerTrain).append("\n");
+      if (deadlock != null) {
+        sb.append("Deadlock at ").append(deadlock.time() / 1000).append(" s ").append(deadlock.positions()).append("\n");
+      }
+      return sb.toString();
+    }
+  }
+
+  private record Event(long time, long sequence, Runnable action) implements Comparable<Event> {
+
+    @Override
+    public int compareTo(Event other) {
+      int c = Long.compare(time, other.time);
+      return c != 0 ? c : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  /**
+   * A sensor which the head of a train reaches, or the tail of a train leaves, at a position on the path of the train.
+   */
+  private record Milestone(double position, long sequence, Integer sensorId, boolean active) implements Comparable<Milestone> {
+
+    @Override
+    public int compareTo(Milestone other) {
+      int c = Double.compare(position, other.position);
+      return c != 0 ? c : Long.compare(sequence, other.sequence);
+    }
+  }
+
+  private final long seed;
+  private final SimulatorPersistenceService persistence;
+  private final VirtualClock clock;
+  private final VirtualCommandStation commandStation;
+  private final RailController railController;
+  private final Map<Long, TrainMotion> trains;
+  //Per sensor the number of trains which are on it
+  private final Map<Integer, Integer> sensorOccupation;
+  private final Set<String> lockedRoutes;
+  //A route of the searching dispatcher could not be locked, the conflicting route will be released
+  private boolean lockRefused;
+
+  private final int tileLength;
+  private final int blockLength;
+
+  private SensorMonitor sensorMonitor;
+  private long milestoneSequence;
+  //Increases with every departure and arrival, i.e. with every change on the layout which may free a route
+  private long layoutChanges;
+  private int routeSearches;
+  private int failedSearches;
+  private int failedLocks;
+  private int routeWaits;
+  private long totalRouteWait;
+  private long maxRouteWait;
+  private Deadlock deadlock;
+
+  /**
+   * @param routes the routes of the layout
+   * @param blocks the blocks of the layout, with their tiles and sensors
+   * @param trains the trains to drive
+   * @param seed for the random choices
+   */
+  public LayoutSimulator(List<RouteBean> routes, List<BlockBean> blocks, List<Train> trains, long seed) {
+    this(routes, blocks, trains, seed, null);
+  }
+
+  /**
+   * @param routeConflicts the conflicts between the routes, or null for the conflicts of the given routes
+   */
+  LayoutSimulator(List<RouteBean> routes, List<BlockBean> blocks, List<Train> trains, long seed, RouteConflictMatrix routeConflicts) {
+    this.seed = seed;
+    this.tileLength = Integer.getInteger("simulator.tile.length", 180);
+    this.blockLength = Integer.getInteger("simulator.block.length", 1200);
+
+    this.trains = new LinkedHashMap<>();
+    List<LocomotiveBean> locomotives = new ArrayList<>();
+    for (Train train : trains) {
+      LocomotiveBean locomotive = createLocomotive(locomotives.size() + 1, train);
+      locomotives.add(locomotive);
+      this.trains.put(locomotive.getId(), new TrainMotion(train, locomotive.getId()));
+    }
+
+    persistence = new SimulatorPersistenceService(routes, blocks, locomotives);
+    placeTrains(trains, locomotives);
+
+    sensorOccupation = new HashMap<>();
+    lockedRoutes = new HashSet<>();
+    persistence.addPropertyChangeListener(this::onDataChange);
+
+    clock = new VirtualClock();
+    commandStation = new VirtualCommandStation();
+    SimulationContext context = new SimulationContext(new Random(seed));
+    if (routeConflicts == null) {
+      routeConflicts = new RouteConflictMatrix(() -> persistence.getRoutes());
+    }
+    //Without a switcher the turnouts are switched one by one, with the delays on the virtual clock
+    railController = new RailController(context, routeConflicts, null);
+  }
+
+  /**
+   * Simulate the layout with the routes and blocks in the database. The layout is copied, the database is not changed.
+   */
+  public static LayoutSimulator fromPersistence(List<Train> trains, long seed) {
+    PersistenceService persistenceService = PersistenceFactory.getService();
+    return new LayoutSimulator(persistenceService.getRoutes(), persistenceService.getBlocks(), trains, seed);
+  }
+
+  private static LocomotiveBean createLocomotive(long id, Train train) {
+    LocomotiveBean locomotive = new LocomotiveBean();
+    locomotive.setId(id);
+    locomotive.setName(train.name());
+    locomotive.setUid(id);
+    locomotive.setAddress((int) id);
+    locomotive.setTachoMax(100);
+    locomotive.setSpeedOne(10);
+    locomotive.setSpeedThree(75);
+    locomotive.setVelocity(0);
+    locomotive.setDirection(Direction.FORWARDS);
+    locomotive.setCommuter(train.commuter());
+    locomotive.setShow(true);
+    return locomotive;
+  }
+
+  /**
+   * Only the blocks with a train are occupied, all routes are free.
+   */
+  private void placeTrains(List<Train> trains, List<LocomotiveBean> locomotives) {
+    Map<String, LocomotiveBean> locomotiveByBlock = new HashMap<>();
+    for (int i = 0; i < trains.size(); i++) {
+      locomotiveByBlock.put(trains.get(i).blockTileId(), locomotives.get(i));
+    }
+
+    for (BlockBean block : persistence.getBlocks()) {
+      if (BlockBean.BlockState.OUT_OF_ORDER == block.getBlockState()) {
+        continue;
+      }
+      LocomotiveBean locomotive = locomotiveByBlock.get(block.getTileId());
+      block.setLocomotive(locomotive);
+      block.setBlockState(locomotive != null ? BlockBean.BlockState.OCCUPIED : BlockBean.BlockState.FREE);
+      block.setArrivalSuffix(null);
+      block.setLogicalDirection(null);
+      persistence.persist(block);
+    }
+
+    for (RouteBean route : persistence.getRoutes()) {
+      if (route.isLocked()) {
+        route.setLocked(false);
+        persistence.persist(route);
+      }
+    }
+  }
+
+  /**
+   * Run the simulation. A simulator runs once.
+   *
+   * @param durationMillis virtual time to simulate
+   * @return the report of the run
+   */
+  public Report run(long durationMillis) {
+    sensorMonitor = new SensorMonitor(railController.getThreadGroup(), railController.getContext());
+    sensorMonitor.registerAllSensors();
+    railController.setSensorMonitor(sensorMonitor);
+    railController.setAutomodeOn(true);
+    railController.prepareAllDispatchers();
+
+    for (Dispatcher dispatcher : railController.getDispatchers()) {
+      trains.get(dispatcher.getLocomotiveId()).dispatcher = dispatcher;
+      dispatcher.addStateEventListener(this::onStateChange);
+    }
+    railController.startLocomotives();
+
+    clock.runUntil(durationMillis, () -> deadlock != null);
+    long simulatedMillis = clock.now();
+    clock.stop();
+
+    Map<String, Integer> transitionsPerTrain = new LinkedHashMap<>();
+    int blockTransitions = 0;
+    for (TrainMotion train : trains.values()) {
+      transitionsPerTrain.put(train.train.name(), train.transitions);
+      blockTransitions = blockTransitions + train.transitions;
+    }
+
+    Report report = new Report(seed, simulatedMillis, blockTransitions, routeSearches, failedSearches, failedLocks, routeWaits, totalRouteWait, maxRouteWait, transitionsPerTrain, deadlock);
+    Logger.tag(TAG).debug("Simulation finished\n" + report);
+    return report;
+  }
+
+  private void onStateChange(Dispatcher dispatcher, String oldState, String newState, String comment) {
+    if (oldState.equals(newState)) {
+      //The count down of the wait time
+      return;
+    }
+    TrainMotion train = trains.get(dispatcher.getLocomotiveId());
+    long now = clock.now();
+
+    switch (newState) {
+      case "PrepareRoute" -> {
+        routeSearches++;
+        train.failedAt = -1;
+        lockRefused = false;
+        if (train.searchingSince < 0) {
+          train.searchingSince = now;
+        }
+      }
+      case "PrepareNextRoute" ->
+        routeSearches++;
+      case "Departing" -> {
+        layoutChanges++;
+        if ("PrepareRoute".equals(oldState)) {
+          long routeWait = now - train.searchingSince;
+          train.searchingSince = -1;
+          routeWaits++;
+          totalRouteWait = totalRouteWait + routeWait;
+          maxRouteWait = Math.max(maxRouteWait, routeWait);
+        }
+      }
+      case "Arrived" -> {
+        layoutChanges++;
+        train.transitions++;
+      }
+      case "Braking" -> {
+        if ("PrepareNextRoute".equals(oldState)) {
+          failedSearches++;
+        }
+      }
+      case "Waiting" -> {
+        if ("PrepareRoute".equals(oldState)) {
+          failedSearches++;
+          if (!lockRefused) {
+            train.failedAt = layoutChanges;
+            checkDeadlock();
+          }
+        }
+      }
+      default -> {
+      }
+    }
+  }
+
+  /**
+   * Nothing changes anymore when every train has failed to find a free route since the last departure or arrival.
+   */
+  private void checkDeadlock() {
+    for (TrainMotion train : trains.values()) {
+      if (train.failedAt != layoutChanges) {
+        return;
+      }
+    }
+    Map<String, String> positions = new LinkedHashMap<>();
+    for (TrainMotion train : trains.values()) {
+      BlockBean block = persistence.getBlockByLocomotiveId(train.locomotiveId);
+      positions.put(train.train.name(), block != null ? block.getTileId() : null);
+    }
+    deadlock = new Deadlock(clock.now(), positions);
+    Logger.tag(TAG).warn("Deadlock at " + clock.now() + " ms " + positions);
+  }
+
+  /**
+   * A route which is persisted unlocked, while it was not locked, could not be locked.
+   */
+  private void onDataChange(PropertyChangeEvent evt) {
+    if ("data.route".equals(evt.getPropertyName()) && evt.getNewValue() instanceof RouteBean route) {
+      if (route.isLocked()) {
+        lockedRoutes.add(route.getId());
+      } else if (!lockedRoutes.remove(route.getId())) {
+        failedLocks++;
+        lockRefused = true;
+      }
+    }
+  }
+
+  /**
+   * Change the state of a sensor for one train. A sensor is active as long as at least one train is on it.
+   */
+  private void changeSensor(Integer sensorId, boolean active) {
+    int trainsOnSensor = sensorOccupation.getOrDefault(sensorId, 0) + (active ? 1 : -1);
+    sensorOccupation.put(sensorId, Math.max(trainsOnSensor, 0));
+
+    SensorBean sensor = persistence.getSensor(sensorId);
+    if (sensor == null || sensor.isActive() == trainsOnSensor > 0) {
+      return;
+    }
+    sensor.setActive(trainsOnSensor > 0);
+    commandStation.getSensorStateTable().update(sensor, sensor.isActive());
+
+    SensorEvent event = new SensorEvent(sensor, sensor.isActive());
+    event.setReceivedNanos(System.nanoTime());
+    sensorMonitor.handleSensorEvent(event);
+  }
+
+  /**
+   * @return the length in mm between the departure and the destination block
+   */
+  private int getRouteLength(RouteBean route) {
+    int tiles = 0;
+    if (route.getRouteElements() != null) {
+      for (RouteElementBean element : route.getRouteElements()) {
+        if (!element.isBlock()) {
+          tiles++;
+        }
+      }
+    }
+    return tiles * tileLength;
+  }
+
+  /**
+   * The movement of a train along the routes of its dispatcher.<br>
+   * The path of a train starts at the sensor where the train departs and ends at the in sensor of its destination. When the next
+   * route is reserved in time the path is extended, otherwise the train stops at the end of the path.
+   */
+  private final class TrainMotion {
+
+    private final Train train;
+    private final Long locomotiveId;
+    private Dispatcher dispatcher;
+
+    private final PriorityQueue<Milestone> milestones;
+    private RouteBean lastRoute;
+    //Positions in mm of the head of the train and of the end of the path
+    private double position;
+    private double pathEnd;
+    //Speed in mm per ms
+    private double speed;
+    private long lastUpdate;
+    private long generation;
+
+    private int transitions;
+    private long searchingSince = -1;
+    private long failedAt = -1;
+
+    TrainMotion(Train train, Long locomotiveId) {
+      this.train = train;
+      this.locomotiveId = locomotiveId;
+      milestones = new PriorityQueue<>();
+    }
+
+    void changeVelocity(int velocity) {
+      advance();
+      speed = Math.max(train.speed(), 1) * velocity / 1000.0 / 1000.0;
+      if (speed > 0 && position >= pathEnd) {
+        extendPath();
+      }
+      scheduleNext();
+    }
+
+    private void advance() {
+      long now = clock.now();
+      position = Math.min(pathEnd, position + speed * (now - lastUpdate));
+      lastUpdate = now;
+    }
+
+    private void scheduleNext() {
+      long scheduled = ++generation;
+      if (speed <= 0) {
+        return;
+      }
+      Milestone next = milestones.peek();
+      double target = next != null ? Math.min(next.position(), pathEnd) : pathEnd;
+      if (target <= position && (next == null || next.position() > position)) {
+        //At the end of the path, wait for the next route
+        return;
+      }
+      long delay = (long) Math.ceil(Math.max(target - position, 0) / speed);
+      clock.at(clock.now() + delay, () -> {
+        if (generation == scheduled) {
+          reached();
+        }
+      });
+    }
+
+    private void reached() {
+      advance();
+      while (!milestones.isEmpty() && milestones.peek().position() <= position) {
+        Milestone milestone = milestones.poll();
+        if (milestone.active()) {
+          //The tail leaves the sensor after the length of the train
+          milestones.add(new Milestone(milestone.position() + train.length(), milestoneSequence++, milestone.sensorId(), false));
+        }
+        changeSensor(milestone.sensorId(), milestone.active());
+      }
+      if (position >= pathEnd) {
+        extendPath();
+      }
+      scheduleNext();
+    }
+
+    /**
+     * Continue with the route of the dispatcher which starts where the path ends.
+     */
+    private void extendPath() {
+      RouteBean route = null;
+      for (RouteBean candidate : new RouteBean[]{dispatcher.getRouteBean(), dispatcher.getNextRouteBean()}) {
+        if (candidate != null && (lastRoute == null || (!candidate.getId().equals(lastRoute.getId()) && candidate.getFromTileId().equals(lastRoute.getToTileId())))) {
+          route = candidate;
+          break;
+        }
+      }
+      if (route == null) {
+        return;
+      }
+      lastRoute = route;
+
+      BlockBean destination = persistence.getBlockByTileId(route.getToTileId());
+      Integer enterSensorId, inSensorId;
+      if ("+".equals(route.getToSuffix())) {
+        enterSensorId = destination.getPlusSensorId();
+        inSensorId = destination.getMinSensorId();
+      } else {
+        enterSensorId = destination.getMinSensorId();
+        inSensorId = destination.getPlusSensorId();
+      }
+
+      double enterPosition = pathEnd + getRouteLength(route);
+      pathEnd = enterPosition + blockLength;
+      if (enterSensorId != null) {
+        milestones.add(new Milestone(enterPosition, milestoneSequence++, enterSensorId, true));
+      }
+      if (inSensorId != null) {
+        milestones.add(new Milestone(pathEnd, milestoneSequence++, inSensorId, true));
+      }
+    }
+  }
+
+  /**
+   * The State Machines run on the virtual clock, one at a time.<br>
+   * A task runs on its own virtual thread, while the clock waits until the task is finished or sleeps. A sleeping task is resumed
+   * by an event at the end of the delay.
+   */
+  private static final class VirtualClock extends StateMachineScheduler {
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    //Released by the running task when it has finished or sleeps
+    private final Semaphore turn = new Semaphore(0);
+    private final List<Semaphore> sleepers = new ArrayList<>();
+    private long now;
+    private long sequence;
+    private boolean stopped;
+
+    long now() {
+      return now;
+    }
+
+    void at(long time, Runnable action) {
+      events.add(new Event(Math.max(time, now), sequence++, action));
+    }
+
+    /**
+     * Run the events up to the time, or until stop.
+     */
+    void runUntil(long time, BooleanSupplier stop) {
+      while (!stop.getAsBoolean()) {
+        Event event = events.peek();
+        if (event == null || event.time() > time) {
+          now = time;
+          return;
+        }
+        events.poll();
+        now = event.time();
+        event.action().run();
+      }
+    }
+
+    /**
+     * Resume the sleeping tasks with an InterruptedException, one at a time, and drop all events.
+     */
+    void stop() {
+      stopped = true;
+      events.clear();
+      for (Semaphore sleeper : new ArrayList<>(sleepers)) {
+        sleeper.release();
+        turn.acquireUninterruptibly();
+      }
+      sleepers.clear();
+      events.clear();
+    }
+
+    @Override
+    Future<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      long periodMillis = unit.toMillis(period);
+      at(now + unit.toMillis(initialDelay), new Runnable() {
+        @Override
+        public void run() {
+          if (!future.isDone()) {
+            command.run();
+            at(now + periodMillis, this);
+          }
+        }
+      });
+      return future;
+    }
+
+    @Override
+    void execute(String name, Runnable task) {
+      if (stopped) {
+        return;
+      }
+      at(now, () -> {
+        Thread.ofVirtual().name(name).start(() -> {
+          try {
+            task.run();
+          } finally {
+            turn.release();
+          }
+        });
+        turn.acquireUninterruptibly();
+      });
+    }
+
+    @Override
+    void sleep(long millis) throws InterruptedException {
+      if (stopped) {
+        throw new InterruptedException();
+      }
+      Semaphore sleeper = new Semaphore(0);
+      sleepers.add(sleeper);
+      at(now + millis, () -> {
+        sleepers.remove(sleeper);
+        sleeper.release();
+        turn.acquireUninterruptibly();
+      });
+      turn.release();
+      sleeper.acquireUninterruptibly();
+      if (stopped) {
+        throw new InterruptedException();
+      }
+    }
+  }
+
+  /**
+   * The command station of the simulation. The velocity of a locomotive drives its train, the accessories are set at once.
+   */
+  private final class VirtualCommandStation implements AutomationContext.CommandStation {
+
+    private final CommandStationBean commandStationBean;
+    private final SensorStateTable sensorStateTable;
+    private boolean powerOn = true;
+
+    VirtualCommandStation() {
+      commandStationBean = new CommandStationBean();
+      commandStationBean.setId("simulator");
+      sensorStateTable = new SensorStateTable();
+    }
+
+    @Override
+    public CommandStationBean getCommandStationBean() {
+      return commandStationBean;
+    }
+
+    @Override
+    public boolean isPowerOn() {
+      return powerOn;
+    }
+
+    @Override
+    public void switchPower(boolean on) {
+      powerOn = on;
+      if (!on) {
+        Logger.tag(TAG).warn("Simulated power switched off at " + clock.now() + " ms");
+      }
+    }
+
+    @Override
+    public void changeLocomotiveSpeed(Integer newVelocity, LocomotiveBean locomotive) {
+      LocomotiveBean stored = persistence.getLocomotive(locomotive.getId());
+      stored.setVelocity(newVelocity);
+      persistence.persist(stored);
+      trains.get(locomotive.getId()).changeVelocity(powerOn ? newVelocity : 0);
+    }
+
+    @Override
+    public void changeLocomotiveDirection(Direction newDirection, LocomotiveBean locomotive) {
+      LocomotiveBean stored = persistence.getLocomotive(locomotive.getId());
+      stored.setDirection(newDirection);
+      stored.setVelocity(0);
+      persistence.persist(stored);
+      trains.get(locomotive.getId()).changeVelocity(0);
+    }
+
+    @Override
+    public void changeLocomotiveFunction(Boolean newValue, Integer functionNumber, LocomotiveBean locomotive) {
+    }
+
+    @Override
+    public void switchAccessory(AccessoryBean accessory, SignalValue value) {
+      accessory.setSignalValue(value);
+    }
+
+    @Override
+    public void switchAccessory(AccessoryBean accessory, AccessoryValue value) {
+      accessory.setAccessoryValue(value);
+    }
+
+    @Override
+    public void addAccessoryEventListener(String accessoryId, AccessoryEventListener listener) {
+    }
+
+    @Override
+    public void removeAccessoryEventListener(String accessoryId, AccessoryEventListener listener) {
+    }
+
+    @Override
+    public SensorStateTable getSensorStateTable() {
+      return sensorStateTable;
+    }
+
+    @Override
+    public SensorBean getSensorStatus(SensorBean sensorBean) {
+      return sensorBean;
+    }
+
+    //The sensor events are delivered to the SensorMonitor by the simulation
+    @Override
+    public void addAllSensorEventsListener(AllSensorEventsListener listener) {
+    }
+
+    @Override
+    public void removeAllSensorEventsListener(AllSensorEventsListener listener) {
+    }
+  }
+
+  private final class SimulationContext implements AutomationContext {
+
+    private final Random random;
+
+    SimulationContext(Random random) {
+      this.random = random;
+    }
+
+    @Override
+    public PersistenceService getPersistenceService() {
+      return persistence;
+    }
+
+    @Override
+    public CommandStation getCommandStation() {
+      return commandStation;
+    }
+
+    @Override
+    public StateMachineScheduler getScheduler() {
+      return clock;
+    }
+
+    @Override
+    public Random getRandom() {
+      return random;
+    }
+
+    @Override
+    public boolean isLayoutShown() {
+      return false;
+    }
+  }
+}
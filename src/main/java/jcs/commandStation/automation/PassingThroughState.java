@@ -21,7 +21,6 @@ import static jcs.commandStation.automation.RailController.TAG;
 import jcs.commandStation.events.SensorEvent;
 import jcs.entities.BlockBean;
 import jcs.entities.RouteBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
@@ -57,8 +56,8 @@ class PassingThroughState extends AbstractState implements SensorEventCallback {
     departureBlock.setBlockState(BlockBean.BlockState.OUTBOUND);
     destinationBlock.setBlockState(BlockBean.BlockState.INBOUND);
 
-    PersistenceFactory.getService().persist(departureBlock);
-    PersistenceFactory.getService().persist(destinationBlock);
+    dispatcher.getPersistenceService().persist(departureBlock);
+    dispatcher.getPersistenceService().persist(destinationBlock);
 
     dispatcher.showBlockState(departureBlock);
     dispatcher.getRouteManager().showRoute(route, Color.magenta);
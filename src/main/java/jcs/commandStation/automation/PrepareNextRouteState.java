@@ -21,7 +21,6 @@ import static jcs.commandStation.automation.RailController.TAG;
 import jcs.commandStation.events.SensorEvent;
 import jcs.entities.BlockBean;
 import jcs.entities.RouteBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
@@ -61,8 +60,8 @@ class PrepareNextRouteState extends AbstractState implements SensorEventCallback
     departureBlock.setBlockState(BlockBean.BlockState.OUTBOUND);
     destinationBlock.setBlockState(BlockBean.BlockState.INBOUND);
 
-    PersistenceFactory.getService().persist(departureBlock);
-    PersistenceFactory.getService().persist(destinationBlock);
+    dispatcher.getPersistenceService().persist(departureBlock);
+    dispatcher.getPersistenceService().persist(destinationBlock);
 
     dispatcher.showBlockState(departureBlock);
     dispatcher.getRouteManager().showRoute(route, Color.magenta);
@@ -100,12 +99,12 @@ class PrepareNextRouteState extends AbstractState implements SensorEventCallback
       //Rollback changes due to stop request
       nextRoute.setLocked(false);
       String nextDestinationTileId = nextRoute.getToTileId();
-      BlockBean nextDestinationBlock = PersistenceFactory.getService().getBlockByTileId(nextDestinationTileId);
+      BlockBean nextDestinationBlock = dispatcher.getPersistenceService().getBlockByTileId(nextDestinationTileId);
       nextDestinationBlock.setBlockState(BlockBean.BlockState.FREE);
       nextDestinationBlock.setArrivalSuffix(null);
       nextDestinationBlock.setLocomotive(null);
-      PersistenceFactory.getService().persist(nextRoute);
-      PersistenceFactory.getService().persist(nextDestinationBlock);
+      dispatcher.getPersistenceService().persist(nextRoute);
+      dispatcher.getPersistenceService().persist(nextDestinationBlock);
       dispatcher.showBlockState(nextDestinationBlock);
       dispatcher.resetRoute(nextRoute);
 
@@ -121,16 +120,16 @@ class PrepareNextRouteState extends AbstractState implements SensorEventCallback
 
     if (nextRouteFound) {
       //Try to reserve the next route
-      int permits = RailController.avialablePermits();
+      int permits = dispatcher.getRailController().avialablePermits();
       Logger.trace("Obtaining a lock. There are currently {} available permits...", permits);
       if (permits > 0) {
-        if (RailController.tryAquireLock()) {
+        if (dispatcher.getRailController().tryAquireLock()) {
           try {
             Logger.trace("##### Locked N ####");
             nextRouteAvaliable = dispatcher.getRouteManager().searchAndReserveNextRoute();
           } finally {
             //Make sure the lock is released
-            RailController.releaseLock();
+            dispatcher.getRailController().releaseLock();
             Logger.trace("##### Released N ####");
           }
         } else {
@@ -21,7 +21,6 @@ import static jcs.commandStation.automation.RailController.TAG;
 import jcs.entities.BlockBean;
 import jcs.entities.LocomotiveBean;
 import jcs.entities.StationBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
@@ -46,11 +45,11 @@ class PrepareRouteState extends AbstractState {
     if (station != null) {
       int minLocCount = station.getMinLocomotives();
       if (minLocCount > 0) {
-        int locCount = PersistenceFactory.getService().getLocomotiveCount(station).intValue();
+        int locCount = dispatcher.getPersistenceService().getLocomotiveCount(station).intValue();
         if (minLocCount <= locCount) {
           //The station has enough locomotives check whether this dispatcher is for the first locomotive to leave
           if (station.isFifo()) {
-            Long firstToLeaveLocomotiveId = PersistenceFactory.getService().getFirstLocomotiveId(station);
+            Long firstToLeaveLocomotiveId = dispatcher.getPersistenceService().getFirstLocomotiveId(station);
             canDepart = dispatcher.getLocomotiveId().equals(firstToLeaveLocomotiveId);
             if (!canDepart) {
               Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " is not the first to leave Station " + station.getName() + "...");
@@ -75,16 +74,16 @@ class PrepareRouteState extends AbstractState {
       LocomotiveBean locomotiveBean = dispatcher.getLocomotiveBean();
       Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " in state " + getName() + " Locomotive Dir.: " + locomotiveBean.getDirection().getDirection() + ". Will search for route from block " + departureBlock.getId() + " in  logical Dir.: " + departureBlock.getLogicalDirection() + " Arrival side is " + departureBlock.getArrivalSuffix());
 
-      int permits = RailController.avialablePermits();
+      int permits = dispatcher.getRailController().avialablePermits();
       Logger.trace("Obtaining a lock. There is currently " + permits + " available permits...");
 
-      if (RailController.tryAquireLock()) {
+      if (dispatcher.getRailController().tryAquireLock()) {
         try {
           Logger.trace("##### Locked ####");
           canAdvanceToNextState = dispatcher.getRouteManager().searchAndReserveRoute();
         } finally {
           //Make sure the lock is released
-          RailController.releaseLock();
+          dispatcher.getRailController().releaseLock();
           Logger.trace("##### Released ####");
         }
       } else {
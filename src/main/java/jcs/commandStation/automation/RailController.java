@@ -26,8 +26,6 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
-import jcs.JCS;
 import static jcs.commandStation.automation.RailControllerCommand.CMD_ADD_LOC;
 import static jcs.commandStation.automation.RailControllerCommand.CMD_FIRE_STATUS_LST;
 import static jcs.commandStation.automation.RailControllerCommand.CMD_REMOVE_LOC;
@@ -48,6 +46,7 @@ import jcs.entities.RouteBean;
 import jcs.persistence.PersistenceFactory;
 import jcs.ui.layout.tiles.Tile;
 import jcs.ui.layout.tiles.TileCache;
+import jcs.util.QueueDispatcher;
 import org.tinylog.Logger;
 
 /**
@@ -75,6 +74,8 @@ public final class RailController {
 
   private static RailController instance;
 
+  private final AutomationContext context;
+
   private final ThreadGroup threadGroup;
   private CommandStationBean commandStationBean;
   private SensorMonitor sensorMonitor = null;
@@ -85,7 +86,11 @@ public final class RailController {
 
   private final Map<String, Dispatcher> dispatchers;
 
-  private static final Semaphore semaphore = new Semaphore(1);
+  private final RouteConflictMatrix routeConflicts;
+
+  private final AccessorySwitcher accessorySwitcher;
+
+  private final Semaphore semaphore;
 
   private final List<RailControllerStatusListener> railwayStatusListeners;
 
@@ -107,8 +112,28 @@ public final class RailController {
   public static final String TAG = "RAIL_CONTROLLER";
 
   private RailController() {
+    this(new AutomationContext.Jcs());
+  }
+
+  private RailController(AutomationContext context) {
+    this(context, new RouteConflictMatrix(() -> context.getPersistenceService().getRoutes()), new AccessorySwitcher(context.getCommandStation()));
+  }
+
+  /**
+   * A RailController with its own context, used by the LayoutSimulator.<br>
+   * Its command thread is not started, the caller drives it.
+   *
+   * @param context the persistence, command station and clock to use
+   * @param routeConflicts the conflicts between the routes of the persistence service of the context
+   * @param accessorySwitcher the switcher of the route accessories, or null to switch the accessories one by one
+   */
+  RailController(AutomationContext context, RouteConflictMatrix routeConflicts, AccessorySwitcher accessorySwitcher) {
+    this.context = context;
     threadGroup = new ThreadGroup("RAILWAY-CONTROLLER");
     dispatchers = new ConcurrentHashMap<>();
+    this.routeConflicts = routeConflicts;
+    this.accessorySwitcher = accessorySwitcher;
+    semaphore = new Semaphore(1);
     railwayStatusListeners = new ArrayList<>();
     actionCommandQueue = new LinkedBlockingQueue();
     commandExecuter = new CommandExecuter(actionCommandQueue);
@@ -139,11 +164,15 @@ public final class RailController {
     for (LocomotiveBean locomotive : onTrackLocomotives) {
       List<FunctionBean> functions = new LinkedList<>(locomotive.getFunctions().values());
       for (FunctionBean function : functions) {
-        JCS.getJcsCommandStation().changeLocomotiveFunction(function.isOn(), function.getNumber(), locomotive);
+        context.getCommandStation().changeLocomotiveFunction(function.isOn(), function.getNumber(), locomotive);
       }
     }
   }
 
+  AutomationContext getContext() {
+    return context;
+  }
+
   ThreadGroup getThreadGroup() {
     return threadGroup;
   }
@@ -168,13 +197,13 @@ public final class RailController {
   }
 
   boolean startAutoMode() {
-    if (JCS.getJcsCommandStation().isPowerOn()) {
+    if (context.getCommandStation().isPowerOn()) {
       if (sensorMonitor != null && sensorMonitor.isRunning()) {
         Logger.trace("Already running");
         return true;
       } else {
-        commandStationBean = JCS.getJcsCommandStation().getCommandStationBean();
-        sensorMonitor = new SensorMonitor(threadGroup);
+        commandStationBean = context.getCommandStation().getCommandStationBean();
+        sensorMonitor = new SensorMonitor(threadGroup, context);
 
         long now = System.currentTimeMillis();
         long start = now;
@@ -231,6 +260,24 @@ public final class RailController {
     return sensorMonitor;
   }
 
+  /**
+   * The conflicts between the routes, shared by all dispatchers.
+   *
+   * @return the route conflict matrix, following the current persistence service
+   */
+  RouteConflictMatrix getRouteConflicts() {
+    routeConflicts.attach(context.getPersistenceService());
+    return routeConflicts;
+  }
+
+  /**
+   * @return the switcher of the route accessories, shared by all dispatchers so the decoders are paced over all routes, or null
+   * when the accessories are switched one by one
+   */
+  AccessorySwitcher getAccessorySwitcher() {
+    return accessorySwitcher;
+  }
+
   public String getStatus() {
     return status;
   }
@@ -310,7 +357,7 @@ public final class RailController {
     Logger.trace("Preparing Dispatchers for all on track locomotives...");
 
     if (commandStationBean == null) {
-      commandStationBean = JCS.getJcsCommandStation().getCommandStationBean();
+      commandStationBean = context.getCommandStation().getCommandStationBean();
     }
 
     List<LocomotiveBean> locs = getOnTrackLocomotives();
@@ -501,12 +548,12 @@ public final class RailController {
     Logger.tag(TAG).trace("Resetting RailController...");
     stopAutoMode();
 
-    List<RouteBean> routes = PersistenceFactory.getService().getRoutes();
+    List<RouteBean> routes = context.getPersistenceService().getRoutes();
     int lockedCounter = 0;
     for (RouteBean route : routes) {
       if (route.isLocked()) {
         route.setLocked(false);
-        PersistenceFactory.getService().persist(route);
+        context.getPersistenceService().persist(route);
         lockedCounter++;
       }
     }
@@ -515,7 +562,7 @@ public final class RailController {
     // Reset route
     int occupiedBlockCounter = 0;
     int freeBlockCounter = 0;
-    List<BlockBean> blocks = PersistenceFactory.getService().getBlocks();
+    List<BlockBean> blocks = context.getPersistenceService().getBlocks();
 
     for (BlockBean block : blocks) {
       Tile tile = TileCache.findTile(block.getTileId());
@@ -561,10 +608,10 @@ public final class RailController {
           }
         }
       }
-      PersistenceFactory.getService().persist(tile.getBlockBean());
+      context.getPersistenceService().persist(tile.getBlockBean());
     }
 
-    JCS.getJcsCommandStation().switchPower(true);
+    context.getCommandStation().switchPower(true);
     Logger.tag(TAG).debug("Occupied blocks: " + occupiedBlockCounter + " Free blocks " + freeBlockCounter + " of total " + blocks.size() + " blocks");
   }
 
@@ -578,15 +625,15 @@ public final class RailController {
   }
 
   public Dispatcher getDispatcher(int locUid) {
-    LocomotiveBean locomotiveBean = PersistenceFactory.getService().getLocomotive(locUid, commandStationBean.getId());
+    LocomotiveBean locomotiveBean = context.getPersistenceService().getLocomotive(locUid, commandStationBean.getId());
     return getDispatcher(locomotiveBean);
   }
 
   public Dispatcher getLocomotiveDispatcher(long locId) {
     if (commandStationBean == null) {
-      commandStationBean = PersistenceFactory.getService().getDefaultCommandStation();
+      commandStationBean = context.getPersistenceService().getDefaultCommandStation();
     }
-    LocomotiveBean locomotiveBean = PersistenceFactory.getService().getLocomotive((int) locId, commandStationBean.getId());
+    LocomotiveBean locomotiveBean = context.getPersistenceService().getLocomotive((int) locId, commandStationBean.getId());
     return getDispatcher(locomotiveBean);
   }
 
@@ -601,7 +648,7 @@ public final class RailController {
   }
 
 //  public List<LocomotiveBean> getOnTrackLocomotivesOld() {
-//    List<BlockBean> blocks = PersistenceFactory.getService().getBlocks();
+//    List<BlockBean> blocks = context.getPersistenceService().getBlocks();
 //    //filter..
 //    List<BlockBean> occupiedBlocks = blocks.stream().filter(t -> t.getLocomotive() != null && t.getLocomotive().getId() != null).collect(Collectors.toList());
 //
@@ -609,7 +656,7 @@ public final class RailController {
 //    //Set<LocomotiveBean> activeLocomotives = new HashSet<>();
 //    ArrayList<LocomotiveBean> activeLocomotives = new ArrayList<>();
 //    for (BlockBean occupiedBlock : occupiedBlocks) {
-//      LocomotiveBean dbl = PersistenceFactory.getService().getLocomotive(occupiedBlock.getLocomotiveId());
+//      LocomotiveBean dbl = context.getPersistenceService().getLocomotive(occupiedBlock.getLocomotiveId());
 //      if (dbl != null) {
 //        if (activeLocomotives.contains(dbl)) {
 //          Logger.warn("Loc " + dbl.getName() + " Is allready in the list! ");
@@ -621,7 +668,7 @@ public final class RailController {
 //    return activeLocomotives;
 //  }
   public List<LocomotiveBean> getOnTrackLocomotives() {
-    return PersistenceFactory.getService().getOnTrackLocomotives();
+    return context.getPersistenceService().getOnTrackLocomotives();
   }
 
   public static boolean isGostDetected() {
@@ -644,15 +691,15 @@ public final class RailController {
     Logger.trace("Status listeners: " + railwayStatusListeners.size());
   }
 
-  public static boolean tryAquireLock() {
+  public boolean tryAquireLock() {
     return semaphore.tryAcquire();
   }
 
-  public static void releaseLock() {
+  public void releaseLock() {
     semaphore.release();
   }
 
-  public static int avialablePermits() {
+  public int avialablePermits() {
     return semaphore.availablePermits();
   }
 
@@ -696,41 +743,28 @@ public final class RailController {
   }
 
   /**
-   * An executer Thread to execute commands.
+   * An executer Thread to execute commands.<br>
+   * The executer blocks on the command queue, so a command is executed as soon as it is queued.
    */
-  private class CommandExecuter extends Thread {
+  private class CommandExecuter extends QueueDispatcher<RailControllerCommand> {
 
-    private volatile boolean running;
-    private final BlockingQueue<RailControllerCommand> eventQueue;
+    private static final RailControllerCommand STOP = new RailControllerCommand("STOP_EXECUTER");
 
-    public CommandExecuter(BlockingQueue eventQueue) {
-      super(threadGroup, "RAILWAY-CONTROLLER-EXECUTER");
-      this.eventQueue = eventQueue;
+    CommandExecuter(BlockingQueue<RailControllerCommand> commandQueue) {
+      super(threadGroup, "RAILWAY-CONTROLLER-EXECUTER", commandQueue, STOP);
     }
 
-    boolean isRunning() {
-      return running;
+    @Override
+    protected void handle(RailControllerCommand command) {
+      executeCommand(command);
     }
 
     @Override
     public void run() {
-      running = true;
       Logger.trace("RailwayController Command Executer Thread Started...");
       fireStatusListeners(PENDING);
-
-      while (isRunning()) {
-        try {
-          RailControllerCommand event = eventQueue.poll(100, TimeUnit.MILLISECONDS);
-          if (event != null) {
-            executeCommand(event);
-          }
-        } catch (InterruptedException ex) {
-          Logger.error(ex);
-        }
-      }
-
+      super.run();
       Logger.trace("CommandExecuter Stopped...");
     }
-
   }
 }
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import jcs.entities.RouteBean;
+import jcs.entities.RouteElementBean;
+import jcs.entities.TileBean;
+import jcs.entities.TileBean.TileType;
+import jcs.persistence.PersistenceService;
+import org.tinylog.Logger;
+
+/**
+ * Precomputed conflicts between all routes, so the free routes are found without a database query per turnout.<br>
+ * Every route occupies its turnouts, its crossings and its destination block. Two routes which share one of those conflict. The
+ * conflicts of a route are kept as a bitset over all routes, the locked routes as another bitset, so a route is free when both
+ * do not intersect.<br>
+ * The matrix is built from the route source on first use. The locked state follows the route change events of the persistence
+ * service; any other change of the routes or tiles invalidates the matrix, it is then rebuilt on the next lookup.
+ */
+class RouteConflictMatrix implements PropertyChangeListener {
+
+  private static final int MAX_LOCK_ATTEMPTS = 5;
+
+  private final Supplier<List<RouteBean>> routeSource;
+  private final Object lock = new Object();
+
+  private volatile Matrix matrix;
+  private long generation;
+  private PersistenceService persistenceService;
+
+  /**
+   * The conflicts never change, the locked routes are replaced as a whole, so lookups never see a half applied change.
+   */
+  private record Matrix(Map<String, Integer> index, List<List<String>> tileIds, BitSet[] conflicts, BitSet locked) {
+
+    Matrix withLocked(BitSet locked) {
+      return new Matrix(index, tileIds, conflicts, locked);
+    }
+
+    boolean isFree(int route) {
+      return !locked.get(route) && !conflicts[route].intersects(locked);
+    }
+  }
+
+  RouteConflictMatrix(Supplier<List<RouteBean>> routeSource) {
+    this.routeSource = routeSource;
+  }
+
+  /**
+   * Follow the route changes of the persistence service. Calling attach again for the same service has no effect.
+   *
+   * @param persistenceService the service which persists the routes
+   */
+  void attach(PersistenceService persistenceService) {
+    synchronized (lock) {
+      if (this.persistenceService == persistenceService) {
+        return;
+      }
+      if (this.persistenceService != null) {
+        this.persistenceService.removePropertyChangeListener(this);
+      }
+      this.persistenceService = persistenceService;
+      invalidate();
+    }
+    if (persistenceService != null) {
+      persistenceService.addPropertyChangeListener(this);
+    }
+  }
+
+  void detach() {
+    PersistenceService service;
+    synchronized (lock) {
+      service = persistenceService;
+      persistenceService = null;
+      invalidate();
+    }
+    if (service != null) {
+      service.removePropertyChangeListener(this);
+    }
+  }
+
+  /**
+   * @param route the route to check
+   * @return true when the route and none of its conflicting routes is locked
+   */
+  boolean isFree(RouteBean route) {
+    Matrix current = current();
+    Integer i = current.index().get(route.getId());
+    if (i == null) {
+      Logger.warn("Route " + route.getId() + " is unknown");
+      return false;
+    }
+    return current.isFree(i);
+  }
+
+  /**
+   * Lock the route when it is free. Check and lock are one step, so two dispatchers can not lock conflicting routes at the same
+   * time.<br>
+   * The lock is released when the route is persisted as unlocked.
+   *
+   * @param route the route to lock
+   * @return true when the route is locked
+   */
+  boolean tryLock(RouteBean route) {
+    for (int attempt = 0; attempt < MAX_LOCK_ATTEMPTS; attempt++) {
+      Matrix current = current();
+      Integer i = current.index().get(route.getId());
+      if (i == null) {
+        Logger.warn("Route " + route.getId() + " is unknown");
+        return false;
+      }
+      synchronized (lock) {
+        if (matrix != current) {
+          //Changed or rebuilt in the mean time, check again
+          continue;
+        }
+        if (!current.isFree(i)) {
+          return false;
+        }
+        BitSet locked = (BitSet) current.locked().clone();
+        locked.set(i);
+        matrix = current.withLocked(locked);
+        generation++;
+        return true;
+      }
+    }
+    Logger.warn("Could not lock route " + route.getId() + " the routes keep changing");
+    return false;
+  }
+
+  /**
+   * @param routeId the route
+   * @return the ids of the routes which conflict with the route
+   */
+  List<String> getConflicts(String routeId) {
+    Matrix current = current();
+    List<String> conflicts = new ArrayList<>();
+    Integer i = current.index().get(routeId);
+    if (i != null) {
+      for (Map.Entry<String, Integer> e : current.index().entrySet()) {
+        if (current.conflicts()[i].get(e.getValue())) {
+          conflicts.add(e.getKey());
+        }
+      }
+    }
+    return conflicts;
+  }
+
+  int size() {
+    Matrix current = matrix;
+    return current != null ? current.index().size() : 0;
+  }
+
+  boolean isValid() {
+    return matrix != null;
+  }
+
+  void invalidate() {
+    synchronized (lock) {
+      generation++;
+      matrix = null;
+    }
+  }
+
+  private Matrix current() {
+    Matrix current = matrix;
+    if (current == null) {
+      current = rebuild();
+    }
+    return current;
+  }
+
+  /**
+   * The routes are read outside the lock, as the persistence service fires its events while it holds its own lock.<br>
+   * When a change arrives during the read, the result is still used for this lookup but not kept.
+   */
+  private Matrix rebuild() {
+    long start;
+    synchronized (lock) {
+      start = generation;
+    }
+
+    List<RouteBean> routes = routeSource.get();
+    if (routes == null) {
+      routes = List.of();
+    }
+    int size = routes.size();
+    Map<String, Integer> index = new HashMap<>(size * 2);
+    List<List<String>> tileIds = new ArrayList<>(size);
+    BitSet locked = new BitSet(size);
+
+    //Number the occupied resources and collect per resource the routes using it
+    Map<String, Integer> resources = new HashMap<>();
+    List<BitSet> users = new ArrayList<>();
+    List<BitSet> occupies = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      RouteBean route = routes.get(i);
+      index.put(route.getId(), i);
+      tileIds.add(tileIds(route));
+      if (route.isLocked()) {
+        locked.set(i);
+      }
+
+      BitSet occupied = new BitSet();
+      if (route.getRouteElements() != null) {
+        for (RouteElementBean element : route.getRouteElements()) {
+          String resource = resource(route, element);
+          if (resource != null) {
+            int r = resources.computeIfAbsent(resource, k -> resources.size());
+            if (r == users.size()) {
+              users.add(new BitSet(size));
+            }
+            users.get(r).set(i);
+            occupied.set(r);
+          }
+        }
+      }
+      occupies.add(occupied);
+    }
+
+    BitSet[] conflicts = new BitSet[size];
+    for (int i = 0; i < size; i++) {
+      BitSet conflict = new BitSet(size);
+      BitSet occupied = occupies.get(i);
+      for (int r = occupied.nextSetBit(0); r >= 0; r = occupied.nextSetBit(r + 1)) {
+        conflict.or(users.get(r));
+      }
+      conflict.clear(i);
+      conflicts[i] = conflict;
+    }
+
+    Matrix built = new Matrix(index, tileIds, conflicts, locked);
+    synchronized (lock) {
+      if (generation == start) {
+        matrix = built;
+      }
+    }
+    Logger.trace("Built the conflicts of " + size + " routes over " + resources.size() + " turnouts, crossings and blocks");
+    return built;
+  }
+
+  /**
+   * @return the key of the turnout, crossing or destination block the element occupies, or null
+   */
+  private static String resource(RouteBean route, RouteElementBean element) {
+    TileBean tile = element.getTileBean();
+    if (tile == null) {
+      return null;
+    }
+    if (element.isTurnout()) {
+      //A turnout accessory can be shared by more tiles, it can only be in one position
+      return tile.getAccessoryId() != null ? "a:" + tile.getAccessoryId() : "t:" + element.getTileId();
+    }
+    if (TileType.CROSSING == tile.getTileType() || TileType.CROSS == tile.getTileType()) {
+      return "t:" + element.getTileId();
+    }
+    if (element.isBlock() && element.getTileId().equals(route.getToTileId())) {
+      return "t:" + element.getTileId();
+    }
+    return null;
+  }
+
+  private static List<String> tileIds(RouteBean route) {
+    List<String> ids = new ArrayList<>();
+    if (route.getRouteElements() != null) {
+      for (RouteElementBean element : route.getRouteElements()) {
+        ids.add(element.getTileId());
+      }
+    }
+    return ids;
+  }
+
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    switch (evt.getPropertyName()) {
+      case "data.route" -> {
+        if (evt.getNewValue() instanceof RouteBean route) {
+          update(route);
+        } else {
+          invalidate();
+        }
+      }
+      case "data.route.deleted", "data.routes.deleted", "data.tile", "data.tile.deleted", "data.accessory.deleted" ->
+        invalidate();
+      default -> {
+      }
+    }
+  }
+
+  /**
+   * Only the locked state is applied, a route of which the tiles changed invalidates the matrix.
+   */
+  private void update(RouteBean route) {
+    synchronized (lock) {
+      generation++;
+      Matrix current = matrix;
+      if (current == null) {
+        return;
+      }
+      Integer i = current.index().get(route.getId());
+      if (i == null || !current.tileIds().get(i).equals(tileIds(route))) {
+        matrix = null;
+        return;
+      }
+      if (current.locked().get(i) != route.isLocked()) {
+        BitSet locked = (BitSet) current.locked().clone();
+        locked.set(i, route.isLocked());
+        matrix = current.withLocked(locked);
+      }
+    }
+  }
+}
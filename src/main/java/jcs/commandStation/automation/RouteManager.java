@@ -19,18 +19,16 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
-import jcs.JCS;
+import jcs.commandStation.SensorStateTable;
 import static jcs.commandStation.automation.RailController.TAG;
-import jcs.commandStation.events.AccessoryEvent;
-import jcs.commandStation.events.AccessoryEventListener;
 import jcs.entities.AccessoryBean;
 import jcs.entities.BlockBean;
 import jcs.entities.LocomotiveBean;
 import jcs.entities.LocomotiveBean.Direction;
 import jcs.entities.RouteBean;
 import jcs.entities.RouteElementBean;
+import jcs.entities.SensorBean;
 import jcs.entities.TileBean;
-import jcs.persistence.PersistenceFactory;
 import jcs.ui.layout.tiles.Block;
 import jcs.ui.layout.tiles.Tile;
 import jcs.ui.layout.tiles.TileCache;
@@ -50,6 +48,17 @@ class RouteManager {
     this.dispatcher = dispatcher;
   }
 
+  /**
+   * The state is read from the sensor state table, the bean loaded with the block is only used when the table does not know the sensor.
+   */
+  private boolean isSensorActive(Integer sensorId, SensorBean sensor) {
+    SensorStateTable states = dispatcher.getRailController().getContext().getCommandStation().getSensorStateTable();
+    if (states.isKnown(sensorId)) {
+      return states.isActive(sensorId);
+    }
+    return sensor.isActive();
+  }
+
   boolean searchAndReserveRoute() {
     if (searchRoute()) {
       return reserveRoute();
@@ -62,12 +71,12 @@ class RouteManager {
     Logger.trace("Search a free route for " + dispatcher.getName() + "...");
     LocomotiveBean locomotive = dispatcher.getLocomotiveBean();
     Direction locomotiveDirection = locomotive.getDirection();
-    BlockBean departureBlock = PersistenceFactory.getService().getBlock(dispatcher.getDepartureBlockId());
+    BlockBean departureBlock = dispatcher.getPersistenceService().getBlock(dispatcher.getDepartureBlockId());
 
     if (departureBlock.getLogicalDirection() == null) {
       departureBlock.setLogicalDirection(locomotive.getDirection().getDirection());
       Logger.trace("Setting departure Block logicalDirection to: " + departureBlock.getLogicalDirection());
-      PersistenceFactory.getService().persist(departureBlock);
+      dispatcher.getPersistenceService().persist(departureBlock);
     }
 
     logicalDirection = LocomotiveBean.Direction.get(departureBlock.getLogicalDirection());
@@ -76,7 +85,7 @@ class RouteManager {
       Logger.tag(TAG).warn("Dispatcher" + dispatcher.getName() + " Locomotive Dir.: " + locomotiveDirection + " differs with the logical Direction " + logicalDirection + "!");
     }
 
-    TileBean tileBean = PersistenceFactory.getService().getTileBean(departureBlock.getTileId());
+    TileBean tileBean = dispatcher.getPersistenceService().getTileBean(departureBlock.getTileId());
     TileBean.Orientation blockOrientation = tileBean.getOrientation();
 
     String departureSuffix = departureBlock.getDepartureSuffix();
@@ -86,7 +95,7 @@ class RouteManager {
 
     Logger.trace("Loco " + dispatcher.getName() + " is in block " + departureBlock.getId() + ". Direction " + logicalDirection.getDirection() + ". DepartureSuffix " + departureSuffix + "...");
 
-    List<RouteBean> routes = PersistenceFactory.getService().getRoutes(departureBlock.getId(), departureSuffix);
+    List<RouteBean> routes = dispatcher.getPersistenceService().getRoutes(departureBlock.getId(), departureSuffix);
     Logger.trace("There " + (routes.size() == 1 ? "is" : "are") + " " + routes.size() + " possible route(s)...");
 
     List<RouteBean> checkedRoutes = new ArrayList<>();
@@ -110,7 +119,7 @@ class RouteManager {
       }
 
       Logger.trace("2nd attempt for Loco " + dispatcher.getName() + " is in block " + departureBlock.getId() + ". Direction " + newDirection.getDirection() + ". DepartureSuffix " + departureSuffix + "...");
-      routes = PersistenceFactory.getService().getRoutes(departureBlock.getId(), departureSuffix);
+      routes = dispatcher.getPersistenceService().getRoutes(departureBlock.getId(), departureSuffix);
       Logger.trace("After the 2nd attempt, there " + (routes.size() == 1 ? "is" : "are") + " " + routes.size() + " possible route(s). " + (!routes.isEmpty() ? "Direction of " + locomotive.getName() + " must be swapped!" : ""));
       swapLocomotiveDirection = !routes.isEmpty();
     }
@@ -118,10 +127,10 @@ class RouteManager {
     //Check the possible routes, check on the destination for active sensors and permissions
     for (RouteBean possibleRoute : routes) {
       String destinationTileId = possibleRoute.getToTileId();
-      BlockBean destinationBlock = PersistenceFactory.getService().getBlockByTileId(destinationTileId);
+      BlockBean destinationBlock = dispatcher.getPersistenceService().getBlockByTileId(destinationTileId);
       //Check the sensors 
-      boolean plusInActive = !destinationBlock.getPlusSensorBean().isActive();
-      boolean minInActive = !destinationBlock.getMinSensorBean().isActive();
+      boolean plusInActive = !isSensorActive(destinationBlock.getPlusSensorId(), destinationBlock.getPlusSensorBean());
+      boolean minInActive = !isSensorActive(destinationBlock.getMinSensorId(), destinationBlock.getMinSensorBean());
 
       boolean allowCommuter = destinationBlock.isAllowCommuterOnly();
       boolean allowNonCommuter = destinationBlock.isAllowNonCommuterOnly();
@@ -130,7 +139,7 @@ class RouteManager {
 
       Logger.trace("Destination " + destinationBlock.getId() + " Train type commuter: " + commuter + " Permission " + allowed + " sensor: " + (plusInActive ? "Free" : "Occupied") + " - sensor: " + (minInActive ? "Free" : "Occupied"));
 
-      if (plusInActive && minInActive && allowed && turnoutsNotLocked(possibleRoute)) {
+      if (plusInActive && minInActive && allowed && isFree(possibleRoute)) {
         checkedRoutes.add(possibleRoute);
       }
     }
@@ -139,7 +148,7 @@ class RouteManager {
     int rIdx = 0;
     if (checkedRoutes.size() > 1) {
       //Choose randomly the route
-      Random random = new Random();
+      Random random = dispatcher.getRailController().getContext().getRandom();
       for (int i = 0; i < 10; i++) {
         //Seed a bit....
         random.ints(0, checkedRoutes.size()).findFirst();
@@ -170,11 +179,11 @@ class RouteManager {
     LocomotiveBean locomotive = dispatcher.getLocomotiveBean();
     Logger.trace("Destination: " + destinationTileId + " Arrival on the " + arrivalSuffix + " side of the block. Loco direction: " + locomotive.getDirection().getDirection());
 
-    BlockBean departureBlock = PersistenceFactory.getService().getBlockByTileId(route.getFromTileId());
+    BlockBean departureBlock = dispatcher.getPersistenceService().getBlockByTileId(route.getFromTileId());
     departureBlock.setBlockState(BlockBean.BlockState.OCCUPIED);
     departureBlock.setDepartureSuffix(route.getFromSuffix());
 
-    BlockBean destinationBlock = PersistenceFactory.getService().getBlockByTileId(route.getToTileId());
+    BlockBean destinationBlock = dispatcher.getPersistenceService().getBlockByTileId(route.getToTileId());
     destinationBlock.setBlockState(BlockBean.BlockState.LOCKED);
     destinationBlock.setLocomotive(locomotive);
     destinationBlock.setArrivalSuffix(arrivalSuffix);
@@ -185,18 +194,10 @@ class RouteManager {
     Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " There are " + turnouts.size() + " turnouts in route " + route.getId());
 
     //Now start to persist and perform critical thinks
-    if (turnoutsNotLocked(route)) {
-      PersistenceFactory.getService().persist(route);
+    if (tryLock(route)) {
+      dispatcher.getPersistenceService().persist(route);
 
-      for (RouteElementBean reb : turnouts) {
-        AccessoryBean.AccessoryValue av = reb.getAccessoryValue();
-        AccessoryBean turnout = reb.getTileBean().getAccessoryBean();
-        Logger.trace("Setting Turnout " + turnout.getName() + " [" + turnout.getAddress() + "] to : " + av.getValue());
-        switchAccessory(turnout, av);
-
-        //TODO: configurable wait time between switches
-        pause(250);
-      }
+      switchTurnouts(route, turnouts);
       Logger.trace("Turnouts set for " + route);
 
       //Now that we have reserved the route lets determine which sensors are playing a role.
@@ -238,8 +239,8 @@ class RouteManager {
         swapLocomotiveDirection = false;
       }
 
-      PersistenceFactory.getService().persist(departureBlock);
-      PersistenceFactory.getService().persist(destinationBlock);
+      dispatcher.getPersistenceService().persist(departureBlock);
+      dispatcher.getPersistenceService().persist(destinationBlock);
 
       dispatcher.showBlockState(departureBlock);
       dispatcher.showBlockState(destinationBlock);
@@ -249,7 +250,7 @@ class RouteManager {
     } else {
       //Can't lock route
       route.setLocked(false);
-      PersistenceFactory.getService().persist(route);
+      dispatcher.getPersistenceService().persist(route);
       Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " " + route + " NOT Locked");
       dispatcher.setRouteBean(null);
       swapLocomotiveDirection = false;
@@ -259,7 +260,7 @@ class RouteManager {
 
   Integer getEstimatedNextRouteSwitchTime() {
     RouteBean nextRoute = dispatcher.getNextRouteBean();
-    Integer ast = PersistenceFactory.getService().getAverageAccessorySwitchTime(nextRoute);
+    Integer ast = dispatcher.getPersistenceService().getAverageAccessorySwitchTime(nextRoute);
     return ast;
   }
 
@@ -280,7 +281,7 @@ class RouteManager {
     //Use the current running locomotive direction
     LocomotiveBean.Direction nextLogicalDirection = dispatcher.getLocomotiveBean().getDirection();
 
-    TileBean tileBean = PersistenceFactory.getService().getTileBean(departureBlock.getTileId());
+    TileBean tileBean = dispatcher.getPersistenceService().getTileBean(departureBlock.getTileId());
     TileBean.Orientation blockOrientation = tileBean.getOrientation();
 
     String departureSuffix = departureBlock.getDepartureSuffix();
@@ -291,17 +292,17 @@ class RouteManager {
     Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " is entering block " + departureBlock.getId() + ". Direction " + nextLogicalDirection.getDirection() + ". DepartureSuffix " + departureSuffix + " searching next route...");
 
     //Search for the possible routes
-    List<RouteBean> routes = PersistenceFactory.getService().getRoutes(departureBlock.getId(), departureSuffix);
+    List<RouteBean> routes = dispatcher.getPersistenceService().getRoutes(departureBlock.getId(), departureSuffix);
     Logger.trace("There " + (routes.size() == 1 ? "is" : "are") + " " + routes.size() + " possible route(s)...");
 
     List<RouteBean> checkedRoutes = new ArrayList<>();
     //Found possible routes check on the destination for the sensors and permissions
     for (RouteBean nextRoute : routes) {
       String nextDestinationTileId = nextRoute.getToTileId();
-      BlockBean nextDestinationBlock = PersistenceFactory.getService().getBlockByTileId(nextDestinationTileId);
+      BlockBean nextDestinationBlock = dispatcher.getPersistenceService().getBlockByTileId(nextDestinationTileId);
       //Check the sensors 
-      boolean plusInActive = !nextDestinationBlock.getPlusSensorBean().isActive();
-      boolean minInActive = !nextDestinationBlock.getMinSensorBean().isActive();
+      boolean plusInActive = !isSensorActive(nextDestinationBlock.getPlusSensorId(), nextDestinationBlock.getPlusSensorBean());
+      boolean minInActive = !isSensorActive(nextDestinationBlock.getMinSensorId(), nextDestinationBlock.getMinSensorBean());
 
       boolean allowCommuter = nextDestinationBlock.isAllowCommuterOnly();
       boolean allowNonCommuter = nextDestinationBlock.isAllowNonCommuterOnly();
@@ -310,7 +311,7 @@ class RouteManager {
 
       Logger.trace("Next Destination " + nextDestinationBlock.getId() + " Train type commuter: " + dispatcher.getLocomotiveBean().isCommuter() + " Permission " + allowed + " sensor: " + (plusInActive ? "Free" : "Occupied") + " - sensor: " + (minInActive ? "Free" : "Occupied"));
 
-      if (plusInActive && minInActive && allowed && turnoutsNotLocked(nextRoute)) {
+      if (plusInActive && minInActive && allowed && isFree(nextRoute)) {
         checkedRoutes.add(nextRoute);
       }
     }
@@ -319,7 +320,7 @@ class RouteManager {
     int rIdx = 0;
     if (checkedRoutes.size() > 1) {
       //Choose randomly the nextRoute
-      Random random = new Random();
+      Random random = dispatcher.getRailController().getContext().getRandom();
       for (int i = 0; i < 10; i++) {
         //Seed a bit....
         random.ints(0, checkedRoutes.size()).findFirst();
@@ -367,27 +368,14 @@ class RouteManager {
     Logger.trace("There are " + turnouts.size() + " turnouts in the next route");
 
     //Now start to persist and perform critical thinks
-    if (turnoutsNotLocked(nextRoute)) {
-      PersistenceFactory.getService().persist(nextRoute);
-
-      int turnoutCount = turnouts.size();
-      int turnoutIdx = 0;
-      for (RouteElementBean reb : turnouts) {
-        AccessoryBean.AccessoryValue av = reb.getAccessoryValue();
-        AccessoryBean turnout = reb.getTileBean().getAccessoryBean();
-        Logger.tag(TAG).debug("Setting Turnout " + turnout.getName() + " [" + turnout.getAddress() + "] to : " + av.getValue());
-        switchAccessory(turnout, av);
-        turnoutIdx++;
-        //No need to wait...
-        if (turnoutCount > turnoutIdx) {
-          //TODO configurable wait time between switches
-          pause(100);
-        }
-      }
+    if (tryLock(nextRoute)) {
+      dispatcher.getPersistenceService().persist(nextRoute);
+
+      switchTurnouts(nextRoute, turnouts);
       Logger.trace("Dispatcher " + dispatcher.getName() + " Turnouts set for " + nextRoute);
 
-      PersistenceFactory.getService().persist(nextDestinationBlock);
-      PersistenceFactory.getService().persist(nextRoute);
+      dispatcher.getPersistenceService().persist(nextDestinationBlock);
+      dispatcher.getPersistenceService().persist(nextRoute);
       dispatcher.setNextRouteBean(nextRoute);
 
       showRoute(nextRoute, Color.yellow);
@@ -399,7 +387,7 @@ class RouteManager {
     } else {
       //Can't lock nextRoute
       nextRoute.setLocked(false);
-      PersistenceFactory.getService().persist(nextRoute);
+      dispatcher.getPersistenceService().persist(nextRoute);
       Logger.trace(nextRoute + " NOT Locked");
 
       return false;
@@ -408,43 +396,48 @@ class RouteManager {
 
   void pause(int millis) {
     try {
-      Thread.sleep(millis);
+      dispatcher.getScheduler().sleep(millis);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
   }
 
-  private volatile boolean switched;
+  /**
+   * Switch the turnouts of the route in parallel, paced per decoder, and wait until all are confirmed.<br>
+   * Without a shared switcher the turnouts are switched one by one.
+   */
+  void switchTurnouts(RouteBean routeBean, List<RouteElementBean> turnouts) {
+    List<AccessorySwitcher.Command> commands = new ArrayList<>(turnouts.size());
+    for (RouteElementBean reb : turnouts) {
+      AccessoryBean.AccessoryValue av = reb.getAccessoryValue();
+      AccessoryBean turnout = reb.getTileBean().getAccessoryBean();
+      Logger.trace("Setting Turnout " + turnout.getName() + " [" + turnout.getAddress() + "] to : " + av.getValue());
+      commands.add(new AccessorySwitcher.Command(turnout, av));
+    }
+    if (commands.isEmpty()) {
+      return;
+    }
 
-  void switchAccessory(AccessoryBean accessory, AccessoryBean.AccessoryValue value) {
-    AccessoryListener al = new AccessoryListener(accessory, value, this);
-    try {
-      switched = false;
-      JCS.getJcsCommandStation().addAccessoryEventListener(accessory.getId(), al);
-      long now = System.currentTimeMillis();
-      long timemax = now + 5000;
-      long started = now;
-
-      JCS.getJcsCommandStation().switchAccessory(accessory, value);
-      Logger.trace("Switched Accessory " + accessory.getId() + " to " + value + " Waiting for confirmation...");
-
-      while (!switched && now < timemax) {
-        now = System.currentTimeMillis();
-        pause(10);
-      }
-      Logger.tag(TAG).debug("Dispatcher " + dispatcher.getName() + " has switched accessory " + accessory.getId() + " to " + value + " in " + (now - started) + " ms.");
-    } catch (Exception e) {
-      Logger.tag(TAG).error("Dispatcher " + dispatcher.getName() + " Error switching accessory " + accessory.getId() + " to " + value + " Cause: " + e.getMessage());
-    } finally {
-      JCS.getJcsCommandStation().removeAccessoryEventListener(accessory.getId(), al);
+    AccessorySwitcher accessorySwitcher = getAccessorySwitcher();
+    if (accessorySwitcher != null) {
+      accessorySwitcher.switchAll(routeBean.getId(), commands);
+    } else {
+      switchSequential(commands);
     }
   }
 
-  void waitForAccessory(boolean switched) {
-    this.switched = switched;
+  private void switchSequential(List<AccessorySwitcher.Command> commands) {
+    int switchTime = Integer.getInteger("accessory.switch.time", 250);
+    for (int i = 0; i < commands.size(); i++) {
+      AccessorySwitcher.Command command = commands.get(i);
+      dispatcher.getRailController().getContext().getCommandStation().switchAccessory(command.accessory(), command.value());
+      if (i < commands.size() - 1) {
+        pause(switchTime);
+      }
+    }
   }
 
-  private boolean isAllowed(boolean allowCommuter, boolean allowNonCommuter, boolean commuter) {
+  static boolean isAllowed(boolean allowCommuter, boolean allowNonCommuter, boolean commuter) {
     //both flags are the same → all trains allowed
     if (allowCommuter == allowNonCommuter) {
       return true;
@@ -464,6 +457,37 @@ class RouteManager {
     return false;
   }
 
+  private AccessorySwitcher getAccessorySwitcher() {
+    RailController railController = dispatcher.getRailController();
+    return railController != null ? railController.getAccessorySwitcher() : null;
+  }
+
+  private RouteConflictMatrix getRouteConflicts() {
+    RailController railController = dispatcher.getRailController();
+    return railController != null ? railController.getRouteConflicts() : null;
+  }
+
+  /**
+   * A route is free when none of its turnouts, crossings and its destination block is used by a locked route.
+   */
+  private boolean isFree(RouteBean route) {
+    RouteConflictMatrix conflicts = getRouteConflicts();
+    if (conflicts != null) {
+      return conflicts.isFree(route);
+    } else {
+      return turnoutsNotLocked(route);
+    }
+  }
+
+  private boolean tryLock(RouteBean route) {
+    RouteConflictMatrix conflicts = getRouteConflicts();
+    if (conflicts != null) {
+      return conflicts.tryLock(route);
+    } else {
+      return turnoutsNotLocked(route);
+    }
+  }
+
   private boolean turnoutsNotLocked(RouteBean route) {
     List<RouteElementBean> turnouts = getTurnouts(route);
 
@@ -472,7 +496,7 @@ class RouteManager {
       //AccessoryBean.AccessoryValue av = reb.getAccessoryValue();
       AccessoryBean turnout = reb.getTileBean().getAccessoryBean();
       //check if the accessory is not set by an other reserved nextRoute
-      boolean locked = PersistenceFactory.getService().isAccessoryLocked(turnout.getId());
+      boolean locked = dispatcher.getPersistenceService().isAccessoryLocked(turnout.getId());
       if (locked) {
         Logger.trace("Turnout " + turnout.getName() + " [" + turnout.getAddress() + "] is locked!");
         return false;
@@ -494,6 +518,9 @@ class RouteManager {
   }
 
   void showRoute(RouteBean routeBean, Color routeColor) {
+    if (!dispatcher.getRailController().getContext().isLayoutShown()) {
+      return;
+    }
     Logger.tag(TAG).trace("Show route " + routeBean.toLogString());
     List<RouteElementBean> routeElements = routeBean.getRouteElements();
 
@@ -524,25 +551,4 @@ class RouteManager {
     }
   }
 
-  private class AccessoryListener implements AccessoryEventListener {
-
-    private final AccessoryBean accessoryBean;
-    private final RouteManager routeManager;
-    private final AccessoryBean.AccessoryValue value;
-
-    AccessoryListener(AccessoryBean accessoryBean, AccessoryBean.AccessoryValue value, RouteManager callback) {
-      this.accessoryBean = accessoryBean;
-      this.routeManager = callback;
-      this.value = value;
-    }
-
-    @Override
-    public void onAccessoryChange(AccessoryEvent accessoryEvent) {
-      if (accessoryEvent.isEventFor(accessoryBean)) {
-        routeManager.waitForAccessory(value == accessoryEvent.getValue());
-      }
-    }
-
-  }
-
 }
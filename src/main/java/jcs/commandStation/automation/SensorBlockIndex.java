@@ -0,0 +1,193 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import jcs.entities.BlockBean;
+import jcs.persistence.PersistenceService;
+import org.tinylog.Logger;
+
+/**
+ * Index of the blocks by their plus and min sensor, so the block of a sensor is found without a database query or a scan over all blocks.<br>
+ * The index is built from the block source on first use and kept up to date with the block change events of the persistence service.<br>
+ * A change which can not be applied incrementally, like the removal of all blocks or of a tile, invalidates the index; it is then rebuilt on the
+ * next lookup.
+ */
+class SensorBlockIndex implements PropertyChangeListener {
+
+  private final Supplier<List<BlockBean>> blockSource;
+  private final Object lock = new Object();
+
+  private volatile Map<Integer, BlockBean> index;
+  private long generation;
+  private PersistenceService persistenceService;
+
+  SensorBlockIndex(Supplier<List<BlockBean>> blockSource) {
+    this.blockSource = blockSource;
+  }
+
+  /**
+   * Follow the block changes of the persistence service. Calling attach again for the same service has no effect.
+   *
+   * @param persistenceService the service which persists the blocks
+   */
+  void attach(PersistenceService persistenceService) {
+    synchronized (lock) {
+      if (this.persistenceService == persistenceService) {
+        return;
+      }
+      if (this.persistenceService != null) {
+        this.persistenceService.removePropertyChangeListener(this);
+      }
+      this.persistenceService = persistenceService;
+      invalidate();
+    }
+    if (persistenceService != null) {
+      persistenceService.addPropertyChangeListener(this);
+    }
+  }
+
+  void detach() {
+    PersistenceService service;
+    synchronized (lock) {
+      service = persistenceService;
+      persistenceService = null;
+      invalidate();
+    }
+    if (service != null) {
+      service.removePropertyChangeListener(this);
+    }
+  }
+
+  /**
+   * @param sensorId the plus or min sensor of a block
+   * @return the block of the sensor or null when the sensor is not a block sensor
+   */
+  BlockBean getBlock(Integer sensorId) {
+    if (sensorId == null) {
+      return null;
+    }
+    Map<Integer, BlockBean> current = index;
+    if (current == null) {
+      current = rebuild();
+    }
+    return current.get(sensorId);
+  }
+
+  int size() {
+    Map<Integer, BlockBean> current = index;
+    return current != null ? current.size() : 0;
+  }
+
+  boolean isValid() {
+    return index != null;
+  }
+
+  void invalidate() {
+    synchronized (lock) {
+      generation++;
+      index = null;
+    }
+  }
+
+  /**
+   * The blocks are read outside the lock, as the persistence service fires its events while it holds its own lock.<br>
+   * When a change arrives during the read, the result is still used for this lookup but not kept.
+   */
+  private Map<Integer, BlockBean> rebuild() {
+    long start;
+    synchronized (lock) {
+      start = generation;
+    }
+
+    Map<Integer, BlockBean> built = new HashMap<>();
+    List<BlockBean> blocks = blockSource.get();
+    if (blocks != null) {
+      for (BlockBean block : blocks) {
+        add(built, block);
+      }
+    }
+
+    synchronized (lock) {
+      if (generation == start) {
+        index = built;
+      }
+    }
+    Logger.trace("Indexed " + built.size() + " block sensors");
+    return built;
+  }
+
+  private static void add(Map<Integer, BlockBean> map, BlockBean block) {
+    if (block.getPlusSensorId() != null) {
+      map.put(block.getPlusSensorId(), block);
+    }
+    if (block.getMinSensorId() != null) {
+      map.put(block.getMinSensorId(), block);
+    }
+  }
+
+  private static void remove(Map<Integer, BlockBean> map, BlockBean block) {
+    map.values().removeIf(b -> b == block || (b.getId() != null && b.getId().equals(block.getId())));
+  }
+
+  @Override
+  public void propertyChange(PropertyChangeEvent evt) {
+    switch (evt.getPropertyName()) {
+      case "data.block" -> {
+        if (evt.getNewValue() instanceof BlockBean block) {
+          update(block, false);
+        } else {
+          invalidate();
+        }
+      }
+      case "data.block.deleted" -> {
+        if (evt.getOldValue() instanceof BlockBean block) {
+          update(block, true);
+        } else {
+          invalidate();
+        }
+      }
+      case "data.tile.deleted", "data.sensor.deleted" ->
+        invalidate();
+      default -> {
+      }
+    }
+  }
+
+  /**
+   * Copy on write, so lookups never see a half applied change.
+   */
+  private void update(BlockBean block, boolean deleted) {
+    synchronized (lock) {
+      generation++;
+      Map<Integer, BlockBean> current = index;
+      if (current == null) {
+        return;
+      }
+      Map<Integer, BlockBean> updated = new HashMap<>(current);
+      remove(updated, block);
+      if (!deleted) {
+        add(updated, block);
+      }
+      index = updated;
+    }
+  }
+}
@@ -15,7 +15,6 @@
  */
 package jcs.commandStation.automation;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,15 +23,16 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import jcs.JCS;
+import java.util.function.IntSupplier;
 import static jcs.commandStation.automation.RailController.TAG;
 import jcs.commandStation.events.AllSensorEventsListener;
 import jcs.commandStation.events.SensorEvent;
 import jcs.entities.BlockBean;
 import jcs.entities.SensorBean;
-import jcs.persistence.PersistenceFactory;
 import jcs.ui.layout.tiles.Tile;
 import jcs.ui.layout.tiles.TileCache;
+import jcs.util.metrics.LatencyHistogram;
+import jcs.util.metrics.MetricsRegistry;
 import org.tinylog.Logger;
 
 /**
@@ -40,7 +40,10 @@ import org.tinylog.Logger;
  */
 public class SensorMonitor extends Thread implements AllSensorEventsListener {
 
+  private final AutomationContext context;
+
   private final BlockingQueue<SensorEvent> eventQueue;
+  private final IntSupplier queueGauge;
 
   private final Map<Integer, List<SensorEventCallback>> subscribers;
   private final Set<Integer> subscribersWithoutCallback;
@@ -49,17 +52,29 @@ public class SensorMonitor extends Thread implements AllSensorEventsListener {
 
   private final Map<Integer, SensorBean> sensorBeans;
 
+  private final SensorBlockIndex blockIndex;
+
+  //Latency from the reception of a sensor event until the dispatcher callback
+  private final LatencyHistogram callbackLatency = MetricsRegistry.histogram("automation.sensor.callback");
+
   public SensorMonitor() {
     this(null);
   }
 
   public SensorMonitor(ThreadGroup threadGroup) {
+    this(threadGroup, new AutomationContext.Jcs());
+  }
+
+  SensorMonitor(ThreadGroup threadGroup, AutomationContext context) {
     super(threadGroup, "RC-SENSOR-MONITOR");
+    this.context = context;
 
     eventQueue = new LinkedBlockingQueue<>();
     subscribers = new ConcurrentHashMap<>();
     subscribersWithoutCallback = ConcurrentHashMap.newKeySet();
-    sensorBeans = new HashMap<>();
+    sensorBeans = new ConcurrentHashMap<>();
+    blockIndex = new SensorBlockIndex(() -> context.getPersistenceService().getBlocks());
+    queueGauge = eventQueue::size;
   }
 
   Map<Integer, SensorBean> getSensorBeans() {
@@ -164,9 +179,9 @@ public class SensorMonitor extends Thread implements AllSensorEventsListener {
 
   //Obtain the current Sensor values
   void refreshAllSensorValues() {
-    List<SensorBean> sensors = PersistenceFactory.getService().getAssignedSensors();
+    List<SensorBean> sensors = context.getPersistenceService().getAssignedSensors();
     for (SensorBean sb : sensors) {
-      JCS.getJcsCommandStation().getSensorStatus(sb);
+      context.getCommandStation().getSensorStatus(sb);
     }
     Logger.tag(TAG).debug("Refreshed " + sensors.size() + " sensor values");
   }
@@ -176,44 +191,44 @@ public class SensorMonitor extends Thread implements AllSensorEventsListener {
     //First refresh the sensors...
     refreshAllSensorValues();
 
-    List<SensorBean> sensors = PersistenceFactory.getService().getAssignedSensors();
+    List<SensorBean> sensors = context.getPersistenceService().getAssignedSensors();
     for (SensorBean sb : sensors) {
       sensorBeans.put(sb.getId(), sb);
     }
+    context.getCommandStation().getSensorStateTable().registerAll(sensors);
+    blockIndex.attach(context.getPersistenceService());
     Logger.trace("Registered " + sensorBeans.size() + " sensors");
   }
 
   void handleGhost(SensorEvent event) {
     //Logger.trace("Check for possible Ghost! @ Sensor: " + event.getSensorId() + " Active: " + event.isActive());
 
-    List<BlockBean> blocks = PersistenceFactory.getService().getBlocks();
     Integer sensorId = event.getSensorId();
-    //this can be faster... ignore in case a block is set to not used...
-    for (BlockBean block : blocks) {
-      if ((block.getMinSensorId().equals(sensorId) || block.getPlusSensorId().equals(sensorId)) && block.getLocomotiveId() == null) {
-        Tile tile = TileCache.findTile(block.getTileId());
-        if (event.getSensorBean().isActive() && block.getBlockState() != BlockBean.BlockState.GHOST && block.getBlockState() != BlockBean.BlockState.OUT_OF_ORDER) {
-          block.setBlockState(BlockBean.BlockState.GHOST);
+    BlockBean block = blockIndex.getBlock(sensorId);
+    if (block != null && block.getLocomotiveId() == null) {
+      if (event.getSensorBean().isActive() && block.getBlockState() != BlockBean.BlockState.GHOST && block.getBlockState() != BlockBean.BlockState.OUT_OF_ORDER) {
+        block.setBlockState(BlockBean.BlockState.GHOST);
 
-          //Switch power OFF!
-          JCS.getJcsCommandStation().switchPower(false);
+        //Switch power OFF!
+        context.getCommandStation().switchPower(false);
 
+        if (context.isLayoutShown()) {
+          Tile tile = TileCache.findTile(block.getTileId());
           if (tile != null) {
             tile.setBlockState(BlockBean.BlockState.GHOST);
           } else {
             Logger.tag(TAG).warn("Can't find Tile " + block.getTileId());
           }
-          //Also persist
-          PersistenceFactory.getService().persist(block);
-          Logger.tag(TAG).warn("Ghost Detected! Sensor " + sensorId + " Value " + (event.isActive() ? "On" : "Off") + " in block " + block.getId() + " ...");
         }
-        break;
+        //Also persist
+        context.getPersistenceService().persist(block);
+        Logger.tag(TAG).warn("Ghost Detected! Sensor " + sensorId + " Value " + (event.isActive() ? "On" : "Off") + " in block " + block.getId() + " ...");
       }
     }
   }
 
   boolean isGhostDetected() {
-    return PersistenceFactory.getService().getGhostBlockCount() > 0;
+    return context.getPersistenceService().getGhostBlockCount() > 0;
   }
 
   void handleSensorEvent(SensorEvent event) {
@@ -236,6 +251,7 @@ public class SensorMonitor extends Thread implements AllSensorEventsListener {
   void notifySubscribers(SensorEvent event) {
     List<SensorEventCallback> callbacks = subscribers.get(event.getSensorId());
     if (callbacks != null && !callbacks.isEmpty()) {
+      callbackLatency.record(System.nanoTime() - event.getReceivedNanos());
       for (SensorEventCallback callback : callbacks) {
         try {
           callback.onEvent(event);
@@ -264,10 +280,11 @@ public class SensorMonitor extends Thread implements AllSensorEventsListener {
     subscribers.clear();
     eventQueue.clear();
     sensorBeans.clear();
+    MetricsRegistry.gauge("automation.sensor.queue", queueGauge);
 
     registerAllSensors();
     //Subsribe to the command station as SensorEventListener 
-    JCS.getJcsCommandStation().addAllSensorEventsListener(this);
+    context.getCommandStation().addAllSensorEventsListener(this);
 
     Logger.trace("SensorMonitor is watching " + sensorBeans.size());
 
@@ -288,7 +305,9 @@ public class SensorMonitor extends Thread implements AllSensorEventsListener {
     subscribers.clear();
     subscribersWithoutCallback.clear();
     sensorBeans.clear();
-    JCS.getJcsCommandStation().removeAllSensorEventsListener(this);
+    blockIndex.detach();
+    MetricsRegistry.removeGauge("automation.sensor.queue", queueGauge);
+    context.getCommandStation().removeAllSensorEventsListener(this);
     Logger.tag(TAG).trace("SensorMonitor Finished.");
   }
 
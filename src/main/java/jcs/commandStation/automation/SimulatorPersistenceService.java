@@ -0,0 +1,779 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.awt.Image;
+import java.beans.PropertyChangeListener;
+import java.beans.PropertyChangeSupport;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.ImageIcon;
+import jcs.entities.AccessoryBean;
+import jcs.entities.BlockBean;
+import jcs.entities.CommandStationBean;
+import jcs.entities.FunctionBean;
+import jcs.entities.JCSPropertyBean;
+import jcs.entities.LocomotiveBean;
+import jcs.entities.LocomotiveBean.DecoderType;
+import jcs.entities.RouteBean;
+import jcs.entities.RouteElementBean;
+import jcs.entities.SensorBean;
+import jcs.entities.StationBean;
+import jcs.entities.TileBean;
+import jcs.persistence.PersistenceService;
+
+/**
+ * The layout of the LayoutSimulator in memory.<br>
+ * Like the database every lookup of a block, route or locomotive returns a new bean, so a change is only seen by others after
+ * it is persisted. The sensors, tiles and accessories are shared, their state is kept by the virtual command station.<br>
+ * A persisted route or block is always reported to the listeners, also when nothing has changed.<br>
+ * Stations, images, command stations and the editing of the layout are not simulated.
+ */
+class SimulatorPersistenceService implements PersistenceService {
+
+  private final PropertyChangeSupport changeSupport;
+
+  private final Map<String, TileBean> tiles;
+  private final Map<String, AccessoryBean> accessories;
+  private final Map<Integer, SensorBean> sensors;
+  private final Map<String, BlockBean> blocks;
+  private final Map<String, RouteBean> routes;
+  private final Map<Long, LocomotiveBean> locomotives;
+
+  /**
+   * The tiles, sensors and accessories are taken from the blocks and the route elements.
+   *
+   * @param routes the routes with their elements
+   * @param blocks the blocks with their tile and sensors
+   * @param locomotives the locomotives
+   */
+  SimulatorPersistenceService(List<RouteBean> routes, List<BlockBean> blocks, List<LocomotiveBean> locomotives) {
+    changeSupport = new PropertyChangeSupport(this);
+    tiles = new LinkedHashMap<>();
+    accessories = new LinkedHashMap<>();
+    sensors = new LinkedHashMap<>();
+    this.blocks = new LinkedHashMap<>();
+    this.routes = new LinkedHashMap<>();
+    this.locomotives = new LinkedHashMap<>();
+
+    for (BlockBean block : blocks) {
+      addTile(block.getTileBean());
+      addSensor(block.getPlusSensorBean());
+      addSensor(block.getMinSensorBean());
+      this.blocks.put(block.getId(), copy(block));
+    }
+    for (RouteBean route : routes) {
+      if (route.getRouteElements() != null) {
+        for (RouteElementBean element : route.getRouteElements()) {
+          addTile(element.getTileBean());
+        }
+      }
+      this.routes.put(route.getId(), copy(route));
+    }
+    for (LocomotiveBean locomotive : locomotives) {
+      this.locomotives.put(locomotive.getId(), copy(locomotive));
+    }
+  }
+
+  private void addTile(TileBean tile) {
+    if (tile != null) {
+      tiles.putIfAbsent(tile.getId(), tile);
+      if (tile.getAccessoryBean() != null) {
+        accessories.putIfAbsent(tile.getAccessoryBean().getId(), tile.getAccessoryBean());
+      }
+      addSensor(tile.getSensorBean());
+    }
+  }
+
+  private void addSensor(SensorBean sensor) {
+    if (sensor != null && sensor.getId() != null) {
+      sensors.putIfAbsent(sensor.getId(), sensor);
+    }
+  }
+
+  private static BlockBean copy(BlockBean block) {
+    BlockBean copy = new BlockBean(block.getTileBean());
+    copy.setId(block.getId());
+    copy.setTileId(block.getTileId());
+    copy.setDescription(block.getDescription());
+    copy.setPlusSensorId(block.getPlusSensorId());
+    copy.setMinSensorId(block.getMinSensorId());
+    copy.setPlusSignalId(block.getPlusSignalId());
+    copy.setMinSignalId(block.getMinSignalId());
+    copy.setLocomotiveId(block.getLocomotiveId());
+    copy.setStatus(block.getStatus());
+    copy.setArrivalSuffix(block.getArrivalSuffix());
+    copy.setMinWaitTime(block.getMinWaitTime());
+    copy.setMaxWaitTime(block.getMaxWaitTime());
+    copy.setRandomWait(block.isRandomWait());
+    copy.setAlwaysStop(block.isAlwaysStop());
+    copy.setAllowCommuterOnly(block.isAllowCommuterOnly());
+    copy.setAllowNonCommuterOnly(block.isAllowNonCommuterOnly());
+    copy.setAllowDirectionChange(block.isAllowDirectionChange());
+    copy.setLogicalDirection(block.getLogicalDirection());
+    return copy;
+  }
+
+  private static RouteBean copy(RouteBean route) {
+    List<RouteElementBean> elements = route.getRouteElements() != null ? new ArrayList<>(route.getRouteElements()) : new ArrayList<>();
+    RouteBean copy = new RouteBean(route.getId(), route.getFromTileId(), route.getFromSuffix(), route.getToTileId(), route.getToSuffix(), route.getRouteColor(), route.isLocked(), elements);
+    copy.setStatus(route.getStatus());
+    copy.setDepartureSignalValue(route.getDepartureSignalValue());
+    return copy;
+  }
+
+  private static LocomotiveBean copy(LocomotiveBean locomotive) {
+    LocomotiveBean copy = new LocomotiveBean();
+    copy.setId(locomotive.getId());
+    copy.setName(locomotive.getName());
+    copy.setUid(locomotive.getUid());
+    copy.setAddress(locomotive.getAddress());
+    copy.setIcon(locomotive.getIcon());
+    copy.setDecoderTypeString(locomotive.getDecoderTypeString());
+    copy.setTachoMax(locomotive.getTachoMax());
+    copy.setvMin(locomotive.getvMin());
+    copy.setVelocity(locomotive.getVelocity());
+    copy.setDirection(locomotive.getDirection());
+    copy.setDispatcherDirection(locomotive.getDispatcherDirection());
+    copy.setCommuter(locomotive.isCommuter());
+    copy.setShow(locomotive.isShow());
+    copy.setActive(locomotive.isActive());
+    copy.setCommandStationId(locomotive.getCommandStationId());
+    copy.setSpeedOne(locomotive.getSpeedOne());
+    copy.setSpeedTwo(locomotive.getSpeedTwo());
+    copy.setSpeedThree(locomotive.getSpeedThree());
+    copy.setSpeedFour(locomotive.getSpeedFour());
+    copy.addAllFunctions(new ArrayList<>(locomotive.getFunctions().values()));
+    return copy;
+  }
+
+  /**
+   * Like the database, the related beans are added to a block.
+   */
+  private BlockBean load(BlockBean row) {
+    if (row == null) {
+      return null;
+    }
+    BlockBean block = copy(row);
+    if (block.getLocomotiveId() != null) {
+      LocomotiveBean locomotive = getLocomotive(block.getLocomotiveId());
+      if (locomotive != null) {
+        block.setLocomotive(locomotive);
+      }
+    }
+    if (block.getPlusSensorId() != null) {
+      block.setPlusSensorBean(sensors.get(block.getPlusSensorId()));
+    }
+    if (block.getMinSensorId() != null) {
+      block.setMinSensorBean(sensors.get(block.getMinSensorId()));
+    }
+    if (block.getPlusSignalId() != null) {
+      block.setPlusSignal(accessories.get(block.getPlusSignalId()));
+    }
+    if (block.getMinSignalId() != null) {
+      block.setMinSignal(accessories.get(block.getMinSignalId()));
+    }
+    return block;
+  }
+
+  private static UnsupportedOperationException notSimulated() {
+    return new UnsupportedOperationException("Not available in the simulation");
+  }
+
+  @Override
+  public void addPropertyChangeListener(PropertyChangeListener listener) {
+    changeSupport.addPropertyChangeListener(listener);
+  }
+
+  @Override
+  public void removePropertyChangeListener(PropertyChangeListener listener) {
+    changeSupport.removePropertyChangeListener(listener);
+  }
+
+  @Override
+  public <T> List<T> persistAll(List<T> beans) {
+    throw notSimulated();
+  }
+
+  @Override
+  public <T> void removeAll(List<T> beans) {
+    throw notSimulated();
+  }
+
+  @Override
+  public List<JCSPropertyBean> getProperties() {
+    return List.of();
+  }
+
+  @Override
+  public JCSPropertyBean getProperty(String key) {
+    return null;
+  }
+
+  @Override
+  public JCSPropertyBean persist(JCSPropertyBean propertyBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public void remove(JCSPropertyBean property) {
+    throw notSimulated();
+  }
+
+  @Override
+  public List<SensorBean> getAllSensors() {
+    return new ArrayList<>(sensors.values());
+  }
+
+  @Override
+  public List<SensorBean> getSensors() {
+    return getAllSensors();
+  }
+
+  @Override
+  public List<SensorBean> getSensorsByCommandStationId(String commandStationId) {
+    return getAllSensors();
+  }
+
+  @Override
+  public List<SensorBean> getAssignedSensors() {
+    return getAllSensors();
+  }
+
+  @Override
+  public SensorBean getSensor(Integer id) {
+    return sensors.get(id);
+  }
+
+  @Override
+  public SensorBean getSensor(Integer deviceId, Integer contactId) {
+    for (SensorBean sensor : sensors.values()) {
+      if (deviceId.equals(sensor.getDeviceId()) && contactId.equals(sensor.getContactId())) {
+        return sensor;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public SensorBean persist(SensorBean sensor) {
+    sensors.put(sensor.getId(), sensor);
+    return sensor;
+  }
+
+  @Override
+  public List<SensorBean> persistSensorBeans(List<SensorBean> sensors) {
+    for (SensorBean sensor : sensors) {
+      persist(sensor);
+    }
+    return sensors;
+  }
+
+  @Override
+  public void remove(SensorBean sensor) {
+    throw notSimulated();
+  }
+
+  @Override
+  public void removeAllSensors() {
+    throw notSimulated();
+  }
+
+  @Override
+  public boolean isOnTrack(LocomotiveBean locomotive) {
+    return getBlockByLocomotiveId(locomotive.getId()) != null;
+  }
+
+  @Override
+  public List<LocomotiveBean> getOnTrackLocomotives() {
+    List<LocomotiveBean> onTrack = new ArrayList<>();
+    for (LocomotiveBean locomotive : locomotives.values()) {
+      if (isOnTrack(locomotive)) {
+        onTrack.add(copy(locomotive));
+      }
+    }
+    return onTrack;
+  }
+
+  @Override
+  public List<LocomotiveBean> getAllLocomotives() {
+    List<LocomotiveBean> all = new ArrayList<>();
+    for (LocomotiveBean locomotive : locomotives.values()) {
+      all.add(copy(locomotive));
+    }
+    return all;
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotives() {
+    return getAllLocomotives();
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotives(boolean show) {
+    return getAllLocomotives();
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotivesByCommandStationId(String commandStationId) {
+    return getAllLocomotives();
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotivesByCommandStationId(String commandStationId, Boolean show) {
+    return getAllLocomotives();
+  }
+
+  @Override
+  public LocomotiveBean getLocomotive(Integer address, DecoderType decoderType, String commandStationId) {
+    for (LocomotiveBean locomotive : locomotives.values()) {
+      if (address.equals(locomotive.getAddress())) {
+        return copy(locomotive);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public LocomotiveBean getLocomotiveById(Long id, String commandStationId) {
+    return getLocomotive(id);
+  }
+
+  @Override
+  public LocomotiveBean getLocomotive(Integer locUid, String commandStationId) {
+    for (LocomotiveBean locomotive : locomotives.values()) {
+      if (locomotive.getUid() != null && locomotive.getUid().intValue() == locUid) {
+        return copy(locomotive);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public LocomotiveBean getLocomotive(Long id) {
+    LocomotiveBean locomotive = locomotives.get(id);
+    return locomotive != null ? copy(locomotive) : null;
+  }
+
+  @Override
+  public LocomotiveBean persist(LocomotiveBean locomotive) {
+    locomotives.put(locomotive.getId(), copy(locomotive));
+    return locomotive;
+  }
+
+  @Override
+  public List<FunctionBean> getLocomotiveFunctions(LocomotiveBean locomotive) {
+    return new ArrayList<>(locomotive.getFunctions().values());
+  }
+
+  @Override
+  public FunctionBean getLocomotiveFunction(LocomotiveBean locomotive, Integer number) {
+    return locomotive.getFunctionBean(number);
+  }
+
+  @Override
+  public FunctionBean getLocomotiveFunction(Long locomotiveId, Integer number) {
+    LocomotiveBean locomotive = locomotives.get(locomotiveId);
+    return locomotive != null ? locomotive.getFunctionBean(number) : null;
+  }
+
+  @Override
+  public FunctionBean persist(FunctionBean functionBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public void remove(LocomotiveBean locomotiveBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public List<AccessoryBean> getAccessories() {
+    return new ArrayList<>(accessories.values());
+  }
+
+  @Override
+  public List<AccessoryBean> getAccessoriesByCommandStationId(String commandStationId) {
+    return getAccessories();
+  }
+
+  @Override
+  public boolean isAccessoryLocked(String accessoryId) {
+    for (RouteBean route : routes.values()) {
+      if (route.isLocked()) {
+        for (RouteElementBean element : route.getRouteElements()) {
+          TileBean tile = tiles.get(element.getTileId());
+          if (tile != null && accessoryId.equals(tile.getAccessoryId())) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public List<AccessoryBean> getTurnouts() {
+    List<AccessoryBean> turnouts = new ArrayList<>();
+    for (AccessoryBean accessory : accessories.values()) {
+      if (accessory.isTurnout()) {
+        turnouts.add(accessory);
+      }
+    }
+    return turnouts;
+  }
+
+  @Override
+  public List<AccessoryBean> getSignals() {
+    List<AccessoryBean> signals = new ArrayList<>();
+    for (AccessoryBean accessory : accessories.values()) {
+      if (accessory.isSignal()) {
+        signals.add(accessory);
+      }
+    }
+    return signals;
+  }
+
+  @Override
+  public AccessoryBean getAccessoryByAddressAndCommandStationId(Integer address, String commandStationId) {
+    return getAccessoryByAddress(address);
+  }
+
+  @Override
+  public AccessoryBean getAccessoryByAddress2AndCommandStationId(Integer address2, String commandStationId) {
+    for (AccessoryBean accessory : accessories.values()) {
+      if (address2.equals(accessory.getAddress2())) {
+        return accessory;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public AccessoryBean getAccessory(String id) {
+    return accessories.get(id);
+  }
+
+  @Override
+  public AccessoryBean getAccessoryByAddress(Integer address) {
+    for (AccessoryBean accessory : accessories.values()) {
+      if (address.equals(accessory.getAddress())) {
+        return accessory;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public AccessoryBean persist(AccessoryBean accessoryBean) {
+    accessories.put(accessoryBean.getId(), accessoryBean);
+    return accessoryBean;
+  }
+
+  @Override
+  public void remove(AccessoryBean accessoryBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public List<TileBean> getTileBeans() {
+    return new ArrayList<>(tiles.values());
+  }
+
+  @Override
+  public List<TileBean> getTileBeansByTileType(TileBean.TileType tileType) {
+    List<TileBean> ofType = new ArrayList<>();
+    for (TileBean tile : tiles.values()) {
+      if (tileType == tile.getTileType()) {
+        ofType.add(tile);
+      }
+    }
+    return ofType;
+  }
+
+  @Override
+  public TileBean getTileBean(String id) {
+    return tiles.get(id);
+  }
+
+  @Override
+  public TileBean getTileBean(Integer x, Integer y) {
+    for (TileBean tile : tiles.values()) {
+      if (x.equals(tile.getX()) && y.equals(tile.getY())) {
+        return tile;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public TileBean persist(TileBean tileBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public List<TileBean> persist(List<TileBean> tiles) {
+    throw notSimulated();
+  }
+
+  @Override
+  public void remove(TileBean tile) {
+    throw notSimulated();
+  }
+
+  @Override
+  public List<RouteBean> getRoutes() {
+    List<RouteBean> all = new ArrayList<>();
+    for (RouteBean route : routes.values()) {
+      all.add(copy(route));
+    }
+    return all;
+  }
+
+  @Override
+  public RouteBean getRoute(String id) {
+    RouteBean route = routes.get(id);
+    return route != null ? copy(route) : null;
+  }
+
+  /**
+   * Like the database, only the unlocked routes to a free block.
+   */
+  @Override
+  public List<RouteBean> getRoutes(String fromTileId, String fromSuffix) {
+    List<RouteBean> free = new ArrayList<>();
+    for (RouteBean route : routes.values()) {
+      if (route.getFromTileId().equals(fromTileId) && route.getFromSuffix().equals(fromSuffix) && !route.isLocked()) {
+        BlockBean destination = getBlockByTileId(route.getToTileId());
+        if (destination != null && BlockBean.BlockState.FREE == destination.getBlockState()) {
+          free.add(copy(route));
+        }
+      }
+    }
+    return free;
+  }
+
+  @Override
+  public RouteBean getRoute(String fromTileId, String fromSuffix, String toTileId, String toSuffix) {
+    for (RouteBean route : routes.values()) {
+      if (route.getFromTileId().equals(fromTileId) && route.getFromSuffix().equals(fromSuffix) && route.getToTileId().equals(toTileId) && route.getToSuffix().equals(toSuffix)) {
+        return copy(route);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public RouteBean persist(RouteBean routeBean) {
+    routes.put(routeBean.getId(), copy(routeBean));
+    changeSupport.firePropertyChange("data.route", null, routeBean);
+    return routeBean;
+  }
+
+  @Override
+  public void remove(RouteBean routeBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public BlockBean getBlockByLocomotiveId(Long locomotiveId) {
+    for (BlockBean block : blocks.values()) {
+      if (locomotiveId.equals(block.getLocomotiveId())) {
+        return load(block);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<BlockBean> getBlocks() {
+    List<BlockBean> all = new ArrayList<>();
+    for (BlockBean block : blocks.values()) {
+      all.add(load(block));
+    }
+    return all;
+  }
+
+  @Override
+  public Long getGhostBlockCount() {
+    long count = 0;
+    for (BlockBean block : blocks.values()) {
+      if (BlockBean.BlockState.GHOST == block.getBlockState()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public List<BlockBean> getNonStationBlocks() {
+    return getBlocks();
+  }
+
+  @Override
+  public List<BlockBean> getStationBlocks(StationBean stationBean) {
+    return List.of();
+  }
+
+  @Override
+  public Long getLocomotiveCount(StationBean stationBean) {
+    return 0L;
+  }
+
+  @Override
+  public Long getFirstLocomotiveId(StationBean stationBean) {
+    return null;
+  }
+
+  @Override
+  public Integer getAverageAccessorySwitchTime() {
+    return average(accessories.values());
+  }
+
+  @Override
+  public Integer getAverageAccessorySwitchTime(RouteBean routeBean) {
+    if (routeBean == null) {
+      return getAverageAccessorySwitchTime();
+    }
+    List<AccessoryBean> routeAccessories = new ArrayList<>();
+    RouteBean route = routes.get(routeBean.getId());
+    if (route != null) {
+      for (RouteElementBean element : route.getRouteElements()) {
+        TileBean tile = tiles.get(element.getTileId());
+        if (element.getAccessoryValue() != null && tile != null && tile.getAccessoryBean() != null) {
+          routeAccessories.add(tile.getAccessoryBean());
+        }
+      }
+    }
+    return average(routeAccessories);
+  }
+
+  private static Integer average(Iterable<AccessoryBean> accessories) {
+    long total = 0;
+    int count = 0;
+    for (AccessoryBean accessory : accessories) {
+      if (accessory.getSwitchTime() != null) {
+        total = total + accessory.getSwitchTime();
+        count++;
+      }
+    }
+    return count == 0 ? 0 : (int) Math.ceil((double) total / count);
+  }
+
+  @Override
+  public BlockBean getBlock(String id) {
+    return load(blocks.get(id));
+  }
+
+  @Override
+  public BlockBean getBlockByTileId(String tileId) {
+    for (BlockBean block : blocks.values()) {
+      if (block.getTileId().equals(tileId)) {
+        return load(block);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public BlockBean persist(BlockBean block) {
+    blocks.put(block.getId(), copy(block));
+    changeSupport.firePropertyChange("data.block", null, block);
+    return block;
+  }
+
+  @Override
+  public void remove(BlockBean block) {
+    throw notSimulated();
+  }
+
+  @Override
+  public void removeAllBlocks() {
+    throw notSimulated();
+  }
+
+  @Override
+  public List<CommandStationBean> getCommandStations() {
+    return List.of();
+  }
+
+  @Override
+  public CommandStationBean getCommandStation(String id) {
+    return null;
+  }
+
+  @Override
+  public CommandStationBean getDefaultCommandStation() {
+    return null;
+  }
+
+  @Override
+  public CommandStationBean getEnabledFeedbackProvider() {
+    return null;
+  }
+
+  @Override
+  public CommandStationBean persist(CommandStationBean commandStationBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public CommandStationBean changeDefaultCommandStation(CommandStationBean newDefaultCommandStationBean) {
+    throw notSimulated();
+  }
+
+  @Override
+  public ImageIcon getLocomotiveImage(String imageName) {
+    return null;
+  }
+
+  @Override
+  public ImageIcon getFunctionImage(String imageName) {
+    return null;
+  }
+
+  @Override
+  public Image readImage(String imageName, boolean function) {
+    return null;
+  }
+
+  @Override
+  public List<StationBean> getStations() {
+    return List.of();
+  }
+
+  @Override
+  public StationBean getStation(String id) {
+    return null;
+  }
+
+  @Override
+  public StationBean getStation(BlockBean blockBean) {
+    return null;
+  }
+
+  @Override
+  public StationBean persist(StationBean station) {
+    throw notSimulated();
+  }
+
+  @Override
+  public void remove(StationBean station) {
+    throw notSimulated();
+  }
+}
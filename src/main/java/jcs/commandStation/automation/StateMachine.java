@@ -18,19 +18,20 @@ package jcs.commandStation.automation;
 import static jcs.commandStation.automation.RailController.TAG;
 import jcs.entities.BlockBean;
 import jcs.entities.RouteBean;
-import jcs.persistence.PersistenceFactory;
 import org.tinylog.Logger;
 
 /**
- * In Auto mode every on-track locomotive get a Dispatcher Thread.<br>
- * The Dispatcher Thread performs the driving of the locomotive.<br>
- * The Thread "knows the dispatcherState", (should) knows where the locomotive is.<br>
- * On dispatcherState changes the screen updates are also handled by this Thread.<br>
+ * In Auto mode every on-track locomotive get a Dispatcher with a State Machine.<br>
+ * The State Machine performs the driving of the locomotive.<br>
+ * It "knows the dispatcherState", (should) knows where the locomotive is.<br>
+ * On dispatcherState changes the screen updates are also handled by the State Machine.<br>
+ * The State Machine does not own a Thread. It is executed on the shared StateMachineScheduler when it is woken up by a sensor
+ * event, a timer or a start or stop request, and runs the states until a state has to wait for the next event.<br>
  *
  * When the Locomotive is stopped, but Autopilot is still in auto mode, the dispatcherState handling<br>
  * is continued, but will jump into Idle instead of Wait after the IN dispatcherState.<br>
  *
- * When the Autopilot is stopped the dispatcherState handling continues, but after the IN dispatcherState the thread is finished.<br>
+ * When the Autopilot is stopped the dispatcherState handling continues, but after the IN dispatcherState the State Machine is finished.<br>
  *
  * A Locomotive Reset means, force the State Machine into Idle, clean up the route.<br>
  * Locomotive is in the departure block.
@@ -40,8 +41,10 @@ class StateMachine {
 
   private final Dispatcher dispatcher;
   private volatile AbstractState currentState;
-  private StateMachineRunner stateMachineRunner;
-  private boolean requestStop = false;
+  private final StateMachineScheduler.SerialTask runner;
+  private volatile boolean enabled = false;
+  private volatile boolean running = false;
+  private volatile boolean requestStop = false;
 
   /**
    *
@@ -51,37 +54,32 @@ class StateMachine {
   StateMachine(Dispatcher dispatcher, AbstractState initialState) {
     this.dispatcher = dispatcher;
     currentState = initialState;
+    runner = new StateMachineScheduler.SerialTask(dispatcher.getScheduler(), "STM->" + dispatcher.getName().toUpperCase(), this::runStates);
     currentState.onEnter(dispatcher);
   }
 
-  void startStateMachineThread() {
-    if (stateMachineRunner == null || !stateMachineRunner.isRunning()) {
+  void start() {
+    if (!running) {
       requestStop = false;
-      stateMachineRunner = new StateMachineRunner(this);
-      stateMachineRunner.start();
-    } else if (stateMachineRunner != null && !stateMachineRunner.isAlive()) {
-      Logger.tag(TAG).trace("Thread for " + dispatcher.getName() + " has stopped creating new one...");
-      requestStop = false;
-      stateMachineRunner = new StateMachineRunner(this);
-      stateMachineRunner.start();
+      enabled = true;
+      running = true;
+      runner.trigger();
     } else {
-      Logger.tag(TAG).trace("Thread for " + dispatcher.getName() + " is already running...");
+      Logger.tag(TAG).trace("State Machine for " + dispatcher.getName() + " is already running...");
     }
   }
 
-  void stopStateMachineThread() {
+  void stop() {
     //A stop is requested. The state machine can only stop in certain states.
     //If  the statemachine is not in the right state regard this as a request to stop,
     //when the state machine reaches a state where it can stop it will stop.
     requestStop = true;
-    if (stateMachineRunner != null) {
-      stateMachineRunner.wakeUp();
-    }
+    wakeUp();
   }
 
   void wakeUp() {
-    if (stateMachineRunner != null) {
-      stateMachineRunner.wakeUp();
+    if (running) {
+      runner.trigger();
     }
   }
 
@@ -94,15 +92,15 @@ class StateMachine {
   }
 
   boolean isRunning() {
-    return stateMachineRunner != null && stateMachineRunner.isRunning();
+    return running;
   }
 
   boolean isRequestStop() {
     return requestStop;
   }
 
-  boolean isThreadEnabled() {
-    return stateMachineRunner != null;
+  boolean isEnabled() {
+    return enabled;
   }
 
   public String getCurrentStateName() {
@@ -114,19 +112,11 @@ class StateMachine {
     Logger.tag(TAG).trace("Resetting in state " + currentState.getName());
     dispatcher.changeLocomotiveVelocity(0);
 
-    // Stop runner FIRST and wait for it
-    StateMachineRunner runner = stateMachineRunner;
-    if (runner != null && runner.isRunning()) {
-      runner.shutdown();
-      runner.wakeUp();  // Wake it so it can exit
-      try {
-        runner.join(5000);  // Wait for thread to finish
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      }
-    }
-    Logger.tag(TAG).trace(dispatcher.getName() + " StateMachineRunner stopped in state " + currentState.getName());
-    stateMachineRunner = null;
+    // Stop the runner FIRST and wait for a state which is being executed
+    running = false;
+    runner.awaitIdle(5000);
+    Logger.tag(TAG).trace(dispatcher.getName() + " State Machine stopped in state " + currentState.getName());
+    enabled = false;
 
     currentState.onExit();
 
@@ -180,7 +170,7 @@ class StateMachine {
       destination.setLocomotive(null);
       destination.setBlockState(BlockBean.BlockState.FREE);
       destination.setArrivalSuffix(null);
-      PersistenceFactory.getService().persist(destination);
+      dispatcher.getPersistenceService().persist(destination);
 
       dispatcher.showBlockState(destination);
     }
@@ -191,7 +181,7 @@ class StateMachine {
     RouteBean nextRoute = dispatcher.getNextRouteBean();
     if (nextRoute != null) {
       nextRoute.setLocked(false);
-      PersistenceFactory.getService().persist(nextRoute);
+      dispatcher.getPersistenceService().persist(nextRoute);
       dispatcher.resetRoute(nextRoute);
     }
 
@@ -199,11 +189,11 @@ class StateMachine {
     if (route != null) {
       route.setLocked(false);
       departure.setDepartureSuffix(route.getFromSuffix());
-      PersistenceFactory.getService().persist(route);
+      dispatcher.getPersistenceService().persist(route);
       dispatcher.resetRoute(route);
     }
 
-    PersistenceFactory.getService().persist(departure);
+    dispatcher.getPersistenceService().persist(departure);
     dispatcher.showBlockState(departure);
 
     dispatcher.setNextRouteBean(null);
@@ -233,103 +223,24 @@ class StateMachine {
     return stateChanged;
   }
 
-  private class StateMachineRunner extends Thread {
-
-    private final Object lock = new Object();
-    private final StateMachine stateMachine;
-    private final long threadSleepMillis;
-
-    private volatile boolean running = false;
-
-    StateMachineRunner(StateMachine stateMachine) {
-      super(stateMachine.getDispatcher().getThreadGroup(), "STM->" + stateMachine.getDispatcher().getLocomotiveBean().getName().toUpperCase());
-      this.stateMachine = stateMachine;
-      threadSleepMillis = Long.parseUnsignedLong(System.getProperty("autopilot.thread.wait.millis", "2000"));
-    }
-
-    void shutdown() {
-      this.running = false;
-    }
-
-    boolean isRunning() {
-      return running;
-    }
-
-    @Override
-    public void run() {
-      running = true;
-
-      while (running) {
-
-        if (Logger.isTraceEnabled() && 1 == 2) {
-          BlockBean departureBlock = dispatcher.getDepartureBlock();
-          BlockBean destinationBlock = dispatcher.getDestinationBlock();
-          BlockBean nextDestinationBlock = dispatcher.getNextDestinationBlock();
-          RouteBean route = dispatcher.getRouteBean();
-          RouteBean nextRoute = dispatcher.getNextRouteBean();
-
-          StringBuilder sb = new StringBuilder();
-
-          if (departureBlock != null) {
-            sb.append("Departure: ");
-            sb.append(departureBlock.getId());
-          }
-          if (destinationBlock != null) {
-            sb.append("-> Destination: ");
-            sb.append(destinationBlock.getId());
-          }
-          if (nextDestinationBlock != null) {
-            sb.append("--> NextDestination: ");
-            sb.append(nextDestinationBlock.getId());
-          }
-          if (route != null) {
-            sb.append(" -Route: ");
-            sb.append(route.getId());
-          }
-          if (nextRoute != null) {
-            sb.append(" ->NextRoute: ");
-            sb.append(nextRoute.getId());
-          }
-          if (departureBlock != null && departureBlock.getLocomotive() != null) {
-            sb.append(" Loc Dir: ");
-            sb.append(departureBlock.getLocomotive().getDirection().toString());
-          }
-
-          Logger.trace(">>" + sb.toString());
-        }
-
-        boolean stateChanged = stateMachine.executeState();
-
-        if (stateMachine.requestStop && stateMachine.getCurrentState().canStopLocomotive()) {
-          running = false;
-        }
-
-        if (!stateChanged) {
-          try {
-            synchronized (lock) {
-              lock.wait(threadSleepMillis);
-            }
-          } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            break;
-          }
-
-        }
-      }
-
-      //Make sure the locomotive is stopped
-      dispatcher.changeLocomotiveVelocity(0);
-
-      stateMachine.requestStop = false;
-      dispatcher.locomotiveStarted = false;
-      Logger.tag(TAG).debug("StateMachineTread " + stateMachine.getDispatcher().getName() + " finished...");
-    }
-
-    void wakeUp() {
-      synchronized (lock) {
-        lock.notify();
+  /**
+   * Execute the states until a state has to wait for an event, or until the State Machine can stop.
+   */
+  private void runStates() {
+    while (running) {
+      boolean stateChanged = executeState();
+
+      if (requestStop && currentState.canStopLocomotive()) {
+        running = false;
+        //Make sure the locomotive is stopped
+        dispatcher.changeLocomotiveVelocity(0);
+
+        requestStop = false;
+        dispatcher.locomotiveStarted = false;
+        Logger.tag(TAG).debug("State Machine " + dispatcher.getName() + " finished...");
+      } else if (!stateChanged) {
+        return;
       }
     }
   }
-
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static jcs.commandStation.automation.RailController.TAG;
+import org.tinylog.Logger;
+
+/**
+ * Shared execution of the State Machines of all Dispatchers.<br>
+ * A State Machine only runs when there is something to do, i.e. after a sensor event, a timer expiry or a start or stop
+ * request. The work runs on a virtual thread, so a state may block on a delay or an accessory confirmation without holding a
+ * platform thread. Timers, like the wait time in a block, all share one scheduler thread.<br>
+ * The LayoutSimulator replaces the scheduler to run the State Machines on a virtual clock.
+ */
+class StateMachineScheduler {
+
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "STM-TIMER");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * The scheduler of the State Machines of the application.
+   */
+  static final StateMachineScheduler SHARED = new StateMachineScheduler();
+
+  StateMachineScheduler() {
+  }
+
+  Future<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+    return TIMER.scheduleAtFixedRate(command, initialDelay, period, unit);
+  }
+
+  /**
+   * Run a task once.
+   *
+   * @param name of the virtual thread
+   * @param task the task to run
+   */
+  void execute(String name, Runnable task) {
+    Thread.ofVirtual().name(name).start(task);
+  }
+
+  /**
+   * Delay the calling state.
+   *
+   * @param millis the delay in ms
+   * @throws InterruptedException when interrupted during the delay
+   */
+  void sleep(long millis) throws InterruptedException {
+    Thread.sleep(millis);
+  }
+
+  /**
+   * A task which runs on the scheduler when it is triggered.<br>
+   * At most one run is active at a time. Triggers which arrive during a run are coalesced into one more run, so no trigger is
+   * lost.
+   */
+  static final class SerialTask {
+
+    private final StateMachineScheduler scheduler;
+    private final String name;
+    private final Runnable task;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private volatile Thread thread;
+
+    SerialTask(String name, Runnable task) {
+      this(SHARED, name, task);
+    }
+
+    SerialTask(StateMachineScheduler scheduler, String name, Runnable task) {
+      this.scheduler = scheduler;
+      this.name = name;
+      this.task = task;
+    }
+
+    void trigger() {
+      pending.set(true);
+      if (scheduled.compareAndSet(false, true)) {
+        scheduler.execute(name, this::drain);
+      }
+    }
+
+    private void drain() {
+      thread = Thread.currentThread();
+      try {
+        while (pending.getAndSet(false)) {
+          try {
+            task.run();
+          } catch (RuntimeException e) {
+            Logger.tag(TAG).error("Error in {}: {}", name, e.getMessage());
+            Logger.trace(e);
+          }
+        }
+      } finally {
+        thread = null;
+        synchronized (this) {
+          scheduled.set(false);
+          notifyAll();
+        }
+      }
+      //A trigger which arrived after the last check, but before the scheduled flag was cleared
+      if (pending.get()) {
+        trigger();
+      }
+    }
+
+    boolean isRunning() {
+      return scheduled.get();
+    }
+
+    /**
+     * Wait until the active run, if any, has finished.<br>
+     * Returns immediately when called from the task itself.
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return true when no run is active
+     */
+    boolean awaitIdle(long timeoutMillis) {
+      if (thread == Thread.currentThread()) {
+        return false;
+      }
+      long deadline = System.currentTimeMillis() + timeoutMillis;
+      synchronized (this) {
+        while (scheduled.get()) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            return false;
+          }
+          try {
+            wait(remaining);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -16,9 +16,7 @@
 package jcs.commandStation.automation;
 
 import java.util.Random;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import static jcs.commandStation.automation.AbstractState.State.WAIT;
 import static jcs.commandStation.automation.RailController.TAG;
@@ -31,8 +29,7 @@ import org.tinylog.Logger;
  */
 class WaitingState extends AbstractState {
 
-  private ScheduledExecutorService scheduler;
-  private ScheduledFuture<?> countdownTask;
+  private Future<?> countdownTask;
   private volatile long remainingTime;
   private volatile boolean waitCompleted = false;
   private volatile boolean cancelled = false;
@@ -60,18 +57,13 @@ class WaitingState extends AbstractState {
 
     Logger.tag(TAG).debug("Locomotive " + locomotiveBean.getName() + " Direction: " + locomotiveBean.getDirection().getDirection() + " start waiting in block " + blockBean.getId() + " logicalDir: " + blockBean.getLogicalDirection() + " Arrived at " + blockBean.getArrivalSuffix() + " side.");
 
-    remainingTime = calculateWaitTime(blockBean);
+    remainingTime = calculateWaitTime(blockBean, dispatcher.getRailController().getContext().getRandom());
     long waitTime = remainingTime;
     Logger.tag(TAG).trace("Waiting for " + remainingTime + " s. Block Random " + blockBean.isRandomWait() + " Block max: " + blockBean.getMaxWaitTime());
 
     if (remainingTime > 0) {
-      // Initialize scheduler
-      ThreadGroup threadGroup = dispatcher.getThreadGroup();
-      scheduler = Executors.newSingleThreadScheduledExecutor(runnable
-              -> new Thread(threadGroup, runnable, "STM-WAIT->" + dispatcher.getName().toUpperCase()));
-
-      // Schedule countdown task - runs every second
-      countdownTask = scheduler.scheduleAtFixedRate(() -> {
+      // Schedule countdown task on the shared timer - runs every second
+      countdownTask = dispatcher.getScheduler().scheduleAtFixedRate(() -> {
 
         if (!dispatcher.isLocomotiveStarted()) {
           // Automode disabled - cancel waiting
@@ -80,7 +72,7 @@ class WaitingState extends AbstractState {
           stopScheduler();
 
           dispatcher.fireStateListeners(getName(), getName(), " (-)");
-
+          dispatcher.wakeup();
           return;
         }
 
@@ -105,7 +97,7 @@ class WaitingState extends AbstractState {
 
   @Override
   AbstractState execute() {
-    // Just check the status - actual waiting happens in scheduler
+    // Just check the status - actual waiting happens in the countdown task, which wakes the State Machine
     if (waitCompleted) {
       Logger.tag(TAG).trace("Wait completed for " + dispatcher.getName() + "...");
 
@@ -132,20 +124,12 @@ class WaitingState extends AbstractState {
     if (countdownTask != null && !countdownTask.isCancelled()) {
       countdownTask.cancel(false);
     }
-    if (scheduler != null && !scheduler.isShutdown()) {
-      scheduler.shutdown();
-      try {
-        if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
-          scheduler.shutdownNow();
-        }
-      } catch (InterruptedException e) {
-        scheduler.shutdownNow();
-        Thread.currentThread().interrupt();
-      }
-    }
   }
 
-  private long calculateWaitTime(BlockBean blockBean) {
+  /**
+   * The wait time in seconds of a locomotive in a block.
+   */
+  static long calculateWaitTime(BlockBean blockBean, Random random) {
 
     int minWait = blockBean.getMinWaitTime();
     int maxWait;
@@ -159,7 +143,6 @@ class WaitingState extends AbstractState {
     long waitTime;
 
     if (blockBean.isRandomWait()) {
-      Random random = new Random();
       // Seed a bit....
       for (int i = 0; i < 10; i++) {
         random.ints(minWait, maxWait).findFirst();
@@ -15,7 +15,9 @@
  */
 package jcs.commandStation.dccex;
 
+import java.util.concurrent.CompletableFuture;
 import jcs.commandStation.dccex.connection.DccExMessageListener;
+import jcs.commandStation.net.TransportStatistics;
 
 /**
  *
@@ -29,10 +31,32 @@ public interface DccExConnection extends AutoCloseable {
 
   static final String MESSAGE_DELIMITER = ">\n";
 
+  /**
+   * Send a command and wait for its response.<br>
+   * A command which has no response is queued and the call returns without waiting.
+   *
+   * @param message the DCC-EX command
+   * @return the response or the command itself when there is no response
+   */
   String sendMessage(String message);
 
+  /**
+   * Send a command without waiting.
+   *
+   * @param message the DCC-EX command
+   * @return completes with the response, or with the command itself when there is no response
+   */
+  default CompletableFuture<String> submit(String message) {
+    return CompletableFuture.completedFuture(sendMessage(message));
+  }
+
   void setMessageListener(DccExMessageListener messageListener);
 
   boolean isConnected();
 
+  /**
+   * @return the traffic and latency of the network connection, or null when there is no network connection
+   */
+  TransportStatistics getTransportStatistics();
+
 }
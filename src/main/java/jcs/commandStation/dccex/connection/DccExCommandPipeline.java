@@ -0,0 +1,352 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.dccex.connection;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import jcs.commandStation.dccex.DccExMessageFactory;
+import jcs.util.metrics.LatencyHistogram;
+import jcs.util.metrics.MetricsRegistry;
+import org.tinylog.Logger;
+
+/**
+ * Outbound command pipeline of a DCC-EX connection, shared by the serial and the TCP connection.<br>
+ * Commands are queued and written by one writer thread, all commands which can be send are written in one batch. A command which expects a response is correlated by the response opcode from
+ * DccExMessageFactory.getResponseOpcodeFor, in send order. At most maxInFlight commands wait for a response at the same time, the next command which expects a response waits until a response
+ * arrives or a waiting command times out.<br>
+ * A throttle command &lt;t cab speed dir&gt; which is still queued is superseded by a newer throttle command for the same cab, the newer command moves to the tail of the queue so it
+ * never overtakes commands which were queued after the superseded one. A queued emergency stop &lt;t cab -1 dir&gt; is never superseded.<br>
+ * Frames which do not answer a waiting command, like the &lt;l ...&gt; and &lt;Q ...&gt; broadcasts, are not consumed and go straight to the listeners.
+ */
+class DccExCommandPipeline {
+
+  /**
+   * Writes one or more concatenated messages to the command station
+   */
+  interface MessageWriter {
+
+    void write(String messages) throws IOException;
+  }
+
+  static final class Command {
+
+    private String message;
+    private final String rxOpcode;
+    private final CompletableFuture<String> future;
+    private long sentNanos;
+
+    private Command(String message) {
+      this.message = message;
+      this.rxOpcode = DccExMessageFactory.getResponseOpcodeFor(message);
+      this.future = new CompletableFuture<>();
+    }
+  }
+
+  private final String name;
+  private final MessageWriter writer;
+  private final int maxInFlight;
+  private final long timeoutNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final Condition drained = lock.newCondition();
+  private final LinkedList<Command> queue = new LinkedList<>();
+  private final Map<String, Command> queuedThrottles = new HashMap<>();
+  private final List<Command> inFlight = new ArrayList<>();
+
+  private Thread writerThread;
+  private volatile boolean running = false;
+
+  private final LatencyHistogram responseTime = MetricsRegistry.histogram("dccex.response");
+  private final LongAdder coalesced = MetricsRegistry.counter("dccex.coalesced");
+  private final LongAdder timeouts = MetricsRegistry.counter("dccex.timeouts");
+
+  DccExCommandPipeline(String name, MessageWriter writer, long timeoutMillis) {
+    this(name, writer, Integer.getInteger("dccex.max.inflight", 4), timeoutMillis);
+  }
+
+  DccExCommandPipeline(String name, MessageWriter writer, int maxInFlight, long timeoutMillis) {
+    this.name = name;
+    this.writer = writer;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.timeoutNanos = timeoutMillis * 1_000_000L;
+  }
+
+  synchronized void start() {
+    if (!running) {
+      running = true;
+      writerThread = new Thread(this::writeLoop, name + "-WRITER");
+      writerThread.setDaemon(true);
+      writerThread.start();
+    }
+  }
+
+  boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Queue a command.
+   *
+   * @param message the DCC-EX command
+   * @return completes with the response, or with the command itself when no response is expected, once it is written
+   */
+  CompletableFuture<String> submit(String message) {
+    lock.lock();
+    try {
+      if (!running) {
+        return CompletableFuture.failedFuture(new IOException(name + " is not running"));
+      }
+      String cab = getThrottleCab(message);
+      if (cab != null) {
+        Command waiting = queuedThrottles.get(cab);
+        if (waiting != null && !isEmergencyStop(waiting.message)) {
+          //Not yet written, so the newer speed and direction replace it at the tail of the queue
+          queue.remove(waiting);
+          waiting.message = message;
+          queue.add(waiting);
+          coalesced.increment();
+          changed.signal();
+          return waiting.future;
+        }
+      }
+
+      Command command = new Command(message);
+      queue.add(command);
+      if (cab != null) {
+        queuedThrottles.put(cab, command);
+      }
+      changed.signal();
+      return command.future;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Offer a received frame to the commands waiting for a response.
+   *
+   * @param frame a received &lt;...&gt; message
+   * @return true when the frame is the response of a command, false when it is a broadcast for the listeners
+   */
+  boolean onResponse(String frame) {
+    String response = frame.replaceAll("\n", "").replaceAll("\r", "");
+    if (response.length() < 2 || !response.startsWith("<") || !response.endsWith(">")) {
+      return false;
+    }
+    String opcode = response.substring(1, 2);
+
+    Command command = null;
+    lock.lock();
+    try {
+      for (Iterator<Command> it = inFlight.iterator(); it.hasNext();) {
+        Command c = it.next();
+        if (opcode.equals(c.rxOpcode)) {
+          it.remove();
+          command = c;
+          changed.signal();
+          break;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (command == null) {
+      return false;
+    }
+    responseTime.recordSince(command.sentNanos);
+    command.future.complete(response);
+    return true;
+  }
+
+  /**
+   * Stop the writer and fail all waiting commands. The queued commands are written first, when that takes longer than a second they are failed too.
+   */
+  void close() {
+    List<Command> dropped = new ArrayList<>();
+    lock.lock();
+    try {
+      long waitNanos = 1_000_000_000L;
+      while (running && !queue.isEmpty() && waitNanos > 0) {
+        waitNanos = drained.awaitNanos(waitNanos);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      running = false;
+      dropped.addAll(queue);
+      dropped.addAll(inFlight);
+      queue.clear();
+      inFlight.clear();
+      queuedThrottles.clear();
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    for (Command c : dropped) {
+      c.future.completeExceptionally(new CancellationException(name + " closed"));
+    }
+  }
+
+  private void writeLoop() {
+    Logger.trace(Thread.currentThread().getName() + " Started...");
+    while (running) {
+      List<Command> batch = new ArrayList<>();
+      List<Command> expired = new ArrayList<>();
+      lock.lock();
+      try {
+        while (running && batch.isEmpty()) {
+          long now = System.nanoTime();
+          long waitNanos = expire(now, expired);
+          takeBatch(now, batch);
+          if (batch.isEmpty() && expired.isEmpty()) {
+            if (waitNanos > 0) {
+              changed.awaitNanos(waitNanos);
+            } else {
+              changed.await();
+            }
+          } else if (batch.isEmpty()) {
+            break;
+          }
+        }
+      } catch (InterruptedException e) {
+        running = false;
+      } finally {
+        lock.unlock();
+      }
+
+      for (Command c : expired) {
+        timeouts.increment();
+        c.future.completeExceptionally(new TimeoutException("No response on " + c.message));
+      }
+      if (!batch.isEmpty()) {
+        write(batch);
+        lock.lock();
+        try {
+          if (queue.isEmpty()) {
+            drained.signalAll();
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+    }
+    Logger.trace(Thread.currentThread().getName() + " Stopped.");
+  }
+
+  /**
+   * Remove the commands which are waiting longer than the timeout.
+   *
+   * @return nanos until the next waiting command expires or 0 when nothing is waiting
+   */
+  private long expire(long now, List<Command> expired) {
+    long next = 0;
+    for (Iterator<Command> it = inFlight.iterator(); it.hasNext();) {
+      Command c = it.next();
+      long remaining = c.sentNanos + timeoutNanos - now;
+      if (remaining <= 0) {
+        it.remove();
+        expired.add(c);
+      } else if (next == 0 || remaining < next) {
+        next = remaining;
+      }
+    }
+    return next;
+  }
+
+  /**
+   * Take the commands from the head of the queue up to the first command which has to wait for a free in flight slot, so the order is kept.
+   */
+  private void takeBatch(long now, List<Command> batch) {
+    while (!queue.isEmpty()) {
+      Command c = queue.getFirst();
+      if (c.rxOpcode != null) {
+        if (inFlight.size() >= maxInFlight) {
+          return;
+        }
+        c.sentNanos = now;
+        inFlight.add(c);
+      }
+      queue.removeFirst();
+      String cab = getThrottleCab(c.message);
+      if (cab != null) {
+        queuedThrottles.remove(cab, c);
+      }
+      batch.add(c);
+    }
+  }
+
+  private void write(List<Command> batch) {
+    StringBuilder sb = new StringBuilder();
+    for (Command c : batch) {
+      sb.append(c.message);
+    }
+    try {
+      writer.write(sb.toString());
+      for (Command c : batch) {
+        if (c.rxOpcode == null) {
+          c.future.complete(c.message);
+        }
+      }
+    } catch (IOException e) {
+      Logger.error("Can't send " + sb + ". Cause: " + e.getMessage());
+      lock.lock();
+      try {
+        inFlight.removeAll(batch);
+      } finally {
+        lock.unlock();
+      }
+      for (Command c : batch) {
+        c.future.completeExceptionally(e);
+      }
+    }
+  }
+
+  /**
+   * @return the cab of a &lt;t cab speed dir&gt; throttle command, or null for any other command
+   */
+  static String getThrottleCab(String message) {
+    if (message.length() < 4 || message.charAt(1) != 't' || message.charAt(2) != ' ') {
+      return null;
+    }
+    String[] args = message.substring(3, message.length() - 1).trim().split("\\s+");
+    return args.length == 3 ? args[0] : null;
+  }
+
+  /**
+   * @return true when the message is a &lt;t cab -1 dir&gt; emergency stop
+   */
+  static boolean isEmergencyStop(String message) {
+    if (getThrottleCab(message) == null) {
+      return false;
+    }
+    String[] args = message.substring(3, message.length() - 1).trim().split("\\s+");
+    return "-1".equals(args[1]);
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.dccex.connection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import jcs.commandStation.net.FrameDecoder;
+
+/**
+ * Cuts the DCC-EX byte stream in &lt;...&gt; messages.<br>
+ * A message ends with a &gt; at the end of a line, so a &gt; inside a diagnostic text does not end the message.
+ * Everything outside a message, like line ends, is skipped.
+ */
+class DccExFrameDecoder implements FrameDecoder<String> {
+
+  @Override
+  public String decode(ByteBuffer buffer) {
+    while (buffer.hasRemaining() && buffer.get(buffer.position()) != '<') {
+      buffer.get();
+    }
+    if (!buffer.hasRemaining()) {
+      return null;
+    }
+
+    int start = buffer.position();
+    for (int i = start + 1; i < buffer.limit() - 1; i++) {
+      if (buffer.get(i) == '>') {
+        byte next = buffer.get(i + 1);
+        if (next == '\n' || next == '\r' || next == '<') {
+          byte[] bytes = new byte[i + 1 - start];
+          buffer.get(bytes);
+          return new String(bytes, StandardCharsets.UTF_8);
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void reset() {
+  }
+}
@@ -25,14 +25,21 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import jcs.commandStation.dccex.DccExConnection;
 import static jcs.commandStation.dccex.DccExConnection.MESSAGE_DELIMITER;
 import jcs.commandStation.dccex.DccExMessage;
 import jcs.commandStation.dccex.DccExMessageFactory;
 import jcs.commandStation.events.ConnectionEvent;
+import jcs.commandStation.net.TransportStatistics;
 import org.tinylog.Logger;
 
 /**
+ * Serial Connection to a DCC-EX command station.<br>
+ * The commands go through the DccExCommandPipeline, the serial listener hands the responses to it.
  *
  * @author frans
  */
@@ -45,7 +52,7 @@ class DccExSerialConnection implements DccExConnection {
   private boolean debug = false;
 
   private final List<DccExMessageListener> dccExListeners;
-  private ResponseCallback responseCallback;
+  private final DccExCommandPipeline pipeline;
   private static final long TIMEOUT = 6000L;
 
   private final List<DccExMessage> startupMessages;
@@ -55,16 +62,14 @@ class DccExSerialConnection implements DccExConnection {
     debug = System.getProperty("message.debug", "false").equalsIgnoreCase("true");
     dccExListeners = new ArrayList<>();
     startupMessages = new ArrayList<>();
+    pipeline = new DccExCommandPipeline("DCC-EX-SERIAL", this::write, TIMEOUT);
 
     obtainSerialPort(portName);
   }
 
-  private void pause(long millis) {
-    try {
-      Thread.sleep(millis);
-    } catch (InterruptedException e) {
-      Logger.trace(e.getMessage());
-    }
+  private void write(String messages) throws IOException {
+    writer.write(messages);
+    writer.flush();
   }
 
   private void obtainSerialPort(String portName) {
@@ -82,6 +87,9 @@ class DccExSerialConnection implements DccExConnection {
 
       DccExSerialPortListener listener = new DccExSerialPortListener(this);
       commPort.addDataListener(listener);
+      if (portOpen) {
+        pipeline.start();
+      }
 
       Logger.trace("Manufacturer: " + commPort.getManufacturer() + " ProductId: " + commPort.getProductID());
 
@@ -91,49 +99,38 @@ class DccExSerialConnection implements DccExConnection {
   }
 
   @Override
-  public synchronized String sendMessage(String message) {
-    String response = message;
-    String rxOpcode = DccExMessageFactory.getResponseOpcodeFor(message);
-    if (rxOpcode != null) {
-      this.responseCallback = new ResponseCallback(message);
+  public String sendMessage(String message) {
+    CompletableFuture<String> future = submit(message);
+    if (DccExMessageFactory.getResponseOpcodeFor(message) == null) {
+      //No response, the command is pipelined
+      return message;
     }
+
+    long start = System.currentTimeMillis();
+    String response = message;
     try {
-      writer.write(message);
-      writer.flush();
+      response = future.get(TIMEOUT, TimeUnit.MILLISECONDS);
       if (debug) {
-        Logger.trace("TX: " + message);
-      }
-    } catch (IOException ex) {
-      Logger.error(ex);
-    }
-
-    if (responseCallback != null) {
-      long now = System.currentTimeMillis();
-      long start = now;
-      long timeout = now + TIMEOUT;
-
-      //Wait for the response
-      boolean responseComplete = responseCallback.isResponseComplete();
-      while (!responseComplete && now < timeout) {
-        pause(10);
-        responseComplete = responseCallback.isResponseComplete();
-        now = System.currentTimeMillis();
+        Logger.trace("Got Response in " + (System.currentTimeMillis() - start) + " ms: " + response);
       }
-
-      response = responseCallback.getResponse();
+    } catch (TimeoutException | ExecutionException ex) {
       if (debug) {
-        if (responseComplete) {
-          Logger.trace("Got Response in " + (now - start) + " ms: " + response);
-        } else {
-          Logger.trace("No Response for " + message + " in " + (now - start) + " ms");
-        }
+        Logger.trace("No Response for " + message + " in " + (System.currentTimeMillis() - start) + " ms");
       }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
     }
-
-    responseCallback = null;
     return response;
   }
 
+  @Override
+  public CompletableFuture<String> submit(String message) {
+    if (debug) {
+      Logger.trace("TX: " + message);
+    }
+    return pipeline.submit(message);
+  }
+
   private void messageReceived(DccExMessage dccExMessage) {
     if (dccExListeners.isEmpty()) {
       startupMessages.add(dccExMessage);
@@ -152,6 +149,11 @@ class DccExSerialConnection implements DccExConnection {
     return portOpen;
   }
 
+  @Override
+  public TransportStatistics getTransportStatistics() {
+    return null;
+  }
+
   private void disconnected() {
     try {
       Logger.trace("Port " + commPort.getSystemPortName() + " is Disconnected");
@@ -170,6 +172,7 @@ class DccExSerialConnection implements DccExConnection {
 
   @Override
   public void close() throws Exception {
+    pipeline.close();
     dccExListeners.clear();
     startupMessages.clear();
     portOpen = false;
@@ -227,11 +230,8 @@ class DccExSerialConnection implements DccExConnection {
         case SerialPort.LISTENING_EVENT_DATA_RECEIVED -> {
           byte[] message = event.getReceivedData();
 
-          if (responseCallback != null && responseCallback.isSubscribedfor(message)) {
-            //a "synchroneous" response
-            responseCallback.setResponse(message);
-          } else {
-            //a "asynchroneous" response
+          //A response completes the waiting command, everything else is an "asynchroneous" message
+          if (!pipeline.onResponse(new String(message))) {
             DccExMessage ddcExm = new DccExMessage(message);
             dccExSerialConnection.messageReceived(ddcExm);
           }
@@ -240,39 +240,4 @@ class DccExSerialConnection implements DccExConnection {
     }
   }
 
-  private class ResponseCallback {
-
-    private final String tx;
-    private final String rxOpcode;
-    private String rx;
-
-    ResponseCallback(final String tx) {
-      this.tx = tx;
-      this.rxOpcode = DccExMessageFactory.getResponseOpcodeFor(tx);
-    }
-
-    boolean isSubscribedfor(final byte[] rx) {
-      String response = new String(rx).replaceAll("\n", "").replaceAll("\r", "");
-      String opcode = response.substring(1, 2);
-
-      return opcode.equals(rxOpcode);
-    }
-
-    void setResponse(byte[] rx) {
-      this.rx = new String(rx).replaceAll("\n", "").replaceAll("\r", "");
-    }
-
-    String getResponse() {
-      if (this.rx != null) {
-        return this.rx;
-      } else {
-        return tx;
-      }
-    }
-
-    boolean isResponseComplete() {
-      return rx != null && !rx.isBlank() && rx.startsWith("<") && rx.endsWith(">");
-    }
-  }
-
 }
@@ -15,33 +15,33 @@
  */
 package jcs.commandStation.dccex.connection;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.net.InetAddress;
-import java.net.Socket;
-import java.net.SocketException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import jcs.commandStation.dccex.DccExConnection;
 import jcs.commandStation.dccex.DccExMessage;
 import jcs.commandStation.dccex.DccExMessageFactory;
 import jcs.commandStation.events.ConnectionEvent;
+import jcs.commandStation.net.TcpTransport;
+import jcs.commandStation.net.TransportListener;
+import jcs.commandStation.net.TransportStatistics;
 import org.tinylog.Logger;
 
 /**
+ * TCP Connection to a DCC-EX command station.<br>
+ * The socket is handled by the shared TcpTransport, which cuts the stream in &lt;...&gt; messages. The commands go through the DccExCommandPipeline.
  *
  * @author Frans Jacobs
  */
 class DccExTCPConnection implements DccExConnection {
 
   private final InetAddress dccExAddress;
-  private Socket clientSocket;
-  private Writer writer;
-  private ResponseCallback responseCallback;
-
-  private ClientMessageReceiver messageReceiver;
+  private TcpTransport<String> transport;
+  private final DccExCommandPipeline pipeline;
+  private DccExMessageListener messageListener;
 
   private boolean debug = false;
   private static final long TIMEOUT = 3000L;
@@ -49,115 +49,80 @@ class DccExTCPConnection implements DccExConnection {
   DccExTCPConnection(InetAddress csAddress) {
     dccExAddress = csAddress;
     debug = System.getProperty("message.debug", "false").equalsIgnoreCase("true");
+    pipeline = new DccExCommandPipeline("DCC-EX-TCP", messages -> transport.write(messages), TIMEOUT);
     checkConnection();
+    if (transport != null) {
+      pipeline.start();
+    }
   }
 
   private void checkConnection() {
     try {
-      if (clientSocket == null || !clientSocket.isConnected()) {
-        clientSocket = new Socket(dccExAddress, DEFAULT_NETWORK_PORT);
-        clientSocket.setKeepAlive(true);
-        clientSocket.setTcpNoDelay(true);
-        writer = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-        messageReceiver = new ClientMessageReceiver(clientSocket);
-        messageReceiver.setDaemon(true);
-        messageReceiver.start();
+      if (transport == null || !transport.isConnected()) {
+        transport = new TcpTransport<>("DCC-EX", dccExAddress, DEFAULT_NETWORK_PORT, new DccExFrameDecoder(), new DccExFrameListener());
+        transport.connect();
       }
     } catch (IOException ex) {
-      this.clientSocket = null;
+      this.transport = null;
       Logger.error("Can't (re)connect with DCC-EX " + dccExAddress.getHostAddress() + ". Cause: " + ex.getMessage());
       Logger.trace(ex);
     }
   }
 
   private void disconnect() {
-    this.messageReceiver.quit();
-    //wait until the messageReceiver has shut down
-    pause(50);
-
-    if (writer != null) {
-      try {
-        writer.close();
-      } catch (IOException ex) {
-        Logger.error("Can't close output. Cause: " + ex.getMessage());
-        Logger.trace(ex);
-      }
-    }
-    if (clientSocket != null) {
-      try {
-        clientSocket.close();
-      } catch (IOException ex) {
-        Logger.error("Can't close socket. Cause: " + ex.getMessage());
-        Logger.trace(ex);
-      }
+    pipeline.close();
+    if (transport != null) {
+      transport.close();
     }
   }
 
   @Override
   public void setMessageListener(DccExMessageListener messageListener) {
-    if (messageReceiver != null) {
-      this.messageReceiver.setMessageListener(messageListener);
-    }
-  }
-
-  private void pause(long millis) {
-    try {
-      Thread.sleep(millis);
-    } catch (InterruptedException e) {
-      Logger.trace(e.getMessage());
-    }
+    this.messageListener = messageListener;
   }
 
   @Override
-  public synchronized String sendMessage(String message) {
-    String response = message;
-    String rxOpcode = DccExMessageFactory.getResponseOpcodeFor(message);
-    if (rxOpcode != null) {
-      this.responseCallback = new ResponseCallback(message);
+  public String sendMessage(String message) {
+    CompletableFuture<String> future = submit(message);
+    if (DccExMessageFactory.getResponseOpcodeFor(message) == null) {
+      //No response, the command is pipelined
+      return message;
     }
 
+    long start = System.nanoTime();
+    String response = message;
     try {
-      writer.write(message);
-      writer.flush();
+      response = future.get(TIMEOUT, TimeUnit.MILLISECONDS);
+      long elapsed = System.nanoTime() - start;
+      transport.recordLatency(elapsed);
       if (debug) {
-        Logger.trace("TX:" + message);
+        Logger.trace("Got Response in " + (elapsed / 1_000_000) + " ms");
       }
-
-    } catch (IOException ex) {
-      Logger.error(ex);
-      String msg = "Host " + dccExAddress.getHostName();
-      ConnectionEvent de = new ConnectionEvent(msg, false, false);
-
-      messageReceiver.messageListener.onDisconnect(de);
-      messageReceiver.quit();
-    }
-    if (responseCallback != null) {
-      long now = System.currentTimeMillis();
-      long start = now;
-      long timeout = now + TIMEOUT;
-
-      //Wait for the response
-      boolean responseComplete = responseCallback.isResponseComplete();
-      while (!responseComplete && now < timeout) {
-        pause(10);
-        responseComplete = responseCallback.isResponseComplete();
-        now = System.currentTimeMillis();
+    } catch (TimeoutException | ExecutionException ex) {
+      if (transport != null) {
+        transport.recordTimeout();
       }
-
-      response = responseCallback.getResponse();
       if (debug) {
-        if (responseComplete) {
-          Logger.trace("Got Response in " + (now - start) + " ms");
-        } else {
-          Logger.trace("No Response for " + message + " in " + (now - start) + " ms");
-        }
+        Logger.trace("No Response for " + message + " in " + ((System.nanoTime() - start) / 1_000_000) + " ms");
       }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
     }
-
-    responseCallback = null;
     return response;
   }
 
+  @Override
+  public CompletableFuture<String> submit(String message) {
+    if (transport == null) {
+      Logger.error("Cannot send " + message + ", not connected.");
+      return CompletableFuture.failedFuture(new IOException("Not connected"));
+    }
+    if (debug) {
+      Logger.trace("TX:" + message);
+    }
+    return pipeline.submit(message);
+  }
+
   @Override
   public void close() throws Exception {
     disconnect();
@@ -165,107 +130,38 @@ class DccExTCPConnection implements DccExConnection {
 
   @Override
   public boolean isConnected() {
-    return this.messageReceiver != null && this.messageReceiver.isRunning();
+    return transport != null && transport.isConnected();
   }
 
-  private class ClientMessageReceiver extends Thread {
-
-    private boolean quit = true;
-    private BufferedReader reader;
-    private DccExMessageListener messageListener;
-
-    public ClientMessageReceiver(Socket socket) {
-      try {
-        reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-      } catch (IOException ex) {
-        Logger.error(ex);
-      }
-    }
-
-    synchronized void quit() {
-      this.quit = true;
-    }
-
-    synchronized boolean isRunning() {
-      return !this.quit;
-    }
+  @Override
+  public TransportStatistics getTransportStatistics() {
+    return transport != null ? transport.getStatistics() : null;
+  }
 
-    void setMessageListener(DccExMessageListener messageListener) {
-      this.messageListener = messageListener;
-    }
+  private class DccExFrameListener implements TransportListener<String> {
 
     @Override
-    public void run() {
-      this.quit = false;
-      this.setName("DCC-EX-RX");
-
-      Logger.trace("Started listening on port " + clientSocket.getLocalPort() + " ...");
-
-      while (isRunning()) {
-        try {
-          String message = reader.readLine();
-
-          if (responseCallback != null && responseCallback.isSubscribedfor(message)) {
-            //a "synchroneous" response
-            responseCallback.setResponse(message);
-          } else {
-            //a "asynchroneous" response
-            DccExMessage msg = new DccExMessage(message);
-            this.messageListener.onMessage(msg);
-          }
-        } catch (SocketException se) {
-          Logger.error(se.getMessage());
-          String msg = "Host " + dccExAddress.getHostName();
-          ConnectionEvent de = new ConnectionEvent(msg, false, false);
-          this.messageListener.onDisconnect(de);
-          quit();
-        } catch (IOException ioe) {
-          Logger.error(ioe);
-        }
+    public void onFrame(String message, int bufferedBytes) {
+      //A response completes the waiting command, everything else is an "asynchroneous" message
+      if (!pipeline.onResponse(message) && messageListener != null) {
+        DccExMessage msg = new DccExMessage(message);
+        messageListener.onMessage(msg);
       }
-
-      Logger.debug("Stop receiving");
-      try {
-        reader.close();
-      } catch (IOException ex) {
-        Logger.error(ex);
-      }
-    }
-  }
-
-  private class ResponseCallback {
-
-    private final String tx;
-    private final String rxOpcode;
-    private String rx;
-
-    ResponseCallback(final String tx) {
-      this.tx = tx;
-      this.rxOpcode = DccExMessageFactory.getResponseOpcodeFor(tx);
-      Logger.trace("Expected response opcode: " + this.rxOpcode);
     }
 
-    boolean isSubscribedfor(final String response) {
-      String rsp = response.replaceAll("\n", "").replaceAll("\r", "");
-      String opcode = rsp.substring(1, 2);
-      return opcode.equals(rxOpcode);
-    }
-
-    void setResponse(String response) {
-      this.rx = response.replaceAll("\n", "").replaceAll("\r", "");
+    @Override
+    public void onReconnect() {
+      Logger.trace("Reconnected with DCC-EX " + dccExAddress.getHostAddress());
     }
 
-    String getResponse() {
-      if (this.rx != null) {
-        return this.rx;
-      } else {
-        return tx;
+    @Override
+    public void onDisconnect() {
+      if (messageListener != null) {
+        String msg = "Host " + dccExAddress.getHostName();
+        ConnectionEvent de = new ConnectionEvent(msg, false, false);
+        messageListener.onDisconnect(de);
       }
     }
-
-    boolean isResponseComplete() {
-      return rx != null && !rx.isBlank() && rx.startsWith("<") && rx.endsWith(">");
-    }
   }
 
 }
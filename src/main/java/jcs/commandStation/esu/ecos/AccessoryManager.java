@@ -44,46 +44,30 @@ class AccessoryManager implements AccessoryEventListener {
 
   private void parse(EcosMessage message) {
     boolean event = message.isEvent();
-    Map<String, Object> values = message.getValueMap();
     int objectId = message.getObjectId();
-    if (ID == objectId) {
-      //An Accessory list
-      for (Object o : values.values()) {
-        AccessoryBean accessory;
-        if (o instanceof Map) {
-          Map<String, Object> vm = (Map<String, Object>) o;
-          accessory = parseValues(vm, event);
-        } else {
-          //Details
-          accessory = parseValues(values, event);
-        }
-        if (accessory.getId() != null) {
+    if (ID == objectId || (objectId >= 20000 && objectId <= 29999)) {
+      EcosReplyParser values = message.getReplyParser();
+      int sizeValue = -1;
+      while (values.next()) {
+        if (values.isObject(ID)) {
+          sizeValue = values.getInt(Ecos.SIZE, sizeValue);
+        } else if (values.getId() != null) {
+          //An Accessory list or the details of an accessory
+          AccessoryBean accessory = parseValues(values, event);
           accessories.put(accessory.getId(), accessory);
         }
       }
 
-      if (values.containsKey(Ecos.SIZE)) {
-        size = Integer.parseInt(values.get(Ecos.SIZE).toString());
-      } else {
-        size = accessories.size();
-      }
-
-    } else if (objectId >= 20000 && objectId <= 29999) {
-      //Details
-      AccessoryBean accessory = parseValues(values, event);
-      if (accessory.getId() != null) {
-        accessories.put(accessory.getId(), accessory);
+      if (ID == objectId) {
+        size = sizeValue >= 0 ? sizeValue : accessories.size();
       }
     } else {
       Logger.warn("Unkown object Id:" + objectId);
     }
   }
 
-  private AccessoryBean parseValues(Map<String, Object> values, boolean event) {
-    String id = null;
-    if (values.containsKey(Ecos.ID) && values.get(Ecos.ID) != null) {
-      id = values.get(Ecos.ID).toString();
-    }
+  private AccessoryBean parseValues(EcosReplyParser values, boolean event) {
+    String id = values.getId();
     AccessoryBean accessory;
     if (accessories.containsKey(id)) {
       accessory = accessories.get(id);
@@ -97,29 +81,28 @@ class AccessoryManager implements AccessoryEventListener {
       }
     }
 
-    if (values.containsKey(Ecos.NAME1)) {
-      String name1 = values.get(Ecos.NAME1).toString();
+    if (values.has(Ecos.NAME1)) {
+      String name1 = values.get(Ecos.NAME1);
       accessory.setName(name1);
     }
 
-    if (values.containsKey(Ecos.NAME2)) {
-      String name2 = values.get(Ecos.NAME2).toString();
+    if (values.has(Ecos.NAME2)) {
+      String name2 = values.get(Ecos.NAME2);
       //accessory.setName(name);
     }
 
-    if (values.containsKey(Ecos.NAME3)) {
-      String name3 = values.get(Ecos.NAME3).toString();
+    if (values.has(Ecos.NAME3)) {
+      String name3 = values.get(Ecos.NAME3);
       //accessory.setName(name);
     }
 
-    if (values.containsKey(Ecos.ADDRESS)) {
-      String addr = values.get(Ecos.ADDRESS).toString();
-      int address = Integer.parseInt(addr);
+    if (values.has(Ecos.ADDRESS)) {
+      int address = values.getInt(Ecos.ADDRESS, 0);
       accessory.setAddress(address);
     }
 
-    if (values.containsKey(Ecos.PROTOCOL)) {
-      String protocol = values.get(Ecos.PROTOCOL).toString();
+    if (values.has(Ecos.PROTOCOL)) {
+      String protocol = values.get(Ecos.PROTOCOL);
       if (null == protocol) {
         Logger.warn("Unknown protocol " + protocol);
       } else {
@@ -136,19 +119,19 @@ class AccessoryManager implements AccessoryEventListener {
       }
     }
 
-    if (values.containsKey(Ecos.MODE)) {
-      String mode = values.get(Ecos.MODE).toString();
+    if (values.has(Ecos.MODE)) {
+      String mode = values.get(Ecos.MODE);
       //accessory.setName(name);
     }
 
-    if (values.containsKey(Ecos.SYMBOL)) {
-      String symbol = values.get(Ecos.SYMBOL).toString();
+    if (values.has(Ecos.SYMBOL)) {
+      String symbol = values.get(Ecos.SYMBOL);
       accessory.setIcon(symbol);
       accessory.setType(deriveType(symbol));
     }
 
-    if (values.containsKey(Ecos.STATE)) {
-      String state = values.get(Ecos.STATE).toString();
+    if (values.has(Ecos.STATE)) {
+      String state = values.get(Ecos.STATE);
 
       AccessoryBean.AccessoryValue value;
       switch (state) {
@@ -185,8 +168,8 @@ class AccessoryManager implements AccessoryEventListener {
 
     }
 
-    if (values.containsKey(Ecos.ADDREXT)) {
-      String addrext = values.get(Ecos.ADDREXT).toString();
+    if (values.has(Ecos.ADDREXT)) {
+      String addrext = values.get(Ecos.ADDREXT);
       Integer address = accessory.getAddress();
       Integer address2 = null;
       if (addrext != null) {
@@ -218,29 +201,27 @@ class AccessoryManager implements AccessoryEventListener {
       accessory.setAddress2(address2);
     }
 
-    if (values.containsKey(Ecos.DURATION)) {
-      String dur = values.get(Ecos.DURATION).toString();
-      int switchTime = Integer.parseInt(dur);
+    if (values.has(Ecos.DURATION)) {
+      int switchTime = values.getInt(Ecos.DURATION, 0);
       accessory.setSwitchTime(switchTime);
     }
 
-    if (values.containsKey(Ecos.GATES)) {
-      String gts = values.get(Ecos.GATES).toString();
-      int states = Integer.parseInt(gts);
+    if (values.has(Ecos.GATES)) {
+      int states = values.getInt(Ecos.GATES, 0);
       accessory.setStates(states);
     }
 
-    if (values.containsKey(Ecos.VARIANT)) {
-      String var = values.get(Ecos.VARIANT).toString();
+    if (values.has(Ecos.VARIANT)) {
+      String var = values.get(Ecos.VARIANT);
     }
 
-    if (values.containsKey(Ecos.POSITION)) {
-      String var = values.get(Ecos.POSITION).toString();
+    if (values.has(Ecos.POSITION)) {
+      String var = values.get(Ecos.POSITION);
       //accessory.setName(name);
     }
 
-    if (values.containsKey(Ecos.SWITCHING)) {
-      String var = values.get(Ecos.SWITCHING).toString();
+    if (values.has(Ecos.SWITCHING)) {
+      String var = values.get(Ecos.SWITCHING);
       //an accessory has changed value
       AccessoryBean.AccessoryValue value;
 //      switch (var) {
@@ -373,34 +354,21 @@ class AccessoryManager implements AccessoryEventListener {
   }
 
   String updateManager(EcosMessage event) {
-    Map<String, Object> values = event.getValueMap();
+    EcosReplyParser values = event.getReplyParser();
 
     String addedId = null;
     boolean accessoryAdded = false;
     int newSize = 0;
-    for (String key : values.keySet()) {
-      Object o = values.get(key);
-      if (o instanceof Map) {
-        Map<String, Object> vm = (Map<String, Object>) o;
-        if (vm.containsKey(Ecos.ID)) {
-          addedId = vm.get(Ecos.ID).toString();
-        }
-
-        Logger.trace(vm.keySet());
-        Logger.trace(vm.values());
-        //id, appended11 size]
-
-        if (vm.containsKey("appended11 size")) {
-          String s = vm.get("appended11 size").toString();
-          newSize = Integer.parseInt(s);
-        }
-
-      } else {
-        if (Ecos.MSG.equals(key)) {
-          accessoryAdded = "LIST_CHANGED".equals(o);
-        } else if (Ecos.SIZE.equals(key) && o != null) {
-          size = Integer.parseInt(o.toString());
+    while (values.next()) {
+      if (values.isObject(ID)) {
+        if (values.has(Ecos.MSG)) {
+          accessoryAdded = "LIST_CHANGED".equals(values.get(Ecos.MSG));
         }
+        size = values.getInt(Ecos.SIZE, size);
+      } else if (values.getId() != null) {
+        //<EVENT 11>11 msg[LIST_CHANGED]20006 appended11 size[7]<END 0 (OK)>
+        addedId = values.getId();
+        newSize = values.getInt("appended11 size", newSize);
       }
     }
 
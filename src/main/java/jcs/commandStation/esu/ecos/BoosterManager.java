@@ -64,48 +64,31 @@ public class BoosterManager { //implements ConnectionEventListener {
     //Logger.trace(message.getMessage());
     //Logger.trace(message.getResponse());
 
-    Map<String, Object> values = message.getValueMap();
     int objectId = message.getObjectId();
 
-    if (ID == objectId) {
-      //A Booster list
-      for (Object o : values.values()) {
-        EcosBooster ecosBooster = null;
-        if (o != null && o instanceof Map) {
-          Map<String, Object> vm = (Map<String, Object>) o;
-          ecosBooster = parseValues(vm);
-        } else if (o != null) {
-          //Details
-          ecosBooster = parseValues(values);
-        }
-
-        if (ecosBooster != null && ecosBooster.getId() != null) {
+    if (ID == objectId || (objectId >= 65000 && objectId < 65999)) {
+      EcosReplyParser values = message.getReplyParser();
+      int sizeValue = -1;
+      while (values.next()) {
+        if (values.isObject(ID)) {
+          sizeValue = values.getInt(Ecos.SIZE, sizeValue);
+        } else if (values.getId() != null) {
+          //A Booster list or the details of a booster
+          EcosBooster ecosBooster = parseValues(values);
           boosters.put(ecosBooster.getId(), ecosBooster);
         }
       }
 
-      if (values.containsKey(Ecos.SIZE)) {
-        this.size = Integer.valueOf(values.get(Ecos.SIZE).toString());
-      } else {
-        this.size = boosters.size();
-      }
-
-    } else if (objectId >= 65000 && objectId < 65999) {
-      //Details
-      EcosBooster ecosBooster = parseValues(values);
-      if (ecosBooster.getId() != null) {
-        boosters.put(ecosBooster.getId(), ecosBooster);
+      if (ID == objectId) {
+        this.size = sizeValue >= 0 ? sizeValue : boosters.size();
       }
     } else {
       Logger.warn("Unkown object Id:" + objectId);
     }
   }
 
-  private EcosBooster parseValues(Map<String, Object> values) {
-    String id = null;
-    if (values.containsKey(Ecos.ID) && values.get(Ecos.ID) != null) {
-      id = values.get(Ecos.ID).toString();
-    }
+  private EcosBooster parseValues(EcosReplyParser values) {
+    String id = values.getId();
     EcosBooster ecosBooster;
     if (boosters.containsKey(id)) {
       ecosBooster = boosters.get(id);
@@ -114,38 +97,37 @@ public class BoosterManager { //implements ConnectionEventListener {
       ecosBooster.setId(id);
     }
 
-    if (values.containsKey(Ecos.NAME)) {
-      String name = values.get(Ecos.NAME).toString();
+    if (values.has(Ecos.NAME)) {
+      String name = values.get(Ecos.NAME);
       ecosBooster.setName(name);
     }
 
-    if (values.containsKey(Ecos.STATUS)) {
-      String status = values.get(Ecos.STATUS).toString();
+    if (values.has(Ecos.STATUS)) {
+      String status = values.get(Ecos.STATUS);
       ecosBooster.setStatus(status);
     }
 
-    if (values.containsKey(Ecos.LIMIT)) {
-      String lim = values.get(Ecos.LIMIT).toString();
-      int limit = Integer.parseInt(lim);
+    if (values.has(Ecos.LIMIT)) {
+      int limit = values.getInt(Ecos.LIMIT, 0);
       ecosBooster.setLimit(limit);
     }
 
-    if (values.containsKey(Ecos.VOLTAGE)) {
-      String v = values.get(Ecos.VOLTAGE).toString();
+    if (values.has(Ecos.VOLTAGE)) {
+      String v = values.get(Ecos.VOLTAGE);
       double voltage = Double.parseDouble(v);
       //Volts is in mV so 
       voltage = voltage / 1000;
       ecosBooster.setVoltage(voltage);
     }
 
-    if (values.containsKey(Ecos.TEMPERATURE)) {
-      String t = values.get(Ecos.TEMPERATURE).toString();
+    if (values.has(Ecos.TEMPERATURE)) {
+      String t = values.get(Ecos.TEMPERATURE);
       double temperature = Double.parseDouble(t);
       ecosBooster.setTemperature(temperature);
     }
 
-    if (values.containsKey(Ecos.CURRENT)) {
-      String c = values.get(Ecos.CURRENT).toString();
+    if (values.has(Ecos.CURRENT)) {
+      String c = values.get(Ecos.CURRENT);
       //split the string
       String[] currents = c.split(",");
       double avg = Double.parseDouble(currents[0]);
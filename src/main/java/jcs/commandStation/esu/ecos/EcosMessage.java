@@ -67,15 +67,18 @@ public class EcosMessage implements Ecos {
   }
 
   public boolean isResponseComplete() {
-    return response != null && isComplete(response.toString());
+    if (response == null) {
+      return false;
+    }
+    return (EcosReplyParser.startsWith(response, REPLY) || EcosReplyParser.startsWith(response, EVENT)) && response.indexOf(END) >= 0;
   }
 
   public boolean isEvent() {
-    return response != null && response.toString().startsWith(EVENT);
+    return response != null && EcosReplyParser.startsWith(response, EVENT);
   }
 
   public String getId() {
-    if (response != null && response.toString().startsWith(REPLY)) {
+    if (response != null && EcosReplyParser.startsWith(response, REPLY)) {
       int idStart = response.indexOf("(") + 1;
       int idEnd = response.indexOf(",");
       if (idEnd == -1) {
@@ -84,15 +87,11 @@ public class EcosMessage implements Ecos {
       int idLen = idEnd - idStart;
       String id = response.substring(idStart, idLen + idStart);
       return id;
-    } else if (response != null && response.toString().startsWith(EVENT)) {
-      int eventEnd = response.indexOf(">") + 1;
-      String replaceString = response.substring(0, eventEnd);
-      String content = response.toString().replaceFirst(replaceString, "");
-      int idStart = 0;
-      int idEnd = content.indexOf(" ");
-      int idLen = idEnd - idStart;
+    } else if (response != null && EcosReplyParser.startsWith(response, EVENT)) {
+      int idStart = response.indexOf(">") + 1;
+      int idEnd = response.indexOf(" ", idStart);
 
-      String id = content.substring(idStart, idLen + idStart);
+      String id = response.substring(idStart, idEnd);
       id = id.strip();
       return id;
     } else {
@@ -125,14 +124,14 @@ public class EcosMessage implements Ecos {
   }
 
   public String getCommand() {
-    if (response != null && response.toString().startsWith(REPLY)) {
+    if (response != null && EcosReplyParser.startsWith(response, REPLY)) {
       int cmdStart = response.indexOf(" ") + 1;
       int cmdEnd = response.indexOf("(");
       int cmdLen = cmdEnd - cmdStart;
 
       String cmd = response.substring(cmdStart, cmdLen + cmdStart);
       return cmd;
-    } else if (response != null && response.toString().startsWith(EVENT)) {
+    } else if (response != null && EcosReplyParser.startsWith(response, EVENT)) {
       return null;
     } else {
       //use the message
@@ -146,7 +145,7 @@ public class EcosMessage implements Ecos {
   }
 
   public int getErrorCode() {
-    if (response != null && (response.toString().startsWith(REPLY) || response.toString().startsWith(EVENT))) {
+    if (response != null && (EcosReplyParser.startsWith(response, REPLY) || EcosReplyParser.startsWith(response, EVENT))) {
       int endStart = response.indexOf(END);
       String endTag = response.substring(endStart);
 
@@ -162,7 +161,7 @@ public class EcosMessage implements Ecos {
   }
 
   public String getResponseCode() {
-    if (response != null && (response.toString().startsWith(REPLY) || response.toString().startsWith(EVENT))) {
+    if (response != null && (EcosReplyParser.startsWith(response, REPLY) || EcosReplyParser.startsWith(response, EVENT))) {
       int endStart = response.indexOf(END);
       String endTag = response.substring(endStart);
 
@@ -248,69 +247,37 @@ public class EcosMessage implements Ecos {
           //The response consist out of a (dynamic) id with a one or more values.
           //values are within "[ ]".
           //Format is id<sp>attribute1[attibute1 value]id<sp>attribute2[attribute2 value].....
-          String replacement = "]";
-          content = content.replace(replacement, "]\n");
-          //Logger.info("C->" + content);
-
-          String[] lines = content.split("\n");
-          String dId = null;
-
-          for (String line : lines) {
-            //line = line.strip();
-            int idStart = 0;
-            int idEnd = line.indexOf(" ");
-            //boolean mapInMap = false;
-            if (idEnd - idStart > 0) {
-              //There is a ID
-              dId = line.substring(idStart, idEnd);
-              String iid = getId();
-
-              if (dId.equals(iid)) {
+          EcosReplyParser parser = getReplyParser();
+          while (parser.next()) {
+            String dId = parser.getId();
+            Map<String, Object> vm;
+            if (dId == null || dId.equals(id)) {
+              vm = valueMap;
+              if (dId != null) {
                 valueMap.put("id", dId);
-              } else {
-                //Multiple ID's in reply, add a map
-                Map<String, Object> vm = new HashMap<>();
+              }
+            } else {
+              //Multiple ID's in reply, add a map
+              vm = (Map<String, Object>) valueMap.get(dId);
+              if (vm == null) {
+                vm = new HashMap<>();
                 vm.put("id", dId);
                 valueMap.put(dId, vm);
               }
             }
 
-            int valKeyStart = idEnd + 1;
-            int valStart = line.indexOf("[");
-            int valEnd = line.indexOf("]");
-            int valKeyLen = valStart - valKeyStart;
-            int valLen = valEnd - valStart;
-
-            if (valStart >= 0 && valEnd > 0 && !"".equals(line)) {
-              String valKey = line.substring(valKeyStart, valKeyLen + valKeyStart);
-              String value = line.substring(valStart + 1, valLen + valStart);
-              //replace \"
-              value = value.replaceAll("\"", "");
-              if (dId != null && !dId.equals(getId())) {
-                Map<String, String> vm = (Map<String, String>) valueMap.get(dId);
-                vm.put(valKey, value);
-                valueMap.put(dId, vm);
-              } else {
-                if (Ecos.FUNCTION.equals(valKey) || Ecos.FUNCTION_DESC.equals(valKey)) {
-                  //Functions; create an array [F #, value],[F#,value]...
-                  StringBuilder fb = new StringBuilder();
-                  if (valueMap.containsKey(valKey)) {
-                    fb.append(valueMap.get(valKey).toString());
-                  }
-                  String fVal = "[" + value + "]";
-                  if (fb.length() > 0) {
-                    fb.append(",");
-                  }
-                  fb.append(fVal);
-                  valueMap.put(valKey, fb.toString());
-                } else {
-                  valueMap.put(valKey, value);
+            for (int i = 0; i < parser.size(); i++) {
+              String valKey = parser.getKey(i);
+              String value = parser.getValue(i);
+              if (vm == valueMap && value != null && (Ecos.FUNCTION.equals(valKey) || Ecos.FUNCTION_DESC.equals(valKey))) {
+                //Functions; create an array [F #, value],[F#,value]...
+                String fVal = "[" + value + "]";
+                if (valueMap.containsKey(valKey)) {
+                  fVal = valueMap.get(valKey) + "," + fVal;
                 }
-              }
-            } else {
-              String key = line.substring(valKeyStart);
-              if (!"".equals(key)) {
-                valueMap.put(key, null);
+                valueMap.put(valKey, fVal);
+              } else {
+                vm.put(valKey, value);
               }
             }
           }
@@ -322,6 +289,16 @@ public class EcosMessage implements Ecos {
     }
   }
 
+  /**
+   * The reader walks over the objects in the response without copying the response.<br>
+   * Preferred over getValueMap when processing (large) replies and events.
+   *
+   * @return a reader positioned before the first object in the response
+   */
+  public EcosReplyParser getReplyParser() {
+    return new EcosReplyParser(response);
+  }
+
   public boolean isValid() {
     return getErrorCode() == 0;
   }
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.esu.ecos;
+
+import java.util.Arrays;
+
+/**
+ * Single pass reader of the content of an ECoS reply or event.<br>
+ * The content is a sequence of entries formatted as <code>id key[value]</code>. The id may be omitted, the entry then belongs to
+ * the previous id. A key can contain spaces, like <code>appended11 size</code>, and a quoted value can contain brackets.<br>
+ * Consecutive entries with the same id are presented as one object; call next() to advance to the next object. The reader does
+ * not copy the reply, it only keeps the offsets of the keys and values, so only the values which are read are turned into
+ * Strings. The offsets are reused for every object, so an object is only valid until the next call of next().
+ */
+public final class EcosReplyParser {
+
+  private static final int INITIAL_ENTRIES = 16;
+
+  private CharSequence reply;
+  private int position;
+  private int end;
+
+  private int idStart;
+  private int idEnd;
+
+  private int count;
+  private int[] keyStart;
+  private int[] keyEnd;
+  private int[] valueStart;
+  private int[] valueEnd;
+
+  public EcosReplyParser() {
+    keyStart = new int[INITIAL_ENTRIES];
+    keyEnd = new int[INITIAL_ENTRIES];
+    valueStart = new int[INITIAL_ENTRIES];
+    valueEnd = new int[INITIAL_ENTRIES];
+  }
+
+  public EcosReplyParser(CharSequence reply) {
+    this();
+    reset(reply);
+  }
+
+  /**
+   * Start reading a (new) reply. The header of a reply or event is skipped.
+   *
+   * @param reply the complete reply or event
+   * @return this reader
+   */
+  public EcosReplyParser reset(CharSequence reply) {
+    this.reply = reply;
+    this.end = reply.length();
+    this.count = 0;
+    this.idStart = -1;
+    this.idEnd = -1;
+
+    if (startsWith(reply, EcosMessage.REPLY)) {
+      int headerEnd = indexOf(reply, ")>", 0);
+      position = headerEnd < 0 ? end : headerEnd + 2;
+    } else if (startsWith(reply, EcosMessage.EVENT)) {
+      int headerEnd = indexOf(reply, ">", 0);
+      position = headerEnd < 0 ? end : headerEnd + 1;
+    } else {
+      position = 0;
+    }
+    return this;
+  }
+
+  /**
+   * Advance to the next object in the reply.
+   *
+   * @return true when there is an object, false when the end of the content is reached
+   */
+  public boolean next() {
+    count = 0;
+    while (true) {
+      int p = position;
+      while (p < end && isLineBreak(reply.charAt(p))) {
+        p++;
+      }
+      //The content ends with the END tag, a '<' can only occur within a quoted value
+      if (p >= end || reply.charAt(p) == '<') {
+        position = end;
+        return count > 0;
+      }
+
+      int entryIdStart = -1;
+      int entryIdEnd = -1;
+      int kStart;
+      if (reply.charAt(p) == ' ') {
+        //No id, the entry belongs to the previous id
+        kStart = p;
+        while (kStart < end && reply.charAt(kStart) == ' ') {
+          kStart++;
+        }
+      } else {
+        int t = p;
+        while (t < end && !isTokenEnd(reply.charAt(t))) {
+          t++;
+        }
+        if (t < end && reply.charAt(t) == ' ') {
+          entryIdStart = p;
+          entryIdEnd = t;
+          kStart = t + 1;
+        } else {
+          kStart = p;
+        }
+      }
+
+      if (entryIdStart >= 0) {
+        if (count > 0 && !isSameId(entryIdStart, entryIdEnd)) {
+          //Entry of the next object
+          position = p;
+          return true;
+        }
+        idStart = entryIdStart;
+        idEnd = entryIdEnd;
+      }
+
+      int k = kStart;
+      while (k < end) {
+        char c = reply.charAt(k);
+        if (c == '[' || c == '<' || isLineBreak(c)) {
+          break;
+        }
+        k++;
+      }
+
+      if (k < end && reply.charAt(k) == '[') {
+        int v = k + 1;
+        boolean quoted = false;
+        while (v < end) {
+          char c = reply.charAt(v);
+          if (c == '"') {
+            quoted = !quoted;
+          } else if (c == ']' && !quoted) {
+            break;
+          }
+          v++;
+        }
+        add(kStart, k, k + 1, v);
+        position = Math.min(v + 1, end);
+      } else {
+        int ke = k;
+        while (ke > kStart && reply.charAt(ke - 1) == ' ') {
+          ke--;
+        }
+        if (ke > kStart) {
+          add(kStart, ke, -1, -1);
+        }
+        position = k;
+      }
+    }
+  }
+
+  private void add(int kStart, int kEnd, int vStart, int vEnd) {
+    if (count == keyStart.length) {
+      int capacity = count * 2;
+      keyStart = Arrays.copyOf(keyStart, capacity);
+      keyEnd = Arrays.copyOf(keyEnd, capacity);
+      valueStart = Arrays.copyOf(valueStart, capacity);
+      valueEnd = Arrays.copyOf(valueEnd, capacity);
+    }
+    keyStart[count] = kStart;
+    keyEnd[count] = kEnd;
+    valueStart[count] = vStart;
+    valueEnd[count] = vEnd;
+    count++;
+  }
+
+  private boolean isSameId(int start, int stop) {
+    if (idStart < 0 || stop - start != idEnd - idStart) {
+      return false;
+    }
+    for (int i = 0; i < stop - start; i++) {
+      if (reply.charAt(start + i) != reply.charAt(idStart + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the id of the current object or null when the entries have no id
+   */
+  public String getId() {
+    if (idStart < 0) {
+      return null;
+    }
+    return reply.subSequence(idStart, idEnd).toString();
+  }
+
+  /**
+   * @return the numeric id of the current object or -1 when the object has no (numeric) id
+   */
+  public int getObjectId() {
+    if (idStart < 0 || idStart == idEnd) {
+      return -1;
+    }
+    int id = 0;
+    for (int i = idStart; i < idEnd; i++) {
+      char c = reply.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      id = id * 10 + (c - '0');
+    }
+    return id;
+  }
+
+  public boolean isObject(int objectId) {
+    return idStart >= 0 && getObjectId() == objectId;
+  }
+
+  /**
+   * @return the number of entries of the current object
+   */
+  public int size() {
+    return count;
+  }
+
+  public String getKey(int index) {
+    return reply.subSequence(keyStart[index], keyEnd[index]).toString();
+  }
+
+  public boolean isKey(int index, String key) {
+    return regionEquals(keyStart[index], keyEnd[index], key);
+  }
+
+  /**
+   * @param index of the entry
+   * @return the value without quotes or null when the entry has no value
+   */
+  public String getValue(int index) {
+    if (valueStart[index] < 0) {
+      return null;
+    }
+    return text(valueStart[index], valueEnd[index]);
+  }
+
+  public boolean has(String key) {
+    return indexOfKey(key) >= 0;
+  }
+
+  /**
+   * @param key the key
+   * @return the value of the (last) entry with the key, or null when the key is not present or has no value
+   */
+  public String get(String key) {
+    int index = indexOfKey(key);
+    return index < 0 ? null : getValue(index);
+  }
+
+  /**
+   * Reads a decimal or (0x prefixed) hexadecimal value without creating a String.
+   *
+   * @param key the key
+   * @param defaultValue returned when the key is not present or has no value
+   * @return the value
+   */
+  public int getInt(String key, int defaultValue) {
+    int index = indexOfKey(key);
+    if (index < 0 || valueStart[index] < 0) {
+      return defaultValue;
+    }
+    int from = valueStart[index];
+    int to = valueEnd[index];
+    int radix = 10;
+    if (to - from > 2 && reply.charAt(from) == '0' && (reply.charAt(from + 1) == 'x' || reply.charAt(from + 1) == 'X')) {
+      radix = 16;
+      from += 2;
+    }
+    boolean negative = from < to && reply.charAt(from) == '-';
+    if (negative) {
+      from++;
+    }
+    if (from == to) {
+      throw new NumberFormatException("For input string: \"" + getValue(index) + "\"");
+    }
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = Character.digit(reply.charAt(i), radix);
+      if (digit < 0) {
+        throw new NumberFormatException("For input string: \"" + getValue(index) + "\"");
+      }
+      value = value * radix + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  private int indexOfKey(String key) {
+    for (int i = count - 1; i >= 0; i--) {
+      if (regionEquals(keyStart[i], keyEnd[i], key)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean regionEquals(int start, int stop, String s) {
+    if (stop - start != s.length()) {
+      return false;
+    }
+    for (int i = 0; i < s.length(); i++) {
+      if (reply.charAt(start + i) != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String text(int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (reply.charAt(i) == '"') {
+        StringBuilder sb = new StringBuilder(to - from);
+        for (int j = from; j < to; j++) {
+          char c = reply.charAt(j);
+          if (c != '"') {
+            sb.append(c);
+          }
+        }
+        return sb.toString();
+      }
+    }
+    return reply.subSequence(from, to).toString();
+  }
+
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
+
+  private static boolean isTokenEnd(char c) {
+    return c == ' ' || c == '[' || c == '<' || isLineBreak(c);
+  }
+
+  static boolean startsWith(CharSequence s, String prefix) {
+    if (s.length() < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (s.charAt(i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static int indexOf(CharSequence s, String str, int fromIndex) {
+    int last = s.length() - str.length();
+    for (int i = fromIndex; i <= last; i++) {
+      int j = 0;
+      while (j < str.length() && s.charAt(i + j) == str.charAt(j)) {
+        j++;
+      }
+      if (j == str.length()) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
@@ -53,8 +53,13 @@ class FeedbackManager {
 
     List<SensorEvent> changedSensors;
     boolean event = message.isEvent();
-    Map<String, Object> values = message.getValueMap();
     int objectId = message.getObjectId();
+    EcosReplyParser values = message.getReplyParser();
+    //The entries of the requested object
+    boolean found = false;
+    while (!found && values.next()) {
+      found = values.isObject(objectId);
+    }
 
     if (ID != objectId) {
       FeedbackModule feedbackModule;
@@ -75,19 +80,15 @@ class FeedbackManager {
         }
       }
 
-      if (values.containsKey(Ecos.PORTS)) {
-        String vports = values.get(Ecos.PORTS).toString();
-        if (vports != null) {
-          int ports = Integer.parseInt(vports);
-          feedbackModule.setPortCount(ports);
-        }
+      if (found && values.has(Ecos.PORTS)) {
+        feedbackModule.setPortCount(values.getInt(Ecos.PORTS, S88_DEFAULT_PORT_COUNT));
       } else {
         feedbackModule.setPortCount(S88_DEFAULT_PORT_COUNT);
       }
 
-      if (values.containsKey(Ecos.STATE)) {
-        String state = values.get(Ecos.STATE).toString();
-        updatePorts(state, feedbackModule);
+      if (found && values.has(Ecos.STATE)) {
+        //state[0x1] is hexadecimal
+        updatePorts(values.getInt(Ecos.STATE, 0), feedbackModule);
       }
       modules.put(objectId, feedbackModule);
 
@@ -113,8 +114,8 @@ class FeedbackManager {
       }
     } else {
       if (Ecos.FEEDBACK_MANAGER_ID == objectId) {
-        if (values.containsKey(Ecos.SIZE)) {
-          int size = Integer.parseInt(values.get(Ecos.SIZE).toString());
+        if (found && values.has(Ecos.SIZE)) {
+          int size = values.getInt(Ecos.SIZE, 0);
           for (int i = 0; i < size; i++) {
             FeedbackModule fbmb = new FeedbackModule();
             fbmb.setAddressOffset(0);
@@ -149,13 +150,7 @@ class FeedbackManager {
     return modules.size();
   }
 
-  void updatePorts(String state, FeedbackModule s88) {
-    String val = state.replace("0x", "");
-    int l = 4 - val.length();
-    for (int i = 0; i < l; i++) {
-      val = "0" + val;
-    }
-
+  void updatePorts(int stateVal, FeedbackModule s88) {
     int[] ports = s88.getPorts();
     int[] prevPorts = s88.getPrevPorts();
 
@@ -167,11 +162,8 @@ class FeedbackManager {
     System.arraycopy(ports, 0, prevPorts, 0, ports.length);
     s88.setPrevPorts(prevPorts);
 
-    int stateVal = Integer.parseInt(val, 16);
-    //Logger.trace(state + " -> " + stateVal);
     for (int i = 0; i < ports.length; i++) {
-      int m = ((int) Math.pow(2, i));
-      int pv = (stateVal & m) > 0 ? 1 : 0;
+      int pv = (stateVal & (1 << i)) != 0 ? 1 : 0;
       ports[i] = pv;
     }
     s88.setPorts(ports);
@@ -51,37 +51,25 @@ class LocomotiveManager implements LocomotiveSpeedEventListener, LocomotiveDirec
 
   private void parse(EcosMessage message) {
     boolean event = message.isEvent();
-
-    Map<String, Object> values = message.getValueMap();
     int objectId = message.getObjectId();
-    if (ID == objectId) {
-      //A locomotive list?
-      for (Object o : values.values()) {
-        LocomotiveBean loco;
-        if (o instanceof Map) {
-          Map<String, Object> vm = (Map<String, Object>) o;
-          loco = parseValues(vm, event);
-        } else {
-          //Details
-          loco = parseValues(values, event);
-        }
-        if (loco.getId() != null) {
-          locomotives.put(loco.getId(), loco);
-        }
-      }
 
-      if (values.containsKey(Ecos.SIZE)) {
-        size = Integer.parseInt(values.get(Ecos.SIZE).toString());
-      } else {
-        size = locomotives.size();
-      }
-    } else if (values.containsKey(Ecos.ID) && objectId == Integer.parseInt((String) values.get(Ecos.ID))) {
-      //Single locomotive
-      LocomotiveBean loco = parseValues(values, event);
-      if (loco.getId() != null) {
+    EcosReplyParser values = message.getReplyParser();
+    int sizeValue = -1;
+    boolean parsed = false;
+    while (values.next()) {
+      if (values.isObject(ID)) {
+        sizeValue = values.getInt(Ecos.SIZE, sizeValue);
+      } else if (values.getId() != null && (ID == objectId || values.isObject(objectId))) {
+        //A locomotive list or a single locomotive
+        LocomotiveBean loco = parseValues(values, event);
         locomotives.put(loco.getId(), loco);
+        parsed = true;
       }
-    } else {
+    }
+
+    if (ID == objectId) {
+      size = sizeValue >= 0 ? sizeValue : locomotives.size();
+    } else if (!parsed) {
       Logger.warn("Unknown id: " + message.getMessage());
       Logger.warn("Unknown response: " + message.getResponse());
     }
@@ -99,11 +87,8 @@ class LocomotiveManager implements LocomotiveSpeedEventListener, LocomotiveDirec
     return locomotives;
   }
 
-  private LocomotiveBean parseValues(Map<String, Object> values, boolean event) {
-    Long id = null;
-    if (values.containsKey(Ecos.ID) && values.get(Ecos.ID) != null) {
-      id = Long.valueOf(values.get(Ecos.ID).toString());
-    }
+  private LocomotiveBean parseValues(EcosReplyParser values, boolean event) {
+    Long id = Long.valueOf(values.getObjectId());
     LocomotiveBean locomotive;
     if (locomotives.containsKey(id)) {
       locomotive = this.locomotives.get(id);
@@ -120,28 +105,23 @@ class LocomotiveManager implements LocomotiveSpeedEventListener, LocomotiveDirec
         locomotive.setCommandStationId(EcosMessage.ECOS_COMMANDSTATION_ID);
       }
     }
-    if (values.containsKey(Ecos.NAME)) {
-      String name = values.get(Ecos.NAME).toString();
+    if (values.has(Ecos.NAME)) {
+      String name = values.get(Ecos.NAME);
       locomotive.setName(name);
     }
 
-    if (values.containsKey(Ecos.ADDRESS)) {
-      int addr = Integer.parseInt(values.get(Ecos.ADDRESS).toString());
+    if (values.has(Ecos.ADDRESS)) {
+      int addr = values.getInt(Ecos.ADDRESS, 0);
       locomotive.setAddress(addr);
     }
 
-    if (values.containsKey(Ecos.PROTOCOL)) {
-      DecoderType dt = DecoderType.get(values.get(Ecos.PROTOCOL).toString());
+    if (values.has(Ecos.PROTOCOL)) {
+      DecoderType dt = DecoderType.get(values.get(Ecos.PROTOCOL));
       locomotive.setDecoderTypeString(dt.getDecoderType());
     }
 
-    if (values.containsKey(Ecos.PROTOCOL)) {
-      DecoderType dt = DecoderType.get(values.get(Ecos.PROTOCOL).toString());
-      locomotive.setDecoderTypeString(dt.getDecoderType());
-    }
-
-    if (values.containsKey(Ecos.DIRECTION)) {
-      Direction d = Direction.getDirectionEcos(values.get(Ecos.DIRECTION).toString());
+    if (values.has(Ecos.DIRECTION)) {
+      Direction d = Direction.getDirectionEcos(values.get(Ecos.DIRECTION));
       locomotive.setDirection(d);
 
       if (event) {
@@ -152,8 +132,8 @@ class LocomotiveManager implements LocomotiveSpeedEventListener, LocomotiveDirec
       }
     }
 
-    if (values.containsKey(Ecos.SPEED)) {
-      int velocity = Integer.parseInt(values.get(Ecos.SPEED).toString());
+    if (values.has(Ecos.SPEED)) {
+      int velocity = values.getInt(Ecos.SPEED, 0);
       //Scale the speed 0 == 0 1024 is max Ecos max = 128 so time 8
       velocity = velocity * 8;
       locomotive.setVelocity(velocity);
@@ -166,13 +146,13 @@ class LocomotiveManager implements LocomotiveSpeedEventListener, LocomotiveDirec
       }
     }
 
-    if (values.containsKey(Ecos.SPEEDSTEP)) {
-      int speedstep = Integer.parseInt(values.get(Ecos.SPEEDSTEP).toString());
+    if (values.has(Ecos.SPEEDSTEP)) {
+      int speedstep = values.getInt(Ecos.SPEEDSTEP, 0);
       //TODO?
     }
 
-    if (values.containsKey(Ecos.LOCODESC)) {
-      String locodesc = values.get(Ecos.LOCODESC).toString();
+    if (values.has(Ecos.LOCODESC)) {
+      String locodesc = values.get(Ecos.LOCODESC);
       //TODO: parse the locodesc for the image;
       //locodesc[LOCO_TYPE_E,IMAGE_TYPE_USER,2]
 
@@ -180,102 +160,82 @@ class LocomotiveManager implements LocomotiveSpeedEventListener, LocomotiveDirec
       locomotive.setIcon(locodesc);
     }
 
-    if (values.containsKey(Ecos.ACTIVE)) {
-      boolean active = "1".equals(values.get(Ecos.ACTIVE).toString());
+    if (values.has(Ecos.ACTIVE)) {
+      boolean active = "1".equals(values.get(Ecos.ACTIVE));
       locomotive.setActive(active);
     }
 
-    if (values.containsKey(Ecos.FUNCTION)) {
-      String func = values.get(Ecos.FUNCTION).toString();
-      Map<Integer, FunctionBean> functions = parseFunctions(func, locomotive);
-
-      //Need to obtain the changed functions....
-      if (event) {
-        if (this.ecosCommandStation != null) {
-          for (FunctionBean chFb : functions.values()) {
-            if (chFb.getLocomotiveId() == null) {
-              chFb.setLocomotiveId(locomotive.getId());
-            }
-            LocomotiveFunctionEvent functionEvent = new LocomotiveFunctionEvent(chFb);
-            ecosCommandStation.fireFunctionEventListeners(functionEvent);
-          }
+    //Every function is a separate entry; func[number,value] and funcdesc[number,type(,moment)]
+    for (int i = 0; i < values.size(); i++) {
+      if (values.isKey(i, Ecos.FUNCTION)) {
+        FunctionBean fb = parseFunction(values.getValue(i), locomotive);
+        if (event && ecosCommandStation != null) {
+          LocomotiveFunctionEvent functionEvent = new LocomotiveFunctionEvent(fb);
+          ecosCommandStation.fireFunctionEventListeners(functionEvent);
         }
+      } else if (values.isKey(i, Ecos.FUNCTION_DESC)) {
+        parseFunctionDetails(values.getValue(i), locomotive);
       }
     }
 
-    if (values.containsKey(Ecos.FUNCTION_DESC)) {
-      String funcdesc = values.get(Ecos.FUNCTION_DESC).toString();
-      Map<Integer, FunctionBean> functions = parseFunctionDetails(funcdesc, locomotive);
-    }
-
     //Tachomax is needed for display so use the full scale for now
     locomotive.setTachoMax(126);
 
     return locomotive;
   }
 
-  private Map<Integer, FunctionBean> parseFunctions(String func, LocomotiveBean locomotive) {
+  private FunctionBean parseFunction(String func, LocomotiveBean locomotive) {
     Long locomotiveId = locomotive.getId();
-
     Map<Integer, FunctionBean> functions = locomotive.getFunctions();
 
-    String[] fa = func.replace("[", "").split("],");
-
-    for (String fs : fa) {
-      String fu[] = fs.replace("]", "").split(",");
-      int number = Integer.parseInt(fu[0]);
-      int value = Integer.parseInt(fu[1]);
+    //1001 func[0,1]
+    int sep = func.indexOf(',');
+    int number = Integer.parseInt(func, 0, sep, 10);
+    int value = Integer.parseInt(func, sep + 1, func.length(), 10);
 
-      FunctionBean fb;
-      if (functions.containsKey(number)) {
-        fb = functions.get(number);
-      } else {
-        fb = new FunctionBean(locomotiveId, number, value);
-        fb.setLocomotiveId(locomotiveId);
-      }
-
-      //Put a default as it can't be null
+    FunctionBean fb;
+    if (functions.containsKey(number)) {
+      fb = functions.get(number);
+      fb.setValue(value);
+    } else {
+      fb = new FunctionBean(locomotiveId, number, value);
+      //Put a default as it can't be null, the funcdesc has the real type
       int functionType = 50 + number;
       fb.setFunctionType(functionType);
-      functions.put(number, fb);
     }
-
-    return functions;
+    fb.setLocomotiveId(locomotiveId);
+    functions.put(number, fb);
+    return fb;
   }
 
-  private Map<Integer, FunctionBean> parseFunctionDetails(String funcdesc, LocomotiveBean locomotive) {
+  private void parseFunctionDetails(String funcdesc, LocomotiveBean locomotive) {
     Long locomotiveId = locomotive.getId();
-
     Map<Integer, FunctionBean> functions = locomotive.getFunctions();
 
-    ////1001 funcdesc[1,7]1001 funcdesc[2,37,momentary]
-    String[] fa = funcdesc.replace("[", "").split("],");
-
-    for (String fs : fa) {
-      String fu[] = fs.replace("]", "").split(",");
-      int number = Integer.parseInt(fu[0]);
-      int functionType = Integer.parseInt(fu[1]);
-      boolean momentary = false;
-      if (fu.length == 3) {
-        String m = fu[2];
-        momentary = "moment".equals(m);
-      }
-
-      FunctionBean fb;
-      if (functions.containsKey(number)) {
-        fb = functions.get(number);
-      } else {
-        fb = new FunctionBean(locomotiveId, number, 0);
-        fb.setLocomotiveId(locomotiveId);
-      }
+    //1001 funcdesc[1,7]1001 funcdesc[2,37,moment]
+    int sep = funcdesc.indexOf(',');
+    int typeEnd = funcdesc.indexOf(',', sep + 1);
+    boolean momentary = false;
+    if (typeEnd < 0) {
+      typeEnd = funcdesc.length();
+    } else {
+      momentary = funcdesc.length() == typeEnd + 7 && funcdesc.endsWith("moment");
+    }
+    int number = Integer.parseInt(funcdesc, 0, sep, 10);
+    int functionType = Integer.parseInt(funcdesc, sep + 1, typeEnd, 10);
 
-      fb.setFunctionType(functionType);
-      fb.setMomentary(momentary);
-      fb.setIcon(functionType + "");
-      functions.put(number, fb);
+    FunctionBean fb;
+    if (functions.containsKey(number)) {
+      fb = functions.get(number);
+    } else {
+      fb = new FunctionBean(locomotiveId, number, 0);
+      fb.setLocomotiveId(locomotiveId);
     }
 
-    return functions;
+    fb.setFunctionType(functionType);
+    fb.setMomentary(momentary);
+    fb.setIcon(functionType + "");
+    functions.put(number, fb);
   }
 
   @Override
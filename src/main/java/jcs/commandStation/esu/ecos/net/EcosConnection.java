@@ -18,6 +18,7 @@ package jcs.commandStation.esu.ecos.net;
 import java.net.InetAddress;
 import java.util.concurrent.BlockingQueue;
 import jcs.commandStation.esu.ecos.EcosMessage;
+import jcs.commandStation.net.TransportStatistics;
 
 /**
  *
@@ -37,4 +38,9 @@ public interface EcosConnection extends AutoCloseable {
 
   InetAddress getControllerAddress();
 
+  /**
+   * @return the traffic and latency of the network connection, or null when there is no network connection
+   */
+  TransportStatistics getTransportStatistics();
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.esu.ecos.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import jcs.commandStation.esu.ecos.EcosMessage;
+import jcs.commandStation.net.FrameDecoder;
+import org.tinylog.Logger;
+
+/**
+ * Cuts the ECoS byte stream in &lt;REPLY ...&gt; and &lt;EVENT ...&gt; blocks.<br>
+ * A block is complete with its &lt;END ...&gt; line. The lines of a block are joined with a newline, as the ECoS message
+ * parsing expects. Lines outside a block are skipped.
+ */
+class EcosFrameDecoder implements FrameDecoder<String> {
+
+  @Override
+  public String decode(ByteBuffer buffer) {
+    while (true) {
+      int start = buffer.position();
+      int eol = indexOf(buffer, start, '\n');
+      if (eol < 0) {
+        return null;
+      }
+
+      String first = line(buffer, start, eol);
+      if (!first.startsWith(EcosMessage.REPLY) && !first.startsWith(EcosMessage.EVENT)) {
+        if (!first.isBlank()) {
+          Logger.trace("Ignoring unrecognised line: " + first);
+        }
+        buffer.position(eol + 1);
+        continue;
+      }
+
+      StringBuilder sb = new StringBuilder();
+      sb.append(first).append("\n");
+      boolean complete = first.contains(EcosMessage.END);
+      int lineStart = eol + 1;
+      while (!complete) {
+        eol = indexOf(buffer, lineStart, '\n');
+        if (eol < 0) {
+          //Wait for the rest of the block
+          return null;
+        }
+        String line = line(buffer, lineStart, eol);
+        sb.append(line).append("\n");
+        complete = line.startsWith(EcosMessage.END);
+        lineStart = eol + 1;
+      }
+
+      buffer.position(lineStart);
+      return sb.toString();
+    }
+  }
+
+  @Override
+  public void reset() {
+  }
+
+  private static int indexOf(ByteBuffer buffer, int from, char c) {
+    for (int i = from; i < buffer.limit(); i++) {
+      if (buffer.get(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static String line(ByteBuffer buffer, int start, int eol) {
+    int end = eol;
+    if (end > start && buffer.get(end - 1) == '\r') {
+      end--;
+    }
+    byte[] bytes = new byte[end - start];
+    buffer.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
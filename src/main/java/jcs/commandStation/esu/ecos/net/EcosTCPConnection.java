@@ -15,15 +15,12 @@
  */
 package jcs.commandStation.esu.ecos.net;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.net.InetAddress;
-import java.net.Socket;
-import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.LinkedTransferQueue;
@@ -31,17 +28,22 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TransferQueue;
 import jcs.commandStation.esu.ecos.EcosMessage;
 import jcs.commandStation.events.ConnectionEvent;
+import jcs.commandStation.net.TcpTransport;
+import jcs.commandStation.net.TransportListener;
+import jcs.commandStation.net.TransportStatistics;
 import org.tinylog.Logger;
 
 /**
  *
- * TCP Connection to the ESU ECoS
+ * TCP Connection to the ESU ECoS<br>
+ * The socket is handled by the shared TcpTransport, which cuts the stream in REPLY and EVENT blocks.<br>
+ * The ECoS forgets the view subscriptions of a connection, so they are requested again after a reconnect.
  */
 class EcosTCPConnection implements EcosConnection {
 
   private final InetAddress ecosAddress;
-  private Socket clientSocket;
-  private Writer writer;
+  private TcpTransport<String> transport;
+  private EcosMessageListener messageListener;
 
   // Carries completed REPLY messages from the receiver thread to sendMessage().
   private final TransferQueue<String> replyQueue;
@@ -49,7 +51,9 @@ class EcosTCPConnection implements EcosConnection {
   // Carries completed EVENT messages to the application event consumer.
   private final BlockingQueue<EcosMessage> eventQueue;
 
-  private ClientMessageReceiver messageReceiver;
+  // The request(...) commands which are still active, replayed after a reconnect
+  private final Set<String> subscriptions;
+
   private static final boolean DEBUG = Boolean.getBoolean("message.debug");
   private static final long TIMEOUT_MS = 500L;
 
@@ -57,108 +61,71 @@ class EcosTCPConnection implements EcosConnection {
     ecosAddress = address;
     replyQueue = new LinkedTransferQueue<>();
     eventQueue = new LinkedBlockingQueue<>();
+    subscriptions = new LinkedHashSet<>();
     checkConnection();
   }
 
   private void checkConnection() {
     try {
-      if (clientSocket == null || !clientSocket.isConnected()
-              || (messageReceiver != null && !messageReceiver.isRunning())) {
-
-        clientSocket = new Socket(ecosAddress, DEFAULT_NETWORK_PORT);
-        clientSocket.setKeepAlive(true);
-        clientSocket.setTcpNoDelay(true);
-        writer = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream()));
-
-        messageReceiver = new ClientMessageReceiver(clientSocket);
-        messageReceiver.start();
+      if (transport == null || !transport.isConnected()) {
+        transport = new TcpTransport<>("ECoS", ecosAddress, DEFAULT_NETWORK_PORT, new EcosFrameDecoder(), new EcosFrameListener());
+        transport.connect();
       }
     } catch (IOException ex) {
-      clientSocket = null;
-      writer = null;
-      messageReceiver = null;
+      transport = null;
       Logger.error("Can't (re)connect with ESU Ecos " + ecosAddress.getHostAddress() + ". Cause: " + ex.getMessage());
       //Logger.trace(ex);
     }
   }
 
   private void disconnect() {
-    if (messageReceiver == null) {
-      return;
-    }
-    messageReceiver.quit();
-
-    try {
-      messageReceiver.join(TIMEOUT_MS * 4);
-    } catch (InterruptedException ex) {
-      Thread.currentThread().interrupt();
-      Logger.warn("Interrupted while waiting for receiver thread to stop.");
-    }
-
-    if (writer != null) {
-      try {
-        writer.close();
-      } catch (IOException ex) {
-        Logger.error("Can't close output. Cause: " + ex.getMessage());
-        Logger.trace(ex);
-      }
-      writer = null;
-    }
-
-    if (clientSocket != null) {
-      try {
-        clientSocket.close();
-      } catch (IOException ex) {
-        Logger.error("Can't close socket. Cause: " + ex.getMessage());
-        Logger.trace(ex);
-      }
-      clientSocket = null;
+    if (transport != null) {
+      transport.close();
+      transport = null;
     }
   }
 
   @Override
   public void setMessageListener(EcosMessageListener messageListener) {
-    if (messageReceiver != null) {
-      this.messageReceiver.setMessageListener(messageListener);
-    }
+    this.messageListener = messageListener;
   }
 
   @Override
   public synchronized EcosMessage sendMessage(EcosMessage message) {
-    if (writer == null || messageReceiver == null) {
+    if (transport == null) {
       Logger.error("Cannot send message — not connected.");
       return message;
     }
 
     try {
-      writer.write(message.getMessage());
-      writer.flush();
+      long start = System.nanoTime();
+      transport.write(message.getMessage());
 
       if (DEBUG) {
         Logger.trace("TX: " + message.getMessage());
       }
 
-      long start = System.currentTimeMillis();
-
       // If no reply arrives in time, reply is null and we log it and move on.
       String reply = replyQueue.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
 
       if (reply == null) {
+        transport.recordTimeout();
         Logger.warn("No reply received for [" + message.getMessage().trim() + "] within " + TIMEOUT_MS + " ms");
       } else {
+        long elapsed = System.nanoTime() - start;
+        transport.recordLatency(elapsed);
         message.addResponse(reply);
         if (DEBUG) {
-          long elapsed = System.currentTimeMillis() - start;
           if (message.isResponseComplete()) {
-            Logger.trace("Reply in " + elapsed + " ms");
+            Logger.trace("Reply in " + (elapsed / 1_000_000) + " ms");
           } else {
-            Logger.trace("Incomplete reply for [" + message.getMessage().trim() + "] in " + elapsed + " ms");
+            Logger.trace("Incomplete reply for [" + message.getMessage().trim() + "] in " + (elapsed / 1_000_000) + " ms");
           }
         }
+        trackSubscription(message.getMessage());
       }
     } catch (IOException ex) {
       Logger.error("I/O error sending message: " + ex.getMessage());
-      notifyDisconnect();
     } catch (InterruptedException ex) {
       Thread.currentThread().interrupt();
       Logger.error("Interrupted while waiting for reply: " + ex.getMessage());
@@ -169,13 +136,39 @@ class EcosTCPConnection implements EcosConnection {
   }
 
   /**
-   * Notifies the registered listener of a disconnection and shuts down the receiver.
+   * Remember the active view and control requests, so they can be replayed on a new connection.
+   */
+  private void trackSubscription(String command) {
+    String cmd = command.replace(" ", "").trim();
+    if (cmd.startsWith("request(")) {
+      subscriptions.add(cmd);
+    } else if (cmd.startsWith("release(")) {
+      String released = cmd.substring("release(".length(), cmd.length() - 1);
+      subscriptions.removeIf(s -> {
+        String requested = s.substring("request(".length(), s.length() - 1);
+        return requested.equals(released) || requested.startsWith(released + ",");
+      });
+    }
+  }
+
+  private void replaySubscriptions() {
+    List<String> commands;
+    synchronized (this) {
+      commands = new ArrayList<>(subscriptions);
+      replyQueue.clear();
+    }
+    Logger.debug("Replaying " + commands.size() + " subscriptions");
+    for (String command : commands) {
+      sendMessage(new EcosMessage(command));
+    }
+  }
+
+  /**
+   * Notifies the registered listener of a disconnection.
    */
   private void notifyDisconnect() {
-    if (messageReceiver != null) {
-      String host = ecosAddress.getHostName();
-      messageReceiver.notifyDisconnect(new ConnectionEvent(host, false, false));
-      messageReceiver.quit();
+    if (messageListener != null) {
+      messageListener.onDisconnect(new ConnectionEvent(ecosAddress.getHostName(), false, false));
     }
   }
 
@@ -186,7 +179,7 @@ class EcosTCPConnection implements EcosConnection {
 
   @Override
   public boolean isConnected() {
-    return messageReceiver != null && messageReceiver.isRunning();
+    return transport != null && transport.isConnected();
   }
 
   @Override
@@ -194,184 +187,57 @@ class EcosTCPConnection implements EcosConnection {
     return eventQueue;
   }
 
+  @Override
+  public TransportStatistics getTransportStatistics() {
+    return transport != null ? transport.getStatistics() : null;
+  }
+
   /**
-   * Listen to replies or events from the ECoS
+   * Routes the replies and events received by the transport.
    */
-  private class ClientMessageReceiver extends Thread {
-
-    private volatile boolean running = false;
+  private class EcosFrameListener implements TransportListener<String> {
 
-    private BufferedReader reader;
-    private EcosMessageListener messageListener;
-
-    ClientMessageReceiver(Socket socket) {
-      super("ECoS-RX");
-      try {
-        reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-      } catch (IOException ex) {
-        Logger.error("Failed to open socket input stream: " + ex.getMessage());
-        Logger.trace(ex);
+    @Override
+    public void onFrame(String rx, int bufferedBytes) {
+      if (DEBUG) {
+        Logger.trace("RX->" + rx);
       }
-    }
-
-    void setMessageListener(EcosMessageListener messageListener) {
-      this.messageListener = messageListener;
-    }
 
-    /**
-     * Signals the run loop to stop and interrupts any blocking I/O.
-     */
-    synchronized void quit() {
-      running = false;
-      interrupt();
       try {
-        if (clientSocket != null && !clientSocket.isClosed()) {
-          clientSocket.shutdownInput();
-        }
-        if (reader != null) {
-          reader.close();
-        }
-      } catch (IOException ex) {
-        Logger.error("Error shutting down receiver input: " + ex.getMessage());
-        Logger.trace(ex);
-      }
-    }
-
-    boolean isRunning() {
-      return running;
-    }
-
-    /**
-     * Routes a disconnect event to the registered listener.
-     */
-    void notifyDisconnect(ConnectionEvent event) {
-      if (messageListener != null) {
-        messageListener.onDisconnect(event);
-      }
-    }
-
-    @Override
-    public void run() {
-      running = true;
-      Logger.trace("Started listening on port " + clientSocket.getLocalPort() + " ...");
-
-      while (running) {
-        try {
-          String rx = reader.readLine();
-
-          if (rx == null) {
-            // null from readLine() means the stream was closed (EOF / shutdownInput).
-            if (running) {
-              Logger.warn("Stream closed unexpectedly — disconnecting.");
-              notifyDisconnect(new ConnectionEvent(ecosAddress.getHostName(), false, false));
-              quit();
-            }
-            break;
+        if (rx.startsWith(EcosMessage.REPLY)) {
+          // --- Synchronous reply to a command sent by this client ---
+          boolean accepted = replyQueue.offer(rx, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+          if (!accepted) {
+            Logger.warn("Reply queue not consumed within timeout — discarding orphaned reply.");
           }
-
+        } else {
+          // --- Unsolicited event from the ECoS ---
+          EcosMessage emsg = new EcosMessage(rx);
           if (DEBUG) {
-            Logger.trace("RX->" + rx);
+            Logger.trace("EVENT complete=" + emsg.isResponseComplete()
+                    + (emsg.getMessage() != null ? " -> " + emsg.getMessage() : "")
+                    + " -> " + emsg.getResponse());
           }
 
-          if (rx.startsWith(EcosMessage.REPLY)) {
-            // --- Synchronous reply to a command sent by this client ---
-            String assembled = assembleMessage(rx);
-            if (assembled != null) {
-              boolean accepted = replyQueue.offer(assembled, TIMEOUT_MS, TimeUnit.MILLISECONDS);
-              if (!accepted) {
-                Logger.warn("Reply queue not consumed within timeout — discarding orphaned reply.");
-              }
-            }
-          } else if (rx.startsWith(EcosMessage.EVENT)) {
-            // --- Unsolicited event from the ECoS ---
-            String assembled = assembleMessage(rx);
-            if (assembled != null) {
-              EcosMessage emsg = new EcosMessage(assembled);
-              if (DEBUG) {
-                Logger.trace("EVENT complete=" + emsg.isResponseComplete()
-                        + (emsg.getMessage() != null ? " -> " + emsg.getMessage() : "")
-                        + " -> " + emsg.getResponse());
-              }
-
-              boolean queued = eventQueue.offer(emsg, TIMEOUT_MS, TimeUnit.MILLISECONDS);
-              if (!queued) {
-                Logger.warn("Event queue full — dropping event: " + emsg.getResponse());
-              }
-            }
-          } else {
-            Logger.trace("Ignoring unrecognised line: " + rx);
-          }
-        } catch (SocketException se) {
-          if (running) {
-            Logger.error("Socket error: " + se.getMessage());
-            notifyDisconnect(new ConnectionEvent(ecosAddress.getHostName(), false, false));
-            quit();
-          }
-        } catch (IOException ex) {
-          if (running) {
-            Logger.error("I/O error in receiver: " + ex.getMessage());
-            Logger.trace(ex);
+          boolean queued = eventQueue.offer(emsg, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+          if (!queued) {
+            Logger.warn("Event queue full — dropping event: " + emsg.getResponse());
           }
-        } catch (InterruptedException ex) {
-          Thread.currentThread().interrupt();
         }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
       }
-
-      closeReader();
-      Logger.debug("Receiver stopped.");
     }
 
-    /**
-     * Reads lines from the socket until the message is complete (contains {@code <END}), reassembling them with newlines preserved as the protocol requires.
-     *
-     * @param firstLine the first line already read from the socket
-     * @return the fully assembled message string, or null if timed out / running
-     */
-    private String assembleMessage(String firstLine) throws IOException, InterruptedException {
-      StringBuilder sb = new StringBuilder();
-      sb.append(firstLine).append("\n");
-
-      boolean complete = EcosMessage.isComplete(firstLine);
-      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
-
-      while (!complete && running) {
-        long now = System.currentTimeMillis();
-        if (now >= deadline) {
-          Logger.warn("Timeout assembling message, partial: " + sb.toString().trim());
-          return null;
-        }
-
-        String rx = reader.readLine();
-
-        if (rx == null) {
-          // Stream closed mid-message.
-          return null;
-        }
-
-        if (DEBUG) {
-          Logger.trace("RX: " + rx);
-        }
-
-        sb.append(rx).append("\n");
-        complete = EcosMessage.isComplete(sb.toString());
-      }
-
-      if (!complete) {
-        return null;  // running was set before message completed
-      }
-
-      return sb.toString();
+    @Override
+    public void onReconnect() {
+      //The replies arrive on the receiver thread, so replay from another thread
+      Thread.ofVirtual().name("ECoS-RESUBSCRIBE").start(EcosTCPConnection.this::replaySubscriptions);
     }
 
-    private void closeReader() {
-      if (reader != null) {
-        try {
-          reader.close();
-        } catch (IOException ex) {
-          Logger.error("Error closing reader: " + ex.getMessage());
-          Logger.trace(ex);
-        }
-      }
+    @Override
+    public void onDisconnect() {
+      notifyDisconnect();
     }
   }
 
@@ -25,6 +25,7 @@ import jcs.commandStation.esu.ecos.EcosMessage;
 import jcs.commandStation.esu.ecos.EcosMessageFactory;
 import jcs.commandStation.events.SensorEvent;
 import jcs.commandStation.VirtualConnection;
+import jcs.commandStation.net.TransportStatistics;
 import jcs.entities.AccessoryBean;
 import jcs.commandStation.entities.FeedbackModule;
 import jcs.entities.FunctionBean;
@@ -453,4 +454,10 @@ class EcosVirtualConnection implements EcosConnection, VirtualConnection {
       Logger.error(ex);
     }
   }
+
+  @Override
+  public TransportStatistics getTransportStatistics() {
+    return null;
+  }
+
 }
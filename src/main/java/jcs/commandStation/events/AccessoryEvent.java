@@ -25,6 +25,9 @@ public class AccessoryEvent {
   private boolean power;
   private Long systemtime;
 
+  //Time stamp in System.nanoTime() of the reception of the event, used for the latency metrics
+  private long receivedNanos = System.nanoTime();
+
   public AccessoryEvent(AccessoryBean accessoryBean) {
     this(accessoryBean, false, null);
   }
@@ -55,6 +58,14 @@ public class AccessoryEvent {
     return power;
   }
 
+  public long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  public void setReceivedNanos(long receivedNanos) {
+    this.receivedNanos = receivedNanos;
+  }
+
   public boolean isEventFor(AccessoryBean accessory) {
     boolean addressEquals = accessoryBean.getAddress().equals(accessory.getAddress());
     boolean idEquals = accessoryBean.getId().equals(accessory.getId());
@@ -26,6 +26,9 @@ public abstract class LocomotiveEvent {
 
   protected LocomotiveBean locomotiveBean;
 
+  //Time stamp in System.nanoTime() of the reception of the event, used for the latency metrics
+  private long receivedNanos = System.nanoTime();
+
   protected LocomotiveEvent(LocomotiveBean locomotiveBean) {
     this.locomotiveBean = locomotiveBean;
   }
@@ -44,6 +47,14 @@ public abstract class LocomotiveEvent {
     this.locomotiveBean = locomotiveBean;
   }
 
+  public long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  public void setReceivedNanos(long receivedNanos) {
+    this.receivedNanos = receivedNanos;
+  }
+
   public boolean isEventFor(LocomotiveBean locomotive) {
     if (locomotive != null) {
       Long id = locomotiveBean.getId();
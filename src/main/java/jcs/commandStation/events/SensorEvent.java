@@ -25,6 +25,9 @@ public class SensorEvent {
   private final SensorBean sensorBean;
   private final boolean newValue;
 
+  //Time stamp in System.nanoTime() of the reception of the event, used for the latency metrics
+  private long receivedNanos = System.nanoTime();
+
   public SensorEvent(SensorBean sensorBean) {
     this(sensorBean, sensorBean != null ? sensorBean.isActive() : false);
   }
@@ -59,6 +62,14 @@ public class SensorEvent {
     return newValue;
   }
 
+  public long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  public void setReceivedNanos(long receivedNanos) {
+    this.receivedNanos = receivedNanos;
+  }
+
   @Override
   public String toString() {
     return "SensorEvent{" + "id=" + sensorBean.getId() + ", active=" + (isActive() ? "1" : "0") + "}";
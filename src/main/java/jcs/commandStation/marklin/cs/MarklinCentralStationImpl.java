@@ -19,6 +19,7 @@ import jcs.commandStation.marklin.cs.can.device.CanDevice;
 import jcs.commandStation.marklin.cs.can.parser.FeedbackEventMessage;
 import java.awt.Image;
 import java.net.InetAddress;
+import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Date;
@@ -27,9 +28,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 import jcs.JCS;
 import jcs.commandStation.AbstractController;
 import jcs.commandStation.AccessoryController;
@@ -80,6 +81,8 @@ import jcs.entities.LocomotiveBean;
 import jcs.entities.LocomotiveBean.Direction;
 import jcs.entities.SensorBean;
 import jcs.util.RunUtil;
+import jcs.util.metrics.LatencyHistogram;
+import jcs.util.metrics.MetricsRegistry;
 import org.tinylog.Logger;
 import jcs.commandStation.marklin.cs.net.CSHTTPConnection;
 import jcs.commandStation.marklin.parser.GeraetParser;
@@ -90,6 +93,7 @@ import jcs.commandStation.marklin.cs.can.parser.OverloadEventParser;
 import jcs.commandStation.marklin.cs.can.parser.SensorStatusQuery;
 import jcs.commandStation.marklin.parser.CanDeviceJSONParser;
 import jcs.util.Ping;
+import jcs.util.QueueDispatcher;
 
 /**
  * Command Station Implementation for Marklin CS-2/3
@@ -652,13 +656,9 @@ public class MarklinCentralStationImpl extends AbstractController implements Dec
 
     if (connection != null) {
       if (eventMessageHandler != null) {
-        eventMessageHandler.quit();
-
-        try {
-          eventMessageHandler.join(2000);
-        } catch (InterruptedException ex) {
-          Thread.currentThread().interrupt();
-
+        //Events which are already received are still handled before the connection is closed
+        if (!eventMessageHandler.shutdown(2000)) {
+          Logger.warn("Event handler did not stop in time");
         }
 
         try {
@@ -894,17 +894,29 @@ public class MarklinCentralStationImpl extends AbstractController implements Dec
   public Image getLocomotiveFunctionImage(String icon) {
     CSHTTPConnection httpCon = CSConnectionFactory.getHTTPConnection();
     if (isCS3()) {
-      if (!FunctionSvgToPngConverter.isSvgCacheLoaded()) {
-        Logger.trace("Loading SVG Cache");
-        String json = httpCon.getFunctionsSvgJSON();
-        FunctionSvgToPngConverter.loadSvgCache(json);
-      }
+      //The images are transcoded in parallel during a synchronization, only one thread loads the SVG's
+      FunctionSvgToPngConverter.loadSvgCacheIfAbsent(httpCon::getFunctionsSvgJSON);
       return FunctionSvgToPngConverter.getFunctionImageCS3(icon);
     } else {
       return httpCon.getFunctionImageCS2(icon);
     }
   }
 
+  @Override
+  public URI getLocomotiveImageURI(String icon) {
+    return CSConnectionFactory.getHTTPConnection().getLocomotiveImageURI(icon);
+  }
+
+  @Override
+  public URI getLocomotiveFunctionImageURI(String icon) {
+    if (isCS3()) {
+      //CS3 function images are SVG's which are transcoded locally
+      return null;
+    } else {
+      return CSConnectionFactory.getHTTPConnection().getFunctionImageURI(icon);
+    }
+  }
+
   private void notifyPowerEventListeners(final PowerEvent powerEvent) {
     power = powerEvent.isPower();
     for (PowerEventListener listener : powerEventListeners) {
@@ -960,183 +972,129 @@ public class MarklinCentralStationImpl extends AbstractController implements Dec
   }
 
   /**
-   * Handle Event Message, which are unsolicited messages from the CS.
+   * Handle Event Message, which are unsolicited messages from the CS.<br>
+   * The handler blocks on the event queue and routes each message by its CAN command. Messages without a route are ignored.
    */
-  private class EventMessageHandler extends Thread {
+  private class EventMessageHandler extends QueueDispatcher<CanMessage> {
 
-    @SuppressWarnings("FieldMayBeFinal")
-    private boolean stop = false;
-    private boolean quit = true;
+    private static final CanMessage STOP = new CanMessage(new byte[CanMessage.MESSAGE_SIZE]);
 
-    private final BlockingQueue<CanMessage> eventMessageQueue;
+    private final Map<Integer, Consumer<CanMessage>> routes = new HashMap<>();
+    private final LatencyHistogram queueWait = MetricsRegistry.histogram("cs.event.queue.wait");
+    private final LatencyHistogram dispatchTime = MetricsRegistry.histogram("cs.event.dispatch");
+    private final IntSupplier queueGauge;
 
     EventMessageHandler(CSConnection csConnection) {
-      super(threadGroup, "CS-EVENT-MESSAGE-HANDLER");
-      eventMessageQueue = csConnection.getEventQueue();
+      super(threadGroup, "CS-EVENT-MESSAGE-HANDLER", csConnection.getEventQueue(), STOP);
+      queueGauge = csConnection.getEventQueue()::size;
+      MetricsRegistry.gauge("cs.event.queue", queueGauge);
+
+      routes.put(CanMessage.STATUS_CONFIG, this::statusConfig);
+      routes.put(CanMessage.STATUS_CONFIG_RESP, m -> Logger.trace("StatusConfigResponse RX: " + m));
+      routes.put(CanMessage.S88_EVENT_RESPONSE, this::feedback);
+      routes.put(CanMessage.SX1_EVENT, this::feedback);
+      routes.put(CanMessage.SYSTEM_COMMAND_RESP, this::systemCommand);
+      routes.put(CanMessage.ACCESSORY_SWITCHING_RESP, this::accessorySwitched);
+      routes.put(CanMessage.LOC_VELOCITY, m -> Logger.trace("VelocityChange# " + m));
+      routes.put(CanMessage.LOC_VELOCITY_RESP, this::velocityChanged);
+      routes.put(CanMessage.LOC_DIRECTION, m -> Logger.trace("DirectionChange# " + m));
+      routes.put(CanMessage.LOC_DIRECTION_RESP, this::directionChanged);
+      routes.put(CanMessage.LOC_FUNCTION_RESP, this::functionChanged);
+      //Update the last time millis. Used for the watchdog timer.
+      routes.put(CanMessage.BOOTLOADER_CAN, m -> canBootLoaderLastCallMillis = System.currentTimeMillis());
     }
 
-    void quit() {
-      this.quit = true;
+    @Override
+    public void run() {
+      try {
+        super.run();
+      } finally {
+        //The gauge holds on to the queue of the closed connection
+        MetricsRegistry.removeGauge("cs.event.queue", queueGauge);
+      }
     }
 
-    boolean isRunning() {
-      return !this.quit;
+    @Override
+    protected void handle(CanMessage eventMessage) {
+      Consumer<CanMessage> route = routes.get(eventMessage.getCommand());
+      if (route != null) {
+        long start = System.nanoTime();
+        if (eventMessage.getReceivedNanos() <= 0) {
+          eventMessage.setReceivedNanos(start);
+        }
+        queueWait.record(start - eventMessage.getReceivedNanos());
+        route.accept(eventMessage);
+        dispatchTime.recordSince(start);
+      }
     }
 
-    @SuppressWarnings("unused")
-    boolean isFinished() {
-      return this.stop;
+    private void statusConfig(CanMessage eventMessage) {
+      if (CanMessage.JCS_UID == eventMessage.getDeviceUidNumberFromMessage() && CanMessage.DLC_5 == eventMessage.getDlc()) {
+        Logger.trace("StatusConfig RQ: " + eventMessage);
+      }
     }
 
-    @Override
-    public void run() {
-      quit = false;
-      Logger.trace("Event Handler Started...");
+    private void feedback(CanMessage eventMessage) {
+      if (CanMessage.DLC_8 == eventMessage.getDlc()) {
+        SensorBean sb = FeedbackEventMessage.parse(eventMessage, new Date());
+        SensorEvent sme = new SensorEvent(sb);
+        sme.setReceivedNanos(eventMessage.getReceivedNanos());
+        if (sme.getSensorBean() != null) {
+          Logger.trace("Sensor " + sb.getId() + " value " + sb.getStatus());
+          fireAllSensorEventsListeners(sme);
+        }
+      }
+    }
 
-      while (isRunning()) {
-        try {
-          try {
-            CanMessage eventMessage = eventMessageQueue.poll(10, TimeUnit.MILLISECONDS);
-            //Logger.trace("# " + eventMessage);
-
-            if (eventMessage != null) {
-              int command = eventMessage.getCommand();
-              int dlc = eventMessage.getDlc();
-              int uid = eventMessage.getDeviceUidNumberFromMessage();
-              int subcmd = eventMessage.getSubCommand();
-
-              switch (command) {
-                case CanMessage.PING_REQ -> {
-                  //Lets do this the when we know all of the CS...
-                  if (CanMessage.DLC_0 == dlc) {
-                    //Logger.trace("Answering Ping RQ: " + eventMessage);
-                    //sendJCSUIDMessage();
-                  }
-                }
-                case CanMessage.PING_RESP -> {
-                  if (CanMessage.DLC_8 == dlc) {
-//                Logger.trace("Ping Response RX: " + eventMessage);
-//                List<CanDevice> devices = CanDeviceParser.parse(eventMessage);
-//                if (!devices.isEmpty()) {
-//                  CanDevice deviceU = devices.get(0);
-//                  CanDevice device = canDevices.get(deviceU.getUidInt());
-//                  Logger.trace("Found " + device+" GFP "+(csUid==deviceU.getUidInt()?"yes":"no"));
-//                }
-                    //updateDevice(eventMessage);
-                  }
-                }
-                case CanMessage.STATUS_CONFIG -> {
-                  if (CanMessage.JCS_UID == uid && CanMessage.DLC_5 == dlc) {
-                    Logger.trace("StatusConfig RQ: " + eventMessage);
-                    //sentJCSInformationMessage();
-                  }
-                }
-                case CanMessage.STATUS_CONFIG_RESP -> {
-                  Logger.trace("StatusConfigResponse RX: " + eventMessage);
-                  //add to an list of resposne check
-
-                }
-                case CanMessage.S88_EVENT_RESPONSE -> {
-                  if (CanMessage.DLC_8 == dlc) {
-                    //Logger.trace("FeedbackSensorEvent RX: " + eventMessage);
-
-                    SensorBean sb = FeedbackEventMessage.parse(eventMessage, new Date());
-                    Logger.trace("Sensor " + sb.getId() + " value " + sb.getStatus());
-                    SensorEvent sme = new SensorEvent(sb);
-                    if (sme.getSensorBean() != null) {
-                      fireAllSensorEventsListeners(sme);
-                    }
-                  }
-                }
-                case CanMessage.SX1_EVENT -> {
-                  if (CanMessage.DLC_8 == dlc) {
-                    SensorBean sb = FeedbackEventMessage.parse(eventMessage, new Date());
-                    SensorEvent sme = new SensorEvent(sb);
-                    if (sme.getSensorBean() != null) {
-                      fireAllSensorEventsListeners(sme);
-                    }
-                  }
-                }
-                case CanMessage.SYSTEM_COMMAND -> {
-                  //Logger.trace("SystemConfigCommand RX: " + eventMessage);
-                }
-                case CanMessage.SYSTEM_COMMAND_RESP -> {
-                  switch (subcmd) {
-                    case CanMessage.STOP_SUB_CMD -> {
-                      PowerEvent spe = PowerEventParser.parse(eventMessage);
-                      notifyPowerEventListeners(spe);
-                    }
-                    case CanMessage.GO_SUB_CMD -> {
-                      PowerEvent gpe = PowerEventParser.parse(eventMessage);
-                      notifyPowerEventListeners(gpe);
-                    }
-                    case CanMessage.HALT_SUB_CMD -> {
-                      PowerEvent gpe = PowerEventParser.parse(eventMessage);
-                      notifyPowerEventListeners(gpe);
-                    }
-                    case CanMessage.LOC_STOP_SUB_CMD -> {
-                      //stop specific loc
-                      LocomotiveSpeedEvent lse = LocomotiveEmergencyStopMessage.parse(eventMessage);
-                      notifyLocomotiveSpeedEventListeners(lse);
-                    }
-                    case CanMessage.OVERLOAD_SUB_CMD -> {
-                      PowerEvent gpe = OverloadEventParser.parse(eventMessage);
-                      notifyPowerEventListeners(gpe);
-                    }
-                  }
-                }
-                case CanMessage.ACCESSORY_SWITCHING -> {
-                  //Logger.trace("AccessorySwitching RX: " + eventMessage);
-                }
-                case CanMessage.ACCESSORY_SWITCHING_RESP -> {
-                  AccessoryEvent ae = AccessoryMessage.parse(eventMessage);
-                  if (!ae.isPower()) {
-                    Logger.trace("AccessorySwitching RX: " + eventMessage);
-                    //Only notify when the power of the accessory is turned off, so the action should has been done.
-                    //notifyAccessoryEventListeners(ae);
-                    accessoryManager.update(ae);
-                  }
-                }
-                case CanMessage.LOC_VELOCITY -> {
-                  Logger.trace("VelocityChange# " + eventMessage);
-
-                }
-                case CanMessage.LOC_VELOCITY_RESP -> {
-                  Logger.trace("VelocityChange " + eventMessage);
-                  notifyLocomotiveSpeedEventListeners(LocomotiveVelocityMessage.parse(eventMessage));
-                }
-                case CanMessage.LOC_DIRECTION -> {
-                  Logger.trace("DirectionChange# " + eventMessage);
-
-                }
-                case CanMessage.LOC_DIRECTION_RESP -> {
-                  Logger.trace("DirectionChange " + eventMessage);
-                  notifyLocomotiveDirectionEventListeners(LocomotiveDirectionEventParser.parse(eventMessage));
-                }
-                case CanMessage.LOC_FUNCTION -> {
-
-                }
-                case CanMessage.LOC_FUNCTION_RESP -> {
-                  Logger.trace("FunctionChange " + eventMessage);
-                  notifyLocomotiveFunctionEventListeners(LocomotiveFunctionEventParser.parseMessage(eventMessage));
-                }
-                case CanMessage.BOOTLOADER_CAN -> {
-                  //Update the last time millis. Used for the watchdog timer.
-                  canBootLoaderLastCallMillis = System.currentTimeMillis();
-                }
-                default -> {
-                }
-              }
-            }
-          } catch (InterruptedException ex) {
-            Logger.error(ex);
-            Thread.currentThread().interrupt();
-          }
-        } catch (Exception e) {
-          Logger.error("Error in Handling Thread. Cause: " + e.getMessage());
+    private void systemCommand(CanMessage eventMessage) {
+      switch (eventMessage.getSubCommand()) {
+        case CanMessage.STOP_SUB_CMD, CanMessage.GO_SUB_CMD, CanMessage.HALT_SUB_CMD -> {
+          PowerEvent pe = PowerEventParser.parse(eventMessage);
+          notifyPowerEventListeners(pe);
+        }
+        case CanMessage.LOC_STOP_SUB_CMD -> {
+          //stop specific loc
+          LocomotiveSpeedEvent lse = LocomotiveEmergencyStopMessage.parse(eventMessage);
+          notifyLocomotiveSpeedEventListeners(lse);
+        }
+        case CanMessage.OVERLOAD_SUB_CMD -> {
+          PowerEvent pe = OverloadEventParser.parse(eventMessage);
+          notifyPowerEventListeners(pe);
+        }
+        default -> {
         }
       }
-      Logger.debug("Stop Event handling");
+    }
+
+    private void accessorySwitched(CanMessage eventMessage) {
+      AccessoryEvent ae = AccessoryMessage.parse(eventMessage);
+      ae.setReceivedNanos(eventMessage.getReceivedNanos());
+      if (!ae.isPower()) {
+        Logger.trace("AccessorySwitching RX: " + eventMessage);
+        //Only notify when the power of the accessory is turned off, so the action should has been done.
+        accessoryManager.update(ae);
+      }
+    }
+
+    private void velocityChanged(CanMessage eventMessage) {
+      Logger.trace("VelocityChange " + eventMessage);
+      LocomotiveSpeedEvent lse = LocomotiveVelocityMessage.parse(eventMessage);
+      lse.setReceivedNanos(eventMessage.getReceivedNanos());
+      notifyLocomotiveSpeedEventListeners(lse);
+    }
+
+    private void directionChanged(CanMessage eventMessage) {
+      Logger.trace("DirectionChange " + eventMessage);
+      LocomotiveDirectionEvent lde = LocomotiveDirectionEventParser.parse(eventMessage);
+      lde.setReceivedNanos(eventMessage.getReceivedNanos());
+      notifyLocomotiveDirectionEventListeners(lde);
+    }
+
+    private void functionChanged(CanMessage eventMessage) {
+      Logger.trace("FunctionChange " + eventMessage);
+      LocomotiveFunctionEvent lfe = LocomotiveFunctionEventParser.parseMessage(eventMessage);
+      lfe.setReceivedNanos(eventMessage.getReceivedNanos());
+      notifyLocomotiveFunctionEventListeners(lfe);
     }
   }
 
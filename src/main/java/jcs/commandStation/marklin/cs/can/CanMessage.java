@@ -15,13 +15,16 @@
  */
 package jcs.commandStation.marklin.cs.can;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 import jcs.util.ByteUtil;
 
 /**
- * CS 2/3 CAN message.
+ * CS 2/3 CAN message.<br>
+ * Decoding and encoding do not create temporary arrays; the list of responses is only created when a response is added.
  */
 public class CanMessage implements MarklinCan {
 
@@ -31,29 +34,45 @@ public class CanMessage implements MarklinCan {
   private int dlc;
   private byte[] data;
 
-  private final List<CanMessage> responses;
+  private List<CanMessage> responses;
+  //Time stamp in System.nanoTime() of the reception, 0 when not received
+  private long receivedNanos;
 
   public CanMessage(byte[] message) {
     this.data = new byte[DATA_SIZE];
-    this.responses = new LinkedList<>();
     if (message != null && message.length == MESSAGE_SIZE) {
       this.priority = message[0];
       this.command = message[1];
-      byte[] h = new byte[HASH_SIZE];
-      h[0] = message[2];
-      h[1] = message[3];
-      this.hash = (short) toInt(h);
+      this.hash = (short) (((message[2] & 0xFF) << 8) | (message[3] & 0xFF));
       this.dlc = message[4];
       System.arraycopy(message, 5, data, 0, DATA_SIZE);
     }
   }
 
+  /**
+   * Decode a 13 byte frame from the buffer, starting at the current position.<br>
+   * The position of the buffer is advanced with MESSAGE_SIZE.
+   *
+   * @param frame buffer with at least MESSAGE_SIZE remaining bytes
+   */
+  public CanMessage(ByteBuffer frame) {
+    this.priority = frame.get() & 0xFF;
+    this.command = frame.get() & 0xFF;
+    this.hash = frame.getShort();
+    this.dlc = frame.get() & 0xFF;
+    this.data = new byte[DATA_SIZE];
+    frame.get(this.data);
+  }
+
   public CanMessage(int priority, int command, int hash, int dlc, byte[] data) {
-    this(priority, command, to2Bytes(hash), dlc, data);
+    this.priority = priority;
+    this.command = command;
+    this.hash = (short) hash;
+    this.dlc = dlc;
+    this.data = copyData(data);
   }
 
   public CanMessage(int priority, int command, byte[] hash, int dlc, byte[] data) {
-    this.responses = new LinkedList<>();
     this.priority = priority;
     this.command = command;
 
@@ -63,14 +82,18 @@ public class CanMessage implements MarklinCan {
       this.hash = (short) toInt(hash);
     }
     this.dlc = dlc;
+    this.data = copyData(data);
+  }
 
-    this.data = new byte[DATA_SIZE];
-
+  private static byte[] copyData(byte[] data) {
     if (data != null && data.length == DATA_SIZE) {
-      this.data = data;
-    } else if (data != null) {
-      System.arraycopy(data, 0, this.data, 0, DATA_SIZE);
+      return data;
+    }
+    byte[] d = new byte[DATA_SIZE];
+    if (data != null) {
+      System.arraycopy(data, 0, d, 0, Math.min(data.length, DATA_SIZE));
     }
+    return d;
   }
 
   public static final int toInt(byte[] value) {
@@ -135,6 +158,32 @@ public class CanMessage implements MarklinCan {
     return bts;
   }
 
+  /**
+   * Write the value as 2 bytes Big Endian in the destination, without creating a new array.
+   *
+   * @param value the value
+   * @param dest the destination array
+   * @param offset position in the destination
+   */
+  public static final void to2Bytes(int value, byte[] dest, int offset) {
+    dest[offset] = (byte) ((value >> 8) & 0xFF);
+    dest[offset + 1] = (byte) (value & 0XFF);
+  }
+
+  /**
+   * Write the value as 4 bytes Big Endian in the destination, without creating a new array.
+   *
+   * @param value the value
+   * @param dest the destination array
+   * @param offset position in the destination
+   */
+  public static final void to4Bytes(int value, byte[] dest, int offset) {
+    dest[offset] = (byte) ((value >> 24) & 0xFF);
+    dest[offset + 1] = (byte) ((value >> 16) & 0xFF);
+    dest[offset + 2] = (byte) ((value >> 8) & 0xFF);
+    dest[offset + 3] = (byte) (value & 0XFF);
+  }
+
   public int getLength() {
     return MESSAGE_SIZE;
   }
@@ -145,29 +194,55 @@ public class CanMessage implements MarklinCan {
 
   public byte[] getMessage() {
     byte[] msg = new byte[MESSAGE_SIZE];
-
-    msg[0] = (byte) this.priority;
-    msg[1] = (byte) this.command;
-    byte[] h = to2Bytes(this.hash);
-    msg[2] = h[0];
-    msg[3] = h[1];
-    msg[4] = (byte) this.dlc;
-    System.arraycopy(this.data, 0, msg, DATA_IDX, this.data.length);
+    writeTo(msg, 0);
     return msg;
   }
 
+  /**
+   * Encode this message as a 13 byte frame in the destination array.
+   *
+   * @param dest the destination array
+   * @param offset position in the destination
+   */
+  public void writeTo(byte[] dest, int offset) {
+    dest[offset] = (byte) this.priority;
+    dest[offset + 1] = (byte) this.command;
+    to2Bytes(this.hash, dest, offset + HASH_IDX);
+    dest[offset + DLC_IDX] = (byte) this.dlc;
+    System.arraycopy(this.data, 0, dest, offset + DATA_IDX, DATA_SIZE);
+  }
+
+  /**
+   * Encode this message as a 13 byte frame in the buffer, starting at the current position.
+   *
+   * @param buffer buffer with at least MESSAGE_SIZE remaining bytes
+   */
+  public void writeTo(ByteBuffer buffer) {
+    buffer.put((byte) this.priority);
+    buffer.put((byte) this.command);
+    buffer.putShort(this.hash);
+    buffer.put((byte) this.dlc);
+    buffer.put(this.data);
+  }
+
   public void addResponse(CanMessage reply) {
     if (reply != null) {
+      if (this.responses == null) {
+        this.responses = new ArrayList<>();
+      }
       this.responses.add(reply);
     }
   }
 
   public List<CanMessage> getResponses() {
+    if (this.responses == null) {
+      return Collections.emptyList();
+    }
     return this.responses;
   }
 
   public CanMessage getResponse(int idx) {
-    if (idx < this.responses.size()) {
+    if (idx < getResponses().size()) {
       return this.responses.get(idx);
     } else {
       return null;
@@ -175,6 +250,7 @@ public class CanMessage implements MarklinCan {
   }
 
   public CanMessage getResponse() {
+    List<CanMessage> responses = getResponses();
     if (responses.isEmpty()) {
       return this;
     } else {
@@ -228,8 +304,7 @@ public class CanMessage implements MarklinCan {
 
   public int getPackageNumber() {
     if (STATUS_CONFIG_RESP == this.command) {
-      byte[] h = CanMessage.to2Bytes(this.hash);
-      return h[1];
+      return (byte) this.hash;
     } else {
       return 0;
     }
@@ -239,6 +314,14 @@ public class CanMessage implements MarklinCan {
     return this.data;
   }
 
+  public long getReceivedNanos() {
+    return receivedNanos;
+  }
+
+  public void setReceivedNanos(long receivedNanos) {
+    this.receivedNanos = receivedNanos;
+  }
+
   public boolean isResponseMessage() {
     int cmd = this.command;
     cmd = cmd & 0x01;
@@ -329,18 +412,21 @@ public class CanMessage implements MarklinCan {
   }
 
   public int getDeviceUidNumberFromMessage() {
-    return toInt(getDeviceUidFromMessage());
+    return ((data[0] & 0xFF) << 24)
+            | ((data[1] & 0xFF) << 16)
+            | ((data[2] & 0xFF) << 8)
+            | (data[3] & 0xFF);
   }
 
   public String responseString() {
-    return this.responses.get(0).toString();
+    return getResponses().get(0).toString();
   }
 
   public boolean isResponseComplete() {
     boolean expectResponse = this.expectsLongResponse() || this.expectsResponse();
     if (!(expectResponse)) {
       return true;
-    } else if (this.responses.isEmpty()) {
+    } else if (this.responses == null || this.responses.isEmpty()) {
       return false;
     } else {
       if (expectResponse) {
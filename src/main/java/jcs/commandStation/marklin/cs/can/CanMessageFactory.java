@@ -226,15 +226,12 @@ public class CanMessageFactory implements MarklinCan {
       hash = MAGIC_HASH;
     }
 
-    byte[] addressBytes = CanMessage.to2Bytes(address);
-    System.arraycopy(addressBytes, 0, data, 2, addressBytes.length);
+    CanMessage.to2Bytes(address, data, 2);
     //TODO for signal other values are also supported
     data[ACCESSORY_VALUE_IDX] = (byte) (AccessoryValue.GREEN.equals(value) ? 1 : 0);
     data[ACCESSORY_ACTIVE_IDX] = (byte) (on ? 1 : 0);
 
-    byte[] st = CanMessage.to2Bytes(switchTime);
-
-    System.arraycopy(st, 0, data, ACCESSORY_SWITCH_TIME_IDX, st.length);
+    CanMessage.to2Bytes(switchTime, data, ACCESSORY_SWITCH_TIME_IDX);
     CanMessage cm = new CanMessage(PRIO_1, ACCESSORY_SWITCHING, hash, DLC_8, data);
     return cm;
   }
@@ -271,8 +268,7 @@ public class CanMessageFactory implements MarklinCan {
       hash = MAGIC_HASH;
     }
 
-    byte[] locid = CanMessage.to4Bytes(address);
-    System.arraycopy(locid, 0, data, 0, locid.length);
+    CanMessage.to4Bytes(address, data, 0);
     data[4] = (byte) (functionNumber & 0xff);
     CanMessage cm = new CanMessage(PRIO_1, LOC_FUNCTION, hash, DLC_5, data);
     return cm;
@@ -287,8 +283,7 @@ public class CanMessageFactory implements MarklinCan {
       hash = MAGIC_HASH;
     }
 
-    byte[] locid = CanMessage.to4Bytes(uid);
-    System.arraycopy(locid, 0, data, 0, locid.length);
+    CanMessage.to4Bytes(uid, data, 0);
     data[4] = (byte) (functionNumber & 0xff);
     data[5] = (byte) (value ? 1 : 0);
     CanMessage cm = new CanMessage(PRIO_1, LOC_FUNCTION, hash, DLC_6, data);
@@ -304,8 +299,7 @@ public class CanMessageFactory implements MarklinCan {
       hash = MAGIC_HASH;
     }
 
-    byte[] locid = CanMessage.to4Bytes(address);
-    System.arraycopy(locid, 0, data, 0, locid.length);
+    CanMessage.to4Bytes(address, data, 0);
 
     CanMessage cm = new CanMessage(PRIO_1, LOC_DIRECTION, hash, DLC_4, data);
     return cm;
@@ -337,8 +331,7 @@ public class CanMessageFactory implements MarklinCan {
       hash = MAGIC_HASH;
     }
 
-    byte[] locid = CanMessage.to4Bytes(address);
-    System.arraycopy(locid, 0, data, 0, locid.length);
+    CanMessage.to4Bytes(address, data, 0);
     data[LOC_DIRECTION_VALUE_IDX] = (byte) (csdirection & 0xff);
 
     CanMessage cm = new CanMessage(PRIO_1, LOC_DIRECTION, hash, DLC_5, data);
@@ -353,8 +346,7 @@ public class CanMessageFactory implements MarklinCan {
     } else {
       hash = MAGIC_HASH;
     }
-    byte[] locid = CanMessage.to4Bytes(address);
-    System.arraycopy(locid, 0, data, 0, locid.length);
+    CanMessage.to4Bytes(address, data, 0);
 
     CanMessage cm = new CanMessage(PRIO_1, LOC_VELOCITY, hash, DLC_4, data);
     return cm;
@@ -368,10 +360,8 @@ public class CanMessageFactory implements MarklinCan {
     } else {
       hash = MAGIC_HASH;
     }
-    byte[] locid = CanMessage.to4Bytes(uid);
-    System.arraycopy(locid, 0, data, 0, locid.length);
-    byte[] sb = CanMessage.to2Bytes(speed);
-    System.arraycopy(sb, 0, data, 4, sb.length);
+    CanMessage.to4Bytes(uid, data, 0);
+    CanMessage.to2Bytes(speed, data, 4);
 
     CanMessage cm = new CanMessage(PRIO_1, LOC_VELOCITY, hash, DLC_6, data);
     return cm;
@@ -16,9 +16,12 @@
 package jcs.commandStation.marklin.cs.net;
 
 import java.net.InetAddress;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import jcs.commandStation.marklin.cs.can.CanMessage;
 import jcs.commandStation.events.ConnectionEventListener;
+import jcs.commandStation.net.TransportStatistics;
 
 public interface CSConnection extends AutoCloseable {
 
@@ -30,6 +33,8 @@ public interface CSConnection extends AutoCloseable {
 
   CanMessage sendCanMessage(CanMessage message);
 
+  CompletableFuture<CanMessage> sendCanMessageAsync(CanMessage message);
+
   InetAddress getControllerAddress();
 
   boolean isConnected();
@@ -38,4 +43,11 @@ public interface CSConnection extends AutoCloseable {
 
   void addDisconnectionEventListener(ConnectionEventListener listener);
 
+  List<CanMessageScheduler.LaneStatistics> getLaneStatistics();
+
+  /**
+   * @return the traffic and latency of the network connection, or null when there is no network connection
+   */
+  TransportStatistics getTransportStatistics();
+
 }
@@ -16,6 +16,7 @@
 package jcs.commandStation.marklin.cs.net;
 
 import java.awt.Image;
+import java.net.URI;
 
 public interface CSHTTPConnection extends AutoCloseable {
 
@@ -45,4 +46,8 @@ public interface CSHTTPConnection extends AutoCloseable {
 
   Image getFunctionImageCS2(String imageName);
 
+  URI getLocomotiveImageURI(String imageName);
+
+  URI getFunctionImageURI(String imageName);
+
 }
@@ -297,12 +297,7 @@ public class CSHTTPConnectionImpl implements CSHTTPConnection {
   public Image getLocomotiveImage(String imageName) {
     BufferedImage image = null;
     try {
-      URL url;
-      if (cs3) {
-        url = URI.create(fixURL(HTTP + csAddress.getHostAddress() + IMAGE_FOLDER_CS3 + imageName + ".png")).toURL();
-      } else {
-        url = URI.create(fixURL(HTTP + csAddress.getHostAddress() + IMAGE_FOLDER_CS2 + imageName + ".png")).toURL();
-      }
+      URL url = getLocomotiveImageURI(imageName).toURL();
 
       Logger.trace("image URL: " + url);
       image = ImageIO.read(url);
@@ -315,10 +310,10 @@ public class CSHTTPConnectionImpl implements CSHTTPConnection {
   @Override
   public Image getFunctionImageCS2(String imageName) {
     BufferedImage image = null;
-    String iurl = fixURL(HTTP + csAddress.getHostAddress() + FUNCTION_IMAGE_FOLDER + imageName + ".png");
+    URI iurl = getFunctionImageURI(imageName);
 
     try {
-      URL url = URI.create(iurl).toURL();
+      URL url = iurl.toURL();
       image = ImageIO.read(url);
     } catch (IIOException iio) {
       //Image not avalable
@@ -329,6 +324,20 @@ public class CSHTTPConnectionImpl implements CSHTTPConnection {
     return image;
   }
 
+  @Override
+  public URI getLocomotiveImageURI(String imageName) {
+    if (cs3) {
+      return URI.create(fixURL(HTTP + csAddress.getHostAddress() + IMAGE_FOLDER_CS3 + imageName + ".png"));
+    } else {
+      return URI.create(fixURL(HTTP + csAddress.getHostAddress() + IMAGE_FOLDER_CS2 + imageName + ".png"));
+    }
+  }
+
+  @Override
+  public URI getFunctionImageURI(String imageName) {
+    return URI.create(fixURL(HTTP + csAddress.getHostAddress() + FUNCTION_IMAGE_FOLDER + imageName + ".png"));
+  }
+
   @Override
   public void close() throws Exception {
   }
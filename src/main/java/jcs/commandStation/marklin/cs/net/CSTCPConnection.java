@@ -15,35 +15,40 @@
  */
 package jcs.commandStation.marklin.cs.net;
 
-import java.io.BufferedInputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.Socket;
-import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import jcs.commandStation.events.ConnectionEvent;
 import jcs.commandStation.marklin.cs.can.CanMessage;
+import jcs.commandStation.net.TcpTransport;
+import jcs.commandStation.net.TransportListener;
+import jcs.commandStation.net.TransportStatistics;
+import jcs.util.metrics.MetricsRegistry;
 import org.tinylog.Logger;
 import jcs.commandStation.events.ConnectionEventListener;
 
 /**
- * TCP Connection with the Central Station
+ * TCP Connection with the Central Station.<br>
+ * Outbound messages are placed in a bounded, prioritized queue and written by a single sender thread, one frame per network packet.<br>
+ * Several requests can be in flight at the same time; the receiver matches each response to its request by command and UID.<br>
+ * The socket is handled by the shared TcpTransport; the sender runs on a virtual thread.
  */
 class CSTCPConnection implements CSConnection {
 
   private final InetAddress centralStationAddress;
 
-  private Socket clientSocket;
-  private DataOutputStream dos;
-
-  private ClientMessageReceiver messageReceiver;
+  private TcpTransport<CanMessage> transport;
+  private ClientMessageSender messageSender;
   private final List<ConnectionEventListener> disconnectionEventListeners;
 
   private static final long SHORT_TIMEOUT = 1000L;
@@ -51,33 +56,51 @@ class CSTCPConnection implements CSConnection {
 
   private final boolean debug;
   private final BlockingQueue<CanMessage> eventQueue;
+  private final LongAdder receivedEvents = MetricsRegistry.counter("cs.rx.events");
+
+  private final int maxQueueSize;
+  private final int maxInFlight;
 
-  private CSTCPConnection.PendingRequest pendingRequest;
+  //Guards the outbound queue and the in flight requests
+  private final ReentrantLock txLock;
+  private final Condition sendable;
+  private final Condition notFull;
+  private final CanMessageScheduler outboundQueue;
+  private final List<CSTCPConnection.PendingRequest> inFlight;
+  private boolean txClosed = true;
 
   CSTCPConnection(InetAddress csAddress) {
     centralStationAddress = csAddress;
     debug = System.getProperty("message.debug", "false").equalsIgnoreCase("true");
     eventQueue = new LinkedBlockingQueue<>();
 
+    maxQueueSize = Integer.getInteger("cs.tx.queue.size", 64);
+    maxInFlight = Integer.getInteger("cs.tx.max.inflight", 8);
+
+    txLock = new ReentrantLock();
+    sendable = txLock.newCondition();
+    notFull = txLock.newCondition();
+    outboundQueue = new CanMessageScheduler(maxQueueSize);
+    inFlight = new ArrayList<>(maxInFlight);
+
     disconnectionEventListeners = new ArrayList<>();
     checkConnection();
   }
 
   private void checkConnection() {
     try {
-      if (clientSocket == null || !clientSocket.isConnected()) {
-        clientSocket = new Socket(centralStationAddress, CSConnection.CS_RX_PORT);
-        clientSocket.setKeepAlive(true);
-        clientSocket.setTcpNoDelay(true);
-        dos = new DataOutputStream(clientSocket.getOutputStream());
-
-        messageReceiver = new ClientMessageReceiver(clientSocket);
-        messageReceiver.start();
+      if (transport == null || !transport.isConnected()) {
+        transport = new TcpTransport<>("CS-CAN", centralStationAddress, CSConnection.CS_RX_PORT, new CanFrameDecoder(), new CanFrameListener());
+        transport.connect();
+
+        txClosed = false;
+        messageSender = new ClientMessageSender();
+        messageSender.start();
       } else {
         Logger.trace("Already connected to " + centralStationAddress.getHostName());
       }
     } catch (IOException ex) {
-      this.clientSocket = null;
+      this.transport = null;
       Logger.error("Can't (re)connect with Central Station " + centralStationAddress.getHostAddress() + ". Cause: " + ex.getMessage());
       Logger.trace(ex);
     }
@@ -94,55 +117,37 @@ class CSTCPConnection implements CSConnection {
   }
 
   /**
-   * Most of the CS CAN messages will return a response.<br>
-   * Therefor a single callback is sufficient.<br>
-   * The CS can only process one command, message at the time.<br>
-   * It leads to errors when multiple commands are send in a network packet.<br>
-   * Hence the send method is synchronized.
+   * Blocking send.<br>
+   * The message is enqueued and the calling thread waits until the response is complete or the timeout expired.<br>
+   * Other threads can send while this one is waiting, so a locomotive command is not delayed by a long config data download.
    *
-   * @param message
-   * @return
+   * @param message to send
+   * @return the message with the received responses
    */
   @Override
-  public synchronized CanMessage sendCanMessage(CanMessage message) {
+  public CanMessage sendCanMessage(CanMessage message) {
     if (message == null) {
       Logger.trace("Message is NULL?");
       return message;
     }
 
+    long start = System.currentTimeMillis();
     try {
-      long timeout;
-      if (message.expectsLongResponse()) {
-        timeout = LONG_TIMEOUT;
-      } else if (message.expectsResponse()) {
-        timeout = SHORT_TIMEOUT;
-      } else {
-        timeout = 0;
-      }
-
-      if (timeout > 0) {
-        pendingRequest = new CSTCPConnection.PendingRequest(message, timeout);
-      }
-
-      byte[] bytes = message.getMessage();
-      //Send the message
-      dos.write(bytes);
-      dos.flush();
-    } catch (IOException ex) {
-      Logger.error(ex.getMessage());
-      if (pendingRequest != null) {
-        pendingRequest.markComplete();
-      }
+      sendCanMessageAsync(message).get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      Logger.warn("Interrupted while waiting for response");
+    } catch (ExecutionException ex) {
+      Logger.error("Failed to send " + message + ". Cause: " + ex.getCause().getMessage());
     }
 
-    //Do not log the ping response as this message is send every 5 seconds or so as a response to the CS ping request.
     if (debug) {
-      Logger.trace("TX: " + message);
-    }
-
-    // Wait for response if needed
-    if (pendingRequest != null) {
-      waitForResponse(pendingRequest);
+      long elapsed = System.currentTimeMillis() - start;
+      if (message.isResponseComplete()) {
+        Logger.trace("Got Response in " + elapsed + " ms");
+      } else {
+        Logger.trace("No Response for " + message + " in " + elapsed + " ms (timeout)");
+      }
     }
 
     Logger.trace("#TX: " + message + (message.isResponseMessage() ? " response msg" : ""));
@@ -160,59 +165,191 @@ class CSTCPConnection implements CSConnection {
     return message;
   }
 
-  private void waitForResponse(CSTCPConnection.PendingRequest request) {
-    long start = System.currentTimeMillis();
+  /**
+   * Non blocking send.<br>
+   * The message is placed in the outbound queue. When the queue is full the caller waits until there is room.<br>
+   * The returned future completes with the message when all responses are received or the timeout expired.<br>
+   * Messages which do not expect a response complete as soon as they are written.
+   *
+   * @param message to send
+   * @return a future which completes with the message and its responses
+   */
+  @Override
+  public CompletableFuture<CanMessage> sendCanMessageAsync(CanMessage message) {
+    if (message == null) {
+      return CompletableFuture.completedFuture(null);
+    }
 
-    try {
-      // Wait with timeout using CountDownLatch (more efficient than sleep polling)
-      boolean completed = request.await();
+    long timeout;
+    if (message.expectsLongResponse()) {
+      timeout = LONG_TIMEOUT;
+    } else if (message.expectsResponse()) {
+      timeout = SHORT_TIMEOUT;
+    } else {
+      timeout = 0;
+    }
 
-      long elapsed = System.currentTimeMillis() - start;
+    CSTCPConnection.PendingRequest request = new CSTCPConnection.PendingRequest(message, timeout);
+    request.getFuture().whenComplete((m, t) -> retire(request));
 
-      if (debug) {
-        if (completed) {
-          Logger.trace("Got Response in " + elapsed + " ms");
-        } else {
-          Logger.trace("No Response for " + request.getMessage() + " in " + elapsed + " ms (timeout)");
+    txLock.lock();
+    try {
+      while (outboundQueue.isFull(request) && !txClosed) {
+        notFull.await();
+      }
+      if (txClosed) {
+        Logger.warn("Not connected. Message: " + message + " NOT Send!");
+        request.markComplete();
+      } else {
+        for (CSTCPConnection.PendingRequest superseded : outboundQueue.offer(request)) {
+          superseded.supersededBy(request);
         }
+        sendable.signal();
       }
-
     } catch (InterruptedException ex) {
       Thread.currentThread().interrupt();
-      Logger.warn("Interrupted while waiting for response");
+      request.getFuture().completeExceptionally(ex);
+    } finally {
+      txLock.unlock();
     }
+    return request.getFuture();
   }
 
-  private static class PendingRequest {
+  /**
+   * Remove a completed request and wake up the sender, as a waiting request might now be sendable.
+   */
+  private void retire(CSTCPConnection.PendingRequest request) {
+    txLock.lock();
+    try {
+      if (inFlight.remove(request)) {
+        sendable.signal();
+      }
+    } finally {
+      txLock.unlock();
+    }
+  }
+
+  /**
+   * Find the next request in the outbound queue which can be sent now.<br>
+   * A request must wait when it collides with an in flight request.
+   * Must be called while holding the txLock.
+   */
+  private CSTCPConnection.PendingRequest nextSendable() {
+    CSTCPConnection.PendingRequest request = outboundQueue.poll(candidate -> {
+      boolean blocked = false;
+      for (CSTCPConnection.PendingRequest r : inFlight) {
+        blocked = blocked || candidate.collidesWith(r);
+      }
+      return blocked;
+    }, inFlight.size() >= maxInFlight);
+
+    if (request != null) {
+      notFull.signal();
+    }
+    return request;
+  }
+
+  @Override
+  public TransportStatistics getTransportStatistics() {
+    return transport != null ? transport.getStatistics() : null;
+  }
+
+  @Override
+  public List<CanMessageScheduler.LaneStatistics> getLaneStatistics() {
+    txLock.lock();
+    try {
+      return outboundQueue.getStatistics();
+    } finally {
+      txLock.unlock();
+    }
+  }
+
+  /**
+   * Route a received message to the oldest in flight request it is a response for.
+   *
+   * @return true when the message is a response
+   */
+  private boolean routeResponse(CanMessage rx, int remainingBytes) {
+    CSTCPConnection.PendingRequest request = null;
+    txLock.lock();
+    try {
+      for (CSTCPConnection.PendingRequest r : inFlight) {
+        if (r.matchesResponse(rx)) {
+          request = r;
+          break;
+        }
+      }
+    } finally {
+      txLock.unlock();
+    }
+
+    if (request != null) {
+      boolean complete = request.addResponse(rx, remainingBytes);
+      if (debug) {
+        Logger.trace("RX (response): " + rx + " remaining=" + remainingBytes + " complete=" + complete);
+      }
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  static class PendingRequest {
 
     private final CanMessage txMessage;
-    private final CountDownLatch responseLatch;
+    private final CompletableFuture<CanMessage> future;
     private final long timeoutMs;
-    //private final long createdAt;
+    private final int txUid;
+    private final boolean exclusive;
+    private long enqueuedNanos;
 
     // Track expected response packets
     private volatile int expectedPackets = -1; // -1 = unknown, 0 = done, >0 = packets remaining
-    private volatile boolean completed = false;
 
     PendingRequest(CanMessage txMessage, long timeoutMs) {
       this.txMessage = txMessage;
       this.timeoutMs = timeoutMs;
-      //his.createdAt = System.currentTimeMillis();
-      this.responseLatch = new CountDownLatch(1);
+      this.future = new CompletableFuture<>();
+      this.enqueuedNanos = System.nanoTime();
+      this.txUid = txMessage.getDlc() >= CanMessage.DLC_4 ? txMessage.getDeviceUidNumberFromMessage() : 0;
+
+      // The responses of these commands are data streams or come from several devices and can not be told apart by UID,
+      // so only one of them is in flight at the time.
+      int cmd = txMessage.getCommand();
+      this.exclusive = txUid == 0
+              || cmd == CanMessage.REQUEST_CONFIG_DATA
+              || cmd == CanMessage.STATUS_CONFIG
+              || cmd == CanMessage.PING_REQ;
+    }
+
+    boolean expectsResponse() {
+      return timeoutMs > 0;
     }
 
     /**
-     * Check if this request matches the incoming response command
+     * Two requests collide when their responses can not be distinguished.
      */
-    boolean matchesResponse(int responseCommand) {
-      int txCmd = txMessage.getCommand();
+    boolean collidesWith(CSTCPConnection.PendingRequest other) {
+      if (txMessage.getCommand() != other.txMessage.getCommand()) {
+        return false;
+      }
+      return exclusive || other.exclusive || txUid == other.txUid;
+    }
 
-      // Special case for CONFIG_DATA requests
-      if (CanMessage.REQUEST_CONFIG_DATA == txCmd) {
-        return txCmd == (responseCommand - 1) || txCmd == (responseCommand - 2);
-      } else {
-        return txCmd == (responseCommand - 1);
+    /**
+     * Check if the received message is a response to this request
+     */
+    boolean matchesResponse(CanMessage rx) {
+      if (!rx.isResponseFor(txMessage)) {
+        return false;
       }
+
+      int rxCmd = rx.getCommand();
+      if (exclusive && (rxCmd == CanMessage.CONFIG_DATA_STREAM || rxCmd == txMessage.getCommand() + 1)) {
+        // Stream packets do not carry the UID
+        return true;
+      }
+      return rx.getDlc() < CanMessage.DLC_4 || rx.getDeviceUidNumberFromMessage() == txUid;
     }
 
     /**
@@ -267,7 +404,7 @@ class CSTCPConnection implements CSConnection {
      * All other commands produce exactly one response packet.
      *
      * @param firstPacket The first response packet that has just been received.
-     * @param remainingBytes Bytes currently buffered in the DataInputStream (from {@code din.available()}).
+     * @param remainingBytes Bytes received after {@code firstPacket} which are not yet decoded.
      * @return The number of <em>additional</em> packets still expected after {@code firstPacket}. Returns 0 when this is the only response.
      */
     private int estimateRemainingPackets(CanMessage firstPacket, int remainingBytes) {
@@ -404,23 +541,49 @@ class CSTCPConnection implements CSConnection {
       return 0;
     }
 
-    void markComplete() {
-      if (!completed) {
-        completed = true;
-        responseLatch.countDown();
+
+    /**
+     * Start the response timeout; called when the message is written.
+     */
+    void markSent() {
+      if (expectsResponse()) {
+        future.completeOnTimeout(txMessage, timeoutMs, TimeUnit.MILLISECONDS);
+      } else {
+        markComplete();
       }
     }
 
-//    boolean isComplete() {
-//      return completed;
-//    }
-    boolean await() throws InterruptedException {
-      return responseLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    void markComplete() {
+      future.complete(txMessage);
+    }
+
+    /**
+     * This request is replaced in the outbound queue by a newer one.<br>
+     * It completes together with the newer request and receives its responses.
+     */
+    void supersededBy(CSTCPConnection.PendingRequest newer) {
+      newer.getFuture().whenComplete((m, t) -> {
+        if (m != null) {
+          for (CanMessage response : m.getResponses()) {
+            txMessage.addResponse(response);
+          }
+        }
+        markComplete();
+      });
+    }
+
+    long getEnqueuedNanos() {
+      return enqueuedNanos;
+    }
+
+    void setEnqueuedNanos(long enqueuedNanos) {
+      this.enqueuedNanos = enqueuedNanos;
+    }
+
+    CompletableFuture<CanMessage> getFuture() {
+      return future;
     }
 
-//    boolean isTimedOut() {
-//      return System.currentTimeMillis() - createdAt > timeoutMs;
-//    }
     CanMessage getMessage() {
       return txMessage;
     }
@@ -431,26 +594,17 @@ class CSTCPConnection implements CSConnection {
 
     disconnectionEventListeners.clear();
 
-    if (messageReceiver != null) {
-      messageReceiver.quit();
-      messageReceiver.join();
+    for (CanMessageScheduler.LaneStatistics stats : getLaneStatistics()) {
+      Logger.debug(stats);
     }
-    if (dos != null) {
-      try {
-        dos.close();
-      } catch (IOException ex) {
-        Logger.error("Can't close output stream. Cause: " + ex.getMessage());
-        Logger.trace(ex);
-      }
+
+    if (messageSender != null) {
+      messageSender.quit();
+      messageSender.join();
     }
 
-    if (clientSocket != null) {
-      try {
-        clientSocket.close();
-      } catch (IOException ex) {
-        Logger.error("Can't close socket. Cause: " + ex.getMessage());
-        Logger.trace(ex);
-      }
+    if (transport != null) {
+      transport.close();
     }
   }
 
@@ -461,108 +615,130 @@ class CSTCPConnection implements CSConnection {
 
   @Override
   public boolean isConnected() {
-    return messageReceiver != null && messageReceiver.isRunning();
+    return transport != null && transport.isConnected();
   }
 
-  private class ClientMessageReceiver extends Thread {
+  /**
+   * Writes the queued messages to the Central Station.<br>
+   * The CS can only process one command per network packet, hence every message is written and flushed separately by this single thread.
+   */
+  private class ClientMessageSender implements Runnable {
 
     private volatile boolean running = false;
-    private DataInputStream din;
+    private final ByteBuffer txFrame;
+    private Thread thread;
 
-    public ClientMessageReceiver(Socket socket) {
-      super("CS-CAN-RX");
-      try {
-        BufferedInputStream bis = new BufferedInputStream(socket.getInputStream());
-        din = new DataInputStream(bis);
-      } catch (IOException ex) {
-        Logger.error("Failed to create input stream", ex);
-      }
+    ClientMessageSender() {
+      txFrame = ByteBuffer.allocate(CanMessage.MESSAGE_SIZE);
+    }
+
+    void start() {
+      running = true;
+      thread = Thread.ofVirtual().name("CS-CAN-TX").start(this);
     }
 
     void quit() {
       running = false;
-      interrupt(); // Wake up from blocking read
+      thread.interrupt();
     }
 
-    boolean isRunning() {
-      return running;
+    void join() throws InterruptedException {
+      thread.join();
     }
 
     @Override
     public void run() {
-      running = true;
-      Logger.trace("Started listening on port " + clientSocket.getLocalPort() + "...");
+      Logger.trace("Started sending to " + centralStationAddress.getHostAddress() + "...");
 
       while (running) {
+        CSTCPConnection.PendingRequest request;
+        txLock.lock();
         try {
-          CanMessage rx = readCanMessage();
-
-          if (rx != null) {
-            routeMessage(rx);
+          request = nextSendable();
+          while (request == null) {
+            sendable.await();
+            request = nextSendable();
           }
-
-        } catch (SocketException se) {
-          // Only notify if not intentionally closed
-          if (running) {
-            handleDisconnection();
-            running = false;
-          }
-
-        } catch (IOException ex) {
-          if (running) {
-            Logger.error("Error reading CAN message", ex);
+          if (request.expectsResponse()) {
+            inFlight.add(request);
           }
+        } catch (InterruptedException ex) {
+          break;
+        } finally {
+          txLock.unlock();
         }
+
+        send(request);
       }
 
-      Logger.debug("Stop receiving");
-      cleanup();
+      Logger.debug("Stop sending");
+      cancelPending();
     }
 
-    /**
-     * Read a single CAN message from the stream
-     */
-    private CanMessage readCanMessage() throws IOException {
-      // Read CAN message header (5 bytes)
-      int prio = din.readUnsignedByte();
-      int cmd = din.readUnsignedByte();
-      int hash = din.readUnsignedShort();
-      int dlc = din.readUnsignedByte();
-
-      // Read data bytes (always 8 bytes, even if DLC < 8)
-      byte[] data = new byte[CanMessage.DATA_SIZE];
-      din.readFully(data);
+    private void send(CSTCPConnection.PendingRequest request) {
+      CanMessage message = request.getMessage();
+      try {
+        txFrame.clear();
+        message.writeTo(txFrame);
+        txFrame.flip();
+        transport.write(txFrame);
+        long sentNanos = System.nanoTime();
+        request.markSent();
+
+        if (request.expectsResponse()) {
+          request.getFuture().whenComplete((m, t) -> {
+            if (m != null && m.isResponseComplete()) {
+              transport.recordLatency(System.nanoTime() - sentNanos);
+            } else {
+              transport.recordTimeout();
+            }
+          });
+        }
 
-      return new CanMessage(prio, cmd, hash, dlc, data);
+        if (debug) {
+          Logger.trace("TX: " + message);
+        }
+      } catch (IOException ex) {
+        Logger.error(ex.getMessage());
+        request.markComplete();
+      }
     }
 
     /**
-     * Route message to either a pending request or the event queue
+     * Release all callers which are still waiting on a queued or in flight request.
      */
-    private void routeMessage(CanMessage rx) {
-      int cmd = rx.getCommand();
-      boolean routed = false;
+    private void cancelPending() {
+      List<CSTCPConnection.PendingRequest> pending = new ArrayList<>();
+      txLock.lock();
+      try {
+        pending.addAll(outboundQueue.clear());
+        pending.addAll(inFlight);
+        txClosed = true;
+        notFull.signalAll();
+      } finally {
+        txLock.unlock();
+      }
 
-      if (pendingRequest != null && pendingRequest.matchesResponse(cmd)) {
-        // This is a response to a pending request
-        try {
-          int remainingBytes = din.available();
-          boolean complete = pendingRequest.addResponse(rx, remainingBytes);
+      for (CSTCPConnection.PendingRequest request : pending) {
+        request.markComplete();
+      }
+    }
+  }
 
-          if (debug) {
-            Logger.trace("RX (response): " + rx + " remaining=" + remainingBytes + " complete=" + complete);
-          }
+  /**
+   * Routes the frames received by the transport to either a pending request or the event queue.
+   */
+  private class CanFrameListener implements TransportListener<CanMessage> {
 
-          routed = true;
-        } catch (IOException ex) {
-          Logger.error("Error checking available bytes", ex);
-          pendingRequest.markComplete();
-        }
-      }
+    @Override
+    public void onFrame(CanMessage rx, int bufferedBytes) {
+      rx.setReceivedNanos(System.nanoTime());
+      boolean routed = routeResponse(rx, bufferedBytes);
 
       // If not routed to a pending request, it's an unsolicited event
       if (!routed) {
         eventQueue.offer(rx);
+        receivedEvents.increment();
 
         if (debug) {
           Logger.trace("RX (event): " + rx + " QueueSize: " + eventQueue.size());
@@ -570,22 +746,22 @@ class CSTCPConnection implements CSConnection {
       }
     }
 
-    private void handleDisconnection() {
+    @Override
+    public void onReconnect() {
+      notifyConnectionListeners(true);
+    }
+
+    @Override
+    public void onDisconnect() {
+      notifyConnectionListeners(false);
+    }
+
+    private void notifyConnectionListeners(boolean connected) {
       String msg = "Host " + centralStationAddress.getHostName();
-      ConnectionEvent de = new ConnectionEvent(msg, false, false);
+      ConnectionEvent de = new ConnectionEvent(msg, connected, false);
       for (ConnectionEventListener listener : disconnectionEventListeners) {
         listener.onConnectionChange(de);
       }
     }
-
-    private void cleanup() {
-      try {
-        if (din != null) {
-          din.close();
-        }
-      } catch (IOException ex) {
-        Logger.error("Error closing input stream", ex);
-      }
-    }
   }
 }
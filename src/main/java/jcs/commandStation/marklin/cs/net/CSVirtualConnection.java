@@ -19,6 +19,7 @@ import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.TransferQueue;
 import jcs.commandStation.VirtualConnection;
@@ -27,6 +28,7 @@ import jcs.commandStation.events.SensorEvent;
 import jcs.commandStation.marklin.cs.can.CanMessage;
 import jcs.commandStation.marklin.cs.can.CanMessageFactory;
 import jcs.commandStation.marklin.cs.can.parser.SystemStatus;
+import jcs.commandStation.net.TransportStatistics;
 import org.tinylog.Logger;
 import jcs.commandStation.events.ConnectionEventListener;
 
@@ -72,6 +74,7 @@ class CSVirtualConnection implements CSConnection, VirtualConnection {
 
     CanMessage eventMessage = CanMessageFactory.sensorEventMessage(deviceId, contactId, value, prevVal, 100, LINK_S88_UID);
 
+    eventMessage.setReceivedNanos(System.nanoTime());
     try {
       eventQueue.put(eventMessage);
     } catch (InterruptedException ex) {
@@ -240,6 +243,21 @@ class CSVirtualConnection implements CSConnection, VirtualConnection {
     return message;
   }
 
+  @Override
+  public CompletableFuture<CanMessage> sendCanMessageAsync(CanMessage message) {
+    return CompletableFuture.completedFuture(sendCanMessage(message));
+  }
+
+  @Override
+  public List<CanMessageScheduler.LaneStatistics> getLaneStatistics() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public TransportStatistics getTransportStatistics() {
+    return null;
+  }
+
   @Override
   public void close() throws Exception {
     disconnect();
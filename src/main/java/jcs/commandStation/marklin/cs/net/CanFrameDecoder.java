@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.marklin.cs.net;
+
+import java.nio.ByteBuffer;
+import jcs.commandStation.marklin.cs.can.CanMessage;
+import jcs.commandStation.net.FrameDecoder;
+
+/**
+ * A CAN frame is always 13 bytes, also when the DLC is less than 8.
+ */
+class CanFrameDecoder implements FrameDecoder<CanMessage> {
+
+  @Override
+  public CanMessage decode(ByteBuffer buffer) {
+    if (buffer.remaining() < CanMessage.MESSAGE_SIZE) {
+      return null;
+    }
+    return new CanMessage(buffer);
+  }
+
+  @Override
+  public void reset() {
+  }
+}
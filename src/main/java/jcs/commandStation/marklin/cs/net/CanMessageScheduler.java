@@ -0,0 +1,287 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.marklin.cs.net;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import jcs.commandStation.marklin.cs.can.CanMessage;
+
+/**
+ * Outbound queue of the CS connection, split in priority lanes.<br>
+ * Power and emergency stop commands are always sent first, then locomotive commands, then accessory and sensor commands and at last the bulk configuration traffic.<br>
+ * A speed change which is still waiting is replaced by a newer speed change for the same locomotive. The newer speed change is
+ * queued at the end, so it stays behind direction and function commands for the same locomotive which were queued after the
+ * superseded one; the CS resets the speed on a direction change.<br>
+ * A locomotive emergency stop or cycle stop passes the locomotive lane, so it supersedes the speed and direction changes which are
+ * still waiting for the same locomotive, or for all locomotives when the UID is 0. Otherwise they would be sent after the stop and
+ * start the locomotive again.<br>
+ * The scheduler is not thread safe, the connection guards it with its transmit lock.
+ */
+public class CanMessageScheduler {
+
+  public enum Lane {
+    EMERGENCY, LOCOMOTIVE, ACCESSORY, CONFIG;
+
+    /**
+     * All factory messages are created with PRIO_1, so the lane is derived from the command.
+     */
+    static Lane of(CanMessage message) {
+      return switch (message.getCommand()) {
+        case CanMessage.SYSTEM_COMMAND -> {
+          int subcmd = message.getSubCommand();
+          if (subcmd == CanMessage.STOP_SUB_CMD || subcmd == CanMessage.GO_SUB_CMD || subcmd == CanMessage.HALT_SUB_CMD
+                  || subcmd == CanMessage.LOC_STOP_SUB_CMD || subcmd == CanMessage.SYSTEM_SUB_LOC_CYCLE_STOP) {
+            yield EMERGENCY;
+          } else {
+            yield CONFIG;
+          }
+        }
+        case CanMessage.LOC_VELOCITY, CanMessage.LOC_DIRECTION, CanMessage.LOC_FUNCTION ->
+          LOCOMOTIVE;
+        case CanMessage.ACCESSORY_SWITCHING, CanMessage.S88_EVENT_QUERY ->
+          ACCESSORY;
+        default ->
+          CONFIG;
+      };
+    }
+  }
+
+  private final int capacity;
+  private final EnumMap<Lane, List<CSTCPConnection.PendingRequest>> lanes;
+  private final EnumMap<Lane, LaneStatistics> statistics;
+
+  CanMessageScheduler(int capacity) {
+    this.capacity = capacity;
+    lanes = new EnumMap<>(Lane.class);
+    statistics = new EnumMap<>(Lane.class);
+    for (Lane lane : Lane.values()) {
+      lanes.put(lane, new ArrayList<>());
+      statistics.put(lane, new LaneStatistics(lane));
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (List<CSTCPConnection.PendingRequest> queue : lanes.values()) {
+      size = size + queue.size();
+    }
+    return size;
+  }
+
+  /**
+   * An emergency request never waits for room in the queue.
+   */
+  boolean isFull(CSTCPConnection.PendingRequest request) {
+    return Lane.of(request.getMessage()) != Lane.EMERGENCY && size() >= capacity;
+  }
+
+  /**
+   * Add a request to its lane.
+   *
+   * @param request to enqueue
+   * @return the waiting requests which are superseded by this request, empty when none
+   */
+  List<CSTCPConnection.PendingRequest> offer(CSTCPConnection.PendingRequest request) {
+    Lane lane = Lane.of(request.getMessage());
+    List<CSTCPConnection.PendingRequest> queue = lanes.get(lane);
+    LaneStatistics stats = statistics.get(lane);
+    stats.enqueued++;
+
+    if (isSpeedChange(request.getMessage())) {
+      int uid = request.getMessage().getDeviceUidNumberFromMessage();
+      for (int i = 0; i < queue.size(); i++) {
+        CSTCPConnection.PendingRequest waiting = queue.get(i);
+        if (isSpeedChange(waiting.getMessage()) && waiting.getMessage().getDeviceUidNumberFromMessage() == uid) {
+          //Drop the superseded speed change, the newer one is queued at the end to keep the order with later commands
+          request.setEnqueuedNanos(waiting.getEnqueuedNanos());
+          queue.remove(i);
+          queue.add(request);
+          stats.coalesced++;
+          return List.of(waiting);
+        }
+      }
+    }
+
+    queue.add(request);
+
+    if (isLocomotiveStop(request.getMessage())) {
+      return supersedeMotion(request.getMessage().getDeviceUidNumberFromMessage());
+    }
+    return List.of();
+  }
+
+  /**
+   * Remove the waiting speed and direction changes of a locomotive which is stopped.
+   */
+  private List<CSTCPConnection.PendingRequest> supersedeMotion(int uid) {
+    List<CSTCPConnection.PendingRequest> superseded = new ArrayList<>();
+    LaneStatistics stats = statistics.get(Lane.LOCOMOTIVE);
+    for (Iterator<CSTCPConnection.PendingRequest> it = lanes.get(Lane.LOCOMOTIVE).iterator(); it.hasNext();) {
+      CSTCPConnection.PendingRequest waiting = it.next();
+      CanMessage message = waiting.getMessage();
+      if ((isSpeedChange(message) || isDirectionChange(message)) && (uid == 0 || message.getDeviceUidNumberFromMessage() == uid)) {
+        it.remove();
+        stats.coalesced++;
+        superseded.add(waiting);
+      }
+    }
+    return superseded;
+  }
+
+  /**
+   * Remove the first request, in lane priority order, which is not blocked.<br>
+   * A request is also blocked when it collides with a blocked request before it, so the order per command and UID is kept.
+   *
+   * @param blocked test whether a request can not be send yet
+   * @param inFlightFull when true only emergency requests are considered
+   * @return the next request to send or null
+   */
+  CSTCPConnection.PendingRequest poll(Predicate<CSTCPConnection.PendingRequest> blocked, boolean inFlightFull) {
+    List<CSTCPConnection.PendingRequest> waiting = new ArrayList<>();
+    for (Lane lane : Lane.values()) {
+      if (inFlightFull && lane != Lane.EMERGENCY) {
+        break;
+      }
+
+      List<CSTCPConnection.PendingRequest> queue = lanes.get(lane);
+      for (int i = 0; i < queue.size(); i++) {
+        CSTCPConnection.PendingRequest candidate = queue.get(i);
+        boolean collides = blocked.test(candidate);
+        for (CSTCPConnection.PendingRequest w : waiting) {
+          collides = collides || candidate.collidesWith(w);
+        }
+
+        if (collides) {
+          waiting.add(candidate);
+        } else {
+          queue.remove(i);
+          statistics.get(lane).sent(System.nanoTime() - candidate.getEnqueuedNanos());
+          return candidate;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Remove all waiting requests.
+   *
+   * @return the removed requests
+   */
+  List<CSTCPConnection.PendingRequest> clear() {
+    List<CSTCPConnection.PendingRequest> removed = new ArrayList<>();
+    for (List<CSTCPConnection.PendingRequest> queue : lanes.values()) {
+      removed.addAll(queue);
+      queue.clear();
+    }
+    return removed;
+  }
+
+  List<LaneStatistics> getStatistics() {
+    List<LaneStatistics> snapshot = new ArrayList<>();
+    for (Lane lane : Lane.values()) {
+      snapshot.add(new LaneStatistics(statistics.get(lane), lanes.get(lane).size()));
+    }
+    return snapshot;
+  }
+
+  private static boolean isSpeedChange(CanMessage message) {
+    return message.getCommand() == CanMessage.LOC_VELOCITY && message.getDlc() == CanMessage.DLC_6;
+  }
+
+  private static boolean isDirectionChange(CanMessage message) {
+    return message.getCommand() == CanMessage.LOC_DIRECTION && message.getDlc() == CanMessage.DLC_5;
+  }
+
+  private static boolean isLocomotiveStop(CanMessage message) {
+    if (message.getCommand() != CanMessage.SYSTEM_COMMAND) {
+      return false;
+    }
+    int subcmd = message.getSubCommand();
+    return subcmd == CanMessage.LOC_STOP_SUB_CMD || subcmd == CanMessage.SYSTEM_SUB_LOC_CYCLE_STOP;
+  }
+
+  /**
+   * Snapshot of the queue depth and wait times of a lane
+   */
+  public static class LaneStatistics {
+
+    private final Lane lane;
+    private int queueDepth;
+    private long enqueued;
+    private long sent;
+    private long coalesced;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    LaneStatistics(Lane lane) {
+      this.lane = lane;
+    }
+
+    LaneStatistics(LaneStatistics other, int queueDepth) {
+      this.lane = other.lane;
+      this.queueDepth = queueDepth;
+      this.enqueued = other.enqueued;
+      this.sent = other.sent;
+      this.coalesced = other.coalesced;
+      this.totalWaitNanos = other.totalWaitNanos;
+      this.maxWaitNanos = other.maxWaitNanos;
+    }
+
+    void sent(long waitNanos) {
+      sent++;
+      totalWaitNanos = totalWaitNanos + waitNanos;
+      maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    public Lane getLane() {
+      return lane;
+    }
+
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    public long getEnqueued() {
+      return enqueued;
+    }
+
+    public long getSent() {
+      return sent;
+    }
+
+    public long getCoalesced() {
+      return coalesced;
+    }
+
+    public double getAverageWaitMillis() {
+      return sent == 0 ? 0 : totalWaitNanos / (sent * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis() {
+      return maxWaitNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+      return lane + " depth: " + queueDepth + " enqueued: " + enqueued + " sent: " + sent + " coalesced: " + coalesced
+              + " avg wait: " + String.format("%.2f", getAverageWaitMillis()) + " ms max wait: " + String.format("%.2f", getMaxWaitMillis()) + " ms";
+    }
+  }
+}
@@ -19,6 +19,7 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Supplier;
 import javax.imageio.ImageIO;
 import org.h2.util.IOUtils;
 import org.json.JSONObject;
@@ -39,7 +40,8 @@ public class FunctionSvgToPngConverter {
   private static final String GREY = "<style>.st0{fill:rgb(102, 102, 102);}</style>";
   private static final String BLACK = "<style>.st0{fill:rgb(0, 0, 0);}</style>";
 
-  private static final Map<String, String> functionSvgCache = new HashMap<>();
+  //Replaced as a whole when loaded, so the images can be transcoded by several threads at once
+  private static volatile Map<String, String> functionSvgCache = Map.of();
 
   static {
     ImageIO.scanForPlugins();
@@ -141,18 +143,31 @@ public class FunctionSvgToPngConverter {
   }
 
   public static void loadSvgCache(String json) {
-    functionSvgCache.clear();
+    Map<String, String> svgs = new HashMap<>();
     JSONObject jsonObject = new JSONObject(json);
     for (String key : jsonObject.keySet()) {
       String svg = jsonObject.getString(key);
       String svgName = key.substring(0, key.indexOf("."));
-      functionSvgCache.put(svgName, svg);
+      svgs.put(svgName, svg);
     }
-    Logger.trace("Loaded " + functionSvgCache.size() + " svg images");
+    functionSvgCache = svgs;
+    Logger.trace("Loaded " + svgs.size() + " svg images");
   }
-  
+
+  /**
+   * Load the SVG cache when it is not loaded yet. Concurrent callers wait for the first one, so the JSON is fetched once.
+   *
+   * @param json supplies the JSON with the SVG images
+   */
+  public static synchronized void loadSvgCacheIfAbsent(Supplier<String> json) {
+    if (!isSvgCacheLoaded()) {
+      Logger.trace("Loading SVG Cache");
+      loadSvgCache(json.get());
+    }
+  }
+
   public static void clearSvgCache() {
-    functionSvgCache.clear();
+    functionSvgCache = Map.of();
   }
 
   public static boolean isSvgCacheLoaded() {
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cuts the byte stream received from a command station into protocol frames.
+ *
+ * @param <T> the frame type
+ */
+public interface FrameDecoder<T> {
+
+  /**
+   * Decode the next frame from the buffer.<br>
+   * The buffer is in read mode. When a frame is complete its bytes are consumed and the frame is returned.<br>
+   * When the buffer does not yet contain a complete frame the position must be left at the start of the frame.
+   *
+   * @param buffer the received bytes
+   * @return the next frame or null when more bytes are needed
+   */
+  T decode(ByteBuffer buffer);
+
+  /**
+   * Forget any partial frame, called when the connection is re-established.
+   */
+  void reset();
+
+}
@@ -17,14 +17,12 @@ package jcs.commandStation.net;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -35,7 +33,8 @@ import org.tinylog.Logger;
 
 /**
  * Downloads locomotive function icons from the JMRI icon repository into the local JCS cache directory.<br>
- * The download is skipped when the icons are already present on disk.
+ * The download is skipped when a previous download has completed. The icons are downloaded in parallel by the
+ * {@link ImageSyncEngine}, an interrupted download resumes where it stopped.
  *
  * Idea is the same as for the Marklin and ESu locomotive Images download from the Command Station. Download is done on the Uses PCto avoid copyright issues when storing these images in Github
  *
@@ -74,6 +73,7 @@ public class FunctionIconDownloader {
 
   private final HttpClient httpClient;
   private final Path cacheDirectory;
+  private final String baseUrl;
 
   /**
    * Creates a downloader using the default cache directory and a shared {@link HttpClient}.
@@ -88,7 +88,18 @@ public class FunctionIconDownloader {
    * @param cacheDirectory target directory where icons are stored
    */
   FunctionIconDownloader(Path cacheDirectory) {
+    this(cacheDirectory, ICON_BASE_URL);
+  }
+
+  /**
+   * Creates a downloader with a custom cache directory and icon site. Intended for unit testing.
+   *
+   * @param cacheDirectory target directory where icons are stored
+   * @param baseUrl URL of the icon directory, ending with a slash
+   */
+  FunctionIconDownloader(Path cacheDirectory, String baseUrl) {
     this.cacheDirectory = cacheDirectory;
+    this.baseUrl = baseUrl;
     this.httpClient = HttpClient.newBuilder()
             .connectTimeout(TIMEOUT)
             .followRedirects(HttpClient.Redirect.NORMAL)
@@ -96,8 +107,9 @@ public class FunctionIconDownloader {
   }
 
   /**
-   * Returns {@code true} when the cache directory exists <em>and</em> contains at least one {@code .png} file,<br>
-   * meaning a previous download has already completed.
+   * Returns {@code true} when a previous download has completed.<br>
+   * Without a synchronization manifest, from before the parallel download, the icons are cached when the cache directory
+   * contains at least one {@code .png} file.
    *
    * @return {@code true} if icons are already cached
    */
@@ -105,6 +117,10 @@ public class FunctionIconDownloader {
     if (!Files.isDirectory(cacheDirectory)) {
       return false;
     }
+    ImageSyncManifest manifest = new ImageSyncManifest(cacheDirectory.resolve(ImageSyncEngine.MANIFEST_FILE));
+    if (manifest.exists()) {
+      return manifest.isComplete();
+    }
     File[] pngFiles = cacheDirectory.toFile().listFiles(
             (dir, name) -> name.toLowerCase().endsWith(".png"));
     return pngFiles != null && pngFiles.length > 0;
@@ -112,7 +128,8 @@ public class FunctionIconDownloader {
 
   /**
    * Downloads all PNG icons from {@value #ICON_BASE_URL} into the local cache directory.<br>
-   * If the icons are already cached this method returns immediately without making any network requests.
+   * If the icons are already cached this method returns immediately without making any network requests. Otherwise only the
+   * icons which are new or changed are downloaded.
    *
    * @return the number of icons that were downloaded; 0 when the cache was already populated or the index page contained no PNG links
    * @throws IOException if the cache directory cannot be created or a file cannot be written
@@ -128,22 +145,21 @@ public class FunctionIconDownloader {
 
     List<String> iconFileNames = fetchIconFileNames();
     if (iconFileNames.isEmpty()) {
-      Logger.warn("No PNG icons found at {}; nothing downloaded.", ICON_BASE_URL);
+      Logger.warn("No PNG icons found at {}; nothing downloaded.", baseUrl);
       return 0;
     }
 
-    Logger.info("Downloading {} function icon(s) from {} ...", iconFileNames.size(), ICON_BASE_URL);
+    Logger.info("Downloading {} function icon(s) from {} ...", iconFileNames.size(), baseUrl);
 
-    int downloadCount = 0;
+    List<ImageSyncEngine.Task> tasks = new ArrayList<>();
     for (String fileName : iconFileNames) {
-      Path target = cacheDirectory.resolve(fileName);
-      if (downloadIcon(fileName, target)) {
-        downloadCount++;
-      }
+      tasks.add(ImageSyncEngine.Task.download(URI.create(baseUrl + fileName), cacheDirectory.resolve(fileName)));
     }
+    ImageSyncEngine engine = new ImageSyncEngine(cacheDirectory.resolve(ImageSyncEngine.MANIFEST_FILE));
+    ImageSyncEngine.Result result = engine.sync(tasks, null);
 
-    Logger.info("Downloaded {} function icon(s) to {}.", downloadCount, cacheDirectory);
-    return downloadCount;
+    Logger.info("Function icons in {}: {}", cacheDirectory, result);
+    return result.downloaded();
   }
 
   /**
@@ -155,7 +171,7 @@ public class FunctionIconDownloader {
    * @throws InterruptedException if interrupted while waiting for the response
    */
   public List<String> fetchIconFileNames() throws IOException, InterruptedException {
-    String html = fetchPageContent(ICON_BASE_URL);
+    String html = fetchPageContent(baseUrl);
     return parseIconFileNames(html);
   }
 
@@ -236,46 +252,6 @@ public class FunctionIconDownloader {
     return Collections.unmodifiableList(names);
   }
 
-  /**
-   * Downloads a single icon file and saves it to {@code target}.
-   *
-   * @param fileName icon file name (used to build the download URL)
-   * @param target local destination path
-   * @return {@code true} on success, {@code false} on error (the error is logged but not rethrown so that remaining icons can still download)
-   */
-  private boolean downloadIcon(String fileName, Path target) {
-    String iconUrl = ICON_BASE_URL + fileName;
-    try {
-      HttpRequest request = HttpRequest.newBuilder()
-              .uri(URI.create(iconUrl))
-              .timeout(TIMEOUT)
-              .GET()
-              .build();
-
-      HttpResponse<InputStream> response
-              = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
-
-      if (response.statusCode() != 200) {
-        Logger.warn("Skipping {} — HTTP {}", fileName, response.statusCode());
-        return false;
-      }
-
-      try (InputStream in = response.body()) {
-        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
-      }
-
-      Logger.debug("Downloaded: {}", fileName);
-      return true;
-
-    } catch (IOException | InterruptedException ex) {
-      Logger.error(ex, "Failed to download icon: {}", iconUrl);
-      if (ex instanceof InterruptedException) {
-        Thread.currentThread().interrupt();
-      }
-      return false;
-    }
-  }
-
   public static void main(String[] a) {
     FunctionIconDownloader fid = new FunctionIconDownloader();
     try {
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import javax.imageio.ImageIO;
+import jcs.ui.util.ImageUtil;
+import org.tinylog.Logger;
+
+/**
+ * Synchronizes images from a command station or a web site into the local cache directory.<br>
+ * The images are handled in parallel by a bounded number of threads. A download sends the validators of the previous fetch
+ * (ETag and Last-Modified), so an unchanged file costs only a 304 response. An image which is produced locally, like a
+ * transcoded SVG, is only written when the PNG differs from the file on disk.<br>
+ * When the previous synchronization did not complete, files which were verified a short while ago are skipped without any
+ * request, so an interrupted synchronization resumes where it stopped. After a completed synchronization every file is
+ * checked again.
+ */
+public class ImageSyncEngine {
+
+  public static final String MANIFEST_FILE = ".sync-manifest.properties";
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  private static final int SAVE_INTERVAL = 25;
+
+  public enum Status {
+    PENDING, DOWNLOADED, UNCHANGED, FAILED;
+
+    public boolean isAvailable() {
+      return this == DOWNLOADED || this == UNCHANGED;
+    }
+  }
+
+  /**
+   * A single image to synchronize.
+   */
+  public static final class Task {
+
+    private final URI source;
+    private final Callable<? extends Image> producer;
+    private final Path target;
+    private volatile Status status = Status.PENDING;
+
+    private Task(URI source, Callable<? extends Image> producer, Path target) {
+      this.source = source;
+      this.producer = producer;
+      this.target = target;
+    }
+
+    /**
+     * @param source the URI of the PNG image
+     * @param target the local file
+     * @return a task which downloads the image
+     */
+    public static Task download(URI source, Path target) {
+      return new Task(source, null, target);
+    }
+
+    /**
+     * @param producer creates the image, returns null when the image is not available
+     * @param target the local file, written as PNG
+     * @return a task which produces the image locally
+     */
+    public static Task produce(Callable<? extends Image> producer, Path target) {
+      return new Task(null, producer, target);
+    }
+
+    public Path getTarget() {
+      return target;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    @Override
+    public String toString() {
+      return (source != null ? source.toString() : "produced") + " -> " + target + " " + status;
+    }
+  }
+
+  /**
+   * Outcome of a synchronization.
+   */
+  public record Result(int downloaded, int unchanged, int failed, long elapsedMillis) {
+
+    @Override
+    public String toString() {
+      return "Downloaded: " + downloaded + " unchanged: " + unchanged + " failed: " + failed + " in " + elapsedMillis + " ms";
+    }
+  }
+
+  private final HttpClient httpClient;
+  private final ImageSyncManifest manifest;
+  private final int threads;
+  private final long freshMillis;
+
+  /**
+   * @param manifestFile the file in which the state of the synchronized images is kept
+   */
+  public ImageSyncEngine(Path manifestFile) {
+    this(manifestFile, Integer.getInteger("image.sync.threads", 8), Integer.getInteger("image.sync.fresh.minutes", 10) * 60_000L);
+  }
+
+  ImageSyncEngine(Path manifestFile, int threads, long freshMillis) {
+    this.manifest = new ImageSyncManifest(manifestFile);
+    this.threads = Math.max(1, threads);
+    this.freshMillis = freshMillis;
+    this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+  }
+
+  ImageSyncManifest getManifest() {
+    return manifest;
+  }
+
+  /**
+   * Synchronize the images. The call returns when all tasks are done, the status of each task tells the outcome.
+   *
+   * @param tasks the images to synchronize
+   * @param progress receives the number of finished tasks, called from the worker threads, may be null
+   * @return the totals
+   * @throws InterruptedException when interrupted while waiting, the manifest still records the finished tasks
+   */
+  public Result sync(List<Task> tasks, IntConsumer progress) throws InterruptedException {
+    long start = System.currentTimeMillis();
+    //Only a resumed synchronization skips the recently verified files
+    boolean resuming = !manifest.isComplete();
+    manifest.setComplete(false);
+
+    AtomicInteger finished = new AtomicInteger();
+    CountDownLatch done = new CountDownLatch(tasks.size());
+    AtomicInteger count = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "IMAGE-SYNC-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+
+    try {
+      for (Task task : tasks) {
+        executor.execute(() -> {
+          try {
+            task.status = run(task, resuming);
+          } catch (RuntimeException e) {
+            Logger.warn("Synchronization of " + task.target + " failed. Cause: " + e.getMessage());
+            task.status = Status.FAILED;
+          }
+          int n = finished.incrementAndGet();
+          if (n % SAVE_INTERVAL == 0) {
+            manifest.save();
+          }
+          if (progress != null) {
+            progress.accept(n);
+          }
+          done.countDown();
+        });
+      }
+      done.await();
+    } finally {
+      executor.shutdownNow();
+      manifest.save();
+    }
+
+    int downloaded = 0;
+    int unchanged = 0;
+    int failed = 0;
+    for (Task task : tasks) {
+      switch (task.status) {
+        case DOWNLOADED ->
+          downloaded++;
+        case UNCHANGED ->
+          unchanged++;
+        default ->
+          failed++;
+      }
+    }
+    if (failed == 0) {
+      manifest.setComplete(true);
+      manifest.save();
+    }
+
+    Result result = new Result(downloaded, unchanged, failed, System.currentTimeMillis() - start);
+    Logger.debug("Image synchronization " + result);
+    return result;
+  }
+
+  private Status run(Task task, boolean resuming) {
+    String key = task.target.toAbsolutePath().normalize().toString();
+    ImageSyncManifest.Entry entry = manifest.get(key);
+    long now = System.currentTimeMillis();
+
+    //Only trust the manifest when the file on disk is the one it describes
+    long size = fileSize(task.target);
+    if (entry != null && entry.size() != size) {
+      entry = null;
+    }
+    if (resuming && entry != null && now - entry.verifiedMillis() < freshMillis) {
+      return Status.UNCHANGED;
+    }
+
+    try {
+      if (task.source != null) {
+        return download(task, key, entry, now);
+      } else {
+        return produce(task, key, entry, now);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Status.FAILED;
+    } catch (Exception e) {
+      Logger.warn("Synchronization of " + task.target + " failed. Cause: " + e.getMessage());
+      return Status.FAILED;
+    }
+  }
+
+  private Status download(Task task, String key, ImageSyncManifest.Entry entry, long now) throws IOException, InterruptedException {
+    HttpRequest.Builder builder = HttpRequest.newBuilder().uri(task.source).timeout(TIMEOUT).GET();
+    if (entry != null) {
+      if (entry.etag() != null) {
+        builder.header("If-None-Match", entry.etag());
+      }
+      if (entry.lastModified() != null) {
+        builder.header("If-Modified-Since", entry.lastModified());
+      }
+    }
+
+    HttpResponse<InputStream> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+    try (InputStream in = response.body()) {
+      if (response.statusCode() == 304 && entry != null) {
+        manifest.put(key, entry.verified(now));
+        return Status.UNCHANGED;
+      }
+      if (response.statusCode() != 200) {
+        Logger.trace("Skipping " + task.source + " HTTP " + response.statusCode());
+        return Status.FAILED;
+      }
+
+      long size = write(in, task.target);
+      String etag = response.headers().firstValue("ETag").orElse(null);
+      String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+      manifest.put(key, new ImageSyncManifest.Entry(size, now, etag, lastModified));
+      return Status.DOWNLOADED;
+    }
+  }
+
+  private Status produce(Task task, String key, ImageSyncManifest.Entry entry, long now) throws Exception {
+    Image image = task.producer.call();
+    if (image == null) {
+      return Status.FAILED;
+    }
+    BufferedImage bufferedImage = image instanceof BufferedImage bi ? bi : ImageUtil.toBufferedImage(image);
+    ByteArrayOutputStream png = new ByteArrayOutputStream();
+    ImageIO.write(bufferedImage, "png", png);
+    byte[] bytes = png.toByteArray();
+
+    if (Files.exists(task.target) && Files.size(task.target) == bytes.length && Arrays.equals(bytes, Files.readAllBytes(task.target))) {
+      manifest.put(key, new ImageSyncManifest.Entry(bytes.length, now, null, null));
+      return Status.UNCHANGED;
+    }
+
+    try (InputStream in = new ByteArrayInputStream(bytes)) {
+      write(in, task.target);
+    }
+    manifest.put(key, new ImageSyncManifest.Entry(bytes.length, now, null, null));
+    return Status.DOWNLOADED;
+  }
+
+  /**
+   * Write to a temporary file first, so an interrupted transfer never leaves a broken image behind.
+   */
+  private static long write(InputStream in, Path target) throws IOException {
+    Path dir = target.toAbsolutePath().getParent();
+    Files.createDirectories(dir);
+    Path temp = Files.createTempFile(dir, target.getFileName().toString(), ".part");
+    try {
+      long size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      return size;
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static long fileSize(Path file) {
+    try {
+      return Files.exists(file) ? Files.size(file) : -1;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import org.tinylog.Logger;
+
+/**
+ * Remembers per synchronized image file the validators of the last fetch, so a next synchronization can skip unchanged
+ * files.<br>
+ * The manifest is written while the synchronization is running, so an interrupted synchronization resumes where it stopped.
+ */
+class ImageSyncManifest {
+
+  private static final String COMPLETE = "sync.complete";
+
+  /**
+   * What is known about a synchronized file.
+   *
+   * @param size the size of the file
+   * @param verifiedMillis when the file was last checked against the source
+   * @param etag the ETag of the source, may be null
+   * @param lastModified the Last-Modified header of the source, may be null
+   */
+  record Entry(long size, long verifiedMillis, String etag, String lastModified) {
+
+    Entry verified(long millis) {
+      return new Entry(size, millis, etag, lastModified);
+    }
+
+    private String format() {
+      return size + "\t" + verifiedMillis + "\t" + (etag != null ? etag : "") + "\t" + (lastModified != null ? lastModified : "");
+    }
+
+    private static Entry parse(String value) {
+      String[] parts = value.split("\t", 4);
+      if (parts.length < 2) {
+        return null;
+      }
+      try {
+        String etag = parts.length > 2 && !parts[2].isEmpty() ? parts[2] : null;
+        String lastModified = parts.length > 3 && !parts[3].isEmpty() ? parts[3] : null;
+        return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), etag, lastModified);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+
+  private final Path file;
+  private final Properties entries = new Properties();
+  private boolean dirty;
+
+  ImageSyncManifest(Path file) {
+    this.file = file;
+    if (Files.exists(file)) {
+      try (InputStream in = Files.newInputStream(file)) {
+        entries.load(in);
+      } catch (IOException e) {
+        Logger.warn("Can't read manifest " + file + ". Cause: " + e.getMessage());
+        entries.clear();
+      }
+    }
+  }
+
+  boolean exists() {
+    return Files.exists(file);
+  }
+
+  synchronized Entry get(String key) {
+    String value = entries.getProperty(key);
+    return value != null ? Entry.parse(value) : null;
+  }
+
+  synchronized void put(String key, Entry entry) {
+    entries.setProperty(key, entry.format());
+    dirty = true;
+  }
+
+  synchronized boolean isComplete() {
+    return Boolean.parseBoolean(entries.getProperty(COMPLETE));
+  }
+
+  synchronized void setComplete(boolean complete) {
+    entries.setProperty(COMPLETE, Boolean.toString(complete));
+    dirty = true;
+  }
+
+  /**
+   * Write the manifest when it has changed. The file is replaced at once, so a crash never leaves a partial manifest.
+   */
+  synchronized void save() {
+    if (!dirty) {
+      return;
+    }
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "manifest", ".tmp");
+      try (OutputStream out = Files.newOutputStream(temp)) {
+        entries.store(out, "JCS image synchronization");
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      dirty = false;
+    } catch (IOException e) {
+      Logger.warn("Can't write manifest " + file + ". Cause: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+import org.tinylog.Logger;
+
+/**
+ * TCP transport shared by the network connections of the command stations.<br>
+ * The socket channel is read by a single virtual thread which decodes the received bytes into frames and hands them to the
+ * listener. Writes are serialized and block while the socket send buffer is full.<br>
+ * When the connection is lost the transport tries to reconnect with an exponential backoff. Only when that fails the
+ * listener is told that the connection is gone.
+ *
+ * @param <T> the frame type
+ */
+public class TcpTransport<T> {
+
+  private static final int INITIAL_BUFFER_SIZE = 8192;
+  private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+
+  private final String name;
+  private final InetSocketAddress address;
+  private final FrameDecoder<T> decoder;
+  private final TransportListener<T> listener;
+  private final TransportStatistics statistics;
+
+  private final int reconnectAttempts;
+  private final long reconnectDelay;
+  private final long reconnectMaxDelay;
+
+  private final ReentrantLock writeLock;
+  private volatile SocketChannel channel;
+  private volatile boolean running;
+  private Thread receiver;
+  private ByteBuffer rxBuffer;
+
+  public TcpTransport(String name, InetAddress address, int port, FrameDecoder<T> decoder, TransportListener<T> listener) {
+    this.name = name;
+    this.address = new InetSocketAddress(address, port);
+    this.decoder = decoder;
+    this.listener = listener;
+    this.statistics = new TransportStatistics(name);
+
+    reconnectAttempts = Integer.getInteger("connection.reconnect.attempts", 5);
+    reconnectDelay = Long.getLong("connection.reconnect.delay", 250L);
+    reconnectMaxDelay = Long.getLong("connection.reconnect.max.delay", 8000L);
+
+    writeLock = new ReentrantLock();
+    rxBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+  }
+
+  /**
+   * Open the connection and start receiving.
+   *
+   * @throws IOException when the command station can not be reached
+   */
+  public void connect() throws IOException {
+    channel = open();
+    running = true;
+    receiver = Thread.ofVirtual().name(name + "-RX").start(this::receive);
+  }
+
+  private SocketChannel open() throws IOException {
+    SocketChannel sc = SocketChannel.open(address);
+    sc.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+    sc.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    return sc;
+  }
+
+  /**
+   * Write all remaining bytes of the buffer.
+   *
+   * @param buffer the bytes to send
+   * @throws IOException when the connection is closed or lost
+   */
+  public void write(ByteBuffer buffer) throws IOException {
+    writeLock.lock();
+    try {
+      SocketChannel sc = channel;
+      if (sc == null || !running) {
+        throw new ClosedChannelException();
+      }
+      int bytes = buffer.remaining();
+      while (buffer.hasRemaining()) {
+        sc.write(buffer);
+      }
+      statistics.sent(bytes);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public void write(String message) throws IOException {
+    write(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Record the round trip time of a request which received its complete response.
+   *
+   * @param latencyNanos time between writing the request and receiving the response
+   */
+  public void recordLatency(long latencyNanos) {
+    statistics.response(latencyNanos);
+  }
+
+  /**
+   * Record a request which did not receive a (complete) response in time.
+   */
+  public void recordTimeout() {
+    statistics.timeout();
+  }
+
+  public TransportStatistics getStatistics() {
+    return statistics.snapshot();
+  }
+
+  public boolean isConnected() {
+    SocketChannel sc = channel;
+    return running && sc != null && sc.isConnected();
+  }
+
+  public InetAddress getAddress() {
+    return address.getAddress();
+  }
+
+  private void receive() {
+    Logger.trace("Started listening on " + address + " ...");
+    while (running) {
+      try {
+        int bytes = channel.read(rxBuffer);
+        if (bytes < 0) {
+          throw new EOFException("Connection closed by " + address);
+        }
+        statistics.received(bytes);
+
+        rxBuffer.flip();
+        T frame = decoder.decode(rxBuffer);
+        while (frame != null) {
+          statistics.frameReceived();
+          listener.onFrame(frame, rxBuffer.remaining());
+          frame = decoder.decode(rxBuffer);
+        }
+        rxBuffer.compact();
+
+        if (!rxBuffer.hasRemaining()) {
+          growBuffer();
+        }
+      } catch (IOException ex) {
+        if (running) {
+          Logger.warn(name + " connection lost. Cause: " + ex.getMessage());
+          if (!reconnect()) {
+            running = false;
+            listener.onDisconnect();
+          }
+        }
+      }
+    }
+
+    closeChannel();
+    Logger.debug("Stop receiving from " + address);
+  }
+
+  /**
+   * A frame does not fit in the receive buffer, double it up to the maximum size.
+   */
+  private void growBuffer() {
+    if (rxBuffer.capacity() < MAX_BUFFER_SIZE) {
+      ByteBuffer bigger = ByteBuffer.allocate(rxBuffer.capacity() * 2);
+      rxBuffer.flip();
+      bigger.put(rxBuffer);
+      rxBuffer = bigger;
+    } else {
+      Logger.error(name + " frame exceeds " + MAX_BUFFER_SIZE + " bytes, discarding received data");
+      rxBuffer.clear();
+      decoder.reset();
+    }
+  }
+
+  /**
+   * Try to re-open the connection, doubling the delay after every failed attempt.
+   *
+   * @return true when the connection is re-established
+   */
+  private boolean reconnect() {
+    closeChannel();
+    long delay = reconnectDelay;
+    for (int attempt = 1; attempt <= reconnectAttempts && running; attempt++) {
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException ex) {
+        return false;
+      }
+
+      try {
+        SocketChannel sc = open();
+        writeLock.lock();
+        try {
+          channel = sc;
+        } finally {
+          writeLock.unlock();
+        }
+        if (!running) {
+          closeChannel();
+          return false;
+        }
+
+        rxBuffer.clear();
+        decoder.reset();
+        statistics.reconnected();
+        Logger.info(name + " reconnected with " + address + " after " + attempt + " attempt(s)");
+        listener.onReconnect();
+        return true;
+      } catch (IOException ex) {
+        Logger.debug(name + " reconnect attempt " + attempt + " failed. Cause: " + ex.getMessage());
+        delay = Math.min(delay * 2, reconnectMaxDelay);
+      }
+    }
+    return false;
+  }
+
+  private void closeChannel() {
+    SocketChannel sc = channel;
+    if (sc != null) {
+      try {
+        sc.close();
+      } catch (IOException ex) {
+        Logger.error("Can't close channel. Cause: " + ex.getMessage());
+        Logger.trace(ex);
+      }
+    }
+  }
+
+  /**
+   * Stop receiving and close the connection.<br>
+   * Closing the channel wakes up the receiver when it is blocked in a read.
+   */
+  public void close() {
+    running = false;
+    closeChannel();
+    if (receiver != null && receiver != Thread.currentThread()) {
+      receiver.interrupt();
+      try {
+        receiver.join(1000);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    Logger.debug(statistics.snapshot());
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+/**
+ * Receives the frames and connection state changes of a TcpTransport.<br>
+ * All methods are called on the receiver thread of the transport. As long as a method blocks no new bytes are read,
+ * so a slow consumer pushes back to the command station via TCP flow control.
+ *
+ * @param <T> the frame type
+ */
+public interface TransportListener<T> {
+
+  /**
+   * @param frame the received frame
+   * @param bufferedBytes the number of bytes received after this frame which are not yet decoded
+   */
+  void onFrame(T frame, int bufferedBytes);
+
+  /**
+   * The connection was lost and is re-established.
+   */
+  void onReconnect();
+
+  /**
+   * The connection was lost and could not be re-established.
+   */
+  void onDisconnect();
+
+}
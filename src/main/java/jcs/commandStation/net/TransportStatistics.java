@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+/**
+ * Traffic and request latency of a command station connection.<br>
+ * The latency is the time between writing a request and receiving its complete response, measured the same way for all
+ * command stations.
+ */
+public class TransportStatistics {
+
+  private final String name;
+  private long bytesReceived;
+  private long bytesSent;
+  private long framesReceived;
+  private long framesSent;
+  private long reconnects;
+  private long responses;
+  private long timeouts;
+  private long totalLatencyNanos;
+  private long maxLatencyNanos;
+
+  TransportStatistics(String name) {
+    this.name = name;
+  }
+
+  private TransportStatistics(TransportStatistics other) {
+    this.name = other.name;
+    this.bytesReceived = other.bytesReceived;
+    this.bytesSent = other.bytesSent;
+    this.framesReceived = other.framesReceived;
+    this.framesSent = other.framesSent;
+    this.reconnects = other.reconnects;
+    this.responses = other.responses;
+    this.timeouts = other.timeouts;
+    this.totalLatencyNanos = other.totalLatencyNanos;
+    this.maxLatencyNanos = other.maxLatencyNanos;
+  }
+
+  synchronized TransportStatistics snapshot() {
+    return new TransportStatistics(this);
+  }
+
+  synchronized void received(int bytes) {
+    bytesReceived = bytesReceived + bytes;
+  }
+
+  synchronized void frameReceived() {
+    framesReceived++;
+  }
+
+  synchronized void sent(int bytes) {
+    bytesSent = bytesSent + bytes;
+    framesSent++;
+  }
+
+  synchronized void reconnected() {
+    reconnects++;
+  }
+
+  synchronized void response(long latencyNanos) {
+    responses++;
+    totalLatencyNanos = totalLatencyNanos + latencyNanos;
+    maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+  }
+
+  synchronized void timeout() {
+    timeouts++;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  public long getFramesReceived() {
+    return framesReceived;
+  }
+
+  public long getFramesSent() {
+    return framesSent;
+  }
+
+  public long getReconnects() {
+    return reconnects;
+  }
+
+  public long getResponses() {
+    return responses;
+  }
+
+  public long getTimeouts() {
+    return timeouts;
+  }
+
+  public double getAverageLatencyMillis() {
+    return responses == 0 ? 0 : totalLatencyNanos / (responses * 1_000_000.0);
+  }
+
+  public double getMaxLatencyMillis() {
+    return maxLatencyNanos / 1_000_000.0;
+  }
+
+  @Override
+  public String toString() {
+    return name + " rx: " + framesReceived + " frames " + bytesReceived + " bytes tx: " + framesSent + " frames " + bytesSent + " bytes"
+            + " reconnects: " + reconnects + " responses: " + responses + " timeouts: " + timeouts
+            + " avg latency: " + String.format("%.2f", getAverageLatencyMillis()) + " ms max latency: " + String.format("%.2f", getMaxLatencyMillis()) + " ms";
+  }
+}
@@ -16,28 +16,40 @@
 package jcs.commandStation.uhlenbrock;
 
 import java.awt.Image;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
 import jcs.commandStation.AbstractController;
 import jcs.commandStation.AccessoryController;
 import jcs.commandStation.DecoderController;
 import jcs.commandStation.FeedbackController;
+import jcs.commandStation.VirtualConnection;
 import jcs.commandStation.entities.Device;
 import jcs.commandStation.entities.FeedbackModule;
 import jcs.commandStation.entities.InfoBean;
 import jcs.commandStation.events.ConnectionEvent;
 import jcs.commandStation.events.ConnectionEventListener;
+import jcs.commandStation.events.AllSensorEventsListener;
 import jcs.commandStation.events.SensorEvent;
+import jcs.commandStation.uhlenbrock.connection.P50xSerialTransport;
+import jcs.commandStation.uhlenbrock.connection.P50xTransport;
+import jcs.commandStation.uhlenbrock.connection.P50xVirtualTransport;
+import jcs.commandStation.uhlenbrock.p50x.P50xFeedbackEngine;
 import jcs.entities.AccessoryBean;
 import jcs.entities.CommandStationBean;
 import jcs.entities.LocomotiveBean;
 import jcs.entities.SensorBean;
+import org.tinylog.Logger;
 
 /**
  * Uhlenbrock IntelliBox 2 implementation
  */
 public class IntelliBoxImpl extends AbstractController implements DecoderController, AccessoryController, FeedbackController, ConnectionEventListener {
 
+  private P50xTransport transport;
+  private P50xFeedbackEngine feedbackEngine;
+
   public IntelliBoxImpl(CommandStationBean commandStationBean) {
     this(commandStationBean, false);
   }
@@ -45,16 +57,47 @@ public class IntelliBoxImpl extends AbstractController implements DecoderControl
   public IntelliBoxImpl(CommandStationBean commandStationBean, boolean autoConnect) {
     super(autoConnect, commandStationBean);
     this.executor = Executors.newCachedThreadPool();
+
+    if (commandStationBean != null && autoConnect) {
+      Logger.trace("Perform auto connect");
+      connect();
+    }
   }
 
   @Override
-  public boolean connect() {
-    return false;
+  public final synchronized boolean connect() {
+    if (!connected) {
+      try {
+        if (virtual) {
+          transport = new P50xVirtualTransport();
+        } else if (commandStationBean.getSerialPort() != null) {
+          transport = new P50xSerialTransport(commandStationBean.getSerialPort());
+        } else {
+          Logger.error("Can't connect; ComPort not set!");
+          return false;
+        }
+
+        feedbackEngine = new P50xFeedbackEngine(transport, commandStationBean.getId(), this::fireAllSensorEventsListeners);
+        feedbackEngine.start();
+        connected = true;
+      } catch (IOException e) {
+        Logger.error("Can't connect with the IntelliBox: " + e.getMessage());
+      }
+    }
+    return connected;
   }
 
   @Override
-  public void disconnect() {
-
+  public synchronized void disconnect() {
+    if (feedbackEngine != null) {
+      feedbackEngine.shutdown(1000);
+      feedbackEngine = null;
+    }
+    if (transport != null) {
+      transport.close();
+      transport = null;
+    }
+    connected = false;
   }
 
   @Override
@@ -119,21 +162,34 @@ public class IntelliBoxImpl extends AbstractController implements DecoderControl
   }
 
   @Override
-  public void fireAllSensorEventsListeners(SensorEvent sensorEvent) {
+  public void fireAllSensorEventsListeners(final SensorEvent sensorEvent) {
+    List<AllSensorEventsListener> snapshot = new ArrayList<>(allSensorEventsListeners);
+    for (AllSensorEventsListener listener : snapshot) {
+      listener.onSensorChange(sensorEvent);
+    }
   }
 
   @Override
   public List<FeedbackModule> getFeedbackModules() {
-    return null;
+    if (feedbackEngine != null) {
+      return feedbackEngine.getFeedbackModules();
+    }
+    return new ArrayList<>();
   }
 
   @Override
   public SensorBean getSensorStatus(SensorBean sensorBean) {
+    if (feedbackEngine != null) {
+      return feedbackEngine.getSensorStatus(sensorBean);
+    }
     return null;
   }
 
   @Override
   public void simulateSensor(SensorEvent sensorEvent) {
+    if (transport instanceof VirtualConnection virtualConnection) {
+      virtualConnection.sendEvent(sensorEvent);
+    }
   }
 
   @Override
@@ -26,11 +26,14 @@ import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import jcs.commandStation.dccex.DccExConnection;
 import static jcs.commandStation.dccex.DccExConnection.MESSAGE_DELIMITER;
 import jcs.commandStation.dccex.DccExMessage;
 import jcs.commandStation.dccex.DccExMessageFactory;
 import jcs.commandStation.events.ConnectionEvent;
+import jcs.commandStation.net.TransportStatistics;
 import org.tinylog.Logger;
 
 /**
@@ -46,7 +49,7 @@ class IntelliBoxSerialConnection implements DccExConnection {
   private boolean debug = false;
 
   private final List<DccExMessageListener> dccExListeners;
-  private ResponseCallback responseCallback;
+  private volatile ResponseCallback responseCallback;
   private static final long TIMEOUT = 6000L;
 
   private final List<DccExMessage> startupMessages;
@@ -60,14 +63,6 @@ class IntelliBoxSerialConnection implements DccExConnection {
     obtainSerialPort(portName);
   }
 
-  private void pause(long millis) {
-    try {
-      Thread.sleep(millis);
-    } catch (InterruptedException e) {
-      Logger.trace(e.getMessage());
-    }
-  }
-
   private void obtainSerialPort(String portName) {
     try {
       commPort = SerialPort.getCommPort(portName);
@@ -109,17 +104,10 @@ class IntelliBoxSerialConnection implements DccExConnection {
     }
 
     if (responseCallback != null) {
+      long start = System.currentTimeMillis();
+      //Wait for the response, the serial listener thread releases the latch
+      boolean responseComplete = responseCallback.awaitResponse(TIMEOUT);
       long now = System.currentTimeMillis();
-      long start = now;
-      long timeout = now + TIMEOUT;
-
-      //Wait for the response
-      boolean responseComplete = responseCallback.isResponseComplete();
-      while (!responseComplete && now < timeout) {
-        pause(10);
-        responseComplete = responseCallback.isResponseComplete();
-        now = System.currentTimeMillis();
-      }
 
       response = responseCallback.getResponse();
       if (debug) {
@@ -153,6 +141,11 @@ class IntelliBoxSerialConnection implements DccExConnection {
     return portOpen;
   }
 
+  @Override
+  public TransportStatistics getTransportStatistics() {
+    return null;
+  }
+
   private void disconnected() {
     try {
       Logger.trace("Port " + commPort.getSystemPortName() + " is Disconnected");
@@ -245,7 +238,8 @@ class IntelliBoxSerialConnection implements DccExConnection {
 
     private final String tx;
     private final String rxOpcode;
-    private String rx;
+    private volatile String rx;
+    private final CountDownLatch received = new CountDownLatch(1);
 
     ResponseCallback(final String tx) {
       this.tx = tx;
@@ -261,6 +255,18 @@ class IntelliBoxSerialConnection implements DccExConnection {
 
     void setResponse(byte[] rx) {
       this.rx = new String(rx).replaceAll("\n", "").replaceAll("\r", "");
+      if (isResponseComplete()) {
+        received.countDown();
+      }
+    }
+
+    boolean awaitResponse(long timeoutMillis) {
+      try {
+        received.await(timeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return isResponseComplete();
     }
 
     String getResponse() {
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.uhlenbrock.connection;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortInvalidPortException;
+import java.io.IOException;
+import org.tinylog.Logger;
+
+/**
+ * P50X transport over a serial or USB port.<br>
+ * Reads are semi blocking, the calling thread is parked in the serial driver until a byte arrives, so there is no need to poll the port.
+ */
+public class P50xSerialTransport implements P50xTransport {
+
+  private final SerialPort commPort;
+  private final byte[] rxBuffer = new byte[1];
+  private long readTimeout = -1;
+  private boolean debug = false;
+
+  public P50xSerialTransport(String portName) throws IOException {
+    debug = System.getProperty("message.debug", "false").equalsIgnoreCase("true");
+    try {
+      commPort = SerialPort.getCommPort(portName);
+    } catch (SerialPortInvalidPortException e) {
+      throw new IOException("Can't find com port: " + portName, e);
+    }
+    //The IntelliBox sends 2 stop bits and uses CTS to signal it can accept the next byte
+    commPort.setComPortParameters(Integer.getInteger("intellibox.baudrate", 19200), 8, SerialPort.TWO_STOP_BITS, SerialPort.NO_PARITY);
+    commPort.setFlowControl(SerialPort.FLOW_CONTROL_CTS_ENABLED);
+
+    if (!commPort.openPort()) {
+      throw new IOException("Can't open com port: " + portName);
+    }
+    setReadTimeout(500);
+    Logger.trace("Opened " + commPort.getDescriptivePortName() + " [" + commPort.getSystemPortName() + "]");
+  }
+
+  private void setReadTimeout(long timeoutMillis) {
+    if (readTimeout != timeoutMillis) {
+      commPort.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, (int) timeoutMillis, 1000);
+      readTimeout = timeoutMillis;
+    }
+  }
+
+  @Override
+  public void write(byte... bytes) throws IOException {
+    int written = commPort.writeBytes(bytes, bytes.length);
+    if (written != bytes.length) {
+      throw new IOException("Write to " + commPort.getSystemPortName() + " failed");
+    }
+    if (debug) {
+      Logger.trace("TX: " + toHex(bytes));
+    }
+  }
+
+  @Override
+  public int read(long timeoutMillis) throws IOException {
+    setReadTimeout(timeoutMillis);
+    int read = commPort.readBytes(rxBuffer, 1);
+    if (read < 0) {
+      throw new IOException("Read from " + commPort.getSystemPortName() + " failed");
+    } else if (read == 0) {
+      return TIMEOUT;
+    }
+    return rxBuffer[0] & 0xff;
+  }
+
+  @Override
+  public int drain(long timeoutMillis) throws IOException {
+    //Drop what the driver already buffered, then wait for the bytes still underway
+    commPort.flushIOBuffers();
+    int discarded = P50xTransport.super.drain(timeoutMillis);
+    if (debug && discarded > 0) {
+      Logger.trace("Discarded " + discarded + " late bytes");
+    }
+    return discarded;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return commPort.isOpen();
+  }
+
+  @Override
+  public void close() {
+    commPort.closePort();
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : bytes) {
+      sb.append(String.format("%02X ", b & 0xff));
+    }
+    return sb.toString().trim();
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.uhlenbrock.connection;
+
+import java.io.IOException;
+
+/**
+ * Byte level transport to an IntelliBox in P50X mode.<br>
+ * P50X is a binary request / reply protocol, the caller must hold the lock on the transport for the duration of a command and its reply.
+ */
+public interface P50xTransport extends AutoCloseable {
+
+  /**
+   * Returned by read when no byte arrived within the timeout
+   */
+  static final int TIMEOUT = -1;
+
+  /**
+   * A drain takes at most this number of read timeouts
+   */
+  static final int DRAIN_PERIODS = 10;
+
+  void write(byte... bytes) throws IOException;
+
+  /**
+   * Blocks until a byte is received or the timeout expires.
+   *
+   * @param timeoutMillis maximum time to wait
+   * @return the received byte as unsigned value 0..255 or TIMEOUT
+   * @throws IOException when the transport is closed or broken
+   */
+  int read(long timeoutMillis) throws IOException;
+
+  /**
+   * Discard the bytes of a reply which arrived too late, so they are not taken as the reply of the next command.<br>
+   * Reads until no byte arrives within the timeout, but never longer than DRAIN_PERIODS times the timeout in total, so a line
+   * which keeps sending does not keep the caller here. The caller must hold the lock on the transport.
+   *
+   * @param timeoutMillis time without a received byte after which the transport is considered quiet
+   * @return the number of discarded bytes
+   * @throws IOException when the transport is closed or broken
+   */
+  default int drain(long timeoutMillis) throws IOException {
+    long deadline = System.currentTimeMillis() + DRAIN_PERIODS * timeoutMillis;
+    int discarded = 0;
+    long remaining = timeoutMillis;
+    while (remaining > 0 && read(Math.min(timeoutMillis, remaining)) != TIMEOUT) {
+      discarded++;
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return discarded;
+  }
+
+  boolean isOpen();
+
+  @Override
+  void close();
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.uhlenbrock.connection;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jcs.commandStation.VirtualConnection;
+import jcs.commandStation.events.SensorEvent;
+import jcs.commandStation.uhlenbrock.p50x.P50x;
+import jcs.entities.SensorBean;
+
+/**
+ * Stand-in for an IntelliBox on the serial port.<br>
+ * Answers the P50X sensor commands XEvent, XEvtSen, XSensor and XSensOff from an in memory s88 image, so the feedback can be used in virtual mode and in tests without hardware.<br>
+ * Like the IntelliBox without 'ZzA1' it expects the 'x' lead before every P50Xb command, a frame without it is rejected and not answered.
+ * The written frames are kept, so a test can check what would be sent to the serial port.
+ */
+public class P50xVirtualTransport implements P50xTransport, VirtualConnection {
+
+  public static final int MAX_MODULES = 128;
+
+  private final int[] modules = new int[MAX_MODULES + 1];
+  private final Set<Integer> pendingModules = new LinkedHashSet<>();
+  private boolean powerOff;
+
+  private final BlockingQueue<Integer> replies = new LinkedBlockingQueue<>();
+  private final AtomicInteger[] commandCounts = new AtomicInteger[256];
+  private final List<byte[]> frames = new ArrayList<>();
+  private volatile boolean open = true;
+
+  public P50xVirtualTransport() {
+    for (int i = 0; i < commandCounts.length; i++) {
+      commandCounts[i] = new AtomicInteger();
+    }
+  }
+
+  /**
+   * Change a contact as a s88 module would, an event is reported on the next XEvent.
+   *
+   * @param module s88 module number 1..128
+   * @param contact contact number 1..16
+   * @param active new state of the contact
+   */
+  public synchronized void setContact(int module, int contact, boolean active) {
+    int mask = 1 << (16 - contact);
+    int state = active ? modules[module] | mask : modules[module] & ~mask;
+    if (state != modules[module]) {
+      modules[module] = state;
+      pendingModules.add(module);
+    }
+  }
+
+  public synchronized boolean isContact(int module, int contact) {
+    return (modules[module] & (1 << (16 - contact))) != 0;
+  }
+
+  public synchronized void powerOff() {
+    powerOff = true;
+  }
+
+  /**
+   * @param command P50X command code
+   * @return how many times the command was received
+   */
+  public int getCommandCount(int command) {
+    return commandCounts[command & 0xff].get();
+  }
+
+  /**
+   * @return a copy of all frames written to the transport, the rejected ones included
+   */
+  public synchronized List<byte[]> getFrames() {
+    List<byte[]> copy = new ArrayList<>(frames.size());
+    for (byte[] frame : frames) {
+      copy.add(frame.clone());
+    }
+    return copy;
+  }
+
+  @Override
+  public void sendEvent(SensorEvent sensorEvent) {
+    SensorBean sb = sensorEvent.getSensorBean();
+    if (sb.getDeviceId() != null && sb.getContactId() != null) {
+      setContact(sb.getDeviceId(), sb.getContactId(), sensorEvent.isActive());
+    }
+  }
+
+  @Override
+  public synchronized void write(byte... bytes) throws IOException {
+    if (!open) {
+      throw new IOException("Transport is closed");
+    }
+    frames.add(bytes.clone());
+    if (bytes.length < 2 || (bytes[0] & 0xff) != P50x.X_LEAD) {
+      throw new IOException("Not a P50Xb command, the 'x' lead is missing: " + HexFormat.ofDelimiter(" ").formatHex(bytes));
+    }
+    int command = bytes[1] & 0xff;
+    commandCounts[command].incrementAndGet();
+
+    switch (command) {
+      case P50x.X_EVENT -> {
+        int flags = 0;
+        if (!pendingModules.isEmpty()) {
+          flags = flags | P50x.X_EVENT_SEN;
+        }
+        if (powerOff) {
+          flags = flags | P50x.X_EVENT_PW_OFF;
+          powerOff = false;
+        }
+        replies.add(flags);
+      }
+      case P50x.X_EVT_SEN -> {
+        for (int module : pendingModules) {
+          replies.add(module);
+          replies.add(modules[module] >> 8);
+          replies.add(modules[module] & 0xff);
+        }
+        pendingModules.clear();
+        replies.add(0);
+      }
+      case P50x.X_SENSOR -> {
+        int module = bytes.length > 2 ? bytes[2] & 0xff : 0;
+        if (module < 1 || module > MAX_MODULES) {
+          replies.add(P50x.X_BADPRM);
+        } else {
+          pendingModules.remove(module);
+          replies.add(P50x.X_OK);
+          replies.add(modules[module] >> 8);
+          replies.add(modules[module] & 0xff);
+        }
+      }
+      case P50x.X_SENS_OFF -> {
+        for (int m = 1; m <= MAX_MODULES; m++) {
+          if (modules[m] != 0) {
+            pendingModules.add(m);
+          }
+        }
+        replies.add(P50x.X_OK);
+      }
+      default ->
+        replies.add(P50x.X_OK);
+    }
+  }
+
+  @Override
+  public int read(long timeoutMillis) throws IOException {
+    if (!open) {
+      throw new IOException("Transport is closed");
+    }
+    try {
+      Integer b = replies.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+      return b != null ? b : TIMEOUT;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a reply");
+    }
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  @Override
+  public void close() {
+    open = false;
+  }
+}
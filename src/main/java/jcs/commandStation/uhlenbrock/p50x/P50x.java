@@ -430,6 +430,12 @@ package jcs.commandStation.uhlenbrock.p50x;
  */
 public interface P50x {
 
+  /**
+   * Leading character 'x' of every P50Xb command, the IntelliBox reads a command without it as a P50 command.<br>
+   * It is only dropped after the 'ZzA1' P50Xa command, which is not used.
+   */
+  public final static int X_LEAD = 0x78;
+
   /**
    * Reply code: command OK.
    */
@@ -802,6 +808,21 @@ public interface P50x {
    */
   public final static int X_EVENT = 0xc8;
 
+  /**
+   * XEvent reply flag: another reply byte follows (Ev2 / Ev3)
+   */
+  public final static int X_EVENT_MORE = 0x80;
+
+  /**
+   * XEvent 1st reply byte flag: there *has been* a Power Off
+   */
+  public final static int X_EVENT_PW_OFF = 0x08;
+
+  /**
+   * XEvent 1st reply byte flag: there has been at least one sensor event
+   */
+  public final static int X_EVENT_SEN = 0x04;
+
   /**
    * XEvtSen (0CBh) - length = 1 byte
    * <p>
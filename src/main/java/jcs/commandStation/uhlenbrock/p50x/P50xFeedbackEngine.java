@@ -0,0 +1,297 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.uhlenbrock.p50x;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import jcs.commandStation.entities.FeedbackModule;
+import jcs.commandStation.events.SensorEvent;
+import jcs.commandStation.uhlenbrock.connection.P50xTransport;
+import jcs.entities.SensorBean;
+import jcs.util.metrics.LatencyHistogram;
+import jcs.util.metrics.MetricsRegistry;
+import org.tinylog.Logger;
+
+/**
+ * Event driven s88 and LocoNet feedback of an IntelliBox in P50X mode.<br>
+ * XEvent is polled adaptively: right after a sensor event the poll period is the minimum, each quiet poll doubles the period up to the maximum. Only when XEvent reports a sensor event the
+ * changed modules are read with XEvtSen, so an idle layout costs a two byte command and a one byte reply per poll.<br>
+ * Every command is sent with the 'x' lead of the P50Xb commands, the engine does not switch the IntelliBox to 'ZzA1'.<br>
+ * Replies are read with blocking reads on the transport, the thread only sleeps between two polls. After a failed command the late bytes of its reply are
+ * drained before the next command, so they are not read as the reply of that command.<br>
+ * The poll period, the XEvent round trip and the XEvtSen read time are recorded in the MetricsRegistry as p50x.poll.period, p50x.poll.roundtrip and p50x.sensor.read. The sensor events carry the
+ * time of the XEvent poll which reported them, so the sensor latency metrics of the command station include the polling delay.
+ */
+public class P50xFeedbackEngine extends Thread {
+
+  static final long REPLY_TIMEOUT = 500L;
+  static final long DRAIN_TIMEOUT = 100L;
+
+  private final P50xTransport transport;
+  private final String commandStationId;
+  private final Consumer<SensorEvent> sensorListener;
+  private final long minPollNanos;
+  private final long maxPollNanos;
+
+  private final Map<Integer, FeedbackModule> modules;
+  private volatile boolean running = false;
+
+  private final LatencyHistogram pollPeriod = MetricsRegistry.histogram("p50x.poll.period");
+  private final LatencyHistogram pollRoundtrip = MetricsRegistry.histogram("p50x.poll.roundtrip");
+  private final LatencyHistogram sensorRead = MetricsRegistry.histogram("p50x.sensor.read");
+  private final LongAdder sensorEvents = MetricsRegistry.counter("p50x.sensor.events");
+  private final LongAdder errors = MetricsRegistry.counter("p50x.errors");
+
+  /**
+   * @param transport the connection to the IntelliBox
+   * @param commandStationId id of the command station, used for the sensors
+   * @param sensorListener receives the changed sensors, called on the engine thread
+   */
+  public P50xFeedbackEngine(P50xTransport transport, String commandStationId, Consumer<SensorEvent> sensorListener) {
+    this(transport, commandStationId, sensorListener, Integer.getInteger("intellibox.poll.min.millis", 10), Integer.getInteger("intellibox.poll.max.millis", 100));
+  }
+
+  P50xFeedbackEngine(P50xTransport transport, String commandStationId, Consumer<SensorEvent> sensorListener, long minPollMillis, long maxPollMillis) {
+    super("P50X-FEEDBACK");
+    this.transport = transport;
+    this.commandStationId = commandStationId;
+    this.sensorListener = sensorListener;
+    this.minPollNanos = Math.max(1, minPollMillis) * 1_000_000L;
+    this.maxPollNanos = Math.max(minPollMillis, maxPollMillis) * 1_000_000L;
+    modules = new TreeMap<>();
+    setDaemon(true);
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Stop polling and wait for the engine thread to finish.
+   *
+   * @param timeoutMillis maximum time to wait
+   * @return true when the thread has stopped
+   */
+  public boolean shutdown(long timeoutMillis) {
+    running = false;
+    LockSupport.unpark(this);
+    try {
+      join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return !isAlive();
+  }
+
+  @Override
+  public void run() {
+    running = true;
+    Logger.trace(getName() + " Started...");
+    try {
+      //Let the IntelliBox report all active sensors as events, so the initial state is read the same way as the changes
+      requestAllSensors();
+    } catch (IOException e) {
+      errors.increment();
+      Logger.warn("XSensOff failed: " + e.getMessage());
+      drain();
+    }
+
+    long period = minPollNanos;
+    long lastPoll = 0;
+    while (running) {
+      long start = System.nanoTime();
+      if (lastPoll != 0) {
+        pollPeriod.record(start - lastPoll);
+      }
+      lastPoll = start;
+
+      try {
+        int flags = pollEvent();
+        pollRoundtrip.recordSince(start);
+
+        if ((flags & P50x.X_EVENT_PW_OFF) != 0) {
+          Logger.info("IntelliBox reports a Power Off");
+        }
+        if ((flags & P50x.X_EVENT_SEN) != 0) {
+          readSensorEvents(start);
+          period = minPollNanos;
+        } else {
+          period = Math.min(period * 2, maxPollNanos);
+        }
+      } catch (IOException e) {
+        errors.increment();
+        period = maxPollNanos;
+        if (transport.isOpen()) {
+          Logger.warn("XEvent poll failed: " + e.getMessage());
+          drain();
+        } else {
+          running = false;
+        }
+      }
+
+      long wait = start + period - System.nanoTime();
+      if (running && wait > 0) {
+        LockSupport.parkNanos(this, wait);
+      }
+    }
+    Logger.trace(getName() + " Stopped.");
+  }
+
+  /**
+   * Discard the rest of a reply which did not arrive in time, otherwise the late bytes are read as the reply of the next command.
+   */
+  void drain() {
+    try {
+      int discarded;
+      synchronized (transport) {
+        discarded = transport.drain(DRAIN_TIMEOUT);
+      }
+      if (discarded > 0) {
+        Logger.debug("Discarded " + discarded + " late reply bytes");
+      }
+    } catch (IOException e) {
+      Logger.warn("Drain failed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Write a P50Xb command without parameters, prefixed by the 'x' lead.
+   */
+  private void writeCommand(int command) throws IOException {
+    transport.write((byte) P50x.X_LEAD, (byte) command);
+  }
+
+  private int readByte() throws IOException {
+    int b = transport.read(REPLY_TIMEOUT);
+    if (b == P50xTransport.TIMEOUT) {
+      throw new IOException("No reply from the IntelliBox within " + REPLY_TIMEOUT + " ms");
+    }
+    return b;
+  }
+
+  void requestAllSensors() throws IOException {
+    synchronized (transport) {
+      writeCommand(P50x.X_SENS_OFF);
+      readByte();
+    }
+  }
+
+  /**
+   * The reply of XEvent is 1 to 3 bytes. All bytes are read before the flags are used, so a further reply is not mixed up with them.
+   *
+   * @return the 1st byte with the event flags
+   */
+  int pollEvent() throws IOException {
+    synchronized (transport) {
+      writeCommand(P50x.X_EVENT);
+      int flags = readByte();
+      if ((flags & P50x.X_EVENT_MORE) != 0) {
+        int flags2 = readByte();
+        if ((flags2 & P50x.X_EVENT_MORE) != 0) {
+          readByte();
+        }
+      }
+      return flags;
+    }
+  }
+
+  /**
+   * Read the changed modules with XEvtSen and inform the listener of every changed contact.
+   *
+   * @param detectedNanos time of the XEvent poll which reported the sensor event
+   * @return the number of sensor events
+   */
+  int readSensorEvents(long detectedNanos) throws IOException {
+    long start = System.nanoTime();
+    //Module number with contacts 1..16 in bits 15..0
+    Map<Integer, Integer> changed = new LinkedHashMap<>();
+    synchronized (transport) {
+      writeCommand(P50x.X_EVT_SEN);
+      int moduleNumber = readByte();
+      while (moduleNumber != 0) {
+        int high = readByte();
+        int low = readByte();
+        changed.put(moduleNumber, high << 8 | low);
+        moduleNumber = readByte();
+      }
+    }
+    sensorRead.recordSince(start);
+
+    List<SensorEvent> events = new ArrayList<>();
+    synchronized (modules) {
+      for (Map.Entry<Integer, Integer> entry : changed.entrySet()) {
+        FeedbackModule module = modules.computeIfAbsent(entry.getKey(), this::createModule);
+        updatePorts(module, entry.getValue());
+        events.addAll(module.getChangedSensorEvents());
+      }
+    }
+
+    for (SensorEvent sensorEvent : events) {
+      sensorEvent.setReceivedNanos(detectedNanos);
+      sensorListener.accept(sensorEvent);
+    }
+    sensorEvents.add(events.size());
+    return events.size();
+  }
+
+  private FeedbackModule createModule(int moduleNumber) {
+    FeedbackModule module = new FeedbackModule(moduleNumber, moduleNumber, commandStationId);
+    module.setBusNumber(0);
+    return module;
+  }
+
+  private static void updatePorts(FeedbackModule module, int state) {
+    int[] ports = module.getPorts();
+    int[] prevPorts = module.getPrevPorts();
+    System.arraycopy(ports, 0, prevPorts, 0, ports.length);
+    for (int i = 0; i < ports.length; i++) {
+      ports[i] = (state >> (15 - i)) & 1;
+    }
+  }
+
+  /**
+   * @return the modules which reported at least one event, in module number order
+   */
+  public List<FeedbackModule> getFeedbackModules() {
+    synchronized (modules) {
+      return new ArrayList<>(modules.values());
+    }
+  }
+
+  /**
+   * @param sensorBean sensor with the module number as device id and the contact id
+   * @return the sensor with the last known state or null when the module never reported
+   */
+  public SensorBean getSensorStatus(SensorBean sensorBean) {
+    if (sensorBean.getDeviceId() == null || sensorBean.getContactId() == null) {
+      return null;
+    }
+    synchronized (modules) {
+      FeedbackModule module = modules.get(sensorBean.getDeviceId());
+      if (module == null || sensorBean.getContactId() < 1 || sensorBean.getContactId() > module.getPortCount()) {
+        return null;
+      }
+      return module.getSensor(sensorBean.getContactId() - 1);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.persistence;
+
+import com.dieselpoint.norm.sqlmakers.Property;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes rows with JDBC batches on the connection of a transaction.<br>
+ * The insert, update and delete statements are derived from the norm mapping of the entity, so the columns are the same as
+ * when the entity is persisted with norm. The statements are executed every batchSize rows; committing is left to the caller.
+ */
+class BatchWriter {
+
+  private final Connection connection;
+  private final int batchSize;
+
+  BatchWriter(Connection connection, int batchSize) {
+    this.connection = connection;
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /**
+   * Insert the rows. A generated key is written back into the row.
+   *
+   * @param pojoInfo mapping of the rows
+   * @param rows to insert
+   * @return the number of inserted rows
+   * @throws SQLException when a batch fails
+   */
+  int insert(StandardPojoInfo pojoInfo, List<?> rows) throws SQLException {
+    if (rows.isEmpty()) {
+      return 0;
+    }
+
+    List<String> columns = new ArrayList<>();
+    Property generated = null;
+    for (Property prop : pojoInfo.propertyMap.values()) {
+      if (prop.isGenerated) {
+        generated = prop;
+      } else {
+        columns.add(prop.name);
+      }
+    }
+
+    String sql = "insert into " + pojoInfo.table + " (" + String.join(",", columns) + ") values (" + placeholders(columns.size()) + ")";
+    int count = 0;
+    try (PreparedStatement ps = generated != null ? connection.prepareStatement(sql, new String[]{generated.name}) : connection.prepareStatement(sql)) {
+      int from = 0;
+      for (int i = 0; i < rows.size(); i++) {
+        Object row = rows.get(i);
+        for (int c = 0; c < columns.size(); c++) {
+          ps.setObject(c + 1, pojoInfo.getValue(row, columns.get(c)));
+        }
+        ps.addBatch();
+
+        if ((i + 1) % batchSize == 0 || i == rows.size() - 1) {
+          count = count + executeBatch(ps);
+          if (generated != null) {
+            populateGeneratedKeys(ps, pojoInfo, generated, rows.subList(from, i + 1));
+          }
+          from = i + 1;
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Update all columns of the rows by primary key.
+   *
+   * @param pojoInfo mapping of the rows
+   * @param rows to update
+   * @return the number of updated rows
+   * @throws SQLException when a batch fails
+   */
+  int update(StandardPojoInfo pojoInfo, List<?> rows) throws SQLException {
+    if (rows.isEmpty()) {
+      return 0;
+    }
+
+    List<String> columns = new ArrayList<>();
+    for (Property prop : pojoInfo.propertyMap.values()) {
+      if (!pojoInfo.primaryKeyNames.contains(prop.name)) {
+        columns.add(prop.name);
+      }
+    }
+
+    StringBuilder sql = new StringBuilder("update ").append(pojoInfo.table).append(" set ");
+    for (int c = 0; c < columns.size(); c++) {
+      sql.append(c > 0 ? "," : "").append(columns.get(c)).append("=?");
+    }
+    sql.append(whereKey(pojoInfo));
+
+    List<Object[]> args = new ArrayList<>(rows.size());
+    for (Object row : rows) {
+      Object[] values = new Object[columns.size() + pojoInfo.primaryKeyNames.size()];
+      for (int c = 0; c < columns.size(); c++) {
+        values[c] = pojoInfo.getValue(row, columns.get(c));
+      }
+      for (int k = 0; k < pojoInfo.primaryKeyNames.size(); k++) {
+        values[columns.size() + k] = pojoInfo.getValue(row, pojoInfo.primaryKeyNames.get(k));
+      }
+      args.add(values);
+    }
+    return execute(sql.toString(), args);
+  }
+
+  /**
+   * Delete the rows by primary key.
+   *
+   * @param pojoInfo mapping of the rows
+   * @param rows to delete
+   * @return the number of deleted rows
+   * @throws SQLException when a batch fails
+   */
+  int delete(StandardPojoInfo pojoInfo, List<?> rows) throws SQLException {
+    List<Object[]> args = new ArrayList<>(rows.size());
+    for (Object row : rows) {
+      Object[] values = new Object[pojoInfo.primaryKeyNames.size()];
+      for (int k = 0; k < values.length; k++) {
+        values[k] = pojoInfo.getValue(row, pojoInfo.primaryKeyNames.get(k));
+      }
+      args.add(values);
+    }
+    return execute("delete from " + pojoInfo.table + whereKey(pojoInfo), args);
+  }
+
+  /**
+   * Execute a statement once for every set of arguments.
+   *
+   * @param sql the statement
+   * @param args the arguments per execution
+   * @return the number of affected rows
+   * @throws SQLException when a batch fails
+   */
+  int execute(String sql, List<Object[]> args) throws SQLException {
+    if (args.isEmpty()) {
+      return 0;
+    }
+
+    int count = 0;
+    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+      for (int i = 0; i < args.size(); i++) {
+        Object[] values = args.get(i);
+        for (int a = 0; a < values.length; a++) {
+          ps.setObject(a + 1, values[a]);
+        }
+        ps.addBatch();
+
+        if ((i + 1) % batchSize == 0 || i == args.size() - 1) {
+          count = count + executeBatch(ps);
+        }
+      }
+    }
+    return count;
+  }
+
+  private static int executeBatch(PreparedStatement ps) throws SQLException {
+    int count = 0;
+    for (int rows : ps.executeBatch()) {
+      //A driver may report success without a row count
+      count = count + (rows == Statement.SUCCESS_NO_INFO ? 1 : Math.max(rows, 0));
+    }
+    return count;
+  }
+
+  private static void populateGeneratedKeys(PreparedStatement ps, StandardPojoInfo pojoInfo, Property generated, List<?> rows) throws SQLException {
+    try (ResultSet keys = ps.getGeneratedKeys()) {
+      for (Object row : rows) {
+        if (!keys.next()) {
+          break;
+        }
+        Object key;
+        if (generated.dataType == Integer.class || generated.dataType == int.class) {
+          key = keys.getInt(1);
+        } else {
+          key = keys.getLong(1);
+        }
+        pojoInfo.putValue(row, generated.name, key);
+      }
+    }
+  }
+
+  private static String whereKey(StandardPojoInfo pojoInfo) {
+    StringBuilder where = new StringBuilder(" where ");
+    for (int k = 0; k < pojoInfo.primaryKeyNames.size(); k++) {
+      where.append(k > 0 ? " and " : "").append(pojoInfo.primaryKeyNames.get(k)).append("=?");
+    }
+    return where.toString();
+  }
+
+  private static String placeholders(int count) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      sb.append(i > 0 ? "," : "").append('?');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.persistence;
+
+/**
+ * Hit and miss counts of the persistence cache and the work of its write-behind queue.
+ */
+public class CacheStatistics {
+
+  private long hits;
+  private long misses;
+  private long invalidations;
+  private long queued;
+  private long coalesced;
+  private long written;
+  private long flushes;
+  private long writeErrors;
+  private int pending;
+
+  CacheStatistics() {
+  }
+
+  private CacheStatistics(CacheStatistics other, int pending) {
+    this.hits = other.hits;
+    this.misses = other.misses;
+    this.invalidations = other.invalidations;
+    this.queued = other.queued;
+    this.coalesced = other.coalesced;
+    this.written = other.written;
+    this.flushes = other.flushes;
+    this.writeErrors = other.writeErrors;
+    this.pending = pending;
+  }
+
+  synchronized CacheStatistics snapshot(int pending) {
+    return new CacheStatistics(this, pending);
+  }
+
+  synchronized void hit() {
+    hits++;
+  }
+
+  synchronized void miss() {
+    misses++;
+  }
+
+  synchronized void invalidated() {
+    invalidations++;
+  }
+
+  synchronized void queued(boolean replaced) {
+    queued++;
+    if (replaced) {
+      coalesced++;
+    }
+  }
+
+  synchronized void flushed(int count, int errors) {
+    flushes++;
+    written = written + count;
+    writeErrors = writeErrors + errors;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public double getHitRatio() {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  public long getInvalidations() {
+    return invalidations;
+  }
+
+  /**
+   * @return the number of writes handed to the write-behind queue
+   */
+  public long getQueued() {
+    return queued;
+  }
+
+  /**
+   * @return the number of queued writes which were replaced by a newer write of the same entity before they were flushed
+   */
+  public long getCoalesced() {
+    return coalesced;
+  }
+
+  public long getWritten() {
+    return written;
+  }
+
+  public long getFlushes() {
+    return flushes;
+  }
+
+  public long getWriteErrors() {
+    return writeErrors;
+  }
+
+  public int getPending() {
+    return pending;
+  }
+
+  @Override
+  public String toString() {
+    return "hits: " + hits + " misses: " + misses + " hit ratio: " + String.format("%.2f", getHitRatio()) + " invalidations: " + invalidations
+            + " queued: " + queued + " coalesced: " + coalesced + " written: " + written + " flushes: " + flushes + " errors: " + writeErrors
+            + " pending: " + pending;
+  }
+}
@@ -0,0 +1,1292 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.persistence;
+
+import java.awt.Image;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import javax.swing.ImageIcon;
+import jcs.entities.AccessoryBean;
+import jcs.entities.BlockBean;
+import jcs.entities.CommandStationBean;
+import jcs.entities.FunctionBean;
+import jcs.entities.JCSPropertyBean;
+import jcs.entities.LocomotiveBean;
+import jcs.entities.LocomotiveBean.DecoderType;
+import jcs.entities.RouteBean;
+import jcs.entities.SensorBean;
+import jcs.entities.StationBean;
+import jcs.entities.TileBean;
+import org.tinylog.Logger;
+
+/**
+ * Caching decorator of a Persistence Service.<br>
+ * Sensors, locomotives, accessories and blocks are kept in identity maps, so the automation gets the same instance for an entity on every
+ * lookup without a database query. The routes are cached per from tile and suffix.<br>
+ * Updates of a cached sensor, accessory or block are written behind: the cached instance is replaced at once and the database write is
+ * queued. Queued writes of the same entity are coalesced and written in batches by a background thread. Every read or write which is
+ * passed to the underlying service first flushes the queue, so it always sees the latest state.<br>
+ * The other entities are not cached; inserts, removals and structural changes are written through and invalidate the affected part of
+ * the cache.<br>
+ * The change events of the underlying service are fired when a write is flushed, so a listener sees a written behind update up to
+ * persistence.cache.flush.millis later.<br>
+ * The cache is enabled with the system property persistence.cache=true, it is off by default.
+ */
+public class CachingPersistenceService implements PersistenceService {
+
+  private final PersistenceService delegate;
+  private final long flushMillis;
+  private final int batchSize;
+  private final CacheStatistics statistics;
+
+  private final ReentrantLock lock;
+  private final Map<Integer, SensorBean> sensors;
+  private final Map<Long, Integer> sensorAddresses;
+  private final Map<Long, LocomotiveBean> locomotives;
+  private final Map<String, AccessoryBean> accessories;
+  private final Map<String, BlockBean> blocks;
+  private final Map<String, List<RouteBean>> routes;
+  private boolean blocksLoaded;
+  private long generation;
+
+  private final ReentrantLock pendingLock;
+  private final Condition flushNeeded;
+  private final Map<String, Object> pending;
+  private final AtomicInteger pendingCount;
+  private final ReentrantLock flushLock;
+
+  private volatile boolean running;
+  private final Thread writer;
+
+  public CachingPersistenceService(PersistenceService delegate) {
+    this(delegate, Long.getLong("persistence.cache.flush.millis", 200), Integer.getInteger("persistence.cache.batch.size", 64));
+  }
+
+  CachingPersistenceService(PersistenceService delegate, long flushMillis, int batchSize) {
+    this.delegate = delegate;
+    this.flushMillis = flushMillis;
+    this.batchSize = batchSize;
+    statistics = new CacheStatistics();
+
+    lock = new ReentrantLock();
+    sensors = new HashMap<>();
+    sensorAddresses = new HashMap<>();
+    locomotives = new HashMap<>();
+    accessories = new HashMap<>();
+    blocks = new LinkedHashMap<>();
+    routes = new HashMap<>();
+
+    pendingLock = new ReentrantLock();
+    flushNeeded = pendingLock.newCondition();
+    pending = new LinkedHashMap<>();
+    pendingCount = new AtomicInteger();
+    flushLock = new ReentrantLock();
+
+    running = true;
+    writer = Thread.ofVirtual().name("PERSISTENCE-WRITE-BEHIND").start(this::writeBehindLoop);
+    Logger.trace("Caching " + delegate.getClass().getSimpleName() + ", write behind every " + flushMillis + " ms or " + batchSize + " updates");
+  }
+
+  public PersistenceService getDelegate() {
+    return delegate;
+  }
+
+  public CacheStatistics getStatistics() {
+    return statistics.snapshot(pendingCount.get());
+  }
+
+  /**
+   * Write all queued updates to the database. Returns when the writes, also those started by the background thread, are done.
+   */
+  public void flush() {
+    if (pendingCount.get() == 0 && !flushLock.isLocked()) {
+      return;
+    }
+
+    flushLock.lock();
+    try {
+      List<Object> writes;
+      pendingLock.lock();
+      try {
+        writes = new ArrayList<>(pending.values());
+        pending.clear();
+        pendingCount.set(0);
+      } finally {
+        pendingLock.unlock();
+      }
+
+      if (writes.isEmpty()) {
+        return;
+      }
+
+      int errors = 0;
+      try {
+        delegate.persistAll(writes);
+      } catch (RuntimeException be) {
+        //The batch is rolled back, write one by one so only the failing entities are lost
+        Logger.warn("Write behind batch of " + writes.size() + " failed: " + be.getMessage());
+        for (Object entity : writes) {
+          try {
+            write(entity);
+          } catch (RuntimeException e) {
+            errors++;
+            Logger.error("Write behind of " + entity + " failed: " + e.getMessage());
+          }
+        }
+      }
+      statistics.flushed(writes.size() - errors, errors);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Remove all entities from the cache, for example after the database is changed by other means than this service.<br>
+   * Queued updates are written first.
+   */
+  public void invalidate() {
+    flush();
+    lock.lock();
+    try {
+      generation++;
+      sensors.clear();
+      sensorAddresses.clear();
+      locomotives.clear();
+      accessories.clear();
+      blocks.clear();
+      blocksLoaded = false;
+      routes.clear();
+    } finally {
+      lock.unlock();
+    }
+    statistics.invalidated();
+  }
+
+  /**
+   * Stop the background writer and write the queued updates.
+   */
+  public void close() {
+    running = false;
+    pendingLock.lock();
+    try {
+      flushNeeded.signalAll();
+    } finally {
+      pendingLock.unlock();
+    }
+    try {
+      writer.join(flushMillis + 1000);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  private void writeBehindLoop() {
+    while (running) {
+      pendingLock.lock();
+      try {
+        if (pending.size() < batchSize) {
+          flushNeeded.await(flushMillis, TimeUnit.MILLISECONDS);
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      } finally {
+        pendingLock.unlock();
+      }
+      flush();
+    }
+  }
+
+  private void writeBehind(String key, Object entity) {
+    boolean replaced;
+    pendingLock.lock();
+    try {
+      replaced = pending.put(key, entity) != null;
+      pendingCount.set(pending.size());
+      if (pending.size() >= batchSize) {
+        flushNeeded.signal();
+      }
+    } finally {
+      pendingLock.unlock();
+    }
+    statistics.queued(replaced);
+  }
+
+  private void write(Object entity) {
+    switch (entity) {
+      case SensorBean sensor ->
+        delegate.persist(sensor);
+      case AccessoryBean accessory ->
+        delegate.persist(accessory);
+      case BlockBean block ->
+        delegate.persist(block);
+      default ->
+        Logger.warn("Can't write " + entity.getClass().getSimpleName());
+    }
+  }
+
+  private long generation() {
+    lock.lock();
+    try {
+      return generation;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void invalidateBlocks() {
+    lock.lock();
+    try {
+      generation++;
+      blocks.clear();
+      blocksLoaded = false;
+    } finally {
+      lock.unlock();
+    }
+    statistics.invalidated();
+  }
+
+  private void invalidateRoutes() {
+    lock.lock();
+    try {
+      generation++;
+      routes.clear();
+    } finally {
+      lock.unlock();
+    }
+    statistics.invalidated();
+  }
+
+  private <K, V> V cached(Map<K, V> map, K key) {
+    if (key == null) {
+      return null;
+    }
+    lock.lock();
+    try {
+      return map.get(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Put a loaded entity in its identity map, unless the map already has an instance of it, which is then returned.<br>
+   * Nothing is kept when the cache was invalidated while the entity was loaded.
+   */
+  private <K, V> V canonical(Map<K, V> map, K key, V loaded, long loadedGeneration) {
+    if (loaded == null || key == null) {
+      return loaded;
+    }
+    lock.lock();
+    try {
+      V current = map.get(key);
+      if (current != null) {
+        return current;
+      }
+      if (loadedGeneration == generation) {
+        map.put(key, loaded);
+        if (loaded instanceof SensorBean sensor) {
+          mapSensorAddress(sensor);
+        }
+      }
+      return loaded;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private <K, V> List<V> canonical(Map<K, V> map, Function<V, K> id, List<V> loaded, long loadedGeneration) {
+    if (loaded == null) {
+      return null;
+    }
+    List<V> result = new ArrayList<>(loaded.size());
+    for (V entity : loaded) {
+      result.add(canonical(map, entity != null ? id.apply(entity) : null, entity, loadedGeneration));
+    }
+    return result;
+  }
+
+  private <K, V> void replace(Map<K, V> map, K key, V entity) {
+    lock.lock();
+    try {
+      map.put(key, entity);
+      if (entity instanceof SensorBean sensor) {
+        mapSensorAddress(sensor);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void mapSensorAddress(SensorBean sensor) {
+    if (sensor.getDeviceId() != null && sensor.getContactId() != null) {
+      sensorAddresses.put(sensorAddress(sensor.getDeviceId(), sensor.getContactId()), sensor.getId());
+    }
+  }
+
+  private static long sensorAddress(Integer deviceId, Integer contactId) {
+    return ((long) deviceId << 32) | (contactId & 0xffffffffL);
+  }
+
+  @Override
+  public void addPropertyChangeListener(PropertyChangeListener listener) {
+    delegate.addPropertyChangeListener(listener);
+  }
+
+  @Override
+  public void removePropertyChangeListener(PropertyChangeListener listener) {
+    delegate.removePropertyChangeListener(listener);
+  }
+
+  @Override
+  public <T> List<T> persistAll(List<T> beans) {
+    flush();
+    List<T> persisted = delegate.persistAll(beans);
+    if (persisted == null) {
+      return null;
+    }
+    for (T bean : persisted) {
+      switch (bean) {
+        case SensorBean sensor when sensor.getId() != null ->
+          replace(sensors, sensor.getId(), sensor);
+        case AccessoryBean accessory when accessory.getId() != null ->
+          replace(accessories, accessory.getId(), accessory);
+        case LocomotiveBean locomotive when locomotive.getId() != null ->
+          replace(locomotives, locomotive.getId(), locomotive);
+        case TileBean tile ->
+          tileBlockPersisted(tile);
+        case BlockBean block when block.getId() != null -> {
+          lock.lock();
+          try {
+            if (blocksLoaded) {
+              blocks.put(block.getId(), block);
+            }
+          } finally {
+            lock.unlock();
+          }
+        }
+        default -> {
+        }
+      }
+    }
+    return persisted;
+  }
+
+  /**
+   * Removed sensors, locomotives and tiles also change the blocks, so the cached blocks and routes are reloaded.
+   */
+  @Override
+  public <T> void removeAll(List<T> beans) {
+    flush();
+    delegate.removeAll(beans);
+    lock.lock();
+    try {
+      for (T bean : beans) {
+        switch (bean) {
+          case SensorBean sensor -> {
+            sensors.remove(sensor.getId());
+            sensorAddresses.values().remove(sensor.getId());
+          }
+          case AccessoryBean accessory ->
+            accessories.remove(accessory.getId());
+          case LocomotiveBean locomotive ->
+            locomotives.remove(locomotive.getId());
+          default -> {
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    invalidateBlocks();
+    invalidateRoutes();
+  }
+
+  @Override
+  public List<JCSPropertyBean> getProperties() {
+    flush();
+    return delegate.getProperties();
+  }
+
+  @Override
+  public JCSPropertyBean getProperty(String key) {
+    flush();
+    return delegate.getProperty(key);
+  }
+
+  @Override
+  public JCSPropertyBean persist(JCSPropertyBean propertyBean) {
+    flush();
+    return delegate.persist(propertyBean);
+  }
+
+  @Override
+  public void remove(JCSPropertyBean property) {
+    flush();
+    delegate.remove(property);
+  }
+
+  @Override
+  public List<SensorBean> getAllSensors() {
+    flush();
+    long gen = generation();
+    return canonical(sensors, SensorBean::getId, delegate.getAllSensors(), gen);
+  }
+
+  @Override
+  public List<SensorBean> getSensors() {
+    flush();
+    long gen = generation();
+    return canonical(sensors, SensorBean::getId, delegate.getSensors(), gen);
+  }
+
+  @Override
+  public List<SensorBean> getSensorsByCommandStationId(String commandStationId) {
+    flush();
+    long gen = generation();
+    return canonical(sensors, SensorBean::getId, delegate.getSensorsByCommandStationId(commandStationId), gen);
+  }
+
+  @Override
+  public List<SensorBean> getAssignedSensors() {
+    flush();
+    long gen = generation();
+    return canonical(sensors, SensorBean::getId, delegate.getAssignedSensors(), gen);
+  }
+
+  @Override
+  public SensorBean getSensor(Integer id) {
+    SensorBean sensor = cached(sensors, id);
+    if (sensor != null) {
+      statistics.hit();
+      return sensor;
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    sensor = delegate.getSensor(id);
+    return canonical(sensors, sensor != null ? sensor.getId() : null, sensor, gen);
+  }
+
+  @Override
+  public SensorBean getSensor(Integer deviceId, Integer contactId) {
+    if (deviceId != null && contactId != null) {
+      SensorBean sensor = cached(sensors, cached(sensorAddresses, sensorAddress(deviceId, contactId)));
+      if (sensor != null) {
+        statistics.hit();
+        return sensor;
+      }
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    SensorBean sensor = delegate.getSensor(deviceId, contactId);
+    return canonical(sensors, sensor != null ? sensor.getId() : null, sensor, gen);
+  }
+
+  @Override
+  public SensorBean persist(SensorBean sensor) {
+    if (sensor.getId() != null && cached(sensors, sensor.getId()) != null) {
+      replace(sensors, sensor.getId(), sensor);
+      writeBehind("sensor-" + sensor.getId(), sensor);
+      return sensor;
+    }
+    flush();
+    SensorBean persisted = delegate.persist(sensor);
+    if (persisted != null && persisted.getId() != null) {
+      replace(sensors, persisted.getId(), persisted);
+    }
+    return persisted;
+  }
+
+  @Override
+  public List<SensorBean> persistSensorBeans(List<SensorBean> sensorBeans) {
+    flush();
+    List<SensorBean> persisted = delegate.persistSensorBeans(sensorBeans);
+    for (SensorBean sensor : persisted) {
+      if (sensor.getId() != null) {
+        replace(sensors, sensor.getId(), sensor);
+      }
+    }
+    return persisted;
+  }
+
+  /**
+   * Removing a sensor also changes the blocks which used it.
+   */
+  @Override
+  public void remove(SensorBean sensor) {
+    flush();
+    delegate.remove(sensor);
+    lock.lock();
+    try {
+      sensors.remove(sensor.getId());
+      sensorAddresses.values().remove(sensor.getId());
+    } finally {
+      lock.unlock();
+    }
+    invalidateBlocks();
+  }
+
+  @Override
+  public void removeAllSensors() {
+    flush();
+    delegate.removeAllSensors();
+    lock.lock();
+    try {
+      sensors.clear();
+      sensorAddresses.clear();
+    } finally {
+      lock.unlock();
+    }
+    invalidateBlocks();
+  }
+
+  @Override
+  public boolean isOnTrack(LocomotiveBean locomotive) {
+    flush();
+    return delegate.isOnTrack(locomotive);
+  }
+
+  @Override
+  public List<LocomotiveBean> getOnTrackLocomotives() {
+    flush();
+    long gen = generation();
+    return canonical(locomotives, LocomotiveBean::getId, delegate.getOnTrackLocomotives(), gen);
+  }
+
+  @Override
+  public List<LocomotiveBean> getAllLocomotives() {
+    flush();
+    long gen = generation();
+    return canonical(locomotives, LocomotiveBean::getId, delegate.getAllLocomotives(), gen);
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotives() {
+    flush();
+    long gen = generation();
+    return canonical(locomotives, LocomotiveBean::getId, delegate.getLocomotives(), gen);
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotives(boolean show) {
+    flush();
+    long gen = generation();
+    return canonical(locomotives, LocomotiveBean::getId, delegate.getLocomotives(show), gen);
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotivesByCommandStationId(String commandStationId) {
+    flush();
+    long gen = generation();
+    return canonical(locomotives, LocomotiveBean::getId, delegate.getLocomotivesByCommandStationId(commandStationId), gen);
+  }
+
+  @Override
+  public List<LocomotiveBean> getLocomotivesByCommandStationId(String commandStationId, Boolean show) {
+    flush();
+    long gen = generation();
+    return canonical(locomotives, LocomotiveBean::getId, delegate.getLocomotivesByCommandStationId(commandStationId, show), gen);
+  }
+
+  private LocomotiveBean findLocomotive(Function<LocomotiveBean, Boolean> matches) {
+    lock.lock();
+    try {
+      for (LocomotiveBean locomotive : locomotives.values()) {
+        if (matches.apply(locomotive)) {
+          return locomotive;
+        }
+      }
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public LocomotiveBean getLocomotive(Integer address, DecoderType decoderType, String commandStationId) {
+    String dt = (decoderType != null ? decoderType : DecoderType.DCC).getDecoderType();
+    LocomotiveBean locomotive = findLocomotive(l -> Objects.equals(address, l.getAddress()) && Objects.equals(commandStationId, l.getCommandStationId())
+            && l.getDecoderTypeString() != null && l.getDecoderTypeString().startsWith(dt));
+    if (locomotive != null) {
+      statistics.hit();
+      return locomotive;
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    locomotive = delegate.getLocomotive(address, decoderType, commandStationId);
+    return canonical(locomotives, locomotive != null ? locomotive.getId() : null, locomotive, gen);
+  }
+
+  @Override
+  public LocomotiveBean getLocomotiveById(Long id, String commandStationId) {
+    LocomotiveBean locomotive = cached(locomotives, id);
+    if (locomotive != null && Objects.equals(commandStationId, locomotive.getCommandStationId())) {
+      statistics.hit();
+      return locomotive;
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    locomotive = delegate.getLocomotiveById(id, commandStationId);
+    return canonical(locomotives, locomotive != null ? locomotive.getId() : null, locomotive, gen);
+  }
+
+  @Override
+  public LocomotiveBean getLocomotive(Integer locUid, String commandStationId) {
+    LocomotiveBean locomotive = locUid == null ? null
+            : findLocomotive(l -> l.getUid() != null && l.getUid() == locUid.longValue() && Objects.equals(commandStationId, l.getCommandStationId()));
+    if (locomotive != null) {
+      statistics.hit();
+      return locomotive;
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    locomotive = delegate.getLocomotive(locUid, commandStationId);
+    return canonical(locomotives, locomotive != null ? locomotive.getId() : null, locomotive, gen);
+  }
+
+  @Override
+  public LocomotiveBean getLocomotive(Long id) {
+    LocomotiveBean locomotive = cached(locomotives, id);
+    if (locomotive != null) {
+      statistics.hit();
+      return locomotive;
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    locomotive = delegate.getLocomotive(id);
+    return canonical(locomotives, locomotive != null ? locomotive.getId() : null, locomotive, gen);
+  }
+
+  /**
+   * Locomotives are written through. The persistence of a locomotive also rewrites its functions in the bean, which must not happen on
+   * the background thread while other threads use the same instance.
+   */
+  @Override
+  public LocomotiveBean persist(LocomotiveBean locomotive) {
+    flush();
+    LocomotiveBean persisted = delegate.persist(locomotive);
+    if (persisted != null && persisted.getId() != null) {
+      replace(locomotives, persisted.getId(), persisted);
+    }
+    return persisted;
+  }
+
+  @Override
+  public List<FunctionBean> getLocomotiveFunctions(LocomotiveBean locomotive) {
+    flush();
+    return delegate.getLocomotiveFunctions(locomotive);
+  }
+
+  @Override
+  public FunctionBean getLocomotiveFunction(LocomotiveBean locomotive, Integer number) {
+    flush();
+    return delegate.getLocomotiveFunction(locomotive, number);
+  }
+
+  @Override
+  public FunctionBean getLocomotiveFunction(Long locomotiveId, Integer number) {
+    flush();
+    return delegate.getLocomotiveFunction(locomotiveId, number);
+  }
+
+  @Override
+  public FunctionBean persist(FunctionBean functionBean) {
+    flush();
+    return delegate.persist(functionBean);
+  }
+
+  @Override
+  public void remove(LocomotiveBean locomotiveBean) {
+    flush();
+    delegate.remove(locomotiveBean);
+    lock.lock();
+    try {
+      locomotives.remove(locomotiveBean.getId());
+    } finally {
+      lock.unlock();
+    }
+    invalidateBlocks();
+  }
+
+  @Override
+  public List<AccessoryBean> getAccessories() {
+    flush();
+    long gen = generation();
+    return canonical(accessories, AccessoryBean::getId, delegate.getAccessories(), gen);
+  }
+
+  @Override
+  public List<AccessoryBean> getAccessoriesByCommandStationId(String commandStationId) {
+    flush();
+    long gen = generation();
+    return canonical(accessories, AccessoryBean::getId, delegate.getAccessoriesByCommandStationId(commandStationId), gen);
+  }
+
+  @Override
+  public boolean isAccessoryLocked(String accessoryId) {
+    flush();
+    return delegate.isAccessoryLocked(accessoryId);
+  }
+
+  @Override
+  public List<AccessoryBean> getTurnouts() {
+    flush();
+    long gen = generation();
+    return canonical(accessories, AccessoryBean::getId, delegate.getTurnouts(), gen);
+  }
+
+  @Override
+  public List<AccessoryBean> getSignals() {
+    flush();
+    long gen = generation();
+    return canonical(accessories, AccessoryBean::getId, delegate.getSignals(), gen);
+  }
+
+  @Override
+  public AccessoryBean getAccessoryByAddressAndCommandStationId(Integer address, String commandStationId) {
+    flush();
+    long gen = generation();
+    AccessoryBean accessory = delegate.getAccessoryByAddressAndCommandStationId(address, commandStationId);
+    return canonical(accessories, accessory != null ? accessory.getId() : null, accessory, gen);
+  }
+
+  @Override
+  public AccessoryBean getAccessoryByAddress2AndCommandStationId(Integer address2, String commandStationId) {
+    flush();
+    long gen = generation();
+    AccessoryBean accessory = delegate.getAccessoryByAddress2AndCommandStationId(address2, commandStationId);
+    return canonical(accessories, accessory != null ? accessory.getId() : null, accessory, gen);
+  }
+
+  @Override
+  public AccessoryBean getAccessory(String id) {
+    AccessoryBean accessory = cached(accessories, id);
+    if (accessory != null) {
+      statistics.hit();
+      return accessory;
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    accessory = delegate.getAccessory(id);
+    return canonical(accessories, accessory != null ? accessory.getId() : null, accessory, gen);
+  }
+
+  @Override
+  public AccessoryBean getAccessoryByAddress(Integer address) {
+    flush();
+    long gen = generation();
+    AccessoryBean accessory = delegate.getAccessoryByAddress(address);
+    return canonical(accessories, accessory != null ? accessory.getId() : null, accessory, gen);
+  }
+
+  @Override
+  public AccessoryBean persist(AccessoryBean accessoryBean) {
+    if (accessoryBean.getId() != null && cached(accessories, accessoryBean.getId()) != null) {
+      replace(accessories, accessoryBean.getId(), accessoryBean);
+      writeBehind("accessory-" + accessoryBean.getId(), accessoryBean);
+      return accessoryBean;
+    }
+    flush();
+    AccessoryBean persisted = delegate.persist(accessoryBean);
+    if (persisted != null && persisted.getId() != null) {
+      replace(accessories, persisted.getId(), persisted);
+    }
+    return persisted;
+  }
+
+  @Override
+  public void remove(AccessoryBean accessoryBean) {
+    flush();
+    delegate.remove(accessoryBean);
+    lock.lock();
+    try {
+      accessories.remove(accessoryBean.getId());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<TileBean> getTileBeans() {
+    flush();
+    return delegate.getTileBeans();
+  }
+
+  @Override
+  public List<TileBean> getTileBeansByTileType(TileBean.TileType tileType) {
+    flush();
+    return delegate.getTileBeansByTileType(tileType);
+  }
+
+  @Override
+  public TileBean getTileBean(String id) {
+    flush();
+    return delegate.getTileBean(id);
+  }
+
+  @Override
+  public TileBean getTileBean(Integer x, Integer y) {
+    flush();
+    return delegate.getTileBean(x, y);
+  }
+
+  /**
+   * The underlying service also persists the block of the tile, which becomes the cached instance of that block.
+   */
+  @Override
+  public TileBean persist(TileBean tileBean) {
+    flush();
+    TileBean persisted = delegate.persist(tileBean);
+    if (persisted != null) {
+      tileBlockPersisted(persisted);
+    }
+    return persisted;
+  }
+
+  @Override
+  public List<TileBean> persist(List<TileBean> tiles) {
+    flush();
+    List<TileBean> persisted = delegate.persist(tiles);
+    for (TileBean tile : persisted) {
+      tileBlockPersisted(tile);
+    }
+    return persisted;
+  }
+
+  private void tileBlockPersisted(TileBean tile) {
+    BlockBean block = tile.getBlockBean();
+    if (block != null && block.getId() != null) {
+      lock.lock();
+      try {
+        if (blocksLoaded) {
+          blocks.put(block.getId(), block);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Removing a tile also removes its block and the routes from and to the tile.
+   */
+  @Override
+  public void remove(TileBean tile) {
+    flush();
+    delegate.remove(tile);
+    invalidateBlocks();
+    invalidateRoutes();
+  }
+
+  @Override
+  public List<RouteBean> getRoutes() {
+    flush();
+    return delegate.getRoutes();
+  }
+
+  @Override
+  public RouteBean getRoute(String id) {
+    flush();
+    return delegate.getRoute(id);
+  }
+
+  @Override
+  public List<RouteBean> getRoutes(String fromTileId, String fromSuffix) {
+    String key = fromTileId + "|" + fromSuffix;
+    List<RouteBean> cachedRoutes = cached(routes, key);
+    if (cachedRoutes != null) {
+      statistics.hit();
+      return new ArrayList<>(cachedRoutes);
+    }
+    statistics.miss();
+    flush();
+    long gen = generation();
+    List<RouteBean> loaded = delegate.getRoutes(fromTileId, fromSuffix);
+    lock.lock();
+    try {
+      if (gen == generation) {
+        routes.putIfAbsent(key, new ArrayList<>(loaded));
+      }
+    } finally {
+      lock.unlock();
+    }
+    return loaded;
+  }
+
+  @Override
+  public RouteBean getRoute(String fromTileId, String fromSuffix, String toTileId, String toSuffix) {
+    flush();
+    return delegate.getRoute(fromTileId, fromSuffix, toTileId, toSuffix);
+  }
+
+  /**
+   * A persisted route replaces the cached instance; a new route invalidates the cached routes.
+   */
+  @Override
+  public RouteBean persist(RouteBean routeBean) {
+    flush();
+    RouteBean persisted = delegate.persist(routeBean);
+    boolean known = false;
+    lock.lock();
+    try {
+      for (List<RouteBean> cachedRoutes : routes.values()) {
+        for (int i = 0; i < cachedRoutes.size(); i++) {
+          if (Objects.equals(cachedRoutes.get(i).getId(), persisted.getId())) {
+            cachedRoutes.set(i, persisted);
+            known = true;
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (!known) {
+      invalidateRoutes();
+    }
+    return persisted;
+  }
+
+  @Override
+  public void remove(RouteBean routeBean) {
+    flush();
+    delegate.remove(routeBean);
+    invalidateRoutes();
+  }
+
+  /**
+   * All blocks are loaded at once on first use.
+   *
+   * @return the cached blocks, linked to the cached sensors, locomotives and signals
+   */
+  private List<BlockBean> cachedBlocks() {
+    List<BlockBean> result = null;
+    lock.lock();
+    try {
+      if (blocksLoaded) {
+        result = new ArrayList<>(blocks.values());
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (result != null) {
+      statistics.hit();
+    } else {
+      statistics.miss();
+      flush();
+      long gen = generation();
+      List<BlockBean> loaded = delegate.getBlocks();
+      lock.lock();
+      try {
+        if (gen == generation && !blocksLoaded) {
+          for (BlockBean block : loaded) {
+            blocks.putIfAbsent(block.getId(), block);
+          }
+          blocksLoaded = true;
+          result = new ArrayList<>(blocks.values());
+        } else {
+          result = loaded;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    for (BlockBean block : result) {
+      link(block);
+    }
+    return result;
+  }
+
+  /**
+   * A block refers to the cached instances of its sensors, locomotive and signals, so it shows their latest state.
+   */
+  private void link(BlockBean block) {
+    lock.lock();
+    try {
+      SensorBean plus = block.getPlusSensorId() != null ? sensors.get(block.getPlusSensorId()) : null;
+      if (plus != null && plus != block.getPlusSensorBean()) {
+        block.setPlusSensorBean(plus);
+      }
+      SensorBean min = block.getMinSensorId() != null ? sensors.get(block.getMinSensorId()) : null;
+      if (min != null && min != block.getMinSensorBean()) {
+        block.setMinSensorBean(min);
+      }
+      LocomotiveBean locomotive = block.getLocomotiveId() != null ? locomotives.get(block.getLocomotiveId()) : null;
+      if (locomotive != null && locomotive != block.getLocomotive()) {
+        block.setLocomotive(locomotive);
+      }
+      AccessoryBean plusSignal = block.getPlusSignalId() != null ? accessories.get(block.getPlusSignalId()) : null;
+      if (plusSignal != null && plusSignal != block.getPlusSignal()) {
+        block.setPlusSignal(plusSignal);
+      }
+      AccessoryBean minSignal = block.getMinSignalId() != null ? accessories.get(block.getMinSignalId()) : null;
+      if (minSignal != null && minSignal != block.getMinSignal()) {
+        block.setMinSignal(minSignal);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private List<BlockBean> canonicalBlocks(List<BlockBean> loaded) {
+    lock.lock();
+    try {
+      if (!blocksLoaded) {
+        return loaded;
+      }
+      List<BlockBean> result = new ArrayList<>(loaded.size());
+      for (BlockBean block : loaded) {
+        BlockBean current = blocks.get(block.getId());
+        result.add(current != null ? current : block);
+      }
+      return result;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public BlockBean getBlockByLocomotiveId(Long locomotiveId) {
+    for (BlockBean block : cachedBlocks()) {
+      if (Objects.equals(locomotiveId, block.getLocomotiveId())) {
+        return block;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<BlockBean> getBlocks() {
+    return cachedBlocks();
+  }
+
+  @Override
+  public Long getGhostBlockCount() {
+    long count = 0;
+    for (BlockBean block : cachedBlocks()) {
+      if (block.getBlockState() == BlockBean.BlockState.GHOST) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public List<BlockBean> getNonStationBlocks() {
+    flush();
+    return canonicalBlocks(delegate.getNonStationBlocks());
+  }
+
+  @Override
+  public List<BlockBean> getStationBlocks(StationBean stationBean) {
+    flush();
+    return canonicalBlocks(delegate.getStationBlocks(stationBean));
+  }
+
+  @Override
+  public Long getLocomotiveCount(StationBean stationBean) {
+    flush();
+    return delegate.getLocomotiveCount(stationBean);
+  }
+
+  @Override
+  public Long getFirstLocomotiveId(StationBean stationBean) {
+    flush();
+    return delegate.getFirstLocomotiveId(stationBean);
+  }
+
+  @Override
+  public Integer getAverageAccessorySwitchTime() {
+    flush();
+    return delegate.getAverageAccessorySwitchTime();
+  }
+
+  @Override
+  public Integer getAverageAccessorySwitchTime(RouteBean routeBean) {
+    flush();
+    return delegate.getAverageAccessorySwitchTime(routeBean);
+  }
+
+  @Override
+  public BlockBean getBlock(String id) {
+    for (BlockBean block : cachedBlocks()) {
+      if (Objects.equals(id, block.getId())) {
+        return block;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public BlockBean getBlockByTileId(String tileId) {
+    for (BlockBean block : cachedBlocks()) {
+      if (Objects.equals(tileId, block.getTileId())) {
+        return block;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public BlockBean persist(BlockBean block) {
+    if (block != null && block.getId() != null && isCachedBlock(block.getId())) {
+      replace(blocks, block.getId(), block);
+      writeBehind("block-" + block.getId(), block);
+      return block;
+    }
+    flush();
+    BlockBean persisted = delegate.persist(block);
+    if (persisted != null && persisted.getId() != null) {
+      lock.lock();
+      try {
+        if (blocksLoaded) {
+          blocks.put(persisted.getId(), persisted);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return persisted;
+  }
+
+  private boolean isCachedBlock(String id) {
+    lock.lock();
+    try {
+      return blocksLoaded && blocks.containsKey(id);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void remove(BlockBean block) {
+    flush();
+    delegate.remove(block);
+    lock.lock();
+    try {
+      blocks.remove(block.getId());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void removeAllBlocks() {
+    flush();
+    delegate.removeAllBlocks();
+    invalidateBlocks();
+  }
+
+  @Override
+  public List<CommandStationBean> getCommandStations() {
+    flush();
+    return delegate.getCommandStations();
+  }
+
+  @Override
+  public CommandStationBean getCommandStation(String id) {
+    flush();
+    return delegate.getCommandStation(id);
+  }
+
+  @Override
+  public CommandStationBean getDefaultCommandStation() {
+    flush();
+    return delegate.getDefaultCommandStation();
+  }
+
+  @Override
+  public CommandStationBean getEnabledFeedbackProvider() {
+    flush();
+    return delegate.getEnabledFeedbackProvider();
+  }
+
+  @Override
+  public CommandStationBean persist(CommandStationBean commandStationBean) {
+    flush();
+    return delegate.persist(commandStationBean);
+  }
+
+  @Override
+  public CommandStationBean changeDefaultCommandStation(CommandStationBean newDefaultCommandStationBean) {
+    flush();
+    return delegate.changeDefaultCommandStation(newDefaultCommandStationBean);
+  }
+
+  @Override
+  public ImageIcon getLocomotiveImage(String imageName) {
+    return delegate.getLocomotiveImage(imageName);
+  }
+
+  @Override
+  public ImageIcon getFunctionImage(String imageName) {
+    return delegate.getFunctionImage(imageName);
+  }
+
+  @Override
+  public Image readImage(String imageName, boolean function) {
+    return delegate.readImage(imageName, function);
+  }
+
+  @Override
+  public List<StationBean> getStations() {
+    flush();
+    return delegate.getStations();
+  }
+
+  @Override
+  public StationBean getStation(String id) {
+    flush();
+    return delegate.getStation(id);
+  }
+
+  @Override
+  public StationBean getStation(BlockBean blockBean) {
+    flush();
+    return delegate.getStation(blockBean);
+  }
+
+  @Override
+  public StationBean persist(StationBean station) {
+    flush();
+    return delegate.persist(station);
+  }
+
+  @Override
+  public void remove(StationBean station) {
+    flush();
+    delegate.remove(station);
+  }
+}
@@ -17,17 +17,25 @@ package jcs.persistence;
 
 import com.dieselpoint.norm.Database;
 import com.dieselpoint.norm.DbException;
+import com.dieselpoint.norm.Transaction;
+import com.dieselpoint.norm.sqlmakers.StandardPojoInfo;
 import java.awt.Image;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.imageio.ImageIO;
 import javax.swing.ImageIcon;
@@ -45,22 +53,32 @@ import jcs.entities.StationBean;
 import jcs.entities.StationBlockBean;
 import jcs.entities.TileBean;
 import jcs.persistence.sqlmakers.H2SqlMaker;
+import jcs.ui.util.ImageService;
 import org.tinylog.Logger;
 
 public class H2PersistenceService implements PersistenceService {
 
+  /**
+   * Order in which the tables are written in a batch, so the referenced rows exist first.
+   */
+  private static final List<Class<?>> BATCH_ORDER = List.of(SensorBean.class, AccessoryBean.class, LocomotiveBean.class, TileBean.class, BlockBean.class);
+
+  private static final Map<Class<?>, String> BATCH_EVENTS = Map.of(SensorBean.class, "data.sensor", AccessoryBean.class, "data.accessory",
+          LocomotiveBean.class, "data.locomotive", TileBean.class, "data.tile", BlockBean.class, "data.block");
+
   protected Database database;
 
-  protected final HashMap<String, Image> imageCache;
-  protected final HashMap<String, Image> functionImageCache;
-  protected final HashSet<String> nullFunctionImages;
+  //Only used for the table mapping of the batch statements
+  private final H2SqlMaker mapping = new H2SqlMaker();
+  private final int batchSize = Integer.getInteger("persistence.batch.size", 500);
+
+  private static final int LOCOMOTIVE_IMAGE_SIZE = 100;
+  private static final int FUNCTION_IMAGE_SIZE = 30;
+
   protected final PropertyChangeSupport changeSupport;
 
   public H2PersistenceService() {
     initConnect();
-    imageCache = new HashMap<>();
-    functionImageCache = new HashMap<>();
-    nullFunctionImages = new HashSet<>();
     changeSupport = new PropertyChangeSupport(this);
     postInit();
   }
@@ -182,8 +200,7 @@ public class H2PersistenceService implements PersistenceService {
 
   @Override
   public List<SensorBean> persistSensorBeans(List<SensorBean> sensors) {
-    sensors.forEach(s -> persist(s));
-    return sensors;
+    return persistAll(sensors);
   }
 
   @Override
@@ -465,100 +482,80 @@ public class H2PersistenceService implements PersistenceService {
 
   @Override
   public ImageIcon getLocomotiveImage(String imageName) {
-    if (!imageCache.containsKey(imageName)) {
-      // Try to load the image from the file cache
-      Image image = readImage(imageName, false);
-      if (image != null) {
-        int size = 100;
-        float aspect = (float) image.getHeight(null) / (float) image.getWidth(null);
-        imageCache.put(imageName, image.getScaledInstance(size, (int) (size * aspect), Image.SCALE_SMOOTH));
-      }
-    }
-    Image img = imageCache.get(imageName);
-    if (img != null) {
-      return new ImageIcon(img);
-    } else {
-      return null;
-    }
+    return ImageService.getInstance().getIcon(resolveImage(imageName, false), LOCOMOTIVE_IMAGE_SIZE);
   }
 
   @Override
   public ImageIcon getFunctionImage(String imageName) {
-    if (!functionImageCache.containsKey(imageName)) {
-      // Try to load the image from the file cache
-      Image image = readImage(imageName, true);
-      if (image != null) {
-        int size = 30;
-        float aspect = (float) image.getHeight(null) / (float) image.getWidth(null);
-        functionImageCache.put(imageName, image.getScaledInstance(size, (int) (size * aspect), Image.SCALE_SMOOTH));
-      }
-    }
-    Image img = functionImageCache.get(imageName);
-    if (img != null) {
-      return new ImageIcon(img);
-    } else {
-      return null;
-    }
+    return ImageService.getInstance().getIcon(resolveImage(imageName, true), FUNCTION_IMAGE_SIZE);
   }
 
   @Override
   public Image readImage(String imageName, boolean function) {
     Image image = null;
-    if (!nullFunctionImages.contains(imageName)) {
-      if (imageName != null) {
-        String path;
-        if (imageName.contains(File.separator)) {
-          //Contains path seperators so assume it is a manual selected image
-          path = imageName;
-        } else {
-          //no path seperators so assume it is a synchonized command station icon
-          if (getDefaultCommandStation() != null) {
-            String shortName = getDefaultCommandStation().getShortName().toLowerCase();
-            path = System.getProperty("user.home") + File.separator + "jcs" + File.separator + "cache" + File.separator + shortName + File.separator;
-          } else {
-            path = System.getProperty("user.home") + File.separator + "jcs" + File.separator + "cache" + File.separator;
-          }
-        }
-
-        if (function) {
-          if (!path.contains("/media/esu")) {
-            path = path + "zfunctions" + File.separator;
-          }
-        }
+    URL source = resolveImage(imageName, function);
+    if (source != null) {
+      try {
+        image = ImageIO.read(source);
+      } catch (IOException e) {
+        Logger.trace("Image " + source + " can't be read");
+      }
+    }
+    return image;
+  }
 
-        File imgFile;
-        if (path.contains("/media/esu/")) {
-          //local resourse 
-          imgFile = null;
-        } else if (path.contains(".")) {
-          imgFile = new File(path);
-        } else {
-          imgFile = new File(path + imageName.toLowerCase() + ".png");
-        }
+  /**
+   * Locate an image without reading it.
+   *
+   * @param imageName the name of a synchronized command station icon, a file path or an ESU resource path
+   * @param function true for a function icon
+   * @return the location of the image or null when it does not exist
+   */
+  protected URL resolveImage(String imageName, boolean function) {
+    if (imageName == null) {
+      return null;
+    }
+    String path;
+    if (imageName.contains(File.separator)) {
+      //Contains path seperators so assume it is a manual selected image
+      path = imageName;
+    } else {
+      //no path seperators so assume it is a synchonized command station icon
+      if (getDefaultCommandStation() != null) {
+        String shortName = getDefaultCommandStation().getShortName().toLowerCase();
+        path = System.getProperty("user.home") + File.separator + "jcs" + File.separator + "cache" + File.separator + shortName + File.separator;
+      } else {
+        path = System.getProperty("user.home") + File.separator + "jcs" + File.separator + "cache" + File.separator;
+      }
+    }
 
-        if (imgFile != null && imgFile.exists()) {
-          try {
-            image = ImageIO.read(imgFile);
-          } catch (IOException e) {
-            Logger.trace("Image file " + imageName + ".png does not exists");
-          }
-        } else {
-          if (path.contains("/media")) {
-            URL iconUrl = getClass().getResource(path);
-            try {
-              image = ImageIO.read(iconUrl);
-            } catch (IOException | IllegalArgumentException e) {
-              Logger.trace("Image URL " + path + " does not exists");
-            }
-          }
-        }
+    if (function) {
+      if (!path.contains("/media/esu")) {
+        path = path + "zfunctions" + File.separator;
       }
+    }
+
+    File imgFile;
+    if (path.contains("/media/esu/")) {
+      //local resourse
+      imgFile = null;
+    } else if (path.contains(".")) {
+      imgFile = new File(path);
+    } else {
+      imgFile = new File(path + imageName.toLowerCase() + ".png");
+    }
 
-      if (image == null) {
-        this.nullFunctionImages.add(imageName);
+    URL source = null;
+    if (imgFile != null && imgFile.exists()) {
+      try {
+        source = imgFile.toURI().toURL();
+      } catch (IOException e) {
+        Logger.trace("Image file " + imgFile + " has no valid URL");
       }
+    } else if (path.contains("/media")) {
+      source = getClass().getResource(path);
     }
-    return image;
+    return source;
   }
 
   @Override
@@ -778,14 +775,286 @@ public class H2PersistenceService implements PersistenceService {
       removeAllRoutes();
     }
 
-    for (TileBean tb : tilesToRemove) {
-      remove(tb);
+    removeAll(tilesToRemove);
+    return persistAll(tiles);
+  }
+
+  @Override
+  public synchronized <T> List<T> persistAll(List<T> beans) {
+    if (beans == null || beans.isEmpty()) {
+      return beans;
     }
 
-    for (TileBean tb : tiles) {
-      persist(tb);
+    Map<Class<?>, List<Object>> tables = new HashMap<>();
+    for (T bean : beans) {
+      switch (bean) {
+        case TileBean tile -> {
+          //Like a single tile, a tile without id is not stored, but its block is
+          if (tile.getId() != null) {
+            batchRows(tables, TileBean.class).add(tile);
+          }
+          if (tile.getBlockBean() != null) {
+            batchRows(tables, BlockBean.class).add(tile.getBlockBean());
+          }
+        }
+        case SensorBean sensor ->
+          batchRows(tables, SensorBean.class).add(sensor);
+        case AccessoryBean accessory ->
+          batchRows(tables, AccessoryBean.class).add(accessory);
+        case LocomotiveBean locomotive ->
+          batchRows(tables, LocomotiveBean.class).add(locomotive);
+        case BlockBean block ->
+          batchRows(tables, BlockBean.class).add(block);
+        default ->
+          throw new IllegalArgumentException("Can't persist a " + bean.getClass().getSimpleName() + " in a batch");
+      }
+    }
+
+    Map<Object, Object> previous = new IdentityHashMap<>();
+    Transaction trans = database.startTransaction();
+    try {
+      BatchWriter writer = new BatchWriter(trans.getConnection(), batchSize);
+      for (Class<?> type : BATCH_ORDER) {
+        List<Object> rows = tables.get(type);
+        if (rows == null) {
+          continue;
+        }
+        StandardPojoInfo pojoInfo = mapping.getPojoInfo(type);
+        String key = pojoInfo.primaryKeyNames.getFirst();
+
+        if (type == BlockBean.class) {
+          resolveBlockIds(trans, rows);
+        }
+
+        //Only the rows of this batch are read, to decide between update and insert
+        Set<Object> keys = new HashSet<>();
+        for (Object row : rows) {
+          Object id = pojoInfo.getValue(row, key);
+          if (id != null) {
+            keys.add(id);
+          }
+        }
+        Map<Object, Object> existing = new HashMap<>();
+        for (Object row : selectIn(trans, type, key, keys)) {
+          existing.put(pojoInfo.getValue(row, key), row);
+        }
+
+        //When a row is in the list more than once the last one wins
+        Map<Object, Object> unique = new LinkedHashMap<>();
+        for (Object row : rows) {
+          unique.put(pojoInfo.getValue(row, key), row);
+        }
+
+        List<Object> updates = new ArrayList<>();
+        List<Object> inserts = new ArrayList<>();
+        for (Map.Entry<Object, Object> entry : unique.entrySet()) {
+          Object prev = existing.get(entry.getKey());
+          if (prev != null) {
+            previous.put(entry.getValue(), prev);
+            updates.add(entry.getValue());
+          } else {
+            inserts.add(entry.getValue());
+          }
+        }
+
+        int updated = writer.update(pojoInfo, updates);
+        int inserted = writer.insert(pojoInfo, inserts);
+        Logger.trace(pojoInfo.table + ": " + updated + " rows updated, " + inserted + " rows inserted");
+
+        if (type == LocomotiveBean.class) {
+          persistFunctions(trans, writer, unique.values());
+        }
+        tables.put(type, new ArrayList<>(unique.values()));
+      }
+      trans.commit();
+    } catch (SQLException | RuntimeException e) {
+      Logger.error("Batch of " + beans.size() + " beans is rolled back: " + e.getMessage());
+      trans.rollback();
+      throw e instanceof DbException dbe ? dbe : new DbException(e);
+    }
+
+    for (Class<?> type : BATCH_ORDER) {
+      List<Object> rows = tables.get(type);
+      if (rows != null) {
+        for (Object row : rows) {
+          //A block event is always fired, as BlockBean.equals ignores the block state
+          Object prev = type == BlockBean.class ? null : previous.get(row);
+          changeSupport.firePropertyChange(BATCH_EVENTS.get(type), prev, row);
+        }
+      }
+    }
+    return beans;
+  }
+
+  private static List<Object> batchRows(Map<Class<?>, List<Object>> tables, Class<?> type) {
+    return tables.computeIfAbsent(type, t -> new ArrayList<>());
+  }
+
+  /**
+   * Select the rows of which the column has one of the values, in chunks of the batch size.
+   */
+  private <R> List<R> selectIn(Transaction trans, Class<R> type, String column, Collection<?> values) {
+    List<R> result = new ArrayList<>();
+    List<Object> all = new ArrayList<>(values);
+    for (int from = 0; from < all.size(); from = from + batchSize) {
+      List<Object> chunk = all.subList(from, Math.min(from + batchSize, all.size()));
+      String in = String.join(",", Collections.nCopies(chunk.size(), "?"));
+      result.addAll(database.transaction(trans).where(column + " in (" + in + ")", chunk.toArray()).results(type));
+    }
+    return result;
+  }
+
+  /**
+   * A block without id, which belongs to a tile which already has a block, takes over the id of that block.
+   */
+  private void resolveBlockIds(Transaction trans, List<Object> rows) {
+    Set<String> tileIds = new HashSet<>();
+    for (Object row : rows) {
+      BlockBean block = (BlockBean) row;
+      if (block.getId() == null && block.getTileId() != null) {
+        tileIds.add(block.getTileId());
+      }
+    }
+    if (tileIds.isEmpty()) {
+      return;
+    }
+
+    Map<String, String> blockIdsByTile = new HashMap<>();
+    for (BlockBean bb : selectIn(trans, BlockBean.class, "tile_id", tileIds)) {
+      blockIdsByTile.put(bb.getTileId(), bb.getId());
+    }
+    for (Object row : rows) {
+      BlockBean block = (BlockBean) row;
+      if (block.getId() == null && block.getTileId() != null) {
+        block.setId(blockIdsByTile.get(block.getTileId()));
+      }
+    }
+  }
+
+  /**
+   * The functions of the locomotives are updated in place by locomotive and function number. New functions are inserted and
+   * functions which are no longer in the locomotive are deleted.
+   */
+  private void persistFunctions(Transaction trans, BatchWriter writer, Iterable<Object> locomotives) throws SQLException {
+    Set<Long> locomotiveIds = new HashSet<>();
+    for (Object row : locomotives) {
+      locomotiveIds.add(((LocomotiveBean) row).getId());
+    }
+
+    Map<String, FunctionBean> existing = new HashMap<>();
+    for (FunctionBean fb : selectIn(trans, FunctionBean.class, "locomotive_id", locomotiveIds)) {
+      existing.put(fb.getLocomotiveId() + ":" + fb.getNumber(), fb);
+    }
+
+    List<FunctionBean> updates = new ArrayList<>();
+    List<FunctionBean> inserts = new ArrayList<>();
+    for (Object row : locomotives) {
+      LocomotiveBean locomotive = (LocomotiveBean) row;
+      for (FunctionBean fb : locomotive.getFunctions().values()) {
+        fb.setLocomotiveId(locomotive.getId());
+        FunctionBean prev = existing.remove(locomotive.getId() + ":" + fb.getNumber());
+        if (prev != null) {
+          fb.setId(prev.getId());
+          updates.add(fb);
+        } else {
+          fb.setId(null);
+          inserts.add(fb);
+        }
+      }
+    }
+
+    StandardPojoInfo pojoInfo = mapping.getPojoInfo(FunctionBean.class);
+    int deleted = writer.delete(pojoInfo, new ArrayList<>(existing.values()));
+    int updated = writer.update(pojoInfo, updates);
+    int inserted = writer.insert(pojoInfo, inserts);
+    Logger.trace(pojoInfo.table + ": " + updated + " rows updated, " + inserted + " rows inserted, " + deleted + " rows deleted");
+  }
+
+  @Override
+  public synchronized <T> void removeAll(List<T> beans) {
+    if (beans == null || beans.isEmpty()) {
+      return;
+    }
+
+    Map<Class<?>, List<Object>> tables = new HashMap<>();
+    for (T bean : beans) {
+      if (!BATCH_ORDER.contains(bean.getClass())) {
+        throw new IllegalArgumentException("Can't remove a " + bean.getClass().getSimpleName() + " in a batch");
+      }
+      batchRows(tables, bean.getClass()).add(bean);
+    }
+
+    List<BlockBean> tileBlocks = new ArrayList<>();
+    Transaction trans = database.startTransaction();
+    try {
+      BatchWriter writer = new BatchWriter(trans.getConnection(), batchSize);
+      //Referencing rows are removed first
+      for (Class<?> type : BATCH_ORDER.reversed()) {
+        List<Object> rows = tables.get(type);
+        if (rows == null) {
+          continue;
+        }
+        StandardPojoInfo pojoInfo = mapping.getPojoInfo(type);
+        List<Object[]> ids = new ArrayList<>();
+        for (Object row : rows) {
+          ids.add(new Object[]{pojoInfo.getValue(row, pojoInfo.primaryKeyNames.getFirst())});
+        }
+
+        switch (pojoInfo.table) {
+          case "blocks" ->
+            writer.execute("delete from station_blocks where block_id = ?", ids);
+          case "tiles" -> {
+            List<Object[]> fromTo = new ArrayList<>();
+            for (Object[] id : ids) {
+              fromTo.add(new Object[]{id[0], id[0]});
+            }
+            writer.execute("delete from route_elements where route_id in (select id from routes where from_tile_id = ? or to_tile_id = ?)", fromTo);
+            writer.execute("delete from routes where from_tile_id = ? or to_tile_id = ?", fromTo);
+            writer.execute("delete from station_blocks where block_id in (select id from blocks where tile_id = ?)", ids);
+            writer.execute("delete from blocks where tile_id = ?", ids);
+            for (Object row : rows) {
+              if (((TileBean) row).getBlockBean() != null) {
+                tileBlocks.add(((TileBean) row).getBlockBean());
+              }
+            }
+          }
+          case "locomotives" ->
+            writer.execute("delete from locomotive_functions where locomotive_id = ?", ids);
+          case "accessories" ->
+            writer.execute("update tiles set sensor_id = null where accessory_id = ?", ids);
+          case "sensors" -> {
+            writer.execute("update tiles set sensor_id = null where sensor_id = ?", ids);
+            writer.execute("update blocks set min_sensor_id = null where min_sensor_id = ?", ids);
+            writer.execute("update blocks set plus_sensor_id = null where plus_sensor_id = ?", ids);
+          }
+          default -> {
+          }
+        }
+
+        int rowCount = writer.delete(pojoInfo, rows);
+        Logger.trace(pojoInfo.table + ": " + rowCount + " rows deleted");
+      }
+      trans.commit();
+    } catch (SQLException | RuntimeException e) {
+      Logger.error("Removal of " + beans.size() + " beans is rolled back: " + e.getMessage());
+      trans.rollback();
+      throw e instanceof DbException dbe ? dbe : new DbException(e);
+    }
+
+    if (tables.containsKey(TileBean.class)) {
+      changeSupport.firePropertyChange("data.routes.deleted", null, null);
+    }
+    for (BlockBean block : tileBlocks) {
+      changeSupport.firePropertyChange("data.block.deleted", block, null);
+    }
+    for (Class<?> type : BATCH_ORDER.reversed()) {
+      List<Object> rows = tables.get(type);
+      if (rows != null) {
+        for (Object row : rows) {
+          changeSupport.firePropertyChange(BATCH_EVENTS.get(type) + ".deleted", row, null);
+        }
+      }
     }
-    return tiles;
   }
 
   private RouteElementBean addRelatedObjects(RouteElementBean routeElementBean) {
@@ -1107,7 +1376,8 @@ public class H2PersistenceService implements PersistenceService {
       database.insert(block);
     }
 
-    changeSupport.firePropertyChange("data.block", prev, block);
+    //BlockBean.equals ignores the block state, so fire without the previous value, otherwise a state change is not reported
+    changeSupport.firePropertyChange("data.block", null, block);
     return block;
   }
 
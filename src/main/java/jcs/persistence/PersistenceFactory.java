@@ -40,6 +40,15 @@ public class PersistenceFactory {
     return PersistenceFactory.getInstance().getPersistenceServiceImpl();
   }
 
+  /**
+   * Write the queued updates of the persistence cache, when the cache is used.
+   */
+  public synchronized static void shutdown() {
+    if (instance != null && instance.persistenceService instanceof CachingPersistenceService cache) {
+      cache.close();
+    }
+  }
+
   private PersistenceService getPersistenceServiceImpl() {
     return persistenceService;
   }
@@ -67,6 +76,10 @@ public class PersistenceFactory {
       Logger.error("Can't find implementation class for property: 'persistenceService'!");
     }
 
+    if (persistenceService != null && Boolean.parseBoolean(System.getProperty("persistence.cache", "false"))) {
+      persistenceService = new CachingPersistenceService(persistenceService);
+    }
+
     if (persistenceService != null) {
       Logger.trace("Using " + persistenceService.getClass().getSimpleName() + " as PersistenceService...");
     }
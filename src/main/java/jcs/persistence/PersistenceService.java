@@ -51,6 +51,26 @@ public interface PersistenceService {
    */
   void removePropertyChangeListener(PropertyChangeListener listener);
 
+  /**
+   * Persists a list of beans in one transaction.<br>
+   * The rows are written with JDBC batches, per table, which is much faster than persisting the beans one by one.<br>
+   * Supported are SensorBeans, AccessoryBeans, LocomotiveBeans with their functions, TileBeans with their block and BlockBeans.
+   *
+   * @param <T> The type of the beans.
+   * @param beans The beans to persist.
+   * @return The persisted beans.
+   */
+  <T> List<T> persistAll(List<T> beans);
+
+  /**
+   * Removes a list of beans in one transaction.<br>
+   * Like the single remove, references to the removed rows are removed too.
+   *
+   * @param <T> The type of the beans.
+   * @param beans The beans to remove.
+   */
+  <T> void removeAll(List<T> beans);
+
   /**
    * Retrieves all JCSPropertyBeans.
    *
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import javax.swing.ImageIcon;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.Timer;
+import jcs.JCS;
+import jcs.ui.table.model.MetricsTableModel;
+import jcs.util.metrics.MetricsRegistry;
+import org.tinylog.Logger;
+
+/**
+ * Shows the counters, queue depths and latencies of the event pipeline, from the command station connection to the listeners.
+ */
+public class DiagnosticsDialog extends javax.swing.JDialog {
+
+  private static final long serialVersionUID = 4526373960817004921L;
+
+  private final MetricsTableModel metricsTableModel;
+  private final Timer refreshTimer;
+
+  /**
+   * Creates new form DiagnosticsDialog
+   *
+   * @param parent
+   * @param modal
+   */
+  public DiagnosticsDialog(java.awt.Frame parent, boolean modal) {
+    super(parent, modal);
+    metricsTableModel = new MetricsTableModel();
+    refreshTimer = new Timer(Integer.getInteger("diagnostics.refresh.millis", 1000), e -> metricsTableModel.refresh());
+    initComponents();
+
+    URL iconUrl = JCS.class.getResource("/media/jcs-train-64.png");
+    if (iconUrl != null) {
+      setIconImage(new ImageIcon(iconUrl).getImage());
+    }
+  }
+
+  public void showDiagnostics() {
+    metricsTableModel.refresh();
+    setVisible(true);
+  }
+
+  /**
+   * This method is called from within the constructor to initialize the form.<br>
+   * WARNING: Do NOT modify this code. The content of this method is always regenerated by the Form Editor.
+   */
+  @SuppressWarnings("unchecked")
+  // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
+  private void initComponents() {
+
+    topPanel = new javax.swing.JPanel();
+    resetButton = new javax.swing.JButton();
+    dumpButton = new javax.swing.JButton();
+    mainPanel = new javax.swing.JPanel();
+    metricsTableSP = new javax.swing.JScrollPane();
+    metricsTable = new javax.swing.JTable();
+
+    setDefaultCloseOperation(javax.swing.WindowConstants.DISPOSE_ON_CLOSE);
+    setTitle("JCS Diagnostics");
+    addWindowListener(new java.awt.event.WindowAdapter() {
+      public void windowClosed(java.awt.event.WindowEvent evt) {
+        formWindowClosed(evt);
+      }
+      public void windowOpened(java.awt.event.WindowEvent evt) {
+        formWindowOpened(evt);
+      }
+    });
+
+    java.awt.FlowLayout flowLayout1 = new java.awt.FlowLayout(java.awt.FlowLayout.RIGHT);
+    flowLayout1.setAlignOnBaseline(true);
+    topPanel.setLayout(flowLayout1);
+
+    resetButton.setText("Reset");
+    resetButton.setToolTipText("Reset the counters and latencies");
+    resetButton.addActionListener(new java.awt.event.ActionListener() {
+      public void actionPerformed(java.awt.event.ActionEvent evt) {
+        resetButtonActionPerformed(evt);
+      }
+    });
+    topPanel.add(resetButton);
+
+    dumpButton.setText("Dump...");
+    dumpButton.setToolTipText("Write the metrics to a file");
+    dumpButton.addActionListener(new java.awt.event.ActionListener() {
+      public void actionPerformed(java.awt.event.ActionEvent evt) {
+        dumpButtonActionPerformed(evt);
+      }
+    });
+    topPanel.add(dumpButton);
+
+    getContentPane().add(topPanel, java.awt.BorderLayout.PAGE_START);
+
+    mainPanel.setPreferredSize(new java.awt.Dimension(900, 400));
+    mainPanel.setLayout(new java.awt.BorderLayout());
+
+    metricsTable.setModel(metricsTableModel);
+    metricsTable.setFillsViewportHeight(true);
+    metricsTable.setGridColor(new java.awt.Color(204, 204, 204));
+    metricsTable.setRowHeight(18);
+    metricsTable.setShowGrid(true);
+    metricsTableSP.setViewportView(metricsTable);
+
+    mainPanel.add(metricsTableSP, java.awt.BorderLayout.CENTER);
+
+    getContentPane().add(mainPanel, java.awt.BorderLayout.CENTER);
+
+    pack();
+  }// </editor-fold>//GEN-END:initComponents
+
+  private void resetButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_resetButtonActionPerformed
+    MetricsRegistry.reset();
+    metricsTableModel.refresh();
+  }//GEN-LAST:event_resetButtonActionPerformed
+
+  private void dumpButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_dumpButtonActionPerformed
+    String name = "metrics-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".txt";
+    File file = new File(System.getProperty("user.home") + File.separator + "jcs" + File.separator + name);
+    JFileChooser fileChooser = new JFileChooser();
+    fileChooser.setSelectedFile(file);
+    if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+      try {
+        MetricsRegistry.dump(fileChooser.getSelectedFile());
+      } catch (IOException ex) {
+        Logger.error("Can't write metrics to " + fileChooser.getSelectedFile() + ": " + ex.getMessage());
+        JOptionPane.showMessageDialog(this, "Can't write " + fileChooser.getSelectedFile().getAbsolutePath(), "JCS Diagnostics", JOptionPane.ERROR_MESSAGE);
+      }
+    }
+  }//GEN-LAST:event_dumpButtonActionPerformed
+
+  private void formWindowOpened(java.awt.event.WindowEvent evt) {//GEN-FIRST:event_formWindowOpened
+    refreshTimer.start();
+  }//GEN-LAST:event_formWindowOpened
+
+  private void formWindowClosed(java.awt.event.WindowEvent evt) {//GEN-FIRST:event_formWindowClosed
+    refreshTimer.stop();
+  }//GEN-LAST:event_formWindowClosed
+
+  // Variables declaration - do not modify//GEN-BEGIN:variables
+  private javax.swing.JButton dumpButton;
+  private javax.swing.JPanel mainPanel;
+  private javax.swing.JTable metricsTable;
+  private javax.swing.JScrollPane metricsTableSP;
+  private javax.swing.JButton resetButton;
+  private javax.swing.JPanel topPanel;
+  // End of variables declaration//GEN-END:variables
+}
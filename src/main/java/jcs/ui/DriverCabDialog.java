@@ -15,7 +15,6 @@
  */
 package jcs.ui;
 
-import java.awt.Image;
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
 import javax.swing.UIManager;
@@ -24,6 +23,7 @@ import jcs.commandStation.events.LocomotiveDirectionEvent;
 import jcs.commandStation.events.LocomotiveDirectionEventListener;
 import jcs.entities.LocomotiveBean;
 import jcs.persistence.PersistenceFactory;
+import jcs.ui.util.ImageService;
 import jcs.ui.util.ImageUtil;
 import org.tinylog.Logger;
 
@@ -57,13 +57,7 @@ public class DriverCabDialog extends javax.swing.JDialog implements LocomotiveDi
       this.driverCabPanel.setLocomotiveBean(locomotive);
       
       if (locomotive.getLocIcon() != null) {
-        Image img = locomotive.getLocIcon().getImage();
-        if (LocomotiveBean.Direction.BACKWARDS == locomotive.getDirection()) {
-          img = ImageUtil.flipVertically(locomotive.getLocIcon().getImage());
-          this.imageLabel.setIcon(new ImageIcon(img));
-        } else {
-          this.imageLabel.setIcon(new ImageIcon(img));
-        }
+        showLocomotiveImage(locomotive);
         this.imageLabel.setText(null);
         this.locNameLabel.setText(locomotive.getName());
       } else {
@@ -82,16 +76,21 @@ public class DriverCabDialog extends javax.swing.JDialog implements LocomotiveDi
   public void onDirectionChange(LocomotiveDirectionEvent directionEvent) {
     LocomotiveBean locomotive = this.driverCabPanel.getLocomotiveBean();
     
-    ImageIcon imgIcon = locomotive.getLocIcon();
-    if (imgIcon != null) {
-      Image img = imgIcon.getImage();
-      if (LocomotiveBean.Direction.BACKWARDS == locomotive.getDirection()) {
-        img = ImageUtil.flipVertically(locomotive.getLocIcon().getImage());
-        this.imageLabel.setIcon(new ImageIcon(img));
-      } else {
+    if (locomotive.getLocIcon() != null) {
+      showLocomotiveImage(locomotive);
+    }
+  }
+
+  private void showLocomotiveImage(LocomotiveBean locomotive) {
+    //The icon might still be loading, show it when it is ready
+    ImageService.whenLoaded(locomotive.getLocIcon(), img -> {
+      if (img != null) {
+        if (LocomotiveBean.Direction.BACKWARDS == locomotive.getDirection()) {
+          img = ImageUtil.flipVertically(img);
+        }
         this.imageLabel.setIcon(new ImageIcon(img));
       }
-    }
+    });
   }
 
   /**
@@ -15,7 +15,6 @@
  */
 package jcs.ui;
 
-import java.awt.Image;
 import java.awt.Taskbar;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
@@ -39,6 +38,7 @@ import jcs.entities.CommandStationBean;
 import jcs.entities.LocomotiveBean;
 import jcs.entities.LocomotiveBean.Direction;
 import jcs.persistence.PersistenceFactory;
+import jcs.ui.util.ImageService;
 import jcs.ui.util.ImageUtil;
 import jcs.util.RunUtil;
 import org.tinylog.Logger;
@@ -170,13 +170,7 @@ public class DriverCabFrame extends JFrame implements LocomotiveDirectionEventLi
       this.setTitle(locomotive.getName());
 
       if (locomotive.getLocIcon() != null) {
-        Image img = locomotive.getLocIcon().getImage();
-        if (Direction.BACKWARDS == locomotive.getDirection()) {
-          img = ImageUtil.flipVertically(locomotive.getLocIcon().getImage());
-          this.locoLabel.setIcon(new ImageIcon(img));
-        } else {
-          this.locoLabel.setIcon(new ImageIcon(img));
-        }
+        showLocomotiveImage(locomotive);
         this.locoLabel.setText(null);
       } else {
         this.locoLabel.setText(locomotive.getName());
@@ -194,16 +188,21 @@ public class DriverCabFrame extends JFrame implements LocomotiveDirectionEventLi
   public void onDirectionChange(LocomotiveDirectionEvent directionEvent) {
     LocomotiveBean locomotive = (LocomotiveBean) this.locomotiveComboBoxModel.getSelectedItem();
 
-    ImageIcon imgIcon = locomotive.getLocIcon();
-    if (imgIcon != null) {
-      Image img = imgIcon.getImage();
-      if (Direction.BACKWARDS == locomotive.getDirection()) {
-        img = ImageUtil.flipVertically(locomotive.getLocIcon().getImage());
-        this.locoLabel.setIcon(new ImageIcon(img));
-      } else {
+    if (locomotive.getLocIcon() != null) {
+      showLocomotiveImage(locomotive);
+    }
+  }
+
+  private void showLocomotiveImage(LocomotiveBean locomotive) {
+    //The icon might still be loading, show it when it is ready
+    ImageService.whenLoaded(locomotive.getLocIcon(), img -> {
+      if (img != null) {
+        if (Direction.BACKWARDS == locomotive.getDirection()) {
+          img = ImageUtil.flipVertically(img);
+        }
         this.locoLabel.setIcon(new ImageIcon(img));
       }
-    }
+    });
   }
 
   class LocomotiveBeanByNameSorter implements Comparator<LocomotiveBean> {
@@ -95,6 +95,7 @@ public class JCSFrame extends JFrame implements UICallback, ConnectionEventListe
 
   private final Map<KeyStroke, Action> actionMap;
   private FeedbackSensorDialog feedbackMonitor;
+  private DiagnosticsDialog diagnosticsDialog;
 
   private boolean editMode = false;
 
@@ -365,6 +366,14 @@ public class JCSFrame extends JFrame implements UICallback, ConnectionEventListe
     feedbackMonitor.showMonitor();
   }
 
+  private void showDiagnostics() {
+    if (diagnosticsDialog == null) {
+      diagnosticsDialog = new DiagnosticsDialog(this, false);
+      FrameMonitor.registerDialogFrame(diagnosticsDialog, DiagnosticsDialog.class.getName());
+    }
+    diagnosticsDialog.showDiagnostics();
+  }
+
   private void showGrid() {
     layoutPanel.showGrid();
 
@@ -461,6 +470,7 @@ public class JCSFrame extends JFrame implements UICallback, ConnectionEventListe
     vncMI = new JMenuItem();
     showKeyboard = new JMenuItem();
     showSensorMonitor = new JMenuItem();
+    showDiagnosticsMI = new JMenuItem();
     showRoutesMI = new JMenuItem();
     settingsMenu = new JMenu();
     showLocosMI = new JMenuItem();
@@ -1008,6 +1018,16 @@ public class JCSFrame extends JFrame implements UICallback, ConnectionEventListe
     });
     viewMenu.add(showSensorMonitor);
 
+    showDiagnosticsMI.setText("Diagnostics");
+    showDiagnosticsMI.setToolTipText("Event pipeline counters and latencies");
+    showDiagnosticsMI.setName("showDiagnosticsMI"); // NOI18N
+    showDiagnosticsMI.addActionListener(new ActionListener() {
+      public void actionPerformed(ActionEvent evt) {
+        showDiagnosticsMIActionPerformed(evt);
+      }
+    });
+    viewMenu.add(showDiagnosticsMI);
+
     showRoutesMI.setText("Show Routes");
     showRoutesMI.setToolTipText("Show Routes");
     showRoutesMI.setName("showRoutesMI"); // NOI18N
@@ -1236,6 +1256,10 @@ public class JCSFrame extends JFrame implements UICallback, ConnectionEventListe
       showSensorMonitor();
     }//GEN-LAST:event_showSensorMonitorActionPerformed
 
+  private void showDiagnosticsMIActionPerformed(ActionEvent evt) {//GEN-FIRST:event_showDiagnosticsMIActionPerformed
+    showDiagnostics();
+  }//GEN-LAST:event_showDiagnosticsMIActionPerformed
+
     private void connectMIActionPerformed(ActionEvent evt) {//GEN-FIRST:event_connectMIActionPerformed
       boolean connect = "Connect".equals(((JMenuItem) evt.getSource()).getText());
       connect(connect);
@@ -1611,6 +1635,7 @@ public class JCSFrame extends JFrame implements UICallback, ConnectionEventListe
   private JMenu settingsMenu;
   private JMenuItem showAccessoryMI;
   private JMenuItem showCommandStationsMI;
+  private JMenuItem showDiagnosticsMI;
   private JMenuItem showDrivewaysMI;
   private JButton showEditDesignBtn;
   private JButton showFeedbackMonitorBtn;
@@ -23,6 +23,7 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.datatransfer.Transferable;
 import java.awt.datatransfer.UnsupportedFlavorException;
 import java.awt.dnd.DropTargetDropEvent;
@@ -34,7 +35,10 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import javax.swing.ImageIcon;
@@ -44,8 +48,10 @@ import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.SwingUtilities;
+import javax.swing.ToolTipManager;
 import javax.swing.TransferHandler;
 import javax.swing.TransferHandler.TransferSupport;
+import javax.swing.event.ChangeListener;
 import jcs.commandStation.automation.Dispatcher;
 import jcs.commandStation.automation.RailController;
 import jcs.entities.BlockBean;
@@ -71,12 +77,14 @@ import jcs.ui.layout.dialogs.SensorDialog;
 import jcs.ui.layout.dialogs.SignalDialog;
 import jcs.ui.layout.dialogs.SwitchDialog;
 import jcs.ui.layout.pathfinding.astar.AStar;
+import jcs.ui.layout.pathfinding.astar.RouteDiff;
 import jcs.ui.layout.tiles.Block;
 import jcs.ui.layout.tiles.Sensor;
 import jcs.ui.layout.tiles.Signal;
 import jcs.ui.layout.tiles.Switch;
 import jcs.ui.layout.tiles.Tile;
 import jcs.ui.layout.tiles.TileCache;
+import jcs.ui.layout.tiles.TileGrid;
 import org.tinylog.Logger;
 import static jcs.entities.TileBean.TileType.CROSS_SWITCH;
 import jcs.ui.layout.tiles.LayoutScale;
@@ -112,11 +120,19 @@ public class LayoutCanvas extends JPanel {
   private Tile selectedTile;
 
   private RoutesDialog routesDialog;
+  //Keeps the graph and routes of the last routing, only used by the executor thread
+  private AStar astar;
 
   private boolean showCenter;
 
   private volatile boolean loading;
 
+  //In surface mode the tiles are not child components, only the tiles which intersect the visible part are painted.
+  //The tiles are found through the grid of the TileCache, the canvas only keeps the tiles it listens to
+  private final boolean surface;
+  private final Set<Tile> surfaceTiles;
+  private final ChangeListener tileRepainter;
+
   private static final BasicStroke GRID_STROKE = new BasicStroke(1f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
 
   public LayoutCanvas() {
@@ -130,6 +146,13 @@ public class LayoutCanvas extends JPanel {
 
     //setDoubleBuffered(true);
     showCenter = "true".equalsIgnoreCase(System.getProperty("tile.show.center", "false"));
+    surface = "true".equalsIgnoreCase(System.getProperty("layout.canvas.surface", "false"));
+    surfaceTiles = Collections.newSetFromMap(new IdentityHashMap<>());
+    tileRepainter = e -> {
+      if (e.getSource() instanceof Tile tile) {
+        repaint(tile.getTileBounds());
+      }
+    };
 
     this.readonly = readonly;
     executor = Executors.newSingleThreadExecutor(r -> {
@@ -144,6 +167,11 @@ public class LayoutCanvas extends JPanel {
       mode = Mode.EDIT;
     }
 
+    if (surface) {
+      //The tool tips of the tiles are provided by the canvas
+      ToolTipManager.sharedInstance().registerComponent(this);
+    }
+
     orientation = Orientation.EAST;
     direction = Direction.CENTER;
 
@@ -207,8 +235,97 @@ public class LayoutCanvas extends JPanel {
     //Logger.trace("Duration: {} ms.", (now - started));
   }
 
+  @Override
+  protected void paintComponent(Graphics g) {
+    super.paintComponent(g);
+    if (surface) {
+      paintSurfaceTiles(g);
+    }
+  }
+
+  /**
+   * Surface mode: paint the tiles which intersect the clip, which is the visible or dirty part of the canvas.<br>
+   * A tile which is dragged is painted last on its drag position.
+   *
+   * @param g
+   */
+  private void paintSurfaceTiles(Graphics g) {
+    Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      clip = getVisibleRect();
+    }
+    LayoutScale scale = LayoutScale.getInstance();
+    //Extend the area with one cell as the conversion to canonical coordinates rounds down
+    Rectangle area = new Rectangle(scale.toCanonical(clip.x), scale.toCanonical(clip.y), scale.toCanonical(clip.width) + TileGrid.CELL, scale.toCanonical(clip.height) + TileGrid.CELL);
+
+    Tile dragged = null;
+    if (selectedTile != null && surfaceTiles.contains(selectedTile) && !selectedTile.getBounds().equals(selectedTile.getTileBounds())) {
+      dragged = selectedTile;
+    }
+
+    for (Tile tile : TileCache.findTiles(area)) {
+      if (tile != dragged) {
+        paintSurfaceTile(g, tile, tile.getTileBounds());
+      }
+    }
+
+    if (dragged != null) {
+      paintSurfaceTile(g, dragged, dragged.getBounds());
+    }
+  }
+
+  private void paintSurfaceTile(Graphics g, Tile tile, Rectangle bounds) {
+    Graphics tg = g.create(bounds.x, bounds.y, bounds.width, bounds.height);
+    try {
+      tile.getUI().paint(tg, tile);
+    } finally {
+      tg.dispose();
+    }
+  }
+
+  private void addSurfaceTile(Tile tile) {
+    if (surfaceTiles.add(tile)) {
+      tile.addChangeListener(tileRepainter);
+    }
+    tile.setBounds(tile.getTileBounds());
+    repaint(tile.getTileBounds());
+  }
+
+  private void removeSurfaceTile(Tile tile) {
+    if (surfaceTiles.remove(tile)) {
+      tile.removeChangeListener(tileRepainter);
+      repaint(tile.getTileBounds());
+    }
+  }
+
+  /**
+   * Surface mode: the position or shape of a tile has changed, the TileCache has already updated its grid.
+   */
+  private void updateSurfaceTile(Tile tile) {
+    if (surface && tile != null) {
+      tile.setBounds(tile.getTileBounds());
+      repaint();
+    }
+  }
+
+  /**
+   * Surface mode: the tiles are not components, so the canvas shows the tool tip of the tile under the mouse.
+   */
+  @Override
+  public String getToolTipText(MouseEvent event) {
+    if (surface) {
+      Tile tile = TileCache.findTile(LayoutUtil.snapToGrid(event.getPoint()));
+      return tile != null ? tile.getUI().getTileToolTipText(tile) : null;
+    }
+    return super.getToolTipText(event);
+  }
+
   @Override
   public Component add(Component component) {
+    if (surface && component instanceof Tile tile) {
+      addSurfaceTile(tile);
+      return component;
+    }
     super.add(component);
     if (component instanceof Tile tile) {
       tile.setBounds(tile.getTileBounds());
@@ -219,14 +336,27 @@ public class LayoutCanvas extends JPanel {
   @Override
   public Component add(String name, Component component) {
     if (component instanceof Tile tile) {
-      super.add(tile.getId(), tile);
-      tile.setBounds(tile.getTileBounds());
+      if (surface) {
+        addSurfaceTile(tile);
+      } else {
+        super.add(tile.getId(), tile);
+        tile.setBounds(tile.getTileBounds());
+      }
     } else {
       super.add(component);
     }
     return component;
   }
 
+  @Override
+  public void remove(Component component) {
+    if (surface && component instanceof Tile tile) {
+      removeSurfaceTile(tile);
+    } else {
+      super.remove(component);
+    }
+  }
+
   private void paintLineGrid(Graphics g) {
     int width = getWidth();
     int height = getHeight();
@@ -342,6 +472,20 @@ public class LayoutCanvas extends JPanel {
 
     LayoutScale.getInstance().setScalePercent(scalePercent);
 
+    if (surface) {
+      //Only the visible tiles are rendered again, when they are painted
+      for (Tile tile : surfaceTiles) {
+        tile.getUI().markImageDirty();
+        tile.setBounds(tile.getTileBounds());
+      }
+      LayoutScale scale = LayoutScale.getInstance();
+      Dimension canonical = TileCache.getMinCanvasSize();
+      setPreferredSize(new Dimension(scale.toDisplay(canonical.width), scale.toDisplay(canonical.height)));
+      revalidate();
+      repaint();
+      return;
+    }
+
     // Snapshot the component array on the EDT before handing off to worker.
     final Component[] components = getComponents();
 
@@ -417,6 +561,10 @@ public class LayoutCanvas extends JPanel {
 
   private void loadTiles(List<Tile> tiles) {
     removeAll();
+    for (Tile tile : surfaceTiles) {
+      tile.removeChangeListener(tileRepainter);
+    }
+    surfaceTiles.clear();
     selectedTile = null;
 
     Dimension minSize = TileCache.getMinCanvasSize();
@@ -600,7 +748,8 @@ public class LayoutCanvas extends JPanel {
     int x = scale.toDisplay(tile.getCenterX());
     int y = scale.toDisplay(tile.getCenterY());
 
-    if (getComponentAt(x, y) instanceof Tile toBeDeleted) {
+    Component atCenter = surface ? TileCache.findTile(tile.getCenter()) : getComponentAt(x, y);
+    if (atCenter instanceof Tile toBeDeleted) {
       if (toBeDeleted != null && toBeDeleted.getId().equals(tile.getId())) {
         Logger.trace("Deleting Tile " + toBeDeleted.getId());
         remove(toBeDeleted);
@@ -619,7 +768,9 @@ public class LayoutCanvas extends JPanel {
     Logger.trace("@ ({}, {}) snap: ({}, {}) ", evt.getX(), evt.getY(), snapPoint.x, snapPoint.y);
 
     if (selectedTile != null) { // && !snapPoint.equals(selectedTile.getCenter())) {
-      setComponentZOrder(selectedTile, 0);
+      if (!surface) {
+        setComponentZOrder(selectedTile, 0);
+      }
       Logger.trace("Dragging tile: {} @ {} to: ({}, {})", selectedTile.getId(), selectedTile.xyToString(), snapPoint.x, snapPoint.y);
 
       LayoutScale scale = LayoutScale.getInstance();
@@ -671,6 +822,9 @@ public class LayoutCanvas extends JPanel {
         }
         Logger.trace("tile {} bounds[ x: {} y: {} w: {} h: {}", selectedTile.getId(), curX, curY, selectedTile.getWidth(), selectedTile.getHeight());
         selectedTile.setBounds(curX, curY, selectedTile.getWidth(), selectedTile.getHeight());
+        if (surface) {
+          repaint();
+        }
       }
     }
   }
@@ -684,6 +838,7 @@ public class LayoutCanvas extends JPanel {
         selectedTile.setSelectedColor(Tile.DEFAULT_SELECTED_COLOR);
         selectedTile.setBounds(selectedTile.getTileBounds());
       }
+      updateSurfaceTile(selectedTile);
     }
   }
 
@@ -695,7 +850,8 @@ public class LayoutCanvas extends JPanel {
       case CURVED -> {
       }
       case SENSOR -> {
-        //this.executor.execute(() -> toggleSensor((Sensor) tile));
+        //A tile component handles the click itself, on the surface the canvas does it for the tile
+        tile.getUI().executeControlAction(tile);
       }
       case BLOCK -> {
         Logger.trace("Show BlockDialog for " + tile.getId());
@@ -707,14 +863,8 @@ public class LayoutCanvas extends JPanel {
         Logger.trace("Block properties closed");
         repaint(block.getTileBounds());
       }
-      case SIGNAL -> {
-        //this.executor.execute(() -> toggleSignal((Signal) tile));
-      }
-      case SWITCH -> {
-        //this.executor.execute(() -> toggleSwitch((Switch) tile));
-      }
-      case CROSS_SWITCH -> {
-        //this.executor.execute(() -> toggleSwitch((Switch) tile));
+      case SIGNAL, SWITCH, CROSS_SWITCH, THREEWAY -> {
+        tile.getUI().executeControlAction(tile);
       }
       default -> {
       }
@@ -912,6 +1062,7 @@ public class LayoutCanvas extends JPanel {
     Logger.trace("Selected Tile " + selectedTile.getId());
     selectedTile = TileCache.rotateTile(selectedTile);
     selectedTile.setBounds(selectedTile.getTileBounds());
+    updateSurfaceTile(selectedTile);
 
     orientation = selectedTile.getOrientation();
   }
@@ -919,11 +1070,13 @@ public class LayoutCanvas extends JPanel {
   public void flipSelectedTileHorizontal() {
     selectedTile = TileCache.flipHorizontal(selectedTile);
     selectedTile.setBounds(selectedTile.getTileBounds());
+    updateSurfaceTile(selectedTile);
   }
 
   public void flipSelectedTileVertical() {
     selectedTile = TileCache.flipVertical(selectedTile);
     selectedTile.setBounds(selectedTile.getTileBounds());
+    updateSurfaceTile(selectedTile);
   }
 
   void routeLayout() {
@@ -931,13 +1084,20 @@ public class LayoutCanvas extends JPanel {
   }
 
   private void routeLayoutWithAStar() {
-    //Make sure the layout is saved
-    TileCache.persistAllTiles();
+    Set<String> changedTileIds = TileCache.takeChangedTileIds();
+    if (astar != null && astar.isCurrent() && Boolean.parseBoolean(System.getProperty("route.incremental", "true"))) {
+      //Only the routes through the changed part of the layout are searched again
+      RouteDiff diff = astar.updateRoutes(changedTileIds);
+      astar.persistRouteDiff(diff);
+    } else {
+      //Make sure the layout is saved
+      TileCache.persistAllTiles();
 
-    AStar astar = new AStar();
-    astar.buildGraph(TileCache.getTiles());
-    astar.routeAll();
-    astar.persistRoutes();
+      astar = new AStar();
+      astar.buildGraph(TileCache.getTiles());
+      astar.routeAll();
+      astar.persistRoutes();
+    }
     if (routesDialog.isVisible()) {
       routesDialog.loadRoutes();
     }
@@ -18,14 +18,25 @@ package jcs.ui.layout.pathfinding.astar;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import jcs.entities.AccessoryBean.AccessoryValue;
 import jcs.entities.BlockBean;
 import jcs.entities.RouteBean;
 import jcs.entities.RouteElementBean;
+import jcs.entities.TileBean.Orientation;
 import jcs.persistence.PersistenceFactory;
 import jcs.ui.layout.tiles.Tile;
 import jcs.ui.layout.tiles.TileCache;
@@ -39,10 +50,15 @@ public class AStar {
 
   protected final Graph graph;
   protected final Map<String, RouteBean> routes;
+  //Per block side, the block id plus the suffix, the ids of the tiles its last search has reached
+  private final Map<String, Set<String>> searchedTiles;
+  //TileCache load count of the tiles in the graph
+  private int tileCacheLoadCount;
 
   public AStar() {
     this.routes = new HashMap<>();
     this.graph = new Graph();
+    this.searchedTiles = new HashMap<>();
   }
 
   @SuppressWarnings("unused")
@@ -118,14 +134,30 @@ public class AStar {
   }
 
   protected RouteBean createRouteBeanFromNodePath(List<Node> path) {
+    String[] suffixes = new String[path.size()];
+    AccessoryValue[] states = new AccessoryValue[path.size()];
+    Orientation[] incomingSides = new Orientation[path.size()];
+    for (int i = 0; i < path.size(); i++) {
+      Node n = path.get(i);
+      suffixes[i] = n.getSuffix();
+      states[i] = n.getAccessoryState();
+      incomingSides[i] = n.getIncomingSide();
+    }
+    return createRouteBean(path, suffixes, states, incomingSides);
+  }
+
+  /**
+   * Create a route from a path, with the suffix, accessory state and incoming side per node of the path passed in.
+   */
+  static RouteBean createRouteBean(List<Node> path, String[] suffixes, AccessoryValue[] states, Orientation[] incomingSides) {
     Node first = path.get(0);
     Node last = path.get(path.size() - 1);
 
     String fromId = first.getId();
-    String fromSuffix = first.getSuffix();
+    String fromSuffix = suffixes[0];
 
     String toId = last.getId();
-    String toSuffix = last.getSuffix();
+    String toSuffix = suffixes[path.size() - 1];
 
     String routeId = "[" + fromId + fromSuffix + "]->[" + toId + toSuffix + "]";
     RouteBean route = new RouteBean(routeId, fromId, fromSuffix, toId, toSuffix);
@@ -134,13 +166,14 @@ public class AStar {
     List<RouteElementBean> rel = new LinkedList<>();
 
     //Start with the first element"
-    rel.add(new RouteElementBean(routeId, fromId, fromId, first.getAccessoryState(), 0));
+    rel.add(new RouteElementBean(routeId, fromId, fromId, states[0], 0));
     int elementOrder = 1;
-    for (Node n : path) {
-      String nodeId = n.getId() + (n.getSuffix() != null ? n.getSuffix() : "");
-      RouteElementBean re = new RouteElementBean(routeId, nodeId, n.getTile().getId(), n.getAccessoryState(), elementOrder);
+    for (int i = 0; i < path.size(); i++) {
+      Node n = path.get(i);
+      String nodeId = n.getId() + (suffixes[i] != null ? suffixes[i] : "");
+      RouteElementBean re = new RouteElementBean(routeId, nodeId, n.getTile().getId(), states[i], elementOrder);
 
-      re.setIncomingOrientation(n.getIncomingSide());
+      re.setIncomingOrientation(incomingSides[i]);
       elementOrder++;
       rel.add(re);
     }
@@ -158,19 +191,40 @@ public class AStar {
     List<Node> blockNodes = graph.getBlockNodes();
 
     for (Node block : blockNodes) {
-      BlockBean bb = block.getTile().getBlockBean();
-      if (bb == null) {
-        bb = new BlockBean(block.getTile().getTileBean());
-        bb.setAlwaysStop(true);
+      persistBlock(block.getTile());
+    }
+  }
+
+  /**
+   * Persist only the difference of an incremental update.
+   *
+   * @param diff the result of updateRoutes
+   */
+  public void persistRouteDiff(RouteDiff diff) {
+    for (RouteBean route : diff.getRemovedRoutes()) {
+      PersistenceFactory.getService().remove(route);
+    }
+    for (RouteBean route : diff.getChangedRoutes()) {
+      PersistenceFactory.getService().persist(route);
+    }
+    for (Tile block : diff.getChangedBlocks()) {
+      persistBlock(block);
+    }
+  }
+
+  private static void persistBlock(Tile block) {
+    BlockBean bb = block.getBlockBean();
+    if (bb == null) {
+      bb = new BlockBean(block.getTileBean());
+      bb.setAlwaysStop(true);
+      bb.setMinWaitTime(10);
+    } else {
+      //Logger.trace("Using existing BlockBean: {}", bb);
+      if (bb.getMinWaitTime() == null) {
         bb.setMinWaitTime(10);
-      } else {
-        //Logger.trace("Using existing BlockBean: {}", bb);
-        if (bb.getMinWaitTime() == null) {
-          bb.setMinWaitTime(10);
-        }
       }
-      PersistenceFactory.getService().persist(bb);
     }
+    PersistenceFactory.getService().persist(bb);
   }
 
   RouteBean getRoute(String id) {
@@ -191,35 +245,138 @@ public class AStar {
     return graph.findPath(from, fromSuffix, to, toSuffix);
   }
 
+  /**
+   * Calculate the routes between all blocks.<br>
+   * A search from a block side finds the routes to all other blocks at once, the searches of the block sides run in parallel.
+   *
+   * @return all found routes
+   */
   public List<RouteBean> routeAll() {
     routes.clear();
-    List<List<Node>> blockToBlockList = getAllBlockToBlockNodes();
-    Logger.trace("Try to route {} Possible block to block routes...", (blockToBlockList.size() * 2 * 2));
-    //Logger.trace("=============================================================================");
-
-    for (List<Node> fromTo : blockToBlockList) {
-      Node from = fromTo.get(0);
-      Node to = fromTo.get(1);
-      Set<Edge> fromEdges = from.getEdges();
-      Set<Edge> toEdges = from.getEdges();
-
-      for (Edge fromEdge : fromEdges) {
-        if (fromEdge.getFrom().isBlock()) {
-          String fromSuffix = fromEdge.getFromSuffix();
-          for (Edge toEdge : toEdges) {
-            if (toEdge.getFrom().isBlock()) {
-              String toSuffix = toEdge.getFromSuffix();
-
-              String fid = from.getId() + fromSuffix;
-              String tid = to.getId() + toSuffix;
-
-              List<Node> path = findPath(from, fromSuffix, to, toSuffix);
-
-              if (path.isEmpty()) {
-                Logger.debug("No Path from " + fid + " to " + tid);
-              } else {
-                RouteBean routeBean = createRouteBeanFromNodePath(path);
-                routes.put(routeBean.getId(), routeBean);
+    searchedTiles.clear();
+    List<Node> blocks = graph.getBlockNodes();
+    List<BlockSide> sides = getBlockSides(blocks);
+    Logger.trace("Searching routes from {} block sides to {} blocks...", sides.size(), blocks.size());
+
+    for (List<RouteBean> found : searchRoutes(sides).values()) {
+      for (RouteBean routeBean : found) {
+        routes.put(routeBean.getId(), routeBean);
+      }
+    }
+
+    Logger.trace("Found " + routes.size() + " routes");
+    return new ArrayList<>(routes.values());
+  }
+
+  /**
+   * Update the graph and the routes after tiles are added, moved, rotated, flipped or deleted.<br>
+   * Only the nodes of the changed tiles and of their former and new neighbors are linked again. Only the searches from the
+   * block sides which have reached one of those tiles are done again, the other routes can not have changed.
+   *
+   * @param changedTileIds the ids of the changed tiles, a tile which is no longer in the TileCache is removed
+   * @return the routes which are added, changed or removed
+   */
+  public RouteDiff updateRoutes(Set<String> changedTileIds) {
+    RouteDiff diff = new RouteDiff();
+    if (changedTileIds.isEmpty()) {
+      return diff;
+    }
+    Set<String> affectedTileIds = updateGraph(changedTileIds);
+
+    //The block sides to search again
+    List<Node> blocks = graph.getBlockNodes();
+    List<BlockSide> allSides = getBlockSides(blocks);
+    List<BlockSide> sides = new ArrayList<>();
+    for (BlockSide side : allSides) {
+      Set<String> touched = searchedTiles.get(side.key());
+      if (touched == null || affectedTileIds.contains(side.block().getTile().getId()) || !Collections.disjoint(touched, affectedTileIds)) {
+        sides.add(side);
+      }
+    }
+    for (Node block : blocks) {
+      if (changedTileIds.contains(block.getTile().getId())) {
+        diff.getChangedBlocks().add(block.getTile());
+      }
+    }
+
+    //The former routes of those sides and of the sides which are gone
+    Set<String> staleKeys = new HashSet<>(searchedTiles.keySet());
+    for (BlockSide side : allSides) {
+      if (!sides.contains(side)) {
+        staleKeys.remove(side.key());
+      }
+    }
+    Map<String, RouteBean> formerRoutes = new HashMap<>();
+    for (RouteBean route : routes.values()) {
+      if (staleKeys.contains(route.getFromTileId() + route.getFromSuffix())) {
+        formerRoutes.put(route.getId(), route);
+      }
+    }
+    searchedTiles.keySet().removeAll(staleKeys);
+    routes.keySet().removeAll(formerRoutes.keySet());
+
+    Logger.trace("Tiles {} changed, searching routes again from {} block sides", changedTileIds, sides.size());
+    for (List<RouteBean> found : searchRoutes(sides).values()) {
+      for (RouteBean route : found) {
+        routes.put(route.getId(), route);
+        RouteBean former = formerRoutes.remove(route.getId());
+        if (former == null || !sameElements(former, route)) {
+          diff.getChangedRoutes().add(route);
+        }
+      }
+    }
+    diff.getRemovedRoutes().addAll(formerRoutes.values());
+
+    Logger.trace("Routes updated: {}", diff);
+    return diff;
+  }
+
+  /**
+   * Remove the nodes of the changed tiles, add the nodes of the changed tiles which are still in the TileCache and link them
+   * and their former and new neighbors again.
+   *
+   * @param changedTileIds the ids of the changed tiles
+   * @return the ids of the changed tiles and of their former and new neighbors
+   */
+  Set<String> updateGraph(Set<String> changedTileIds) {
+    Set<String> affectedTileIds = new HashSet<>(changedTileIds);
+    Map<String, Node> relink = new HashMap<>();
+
+    for (String tileId : changedTileIds) {
+      for (String nodeId : new String[]{tileId, tileId + "-v", tileId + "-h"}) {
+        Node former = graph.removeNode(nodeId);
+        if (former != null) {
+          for (Edge edge : former.getEdges()) {
+            Node neighbor = edge.getOpposite(former);
+            if (neighbor != null) {
+              neighbor.removeEdges(former);
+              affectedTileIds.add(neighbor.getTile().getId());
+              relink.put(neighbor.getId(), neighbor);
+            }
+          }
+        }
+      }
+    }
+
+    for (String tileId : changedTileIds) {
+      Tile tile = TileCache.findTile(tileId);
+      if (tile != null) {
+        for (Node node : addNodes(tile)) {
+          relink.put(node.getId(), node);
+        }
+      }
+    }
+
+    for (String tileId : changedTileIds) {
+      Tile tile = TileCache.findTile(tileId);
+      if (tile != null) {
+        for (Point p : tile.getNeighborPoints().values()) {
+          Tile neighbor = TileCache.findTile(p.x, p.y);
+          if (neighbor != null) {
+            affectedTileIds.add(neighbor.getId());
+            for (Node node : graph.getNodeList(neighbor)) {
+              if (node != null) {
+                relink.put(node.getId(), node);
               }
             }
           }
@@ -227,80 +384,187 @@ public class AStar {
       }
     }
 
-    Logger.trace("Found " + routes.size() + " routes");
-    return new ArrayList<>(routes.values());
+    for (Node node : relink.values()) {
+      //A neighbor can be a changed tile which is removed
+      if (graph.getNode(node.getId()) == node) {
+        linkNode(node);
+      }
+    }
+    Logger.trace("Graph updated, {} nodes linked again, {} nodes", relink.size(), graph.size());
+    return affectedTileIds;
+  }
+
+  /**
+   * @return true when the graph is built from the tiles which are currently in the TileCache
+   */
+  public boolean isCurrent() {
+    return graph.size() > 0 && tileCacheLoadCount == TileCache.getLoadCount();
+  }
+
+  private record BlockSide(Node block, String suffix, Set<String> suffixes) {
+
+    String key() {
+      return block.getId() + suffix;
+    }
+  }
+
+  private static List<BlockSide> getBlockSides(List<Node> blocks) {
+    blocks.sort(Comparator.comparing(Node::getId));
+    List<BlockSide> sides = new ArrayList<>();
+    for (Node from : blocks) {
+      //As before the sides of the from block are also the sides searched on the destination blocks
+      Set<String> suffixes = new TreeSet<>();
+      for (Edge edge : from.getEdges()) {
+        if (edge.getFrom().isBlock()) {
+          suffixes.add(edge.getFromSuffix());
+        }
+      }
+      for (String fromSuffix : suffixes) {
+        sides.add(new BlockSide(from, fromSuffix, suffixes));
+      }
+    }
+    return sides;
+  }
+
+  /**
+   * Search the routes from the block sides, the searches run in parallel.
+   *
+   * @return per block side the found routes
+   */
+  private Map<String, List<RouteBean>> searchRoutes(List<BlockSide> sides) {
+    Map<String, List<RouteBean>> found = new HashMap<>();
+    if (sides.isEmpty()) {
+      return found;
+    }
+    RouteSearch search = new RouteSearch(graph.getNodes());
+
+    List<Callable<List<RouteBean>>> searches = new ArrayList<>();
+    List<Set<String>> touched = new ArrayList<>();
+    for (BlockSide side : sides) {
+      Set<String> touchedTileIds = new HashSet<>();
+      touched.add(touchedTileIds);
+      searches.add(() -> search.routesFrom(side.block(), side.suffix(), side.suffixes(), touchedTileIds));
+    }
+
+    try (ForkJoinPool pool = new ForkJoinPool(Math.max(1, Integer.getInteger("route.search.parallelism", Runtime.getRuntime().availableProcessors())))) {
+      List<Future<List<RouteBean>>> results = pool.invokeAll(searches);
+      for (int i = 0; i < results.size(); i++) {
+        String key = sides.get(i).key();
+        found.put(key, results.get(i).get());
+        searchedTiles.put(key, touched.get(i));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      Logger.warn("Route search is interrupted");
+    } catch (ExecutionException e) {
+      Logger.error("Route search failed: " + e.getCause());
+    }
+    return found;
+  }
+
+  private static boolean sameElements(RouteBean former, RouteBean route) {
+    List<RouteElementBean> a = former.getRouteElements();
+    List<RouteElementBean> b = route.getRouteElements();
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      RouteElementBean x = a.get(i);
+      RouteElementBean y = b.get(i);
+      if (!Objects.equals(x.getNodeId(), y.getNodeId()) || !Objects.equals(x.getTileId(), y.getTileId())
+              || !Objects.equals(x.getAccessoryState(), y.getAccessoryState()) || !Objects.equals(x.getElementOrder(), y.getElementOrder())
+              || !Objects.equals(x.getIncomingSide(), y.getIncomingSide())) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public Graph buildGraph(List<Tile> tiles) {
     graph.clear();
+    searchedTiles.clear();
+    tileCacheLoadCount = TileCache.getLoadCount();
     //Every Tile becomes atlease 1 node
     for (Tile tile : tiles) {
-      if (tile.isCrossing()) {
-        graph.addNode(new Node(tile, "v"));
-        graph.addNode(new Node(tile, "h"));
-      } else {
-        graph.addNode(new Node(tile));
-      }
+      addNodes(tile);
     }
 
     Logger.trace("Graph has " + graph.size() + " nodes...");
 
     //Create the links or connection between the Nodes
     for (Node node : graph.getNodes()) {
-      Collection<Point> neighborPoints;
-      if (node.isCrossing()) {
-        //A crossing is can be seen a 2 separate straights but in one tile
-        if ("h".equals(node.getSuffix())) {
-          //get only the horizontal points
-          neighborPoints = node.getTile().getNeighbors(false).values();
-        } else {
-          //get only the verticalpoints
-          neighborPoints = node.getTile().getNeighbors(true).values();
-        }
+      linkNode(node);
+    }
+    return graph;
+  }
+
+  private List<Node> addNodes(Tile tile) {
+    List<Node> nodes = new ArrayList<>();
+    if (tile.isCrossing()) {
+      nodes.add(new Node(tile, "v"));
+      nodes.add(new Node(tile, "h"));
+    } else {
+      nodes.add(new Node(tile));
+    }
+    for (Node node : nodes) {
+      graph.addNode(node);
+    }
+    return nodes;
+  }
+
+  private void linkNode(Node node) {
+    Collection<Point> neighborPoints;
+    if (node.isCrossing()) {
+      //A crossing is can be seen a 2 separate straights but in one tile
+      if ("h".equals(node.getSuffix())) {
+        //get only the horizontal points
+        neighborPoints = node.getTile().getNeighbors(false).values();
       } else {
-        neighborPoints = node.getTile().getNeighborPoints().values();
+        //get only the verticalpoints
+        neighborPoints = node.getTile().getNeighbors(true).values();
       }
+    } else {
+      neighborPoints = node.getTile().getNeighborPoints().values();
+    }
 
-      Logger.trace("Node: {} has {} neighbor points. {}{}{}{} id: {} ", node.getId(), neighborPoints.size(), (node.isBlock() ? "[Block]" : ""), (node.isJunction() ? "[Junction]" : ""), (node.isCross() ? "[Cross]" : ""), (node.isCrossing() ? "[Crossing]" : ""), node.getId());
-      for (Point p : neighborPoints) {
-        //Logger.trace("Node {} check NeighborPoint: ({},{})", node.getId(), p.x, p.y);
-
-        if (TileCache.contains(p)) {
-          Tile to = TileCache.findTile(p);
-          Node neighbor = graph.getNode(node, to, p);
-          //Logger.trace("Node {} NeighborPoint: ({},{}) -> {}", node.getId(), p.x, p.y, neighbor.getId());
-
-          if (node.getTile().isAdjacent(neighbor.getTile())) {
-            double distance;
-            if (node.isBlock()) {
-              String fromSuffix = node.getTile().getIdSuffix(neighbor.getTile());
-              Point altPoint = node.getAltPoint(fromSuffix);
-              //distance = Graph.manhattanDistance(altPoint, neighbor.getAltPoint(null));
-              distance = Graph.shortestDistance(altPoint, neighbor.getAltPoint(null));
+    Logger.trace("Node: {} has {} neighbor points. {}{}{}{} id: {} ", node.getId(), neighborPoints.size(), (node.isBlock() ? "[Block]" : ""), (node.isJunction() ? "[Junction]" : ""), (node.isCross() ? "[Cross]" : ""), (node.isCrossing() ? "[Crossing]" : ""), node.getId());
+    for (Point p : neighborPoints) {
+      //Logger.trace("Node {} check NeighborPoint: ({},{})", node.getId(), p.x, p.y);
+
+      Tile to = TileCache.findTile(p.x, p.y);
+      if (to != null) {
+        Node neighbor = graph.getNode(node, to, p);
+        //Logger.trace("Node {} NeighborPoint: ({},{}) -> {}", node.getId(), p.x, p.y, neighbor.getId());
+
+        if (neighbor != null && node.getTile().isAdjacent(neighbor.getTile())) {
+          double distance;
+          if (node.isBlock()) {
+            String fromSuffix = node.getTile().getIdSuffix(neighbor.getTile());
+            Point altPoint = node.getAltPoint(fromSuffix);
+            //distance = Graph.manhattanDistance(altPoint, neighbor.getAltPoint(null));
+            distance = Graph.shortestDistance(altPoint, neighbor.getAltPoint(null));
+          } else {
+            if (neighbor.isBlock()) {
+              String toSuffix = neighbor.getTile().getIdSuffix(node.getTile());
+              Point altPoint = neighbor.getAltPoint(toSuffix);
+              //distance = Graph.manhattanDistance(altPoint, node.getAltPoint(null));
+              distance = Graph.shortestDistance(altPoint, node.getAltPoint(null));
             } else {
-              if (neighbor.isBlock()) {
-                String toSuffix = neighbor.getTile().getIdSuffix(node.getTile());
-                Point altPoint = neighbor.getAltPoint(toSuffix);
-                //distance = Graph.manhattanDistance(altPoint, node.getAltPoint(null));
-                distance = Graph.shortestDistance(altPoint, node.getAltPoint(null));
-              } else {
-                //distance = Graph.manhattanDistance(node, neighbor);
-                distance = Graph.shortestDistance(node, neighbor);
-              }
+              //distance = Graph.manhattanDistance(node, neighbor);
+              distance = Graph.shortestDistance(node, neighbor);
             }
-            Logger.trace("Neighbor: " + neighbor.getId() + " Distance: " + distance);
-            graph.link(node, neighbor, distance);
           }
-          //else {
-          //  Logger.trace("Node {} Neighbor {} is Not adjacent", node.getId(), neighbor.getId());
-          //}
+          Logger.trace("Neighbor: " + neighbor.getId() + " Distance: " + distance);
+          graph.link(node, neighbor, distance);
         }
         //else {
-        //  Logger.trace("No Tile for Point ({}{})", p.x, p.y);
+        //  Logger.trace("Node {} Neighbor {} is Not adjacent", node.getId(), neighbor.getId());
         //}
       }
+      //else {
+      //  Logger.trace("No Tile for Point ({}{})", p.x, p.y);
+      //}
     }
-    return graph;
   }
 
   List<Node> getNodes() {
@@ -30,6 +30,10 @@ public class Graph {
     nodes.put(node.getId(), node);
   }
 
+  Node removeNode(String id) {
+    return nodes.remove(id);
+  }
+
   Node getNode(String id) {
     return nodes.get(id);
   }
@@ -83,28 +87,38 @@ public class Graph {
   }
 
   boolean canTravelTo(Node from, Node to) {
+    return canTravelTo(from != null ? from.getPreviousNode() : null, from, to);
+  }
+
+  /**
+   * @param previous the node before from, passed in so a search can keep its own path
+   * @param from the current node
+   * @param to the neighbor node
+   * @return true when a train coming from previous can travel via from to the neighbor
+   */
+  static boolean canTravelTo(Node previous, Node from, Node to) {
     if (from == null || to == null) {
       return false;
     }
-    if (from.getPreviousNode() != null && from.getPreviousNode().equals(to)) {
+    if (previous != null && previous.equals(to)) {
       //Skip going around...
       //Logger.trace("Skipping as is this is going back to previous Node (From: {} via {} to {}).", from.getPreviousNode().getId(), from.getId(), to.getId());
       return false;
     }
 
-    if (from.getPreviousNode() != null && from.getTile().isJunction()) {
-      AccessoryValue routeValue = from.getAccessoryStatus(from, to);
-      Logger.trace("From: {} via {} {} to {}", from.getPreviousNode().getId(), from.getId(), (AccessoryValue.OFF == routeValue ? " Not possible" : " Using " + routeValue), to.getId());
+    if (previous != null && from.getTile().isJunction()) {
+      AccessoryValue routeValue = Node.getAccessoryStatus(previous, from, to);
+      Logger.trace("From: {} via {} {} to {}", previous.getId(), from.getId(), (AccessoryValue.OFF == routeValue ? " Not possible" : " Using " + routeValue), to.getId());
 
       return AccessoryValue.OFF != routeValue;
-    } else if (from.getPreviousNode() != null && from.isDirectional()) {
+    } else if (previous != null && from.isDirectional()) {
       boolean isToOnArrowSide = from.getTile().isArrowDirection(to.getTile());
       //Logger.trace("From " + from.getId() + " to: " + to.getId() + " isToOnArrowSide: " + isToOnArrowSide);
       return from.getTile().isAdjacent(to.getTile()) && isToOnArrowSide;
-    } else if (from.getPreviousNode() != null && from.isCrossing()) {
+    } else if (previous != null && from.isCrossing()) {
       //Logger.trace("From {} isCrossing {}", from.getId(), from.isCrossing());
       //Find the edge connection point between the previous and the from node
-      Point inComingEdgePoint = from.getIncomingPoint();
+      Point inComingEdgePoint = from.getIncomingPoint(previous);
 
       Orientation inComingSide = from.getConnectingSide(inComingEdgePoint);
       //find the connection edge point on the opposite side
@@ -113,9 +127,9 @@ public class Graph {
       Point toInComingPoint = from.getTile().getEdgePoints().get(exitSide);
       //Logger.trace("From {} inComing point: ({},{}) incoming side: {} exit side: {} toInComingPoint: ({},{}) ", from.getId(), inComingEdgePoint.x, inComingEdgePoint.y, inComingSide.getOrientation(), exitSide.getOrientation(), toInComingPoint.x, toInComingPoint.y);      
       return to.getTile().getEdgePoints().containsValue(toInComingPoint);
-    } else if (from.getPreviousNode() != null && from.isCross()) {
+    } else if (previous != null && from.isCross()) {
       //A cross can only connect to diagonal opposite sides
-      boolean diagonal = from.isDiagonalOpposite(from, to);
+      boolean diagonal = Node.isDiagonalOpposite(previous, from, to);
       Logger.trace("#Else if pref from {} to {} diagonal: {}", from.getTile().getId(), to.getTile().getId(), diagonal);
 
       return diagonal;
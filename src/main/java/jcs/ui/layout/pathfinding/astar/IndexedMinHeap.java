@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.pathfinding.astar;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of node indexes, ordered by a double key.<br>
+ * The position of every index is kept, so contains is O(1) and a key can be lowered in place (decrease key).
+ */
+class IndexedMinHeap {
+
+  private final int[] heap;
+  private final int[] position;
+  private final double[] keys;
+  private int size;
+
+  IndexedMinHeap(int capacity) {
+    heap = new int[capacity];
+    position = new int[capacity];
+    keys = new double[capacity];
+    Arrays.fill(position, -1);
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  boolean contains(int index) {
+    return position[index] >= 0;
+  }
+
+  /**
+   * Add the index, or change its key when it is already in the heap.
+   *
+   * @param index the node index
+   * @param key the new key
+   */
+  void offer(int index, double key) {
+    if (contains(index)) {
+      double old = keys[index];
+      keys[index] = key;
+      if (key < old) {
+        siftUp(position[index]);
+      } else {
+        siftDown(position[index]);
+      }
+    } else {
+      keys[index] = key;
+      heap[size] = index;
+      position[index] = size;
+      size++;
+      siftUp(size - 1);
+    }
+  }
+
+  /**
+   * @return the index with the lowest key
+   */
+  int poll() {
+    int top = heap[0];
+    size--;
+    if (size > 0) {
+      move(heap[size], 0);
+      siftDown(0);
+    }
+    position[top] = -1;
+    return top;
+  }
+
+  private void siftUp(int pos) {
+    int index = heap[pos];
+    double key = keys[index];
+    while (pos > 0) {
+      int parent = (pos - 1) >>> 1;
+      if (keys[heap[parent]] <= key) {
+        break;
+      }
+      move(heap[parent], pos);
+      pos = parent;
+    }
+    move(index, pos);
+  }
+
+  private void siftDown(int pos) {
+    int index = heap[pos];
+    double key = keys[index];
+    int half = size >>> 1;
+    while (pos < half) {
+      int child = 2 * pos + 1;
+      int right = child + 1;
+      if (right < size && keys[heap[right]] < keys[heap[child]]) {
+        child = right;
+      }
+      if (key <= keys[heap[child]]) {
+        break;
+      }
+      move(heap[child], pos);
+      pos = child;
+    }
+    move(index, pos);
+  }
+
+  private void move(int index, int pos) {
+    heap[pos] = index;
+    position[index] = pos;
+  }
+}
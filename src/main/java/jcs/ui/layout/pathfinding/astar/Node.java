@@ -143,9 +143,13 @@ public class Node implements Comparable<Node> {
   }
 
   public Point getIncomingPoint() {
+    return getIncomingPoint(previousNode);
+  }
+
+  Point getIncomingPoint(Node previous) {
     //Find the edge connection point between the previous and the from node
-    if (previousNode != null) {
-      return getIncomingPoint(previousNode.tile.getEdgePoints().values());
+    if (previous != null) {
+      return getIncomingPoint(previous.tile.getEdgePoints().values());
     }
 
     return null;
@@ -156,7 +160,11 @@ public class Node implements Comparable<Node> {
   }
 
   public Orientation getIncomingSide() {
-    Point incomming = getIncomingPoint();
+    return getIncomingSide(previousNode);
+  }
+
+  Orientation getIncomingSide(Node previous) {
+    Point incomming = getIncomingPoint(previous);
     if (incomming != null) {
       return getConnectingSide(incomming);
     } else {
@@ -239,19 +247,33 @@ public class Node implements Comparable<Node> {
     edges.add(edge);
   }
 
+  void removeEdges(Node other) {
+    edges.removeIf(e -> e.getFrom() == other || e.getTo() == other);
+  }
+
   public double getF() {
     return g + h;
   }
 
   AccessoryValue getAccessoryStatus(Node from, Node to) {
+    return getAccessoryStatus(from != null ? from.getPreviousNode() : null, from, to);
+  }
+
+  /**
+   * @param previous the node before from, passed in so a search can keep its own path
+   * @param from the junction node
+   * @param to the next node
+   * @return the accessory value needed to travel from previous via from to the next node
+   */
+  static AccessoryValue getAccessoryStatus(Node previous, Node from, Node to) {
     if (from == null || to == null) {
       return AccessoryValue.OFF;
     }
 
-    if (from.getPreviousNode() != null && from.getTile().isJunction()) {
-      Logger.trace("From: " + from.getPreviousNode().getId() + " via " + from.getId() + " to " + to.getId());
+    if (previous != null && from.getTile().isJunction()) {
+      Logger.trace("From: " + previous.getId() + " via " + from.getId() + " to " + to.getId());
 
-      Point fromInComingPoint = from.getIncomingPoint();
+      Point fromInComingPoint = from.getIncomingPoint(previous);
       Orientation fromInComingSide = from.getConnectingSide(fromInComingPoint);
       Point toInComingPoint = to.getIncomingPoint(from.getTile().getEdgePoints().values());
       Orientation fromExitSide = from.getConnectingSide(toInComingPoint);
@@ -265,12 +287,16 @@ public class Node implements Comparable<Node> {
   }
 
   boolean isDiagonalOpposite(Node from, Node to) {
+    return isDiagonalOpposite(from != null ? from.getPreviousNode() : null, from, to);
+  }
+
+  static boolean isDiagonalOpposite(Node previous, Node from, Node to) {
     if (from == null || to == null) {
       return false;
     }
-    if (from.getPreviousNode() != null && from.getTile().isCross()) {
-      Logger.trace("From: " + from.getPreviousNode().getId() + " via " + from.getId() + " to " + to.getId());
-      Point fromInComingPoint = from.getIncomingPoint();
+    if (previous != null && from.getTile().isCross()) {
+      Logger.trace("From: " + previous.getId() + " via " + from.getId() + " to " + to.getId());
+      Point fromInComingPoint = from.getIncomingPoint(previous);
       Orientation fromInComingSide = from.getConnectingSide(fromInComingPoint);
       Point toInComingPoint = to.getIncomingPoint(from.getTile().getEdgePoints().values());
       Orientation fromExitSide = from.getConnectingSide(toInComingPoint);
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.pathfinding.astar;
+
+import java.util.ArrayList;
+import java.util.List;
+import jcs.entities.RouteBean;
+import jcs.ui.layout.tiles.Tile;
+
+/**
+ * The difference in routes after an incremental update of the graph.
+ */
+public class RouteDiff {
+
+  private final List<RouteBean> changedRoutes;
+  private final List<RouteBean> removedRoutes;
+  private final List<Tile> changedBlocks;
+
+  RouteDiff() {
+    changedRoutes = new ArrayList<>();
+    removedRoutes = new ArrayList<>();
+    changedBlocks = new ArrayList<>();
+  }
+
+  /**
+   * @return the new routes and the routes of which the elements are changed
+   */
+  public List<RouteBean> getChangedRoutes() {
+    return changedRoutes;
+  }
+
+  /**
+   * @return the routes which do not exist anymore
+   */
+  public List<RouteBean> getRemovedRoutes() {
+    return removedRoutes;
+  }
+
+  /**
+   * @return the block tiles which are added or changed
+   */
+  public List<Tile> getChangedBlocks() {
+    return changedBlocks;
+  }
+
+  public boolean isEmpty() {
+    return changedRoutes.isEmpty() && removedRoutes.isEmpty() && changedBlocks.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "RouteDiff{changed=" + changedRoutes.size() + ", removed=" + removedRoutes.size() + ", blocks=" + changedBlocks.size() + "}";
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.pathfinding.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import jcs.entities.AccessoryBean.AccessoryValue;
+import jcs.entities.RouteBean;
+import jcs.entities.TileBean.Orientation;
+import org.tinylog.Logger;
+
+/**
+ * Finds all routes from one side of a block to the other blocks in a single search.<br>
+ * The search works like Graph.findPath, but a block is a destination for every side on which it can be entered, so one search
+ * replaces a search per destination. The costs and previous nodes are kept in arrays of the search, the Nodes of the Graph are
+ * only read, so searches from different blocks can run at the same time.
+ */
+class RouteSearch {
+
+  private final Node[] nodes;
+  private final Map<Node, Integer> indexes;
+  private final Edge[][] edges;
+  //Per block node the destination slot of every side, a slot is an index after the node indexes
+  private final List<Map<String, Integer>> blockSides;
+  private final List<Node> sideNodes;
+  private final List<String> sideSuffixes;
+  private final int slots;
+
+  RouteSearch(Collection<Node> graphNodes) {
+    nodes = graphNodes.toArray(Node[]::new);
+    indexes = new IdentityHashMap<>();
+    for (int i = 0; i < nodes.length; i++) {
+      indexes.put(nodes[i], i);
+    }
+
+    edges = new Edge[nodes.length][];
+    blockSides = new ArrayList<>(nodes.length);
+    sideNodes = new ArrayList<>();
+    sideSuffixes = new ArrayList<>();
+    int slot = nodes.length;
+    for (int i = 0; i < nodes.length; i++) {
+      Set<Edge> nodeEdges = nodes[i].getEdges();
+      edges[i] = nodeEdges.toArray(Edge[]::new);
+
+      Map<String, Integer> sides = new HashMap<>();
+      if (nodes[i].isBlock()) {
+        for (Edge edge : nodeEdges) {
+          for (String suffix : new String[]{edge.getFromSuffix(), edge.getToSuffix()}) {
+            if (suffix != null && !sides.containsKey(suffix)) {
+              sides.put(suffix, slot++);
+              sideNodes.add(nodes[i]);
+              sideSuffixes.add(suffix);
+            }
+          }
+        }
+      }
+      blockSides.add(sides);
+    }
+    slots = slot;
+  }
+
+  /**
+   * Search the routes from a block side.
+   *
+   * @param start the block to start from
+   * @param startSuffix the side of the block to leave
+   * @param destinationSuffixes the sides of the destination blocks to search routes to
+   * @return the found routes
+   */
+  List<RouteBean> routesFrom(Node start, String startSuffix, Set<String> destinationSuffixes) {
+    return routesFrom(start, startSuffix, destinationSuffixes, new HashSet<>());
+  }
+
+  /**
+   * Search the routes from a block side and collect the ids of all tiles the search has looked at.<br>
+   * The result of the search can only change when one of those tiles changes.
+   *
+   * @param start the block to start from
+   * @param startSuffix the side of the block to leave
+   * @param destinationSuffixes the sides of the destination blocks to search routes to
+   * @param touchedTileIds receives the ids of the tiles reached by the search
+   * @return the found routes
+   */
+  List<RouteBean> routesFrom(Node start, String startSuffix, Set<String> destinationSuffixes, Set<String> touchedTileIds) {
+    touchedTileIds.add(start.getTile().getId());
+    int startIndex = indexes.get(start);
+    double[] g = new double[slots];
+    int[] previous = new int[slots];
+    boolean[] arrived = new boolean[slots];
+    Arrays.fill(g, Double.MAX_VALUE);
+    Arrays.fill(previous, -1);
+
+    List<RouteBean> found = new ArrayList<>();
+    IndexedMinHeap activeNodes = new IndexedMinHeap(slots);
+    g[startIndex] = 0;
+    activeNodes.offer(startIndex, 0);
+
+    while (!activeNodes.isEmpty()) {
+      int current = activeNodes.poll();
+      if (current >= nodes.length) {
+        //A destination block side is reached, the path is taken now, like Graph.findPath does
+        arrived[current] = true;
+        found.add(createRoute(startSuffix, current, previous));
+        continue;
+      }
+
+      Node currentNode = nodes[current];
+      Node previousNode = previous[current] >= 0 ? nodes[previous[current]] : null;
+      Edge[] currentEdges = current == startIndex ? start.getEdges(startSuffix).toArray(Edge[]::new) : edges[current];
+
+      for (Edge edge : currentEdges) {
+        Node neighbor = edge.getOpposite(currentNode);
+        if (neighbor == null || neighbor == start) {
+          continue;
+        }
+        touchedTileIds.add(neighbor.getTile().getId());
+        int next = indexes.get(neighbor);
+        double neighborG = g[current] + edge.getDistance();
+
+        if (neighbor.isBlock()) {
+          //Other blocks are not passed, only entered on a destination side
+          for (String suffix : new String[]{edge.getFromSuffix(), edge.getToSuffix()}) {
+            if (suffix == null || !destinationSuffixes.contains(suffix)) {
+              continue;
+            }
+            int side = blockSides.get(next).get(suffix);
+            if (!arrived[side] && neighborG < g[side] && Graph.canTravelTo(previousNode, currentNode, neighbor)) {
+              g[side] = neighborG;
+              previous[side] = current;
+              activeNodes.offer(side, neighborG + Graph.manhattanDistance(currentNode, neighbor));
+            }
+          }
+        } else if (neighborG < g[next] && Graph.canTravelTo(previousNode, currentNode, neighbor)) {
+          g[next] = neighborG;
+          previous[next] = current;
+          activeNodes.offer(next, neighborG + Graph.manhattanDistance(currentNode, neighbor));
+        }
+      }
+    }
+    Logger.trace("Found {} routes from {}{}", found.size(), start.getId(), startSuffix);
+    return found;
+  }
+
+  private RouteBean createRoute(String startSuffix, int side, int[] previous) {
+    List<Node> path = new ArrayList<>();
+    path.add(sideNodes.get(side - nodes.length));
+    for (int n = previous[side]; n >= 0 && path.size() <= nodes.length; n = previous[n]) {
+      path.add(nodes[n]);
+    }
+    path = path.reversed();
+
+    int size = path.size();
+    String[] suffixes = new String[size];
+    AccessoryValue[] states = new AccessoryValue[size];
+    Orientation[] incomingSides = new Orientation[size];
+    for (int i = 0; i < size; i++) {
+      Node node = path.get(i);
+      Node before = i > 0 ? path.get(i - 1) : null;
+      suffixes[i] = node.getSuffix();
+      incomingSides[i] = node.getIncomingSide(before);
+      if (node.isJunction() && i + 1 < size) {
+        states[i] = Node.getAccessoryStatus(before, node, path.get(i + 1));
+      }
+    }
+    suffixes[0] = startSuffix;
+    suffixes[size - 1] = sideSuffixes.get(side - nodes.length);
+
+    return AStar.createRouteBean(path, suffixes, states, incomingSides);
+  }
+}
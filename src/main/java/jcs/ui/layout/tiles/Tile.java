@@ -583,7 +583,12 @@ public abstract class Tile extends JComponent implements Serializable {
     }
 
     getUI().markImageDirty();
-    repaint();
+    if (getParent() == null) {
+      //Painted on the surface of the canvas, which repaints the tile on a change
+      fireStateChanged();
+    } else {
+      repaint();
+    }
   }
 
   public boolean isImageDirty() {
@@ -1060,6 +1065,19 @@ public abstract class Tile extends JComponent implements Serializable {
     }
   }
 
+  /**
+   * Listen to state changes of the tile model, i.e. to know when the tile has to be painted again.
+   *
+   * @param l the listener
+   */
+  public void addChangeListener(ChangeListener l) {
+    listenerList.add(ChangeListener.class, l);
+  }
+
+  public void removeChangeListener(ChangeListener l) {
+    listenerList.remove(ChangeListener.class, l);
+  }
+
   protected void fireStateChanged() {
     Object[] listeners = listenerList.getListenerList();
     //reverse order
@@ -18,8 +18,10 @@ package jcs.ui.layout.tiles;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -72,8 +74,13 @@ public class TileCache {
   private static final AtomicInteger endIdSeq = new AtomicInteger(0);
 
   static final Map<String, Tile> idMap = new ConcurrentHashMap<>();
-  static final Map<Point, Tile> centerPointMap = new ConcurrentHashMap<>();
-  static final Map<Point, Tile> altPointMap = new ConcurrentHashMap<>();
+  //The cells occupied by the tiles, with the center and alternative points of the tiles
+  static final TileGrid tileGrid = new TileGrid();
+
+  //Ids of the tiles which are added, moved, rotated, flipped or deleted since the last takeChangedTileIds
+  private static final Set<String> changedTileIds = ConcurrentHashMap.newKeySet();
+  //Increases every time the cache is (re)loaded or flushed, the Tile objects are new after that
+  private static final AtomicInteger loadCount = new AtomicInteger(0);
 
   private static final BlockingQueue<JCSActionEvent> eventsQueue = new LinkedBlockingQueue<>();
   private static final TileActionEventHandler actionEventQueueHandler = new TileActionEventHandler(eventsQueue);
@@ -393,8 +400,9 @@ public class TileCache {
   public static void flush() {
     deRegisterListeners();
     idMap.clear();
-    centerPointMap.clear();
-    altPointMap.clear();
+    tileGrid.clear();
+    changedTileIds.clear();
+    loadCount.incrementAndGet();
     maxX.set(0);
     maxY.set(0);
 
@@ -436,9 +444,10 @@ public class TileCache {
     long now = System.currentTimeMillis();
     long start = now;
     deRegisterListeners();
-    altPointMap.clear();
-    centerPointMap.clear();
+    tileGrid.clear();
     idMap.clear();
+    changedTileIds.clear();
+    loadCount.incrementAndGet();
     maxX.set(0);
     maxY.set(0);
 
@@ -470,15 +479,7 @@ public class TileCache {
     }
     calculateMaxCoordinates(tile.tileX, tile.tileY);
     idMap.put(tile.id, tile);
-    centerPointMap.put(tile.getCenter(), tile);
-
-    //Alternative point(s) to be able to find all pointIds
-    if (!tile.getAltPoints().isEmpty()) {
-      Set<Point> alt = tile.getAltPoints();
-      for (Point ap : alt) {
-        altPointMap.put(ap, tile);
-      }
-    }
+    tileGrid.put(tile);
   }
 
   static void calculateMaxCoordinates(int tileX, int tileY) {
@@ -503,16 +504,9 @@ public class TileCache {
 
     persistTile(tile);
 
-    centerPointMap.put(tile.getCenter(), tile);
     idMap.put(tile.getId(), tile);
-
-    //Alternative point(s) to be able to find all pointIds
-    if (!tile.getAltPoints().isEmpty()) {
-      Set<Point> alt = tile.getAltPoints();
-      for (Point ap : alt) {
-        altPointMap.put(ap, tile);
-      }
-    }
+    tileGrid.put(tile);
+    changedTileIds.add(tile.getId());
 
     //Logger.trace("Added " + tile + " There are now " + pointMap.size() + " pointMap...");
     return tile;
@@ -544,9 +538,11 @@ public class TileCache {
   }
 
   public static void persistAllTiles() {
+    List<TileBean> tileBeans = new ArrayList<>(idMap.size());
     for (Tile tile : idMap.values()) {
-      persistTile(tile);
+      tileBeans.add(tile.getTileBean());
     }
+    PersistenceFactory.getService().persistAll(tileBeans);
   }
 
   public static void deleteTile(final Tile tile) {
@@ -563,13 +559,9 @@ public class TileCache {
     }
 
     if (idMap.containsKey(tile.id)) {
-      Set<Point> rps = tile.getAltPoints();
-      //Also remove alt pointIds
-      for (Point ap : rps) {
-        altPointMap.remove(ap);
-      }
-      centerPointMap.remove(tile.getCenter());
+      tileGrid.remove(tile);
       idMap.remove(tile.id);
+      changedTileIds.add(tile.id);
       TileBean tb = tile.getTileBean();
       PersistenceFactory.getService().remove(tb);
       Logger.trace("Deleted " + tile.getId());
@@ -579,11 +571,34 @@ public class TileCache {
   }
 
   public static Tile findTile(Point cp) {
-    Tile result = centerPointMap.get(cp);
-    if (result == null) {
-      result = altPointMap.get(cp);
+    return findTile(cp.x, cp.y);
+  }
+
+  /**
+   * Find the tile which has its center or one of its alternative points on (x, y).
+   *
+   * @param x the X
+   * @param y the Y
+   * @return the Tile or null
+   */
+  public static Tile findTile(int x, int y) {
+    Tile tile = tileGrid.get(x, y);
+    //The points of a tile are a whole number of cells apart from its center
+    if (tile != null && (x - tile.tileX) % TileGrid.CELL == 0 && (y - tile.tileY) % TileGrid.CELL == 0) {
+      return tile;
+    } else {
+      return null;
     }
-    return result;
+  }
+
+  /**
+   * Find the tiles which occupy at least one cell which intersects an area.
+   *
+   * @param area canonical area
+   * @return the tiles in the area, every tile once
+   */
+  public static List<Tile> findTiles(Rectangle area) {
+    return tileGrid.query(area);
   }
 
   public static Tile findTile(String id) {
@@ -591,34 +606,40 @@ public class TileCache {
     return tile;
   }
 
-  public static boolean contains(Point p) {
-    boolean found = centerPointMap.containsKey(p);
-    if(!found) {
-      found = altPointMap.containsKey(p);
+  /**
+   * The ids of the tiles which are added, moved, rotated, flipped or deleted since the former call.<br>
+   * Used to update the routes incrementally.
+   *
+   * @return the ids of the changed tiles
+   */
+  public static Set<String> takeChangedTileIds() {
+    Set<String> ids = new HashSet<>();
+    for (String id : changedTileIds) {
+      changedTileIds.remove(id);
+      ids.add(id);
     }
-    return found;
+    return ids;
+  }
+
+  /**
+   * @return the number of times the cache is loaded or flushed, when changed the cached tiles are replaced
+   */
+  public static int getLoadCount() {
+    return loadCount.get();
+  }
+
+  public static boolean contains(Point p) {
+    return findTile(p.x, p.y) != null;
   }
 
   public static boolean canMoveTo(Tile tile, Point p) {
     boolean free = true;
-    //check if a tile exist with point p
-    //Check if the cache contains a Cp of a tile on p
+    //Check whether the cells of the tile on the new position are free or occupied by the tile itself
     Logger.trace("Checking tile: {} on new position ({}, {})", tile.id, p.x, p.y);
-    if (centerPointMap.containsKey(p) && !tile.getCenter().equals(p) && !tile.getAltPoints().contains(p)) {
-      free = false;
-    }
-    //Check if the cache contains a Cp on any of the Alt point is case of a Block or Cross
-    if (altPointMap.containsKey(p) && !tile.getAltPoints().contains(p)) {
-      free = false;
-    }
-
-    //Check with the tile on the new Cp with the new alt pointIds if that is also free...
-    Set<Point> altPoints = tile.getAltPoints(p);
-    for (Point ap : altPoints) {
-      if (centerPointMap.containsKey(ap) && !tile.getCenter().equals(ap) && !tile.getAltPoints().contains(ap)) {
-        free = false;
-      }
-      if (altPointMap.containsKey(ap) && !tile.getAltPoints().contains(ap)) {
+    Set<Point> points = tile.getAllPoints(p);
+    for (Point np : points) {
+      Tile occupant = tileGrid.get(np.x, np.y);
+      if (occupant != null && occupant != tile) {
         free = false;
       }
     }
@@ -634,14 +655,8 @@ public class TileCache {
 
     if (canMoveTo(tile, p)) {
       //Logger.trace("Moving " + tile.getId() + " from " + tile.xyToString() + " to (" + p.x + "," + p.y + ")");
-      Set<Point> rps = tile.getAltPoints();
-      //remove alt pointIds
-      for (Point ap : rps) {
-        altPointMap.remove(ap);
-      }
-      //pointIds.remove(tile.getId());
       idMap.remove(tile.id);
-      centerPointMap.remove(tile.getCenter());
+      tileGrid.remove(tile);
 
       Logger.info("Moving {} from ({},{}) to ({},{})", tile.getId(), tile.getCenterX(), tile.getCenterY(), p.x, p.y);
 
@@ -656,23 +671,16 @@ public class TileCache {
   }
 
   public static Tile rotateTile(Tile tile) {
-    if (!centerPointMap.containsKey(tile.getCenter())) {
+    if (!tileGrid.contains(tile)) {
       Logger.warn("Tile {} NOT in cache!", tile.getId());
     }
 
-    //Remove the alternative or extra pointIds...
-    for (Point ep : tile.getAltPoints()) {
-      altPointMap.remove(ep);
-    }
-
     tile.rotate();
 
-    //update
-    centerPointMap.put(tile.getCenter(), tile);
-    for (Point ep : tile.getAltPoints()) {
-      altPointMap.put(ep, tile);
-    }
+    //update, put frees the former cells
+    tileGrid.put(tile);
     idMap.put(tile.id, tile);
+    changedTileIds.add(tile.id);
 
     persistTile(tile);
     return tile;
@@ -687,26 +695,19 @@ public class TileCache {
   }
 
   private static Tile flipTile(Tile tile, boolean horizontal) {
-    if (!centerPointMap.containsKey(tile.getCenter())) {
+    if (!tileGrid.contains(tile)) {
       Logger.warn("Tile {} NOT in cache!", tile.getId());
     }
 
-    //Remove the alternative or extra pointIds...
-    for (Point ep : tile.getAltPoints()) {
-      altPointMap.remove(ep);
-    }
-
     if (horizontal) {
       tile.flipHorizontal();
     } else {
       tile.flipVertical();
     }
-    //update
-    centerPointMap.put(tile.getCenter(), tile);
-    for (Point ep : tile.getAltPoints()) {
-      altPointMap.put(ep, tile);
-    }
+    //update, put frees the former cells
+    tileGrid.put(tile);
     idMap.put(tile.id, tile);
+    changedTileIds.add(tile.id);
 
     persistTile(tile);
     return tile;
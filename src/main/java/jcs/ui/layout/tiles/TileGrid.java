@@ -0,0 +1,186 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.tiles;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static jcs.ui.layout.tiles.LayoutScale.GRID;
+
+/**
+ * Spatial index of Tiles on the layout grid.<br>
+ * The layout is divided in cells of the size of one tile. A tile occupies one cell, a block 3 and a cross or cross switch 2
+ * cells.<br>
+ * The cells are stored in chunks of 16 x 16 cells which are looked up with a packed long key, so a lookup does not create a
+ * Point. All coordinates are canonical, i.e. not scaled.
+ */
+public class TileGrid {
+
+  public static final int CELL = GRID * 2;
+
+  private static final int CHUNK_BITS = 4;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final Map<Long, Tile[]> chunks;
+  private final Map<Tile, long[]> occupied;
+
+  public TileGrid() {
+    chunks = new HashMap<>();
+    occupied = new IdentityHashMap<>();
+  }
+
+  static int cell(int coordinate) {
+    return Math.floorDiv(coordinate, CELL);
+  }
+
+  static long key(int x, int y) {
+    return ((long) x << 32) | (y & 0xffffffffL);
+  }
+
+  private static int keyX(long key) {
+    return (int) (key >> 32);
+  }
+
+  private static int keyY(long key) {
+    return (int) key;
+  }
+
+  /**
+   * Add a tile on the cells of its current points. When the tile was already in the grid its former cells are freed first.
+   *
+   * @param tile the tile to add
+   */
+  public synchronized void put(Tile tile) {
+    remove(tile);
+    Set<Point> points = tile.getAllPoints();
+    long[] cells = new long[points.size()];
+    int i = 0;
+    for (Point p : points) {
+      int cx = cell(p.x);
+      int cy = cell(p.y);
+      Tile[] chunk = chunks.computeIfAbsent(key(cx >> CHUNK_BITS, cy >> CHUNK_BITS), k -> new Tile[CHUNK_SIZE * CHUNK_SIZE]);
+      chunk[index(cx, cy)] = tile;
+      cells[i++] = key(cx, cy);
+    }
+    occupied.put(tile, cells);
+  }
+
+  /**
+   * Free the cells of a tile, as they were when the tile was put.
+   *
+   * @param tile the tile to remove
+   * @return true when the tile was in the grid
+   */
+  public synchronized boolean remove(Tile tile) {
+    long[] cells = occupied.remove(tile);
+    if (cells == null) {
+      return false;
+    }
+    for (long c : cells) {
+      int cx = keyX(c);
+      int cy = keyY(c);
+      Tile[] chunk = chunks.get(key(cx >> CHUNK_BITS, cy >> CHUNK_BITS));
+      if (chunk != null && chunk[index(cx, cy)] == tile) {
+        chunk[index(cx, cy)] = null;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param x canonical X
+   * @param y canonical Y
+   * @return the tile which occupies the cell of the point or null
+   */
+  public synchronized Tile get(int x, int y) {
+    int cx = cell(x);
+    int cy = cell(y);
+    Tile[] chunk = chunks.get(key(cx >> CHUNK_BITS, cy >> CHUNK_BITS));
+    return chunk == null ? null : chunk[index(cx, cy)];
+  }
+
+  public Tile get(Point p) {
+    return get(p.x, p.y);
+  }
+
+  /**
+   * Find all tiles which occupy at least one cell which intersects an area.
+   *
+   * @param area canonical area
+   * @return the tiles in the area, every tile once
+   */
+  public synchronized List<Tile> query(Rectangle area) {
+    List<Tile> result = new ArrayList<>();
+    if (area.isEmpty()) {
+      return result;
+    }
+    int minX = cell(area.x);
+    int minY = cell(area.y);
+    int maxX = cell(area.x + area.width - 1);
+    int maxY = cell(area.y + area.height - 1);
+    Set<Tile> multiCell = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    for (int chunkY = minY >> CHUNK_BITS; chunkY <= maxY >> CHUNK_BITS; chunkY++) {
+      for (int chunkX = minX >> CHUNK_BITS; chunkX <= maxX >> CHUNK_BITS; chunkX++) {
+        Tile[] chunk = chunks.get(key(chunkX, chunkY));
+        if (chunk == null) {
+          continue;
+        }
+        int fromX = Math.max(minX, chunkX << CHUNK_BITS);
+        int toX = Math.min(maxX, (chunkX << CHUNK_BITS) + CHUNK_MASK);
+        int fromY = Math.max(minY, chunkY << CHUNK_BITS);
+        int toY = Math.min(maxY, (chunkY << CHUNK_BITS) + CHUNK_MASK);
+        for (int cy = fromY; cy <= toY; cy++) {
+          for (int cx = fromX; cx <= toX; cx++) {
+            Tile tile = chunk[index(cx, cy)];
+            if (tile != null && (occupied.get(tile).length == 1 || multiCell.add(tile))) {
+              result.add(tile);
+            }
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  public synchronized List<Tile> getTiles() {
+    return new ArrayList<>(occupied.keySet());
+  }
+
+  public synchronized boolean contains(Tile tile) {
+    return occupied.containsKey(tile);
+  }
+
+  public synchronized int size() {
+    return occupied.size();
+  }
+
+  public synchronized void clear() {
+    chunks.clear();
+    occupied.clear();
+  }
+
+  private static int index(int cx, int cy) {
+    return ((cy & CHUNK_MASK) << CHUNK_BITS) | (cx & CHUNK_MASK);
+  }
+}
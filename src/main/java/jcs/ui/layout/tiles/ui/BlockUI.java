@@ -24,6 +24,7 @@ import java.awt.Image;
 import java.awt.Insets;
 import java.awt.geom.Ellipse2D;
 import java.awt.image.BufferedImage;
+import javax.swing.ImageIcon;
 import javax.swing.JComponent;
 import javax.swing.plaf.ComponentUI;
 import jcs.entities.BlockBean;
@@ -47,11 +48,16 @@ import static jcs.ui.layout.tiles.LayoutScale.DEFAULT_WIDTH;
 import static jcs.ui.layout.tiles.LayoutScale.GRID;
 import jcs.ui.layout.tiles.Tile;
 import jcs.ui.layout.tiles.TileModel;
+import jcs.ui.util.AsyncImageIcon;
+import jcs.ui.util.ImageService;
 import jcs.ui.util.ImageUtil;
 import org.tinylog.Logger;
 
 public class BlockUI extends TileUI {
 
+  //Locomotive icon which is still loading, the block is painted again when it is loaded
+  private AsyncImageIcon pendingLocIcon;
+
   public BlockUI() {
   }
 
@@ -248,13 +254,28 @@ public class BlockUI extends TileUI {
     Tile tile = (Tile) c;
     TileModel model = tile.getModel();
 
-    Image locImage;
+    ImageIcon locIcon;
     if (model.getLocomotive() != null && model.getLocomotive().getLocIcon() != null) {
-      locImage = model.getLocomotive().getLocIcon().getImage();
+      locIcon = model.getLocomotive().getLocIcon();
     } else {
       return;
     }
 
+    if (locIcon instanceof AsyncImageIcon asyncIcon && !asyncIcon.isLoaded()) {
+      //The icon is still loading, paint the block again when the image is ready
+      if (pendingLocIcon != asyncIcon) {
+        pendingLocIcon = asyncIcon;
+        ImageService.whenLoaded(asyncIcon, img -> {
+          pendingLocIcon = null;
+          if (img != null) {
+            tile.markImageDirty();
+          }
+        });
+      }
+      return;
+    }
+    Image locImage = locIcon.getImage();
+
     Logger.trace("LocImage w: " + locImage.getWidth(null) + " h: " + locImage.getHeight(null));
     // scale it to max w of 45
     float ratio = (float) locImage.getHeight(null) / (float) locImage.getWidth(null);
@@ -29,6 +29,11 @@ public class CurvedUI extends TileUI {
     return new CurvedUI();
   }
 
+  @Override
+  protected boolean isSpriteCacheable() {
+    return true;
+  }
+
   @Override
   public void renderTile(Graphics2D g2, JComponent c) {
     int[] xPoints = new int[]{400, 400, 170, 230};
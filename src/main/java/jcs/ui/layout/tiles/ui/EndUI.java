@@ -50,6 +50,11 @@ public class EndUI extends TileUI {
     g2.fillRect(xx, yy, w, h);
   }
 
+  @Override
+  protected boolean isSpriteCacheable() {
+    return true;
+  }
+
   @Override
   public void renderTile(Graphics2D g2, JComponent c) {
     renderEnd(g2, c);
@@ -81,6 +81,12 @@ public class SensorUI extends StraightUI implements MouseListener, MouseMotionLi
     g2.fill(new Ellipse2D.Double(xx, yy, 0.5f * radius, 0.5f * radius));
   }
 
+  @Override
+  protected boolean isSpriteCacheable() {
+    //The sensor state is part of the image
+    return false;
+  }
+
   @Override
   public void renderTile(Graphics2D g2, JComponent c) {
     renderStraight(g2, c);
@@ -92,20 +98,34 @@ public class SensorUI extends StraightUI implements MouseListener, MouseMotionLi
     //Logger.trace("Mouse button " + e.getButton() + " @ (" + e.getXOnScreen() + "," + e.getYOnScreen() + ")");
     //Only JCS is in CONTROL mode (readonly) activate sensor action events. 
     if (isControlMode((Component) e.getSource()) && e.getButton() == MouseEvent.BUTTON1) {
-      Tile tile = (Tile) e.getSource();
-      tile.setActive(!tile.isActive());
-      if (tile.getSensorBean() != null) {
-        SensorBean sb = tile.getSensorBean();
-        sb.setLastUpdated(new Date());
-        SensorEvent sae = new SensorEvent(sb);
-        TileCache.enqueTileAction(sae);
-        //Logger.trace("Changing Tile "+tile.getIdString()+" Sensor "+sb.getIdString()+" to "+sb.isActive()+"...");
-      }
+      executeControlAction((Tile) e.getSource());
     } else {
       redispatchToParent(e);
     }
   }
 
+  @Override
+  public boolean executeControlAction(Tile tile) {
+    tile.setActive(!tile.isActive());
+    if (tile.getSensorBean() != null) {
+      SensorBean sb = tile.getSensorBean();
+      sb.setLastUpdated(new Date());
+      SensorEvent sae = new SensorEvent(sb);
+      TileCache.enqueTileAction(sae);
+      //Logger.trace("Changing Tile "+tile.getIdString()+" Sensor "+sb.getIdString()+" to "+sb.isActive()+"...");
+    }
+    return true;
+  }
+
+  @Override
+  public String getTileToolTipText(Tile tile) {
+    String toolTipText = tile.getId();
+    if (tile.getSensorBean() != null) {
+      toolTipText = toolTipText + "; Id: " + tile.getSensorBean().getId();
+    }
+    return toolTipText;
+  }
+
   @Override
   public void mouseReleased(MouseEvent e) {
     //Logger.trace("Mouse button " + e.getButton() + " @ (" + e.getXOnScreen() + "," + e.getYOnScreen() + ")");
@@ -122,11 +142,7 @@ public class SensorUI extends StraightUI implements MouseListener, MouseMotionLi
   public void mouseEntered(MouseEvent e) {
     //Logger.trace("Mouse button " + e.getButton() + " @ (" + e.getXOnScreen() + ",");
     Tile tile = (Tile) e.getSource();
-    String toolTipText = tile.getId();
-    if (tile.getSensorBean() != null) {
-      toolTipText = toolTipText + "; Id: " + tile.getSensorBean().getId();
-    }
-    tile.setToolTipText(toolTipText);
+    tile.setToolTipText(getTileToolTipText(tile));
 
     redispatchToParent(e);
   }
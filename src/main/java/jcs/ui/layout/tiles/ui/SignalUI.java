@@ -322,6 +322,12 @@ public class SignalUI extends StraightUI implements MouseListener, MouseMotionLi
     g2d.fillOval(c4x, c4y, 30, 30);
   }
 
+  @Override
+  protected boolean isSpriteCacheable() {
+    //The signal state is part of the image
+    return false;
+  }
+
   @Override
   public void renderTile(Graphics2D g2, JComponent c) {
     Tile tile = (Tile) c;
@@ -352,23 +358,37 @@ public class SignalUI extends StraightUI implements MouseListener, MouseMotionLi
   public void mousePressed(MouseEvent e) {
     //Only JCS is in CONTROL mode (readonly) activate accessory action events. 
     if (isControlMode((Component) e.getSource()) && e.getButton() == MouseEvent.BUTTON1) {
-      Tile tile = (Tile) e.getSource();
-      tile.setActive(!tile.isActive());
-
-      if (tile.getAccessoryBean() != null) {
-        AccessoryBean ab = tile.getAccessoryBean();
-        ab.toggle();
-        tile.setSignalValue(ab.getSignalValue());
-
-        AccessoryEvent aae = new AccessoryEvent(ab);
-        TileCache.enqueTileAction(aae);
-        Logger.trace("Changing Tile " + tile.getId() + " Accessory " + ab.getId() + " to " + ab.getSignalValue().getSignalValue() + "...");
-      }
+      executeControlAction((Tile) e.getSource());
     } else {
       redispatchToParent(e);
     }
   }
 
+  @Override
+  public boolean executeControlAction(Tile tile) {
+    tile.setActive(!tile.isActive());
+
+    if (tile.getAccessoryBean() != null) {
+      AccessoryBean ab = tile.getAccessoryBean();
+      ab.toggle();
+      tile.setSignalValue(ab.getSignalValue());
+
+      AccessoryEvent aae = new AccessoryEvent(ab);
+      TileCache.enqueTileAction(aae);
+      Logger.trace("Changing Tile " + tile.getId() + " Accessory " + ab.getId() + " to " + ab.getSignalValue().getSignalValue() + "...");
+    }
+    return true;
+  }
+
+  @Override
+  public String getTileToolTipText(Tile tile) {
+    String toolTipText = tile.getId();
+    if (tile.getAccessoryBean() != null) {
+      toolTipText = toolTipText + "; Id: " + tile.getAccessoryBean().getId();
+    }
+    return toolTipText;
+  }
+
   @Override
   public void mouseReleased(MouseEvent e) {
     redispatchToParent(e);
@@ -382,11 +402,7 @@ public class SignalUI extends StraightUI implements MouseListener, MouseMotionLi
   @Override
   public void mouseEntered(MouseEvent e) {
     Tile tile = (Tile) e.getSource();
-    String toolTipText = tile.getId();
-    if (tile.getAccessoryBean() != null) {
-      toolTipText = toolTipText + "; Id: " + tile.getAccessoryBean().getId();
-    }
-    tile.setToolTipText(toolTipText);
+    tile.setToolTipText(getTileToolTipText(tile));
     redispatchToParent(e);
   }
 
@@ -59,6 +59,11 @@ public class StraightUI extends TileUI {
     renderRouteStraight(g2, c);
   }
 
+  @Override
+  protected boolean isSpriteCacheable() {
+    return true;
+  }
+
   @Override
   public void renderTile(Graphics2D g2, JComponent c) {
     renderStraight(g2, c);
@@ -185,24 +185,38 @@ public class ThreeWaySwitchUI extends TileUI implements MouseListener, MouseMoti
   public void mousePressed(MouseEvent e) {
     //Only JCS is in CONTROL mode (readonly) activate accessory action events. 
     if (isControlMode((Component) e.getSource()) && e.getButton() == MouseEvent.BUTTON1) {
-      Tile tile = (Tile) e.getSource();
-      tile.setActive(!tile.isActive());
-
-      if (tile.getAccessoryBean() != null) {
-        AccessoryBean ab = tile.getAccessoryBean();
-        //TODO make the toggle dependend on the number of states
-        ab.toggle();
-        tile.setAccessoryValue(ab.getAccessoryValue());
-
-        AccessoryEvent aae = new AccessoryEvent(ab);
-        TileCache.enqueTileAction(aae);
-        Logger.trace("Changing Tile " + tile.getId() + " Accessory " + ab.getId() + " to " + ab.getAccessoryValue().getValue() + "...");
-      }
+      executeControlAction((Tile) e.getSource());
     } else {
       redispatchToParent(e);
     }
   }
 
+  @Override
+  public boolean executeControlAction(Tile tile) {
+    tile.setActive(!tile.isActive());
+
+    if (tile.getAccessoryBean() != null) {
+      AccessoryBean ab = tile.getAccessoryBean();
+      //TODO make the toggle dependend on the number of states
+      ab.toggle();
+      tile.setAccessoryValue(ab.getAccessoryValue());
+
+      AccessoryEvent aae = new AccessoryEvent(ab);
+      TileCache.enqueTileAction(aae);
+      Logger.trace("Changing Tile " + tile.getId() + " Accessory " + ab.getId() + " to " + ab.getAccessoryValue().getValue() + "...");
+    }
+    return true;
+  }
+
+  @Override
+  public String getTileToolTipText(Tile tile) {
+    String toolTipText = tile.getId();
+    if (tile.getAccessoryBean() != null) {
+      toolTipText = toolTipText + "; Id: " + tile.getAccessoryBean().getId();
+    }
+    return toolTipText;
+  }
+
   @Override
   public void mouseReleased(MouseEvent e) {
     redispatchToParent(e);
@@ -216,11 +230,7 @@ public class ThreeWaySwitchUI extends TileUI implements MouseListener, MouseMoti
   @Override
   public void mouseEntered(MouseEvent e) {
     Tile tile = (Tile) e.getSource();
-    String toolTipText = tile.getId();
-    if (tile.getAccessoryBean() != null) {
-      toolTipText = toolTipText + "; Id: " + tile.getAccessoryBean().getId();
-    }
-    tile.setToolTipText(toolTipText);
+    tile.setToolTipText(getTileToolTipText(tile));
     redispatchToParent(e);
   }
 
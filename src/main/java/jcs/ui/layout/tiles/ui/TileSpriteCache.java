@@ -0,0 +1,98 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.tiles.ui;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import jcs.entities.TileBean.Orientation;
+import jcs.entities.TileBean.TileType;
+import jcs.ui.util.BoundedImageCache;
+
+/**
+ * Rendered tile images which are shared by all tiles that look the same.<br>
+ * Most tiles of a layout are straights and curves which only differ in orientation, so a handful of images serve hundreds of
+ * tiles.<br>
+ * The images are kept in a BoundedImageCache, capped on the memory the images use. A cached image is shared, so it must never
+ * be drawn on.
+ */
+final class TileSpriteCache {
+
+  private static final long MAX_BYTES = Integer.getInteger("tile.sprite.cache.mb", 32) * 1024L * 1024L;
+
+  private static final TileSpriteCache INSTANCE = new TileSpriteCache(MAX_BYTES);
+
+  /**
+   * Everything which determines how a cacheable tile looks.<br>
+   * The route color and incoming side are only part of the key when the route is shown, the background only when the tile is
+   * not selected.
+   */
+  record Key(TileType tileType, Orientation orientation, boolean selected, boolean route, Orientation incomingSide,
+          boolean center, int background, int track, int routeTrack, int size) {
+
+    static Key of(TileType tileType, Orientation orientation, boolean selected, Color background, Color selectedColor, Color track,
+            boolean route, Orientation incomingSide, Color routeTrack, boolean center, int size) {
+      return new Key(tileType, orientation, selected, route, route ? incomingSide : null, center, rgb(selected ? selectedColor : background),
+              rgb(track), route ? rgb(routeTrack) : 0, size);
+    }
+
+    private static int rgb(Color color) {
+      return color == null ? 0 : color.getRGB();
+    }
+  }
+
+  private final BoundedImageCache<Key> sprites;
+
+  TileSpriteCache(long maxBytes) {
+    this.sprites = new BoundedImageCache<>("TileSpriteCache", maxBytes);
+  }
+
+  static TileSpriteCache getInstance() {
+    return INSTANCE;
+  }
+
+  BufferedImage get(Key key) {
+    return sprites.get(key);
+  }
+
+  void put(Key key, BufferedImage image) {
+    sprites.put(key, image);
+  }
+
+  void clear() {
+    sprites.clear();
+  }
+
+  int size() {
+    return sprites.size();
+  }
+
+  long getBytes() {
+    return sprites.getBytes();
+  }
+
+  long getHits() {
+    return sprites.getHits();
+  }
+
+  long getMisses() {
+    return sprites.getMisses();
+  }
+
+  @Override
+  public String toString() {
+    return sprites.toString();
+  }
+}
@@ -122,6 +122,14 @@ public abstract class TileUI extends ComponentUI {
 
   abstract void renderTile(Graphics2D g2d, JComponent c);
 
+  /**
+   * @return true when the tile image only depends on the tile type, orientation, selection and route state, colors and scale,
+   * so identical tiles can share one rendered image
+   */
+  protected boolean isSpriteCacheable() {
+    return false;
+  }
+
   abstract void renderTileRoute(Graphics2D g2d, JComponent c);
 
   /**
@@ -197,14 +205,28 @@ public abstract class TileUI extends ComponentUI {
     Tile tile = (Tile) c;
     TileModel model = ((Tile) c).getModel();
     TileBean.Orientation tileOrientation = model.getTileOrienation();
-    BufferedImage bf = getOrCreateImage();
-    Graphics2D g2di = bf.createGraphics();
 
     //Avoid errors
     if (model.isShowRoute() && model.getIncomingSide() == null) {
       model.setIncomingSide(tileOrientation);
     }
 
+    TileSpriteCache.Key spriteKey = null;
+    if (isSpriteCacheable()) {
+      int size = model.isScaleImage() ? LayoutScale.getInstance().scaledTileSize() : 0;
+      spriteKey = TileSpriteCache.Key.of(tile.getTileType(), tileOrientation, model.isSelected(), backgroundColor, model.getSelectedColor(), trackColor,
+              model.isShowRoute(), model.getIncomingSide(), trackRouteColor, model.isShowCenter(), size);
+      BufferedImage sprite = TileSpriteCache.getInstance().get(spriteKey);
+      if (sprite != null) {
+        tileImage = sprite;
+        imageDirty = false;
+        return;
+      }
+    }
+
+    BufferedImage bf = getOrCreateImage();
+    Graphics2D g2di = bf.createGraphics();
+
     if (model.isSelected()) {
       g2di.setBackground(model.getSelectedColor());
     } else {
@@ -285,6 +307,9 @@ public abstract class TileUI extends ComponentUI {
       tileImage = bf;
     }
 
+    if (spriteKey != null) {
+      TileSpriteCache.getInstance().put(spriteKey, tileImage);
+    }
     imageDirty = false;
 
     g2di.dispose();
@@ -375,6 +400,24 @@ public abstract class TileUI extends ComponentUI {
     }
   }
 
+  /**
+   * Execute the action of a tile which is clicked in control mode, like switching the accessory.
+   *
+   * @param tile the clicked tile
+   * @return true when the tile has a control action
+   */
+  public boolean executeControlAction(Tile tile) {
+    return false;
+  }
+
+  /**
+   * @param tile the tile
+   * @return the tool tip of the tile or null when it has none
+   */
+  public String getTileToolTipText(Tile tile) {
+    return null;
+  }
+
   protected void redispatchToParent(MouseEvent e) {
     try {
       Component source = (Component) e.getSource();
@@ -43,6 +43,7 @@ import jcs.entities.LocomotiveBean;
 import jcs.persistence.PersistenceFactory;
 import jcs.ui.DriverCabDialog;
 import jcs.ui.table.model.LocomotiveBeanTableModel;
+import jcs.ui.util.ImageService;
 import jcs.ui.util.LocomotiveSelectionChangedListener;
 import org.tinylog.Logger;
 
@@ -99,9 +100,12 @@ public class LocomotiveTablePanel extends JPanel implements RefreshEventListener
         //Check if this locomotive is not already placed on the track
         if (!PersistenceFactory.getService().isOnTrack(locomotiveBean)) {
           locomotiveBean = PersistenceFactory.getService().getLocomotive(locomotiveBean.getId());
-          if (locomotiveBean.getLocIcon() != null) {
-            setDragImage(locomotiveBean.getLocIcon().getImage());
-          }
+          //The icon might still be loading, use it as drag image when it is ready
+          ImageService.whenLoaded(locomotiveBean.getLocIcon(), img -> {
+            if (img != null) {
+              setDragImage(img);
+            }
+          });
           Logger.trace("LocomotiveBean: " + locomotiveBean);
           return new LocomotiveTablePanel.LocomotiveBeanTransferable(locomotiveBean);
         } else {
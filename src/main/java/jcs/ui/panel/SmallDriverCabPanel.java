@@ -42,6 +42,7 @@ import jcs.commandStation.events.LocomotiveSpeedEventListener;
 import jcs.entities.FunctionBean;
 import jcs.entities.LocomotiveBean;
 import jcs.persistence.PersistenceFactory;
+import jcs.ui.util.ImageService;
 import jcs.ui.util.LocomotiveSelectionChangedListener;
 import org.tinylog.Logger;
 
@@ -189,7 +190,7 @@ public class SmallDriverCabPanel extends JPanel implements LocomotiveSelectionCh
 
         nameLbl.setText(locomotiveBean.getName());
         if (locomotiveBean.getLocIcon() != null) {
-          setLocomotiveImage(locomotiveBean.getLocIcon().getImage());
+          ImageService.whenLoaded(locomotiveBean.getLocIcon(), this::setLocomotiveImage);
         }
 
         double max = 100;
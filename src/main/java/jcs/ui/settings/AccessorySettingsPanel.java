@@ -1223,6 +1223,7 @@ public class AccessorySettingsPanel extends JPanel implements PropertyChangeList
 
       int accCount = fromController.size();
       int processedCount = 0;
+      List<AccessoryBean> toStore = new ArrayList<>();
 
       for (AccessoryBean accessory : fromController) {
         String id = accessory.getId();
@@ -1245,15 +1246,7 @@ public class AccessorySettingsPanel extends JPanel implements PropertyChangeList
         }
 
         if (store) {
-          try {
-            PersistenceFactory.getService().persist(accessory);
-
-            firePropertyChange("updated", null, accessory);
-
-          } catch (Exception e) {
-            Logger.error(e);
-          }
-
+          toStore.add(accessory);
         }
         processedCount++;
 
@@ -1261,6 +1254,15 @@ public class AccessorySettingsPanel extends JPanel implements PropertyChangeList
         setProgress((int) progress);
       }
 
+      try {
+        PersistenceFactory.getService().persistAll(toStore);
+        for (AccessoryBean accessory : toStore) {
+          firePropertyChange("updated", null, accessory);
+        }
+      } catch (Exception e) {
+        Logger.error(e);
+      }
+
       firePropertyChange("done", "", "Accessories Synchronized");
 
       return null;
@@ -1018,13 +1018,12 @@ public class CommandStationPanel extends JPanel implements TreeSelectionListener
     Logger.trace("There are " + modules.size() + " feedback modules");
     //Catch errors if any...
     try {
+      List<SensorBean> sensors = new ArrayList<>();
       for (FeedbackModule fbm : modules) {
-        List<SensorBean> sensors = fbm.getSensors();
-        for (SensorBean sb : sensors) {
-          Logger.trace("Storing : " + sb);
-          PersistenceFactory.getService().persist(sb);
-        }
+        sensors.addAll(fbm.getSensors());
       }
+      Logger.trace("Storing " + sensors.size() + " sensors");
+      PersistenceFactory.getService().persistAll(sensors);
     } catch (Exception e) {
       Logger.error("Error updating sensors! " + e);
     }
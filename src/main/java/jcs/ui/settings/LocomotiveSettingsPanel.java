@@ -25,12 +25,10 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
-import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
+import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -38,13 +36,13 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
-import javax.imageio.ImageIO;
 import javax.swing.AbstractListModel;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -71,6 +69,7 @@ import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import jcs.commandStation.ControllerFactory;
 import jcs.commandStation.DecoderController;
+import jcs.commandStation.net.ImageSyncEngine;
 import jcs.entities.CommandStationBean;
 import jcs.entities.FunctionBean;
 import jcs.entities.LocomotiveBean;
@@ -78,6 +77,7 @@ import jcs.entities.LocomotiveBean.DecoderType;
 import jcs.entities.LocomotiveBean.Direction;
 import jcs.persistence.PersistenceFactory;
 import jcs.persistence.PersistenceService;
+import jcs.ui.util.ImageService;
 import org.tinylog.Logger;
 
 /**
@@ -826,31 +826,31 @@ public class LocomotiveSettingsPanel extends JPanel implements PropertyChangeLis
     this.initModels();
   }//GEN-LAST:event_deleteBtnActionPerformed
 
-  private String storeImage(String imageName, Image image, boolean locomotive) {
+  private Path getImageCachePath() {
     String csp = commandStationBean.getShortName().toLowerCase();
-    String basePath = System.getProperty("user.home") + File.separator + "jcs" + File.separator + "cache" + File.separator + csp;
+    return Paths.get(System.getProperty("user.home"), "jcs", "cache", csp);
+  }
 
-    Path path;
-    if (locomotive) {
-      path = Paths.get(basePath);
-    } else {
-      path = Paths.get(basePath + File.separator + "zfunctions");
+  private Path getImagePath(String imageName, boolean locomotive) {
+    Path path = getImageCachePath();
+    if (!locomotive) {
+      path = path.resolve("zfunctions");
     }
+    return path.resolve(imageName.replace(",", "-").toLowerCase() + ".png");
+  }
 
-    imageName = imageName.replace(",", "-");
-    File imageFile = new File(path + File.separator + imageName.toLowerCase() + ".png");
-
-    try {
-      if (!Files.exists(path)) {
-        Files.createDirectories(path);
-        Logger.trace("Created new directory " + path);
-      }
-      ImageIO.write((BufferedImage) image, "png", imageFile);
-
-      return imageFile.getAbsolutePath();
-    } catch (IOException ex) {
-      Logger.error("Can't store image " + imageFile + "! ", ex.getMessage());
-      return null;
+  /**
+   * Images which the command station serves as PNG are downloaded, the others are produced by the controller.
+   */
+  private ImageSyncEngine.Task createImageTask(DecoderController decoderController, String imageName, boolean locomotive) {
+    Path target = getImagePath(imageName, locomotive);
+    URI source = locomotive ? decoderController.getLocomotiveImageURI(imageName) : decoderController.getLocomotiveFunctionImageURI(imageName);
+    if (source != null) {
+      return ImageSyncEngine.Task.download(source, target);
+    } else if (locomotive) {
+      return ImageSyncEngine.Task.produce(() -> decoderController.getLocomotiveImage(imageName), target);
+    } else {
+      return ImageSyncEngine.Task.produce(() -> decoderController.getLocomotiveFunctionImage(imageName), target);
     }
   }
 
@@ -1163,6 +1163,9 @@ public class LocomotiveSettingsPanel extends JPanel implements PropertyChangeLis
 
   class SynchronizationTask extends SwingWorker<Void, Void> {
 
+    //Part of the progress for reading the locomotives, the rest is for the images
+    private static final int LOCOMOTIVE_PROGRESS = 20;
+
     @Override
     public Void doInBackground() {
       setProgress(0);
@@ -1177,9 +1180,11 @@ public class LocomotiveSettingsPanel extends JPanel implements PropertyChangeLis
       List<LocomotiveBean> fromController = decoderController.getLocomotives();
       String importedFrom = commandStationBean.getShortName();
       Set<String> functionImageNames = new HashSet<>();
+      Map<String, List<LocomotiveBean>> locomotiveImages = new HashMap<>();
 
       int locCount = fromController.size();
       int processedCount = 0;
+      List<LocomotiveBean> toStore = new ArrayList<>();
 
       for (LocomotiveBean loco : fromController) {
         Long id = loco.getId();
@@ -1214,20 +1219,9 @@ public class LocomotiveSettingsPanel extends JPanel implements PropertyChangeLis
           }
         }
 
-        if (store && commandStationBean.isLocomotiveImageSynchronizationSupport()) {
-          try {
-            String icon = loco.getIcon();
-            Image locImage = decoderController.getLocomotiveImage(icon);
-            if (locImage != null) {
-              String iconPath = storeImage(icon, locImage, true);
-              loco.setIcon(iconPath);
-              Logger.trace("Loc Image path: " + iconPath);
-            } else {
-              Logger.trace("locImage" + icon + " not found");
-            }
-          } catch (Exception e) {
-            Logger.error(e);
-          }
+        if (store && commandStationBean.isLocomotiveImageSynchronizationSupport() && loco.getIcon() != null) {
+          //Locomotives can share an image, it is fetched once
+          locomotiveImages.computeIfAbsent(loco.getIcon(), k -> new ArrayList<>()).add(loco);
         }
 
         if (store && commandStationBean.isLocomotiveFunctionSynchronizationSupport()) {
@@ -1243,34 +1237,70 @@ public class LocomotiveSettingsPanel extends JPanel implements PropertyChangeLis
           } catch (Exception e) {
             Logger.error(e);
           }
-
-          for (String functionImage : functionImageNames) {
-            Image functionIcon = decoderController.getLocomotiveFunctionImage(functionImage);
-            if (functionIcon != null) {
-              storeImage(functionImage, functionIcon, false);
-            } else {
-              Logger.trace("Function Image " + functionImage + " is NOT available");
-            }
-          }
         }
 
         if (store) {
           Logger.trace("Storing: " + loco);
-
-          db.persist(loco);
-
-          if (loco.getLocIcon() != null) {
-            firePropertyChange("updated", null, loco);
-          }
+          toStore.add(loco);
         }
         processedCount++;
 
         Logger.trace("Processed " + processedCount + " of " + locCount);
 
-        double progress = (double) processedCount / locCount * 100;
+        double progress = (double) processedCount / locCount * LOCOMOTIVE_PROGRESS;
         setProgress((int) progress);
       }
 
+      //All images are synchronized at once, in parallel
+      List<ImageSyncEngine.Task> tasks = new ArrayList<>();
+      Map<ImageSyncEngine.Task, List<LocomotiveBean>> locomotiveTasks = new HashMap<>();
+      for (Map.Entry<String, List<LocomotiveBean>> entry : locomotiveImages.entrySet()) {
+        ImageSyncEngine.Task task = createImageTask(decoderController, entry.getKey(), true);
+        tasks.add(task);
+        locomotiveTasks.put(task, entry.getValue());
+      }
+      functionImageNames.remove(null);
+      for (String functionImage : functionImageNames) {
+        tasks.add(createImageTask(decoderController, functionImage, false));
+      }
+
+      if (!tasks.isEmpty()) {
+        ImageSyncEngine engine = new ImageSyncEngine(getImageCachePath().resolve(ImageSyncEngine.MANIFEST_FILE));
+        try {
+          int total = tasks.size();
+          ImageSyncEngine.Result result = engine.sync(tasks, done -> setProgress(LOCOMOTIVE_PROGRESS + (100 - LOCOMOTIVE_PROGRESS) * done / total));
+          Logger.debug("Synchronized images of " + importedFrom + ": " + result);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          Logger.warn("Image synchronization interrupted");
+        }
+
+        for (Map.Entry<ImageSyncEngine.Task, List<LocomotiveBean>> entry : locomotiveTasks.entrySet()) {
+          ImageSyncEngine.Task task = entry.getKey();
+          if (task.getStatus().isAvailable()) {
+            for (LocomotiveBean loco : entry.getValue()) {
+              loco.setIcon(task.getTarget().toString());
+            }
+          } else {
+            Logger.trace("Locomotive image " + entry.getValue().get(0).getIcon() + " not found");
+          }
+        }
+        for (ImageSyncEngine.Task task : tasks) {
+          if (!locomotiveTasks.containsKey(task) && !task.getStatus().isAvailable()) {
+            Logger.trace("Function Image " + task.getTarget().getFileName() + " is NOT available");
+          }
+        }
+        //Changed files must be read again
+        ImageService.getInstance().clear();
+      }
+
+      db.persistAll(toStore);
+      for (LocomotiveBean loco : toStore) {
+        if (loco.getLocIcon() != null) {
+          firePropertyChange("updated", null, loco);
+        }
+      }
+
       //JCS.settingsChanged(new RefreshEvent("locomotives"));
       firePropertyChange("done", "", "Locomotives Synchronized");
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.table.model;
+
+import java.util.List;
+import jcs.util.metrics.LatencyHistogram;
+import jcs.util.metrics.MetricsRegistry;
+import jcs.util.metrics.MetricsRegistry.Metric;
+
+/**
+ * The metrics of the event pipeline, latencies in ms.
+ */
+public class MetricsTableModel extends BeanTableModel<Metric> {
+
+  private static final long serialVersionUID = 2305844364181318723L;
+
+  public MetricsTableModel() {
+    super();
+  }
+
+  @Override
+  protected List<String> getColumns() {
+    return List.of("Name", "Type", "Value", "Mean", "P50", "P90", "P99", "Max");
+  }
+
+  @Override
+  protected List<Metric> getBeans() {
+    return MetricsRegistry.snapshot();
+  }
+
+  @Override
+  Object getColumnValue(Metric metric, int column) {
+    LatencyHistogram.Snapshot l = metric.latency();
+    return switch (column) {
+      case 0 ->
+        metric.name();
+      case 1 ->
+        metric.type().name();
+      case 2 ->
+        metric.value();
+      case 3 ->
+        l != null ? format(l.mean()) : "";
+      case 4 ->
+        l != null ? format(l.p50()) : "";
+      case 5 ->
+        l != null ? format(l.p90()) : "";
+      case 6 ->
+        l != null ? format(l.p99()) : "";
+      case 7 ->
+        l != null ? format(l.max()) : "";
+      default ->
+        null;
+    };
+  }
+
+  private static String format(double nanos) {
+    return String.format("%.3f", MetricsRegistry.toMillis(nanos));
+  }
+
+  @Override
+  public Class<?> getColumnClass(int columnIndex) {
+    return columnIndex == 2 ? Long.class : String.class;
+  }
+
+  @Override
+  void setColumnValue(Metric metric, int column, Object value) {
+    //Read only
+  }
+
+  @Override
+  public boolean isCellEditable(int row, int column) {
+    return false;
+  }
+
+  @Override
+  protected int findRowIndex(Metric metric) {
+    if (metric != null) {
+      for (int i = 0; i < beans.size(); i++) {
+        if (beans.get(i).name().equals(metric.name())) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+}
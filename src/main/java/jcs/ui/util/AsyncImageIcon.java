@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.util;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import javax.swing.CellRendererPane;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * Icon which shows a transparent placeholder until the image is loaded by the ImageService.<br>
+ * The components which painted the placeholder are repainted after the swap.
+ */
+public class AsyncImageIcon extends ImageIcon {
+
+  private static final long serialVersionUID = 6125370943268815442L;
+
+  private final transient Set<Component> painted = Collections.newSetFromMap(new WeakHashMap<>());
+  private final transient List<Consumer<Image>> callbacks = new ArrayList<>();
+  private boolean loaded;
+  private boolean available;
+
+  AsyncImageIcon(BufferedImage placeholder, CompletableFuture<BufferedImage> future) {
+    super(placeholder);
+    future.thenAccept(image -> SwingUtilities.invokeLater(() -> swap(image)));
+  }
+
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * Run a callback on the Event Dispatch Thread with the image once it is loaded, or null when it could not be read.
+   *
+   * @param callback receives the image
+   */
+  public void whenLoaded(Consumer<Image> callback) {
+    if (loaded) {
+      callback.accept(available ? getImage() : null);
+    } else {
+      callbacks.add(callback);
+    }
+  }
+
+  @Override
+  public synchronized void paintIcon(Component c, Graphics g, int x, int y) {
+    if (!loaded && c != null) {
+      painted.add(c);
+    }
+    super.paintIcon(c, g, x, y);
+  }
+
+  private void swap(BufferedImage image) {
+    if (image != null) {
+      setImage(image);
+      available = true;
+    }
+    loaded = true;
+
+    for (Component c : painted) {
+      //Table and list cells are painted by a renderer, repaint the owner of the renderer
+      Component target = c.getParent() instanceof CellRendererPane ? c.getParent().getParent() : c;
+      if (target instanceof JComponent jc) {
+        jc.revalidate();
+      }
+      if (target != null) {
+        target.repaint();
+      }
+    }
+    painted.clear();
+
+    for (Consumer<Image> callback : callbacks) {
+      callback.accept(available ? getImage() : null);
+    }
+    callbacks.clear();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.util;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.tinylog.Logger;
+
+/**
+ * Images kept in least recently used order, capped on the memory the images use.<br>
+ * An image is counted as 4 bytes per pixel. When the cap is exceeded the least recently used images are evicted, the image just
+ * added is always kept. The cache is thread safe.
+ *
+ * @param <K> the key type
+ */
+public final class BoundedImageCache<K> {
+
+  private final String name;
+  private final long maxBytes;
+  private final Map<K, BufferedImage> images;
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * @param name used in the log and in toString
+   * @param maxBytes the cap on the memory of the cached images
+   */
+  public BoundedImageCache(String name, long maxBytes) {
+    this.name = name;
+    this.maxBytes = maxBytes;
+    this.images = new LinkedHashMap<>(64, 0.75f, true);
+  }
+
+  public synchronized BufferedImage get(K key) {
+    BufferedImage image = images.get(key);
+    if (image != null) {
+      hits++;
+    } else {
+      misses++;
+    }
+    return image;
+  }
+
+  public synchronized void put(K key, BufferedImage image) {
+    BufferedImage previous = images.put(key, image);
+    if (previous != null) {
+      bytes = bytes - sizeOf(previous);
+    }
+    bytes = bytes + sizeOf(image);
+
+    //Evict the least recently used images, but always keep the one just added
+    Iterator<Map.Entry<K, BufferedImage>> it = images.entrySet().iterator();
+    while (bytes > maxBytes && images.size() > 1 && it.hasNext()) {
+      Map.Entry<K, BufferedImage> eldest = it.next();
+      if (eldest.getKey().equals(key)) {
+        continue;
+      }
+      bytes = bytes - sizeOf(eldest.getValue());
+      it.remove();
+      Logger.trace("{} evicted {}", name, eldest.getKey());
+    }
+  }
+
+  public synchronized void clear() {
+    images.clear();
+    bytes = 0;
+  }
+
+  public synchronized int size() {
+    return images.size();
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private static long sizeOf(BufferedImage image) {
+    return (long) image.getWidth() * image.getHeight() * 4;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return name + " images: " + images.size() + " bytes: " + bytes + " hits: " + hits + " misses: " + misses;
+  }
+}
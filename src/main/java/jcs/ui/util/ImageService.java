@@ -0,0 +1,227 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.util;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import org.tinylog.Logger;
+
+/**
+ * Loads the locomotive and function icons.<br>
+ * The images are decoded and scaled on a small worker pool. On the Event Dispatch Thread a placeholder icon is returned, which
+ * swaps in the image once it is ready, so the UI never waits for the disk. Other threads wait for the image.<br>
+ * The scaled images are kept in a BoundedImageCache, capped on the memory the images use. Concurrent
+ * requests for the same image and size share one decode.
+ */
+public final class ImageService {
+
+  private static final long MAX_BYTES = Integer.getInteger("image.cache.mb", 16) * 1024L * 1024L;
+  private static final int THREADS = Math.max(1, Integer.getInteger("image.loader.threads", 2));
+  private static final int MAX_FAILED = 512;
+
+  private static final ImageService INSTANCE = new ImageService(MAX_BYTES, THREADS);
+
+  record Key(String source, int width) {
+  }
+
+  private final BoundedImageCache<Key> images;
+  private final Map<Key, Boolean> failed;
+  private final Map<Integer, BufferedImage> placeholders;
+  private final ConcurrentHashMap<Key, CompletableFuture<BufferedImage>> loading;
+  private final ExecutorService executor;
+  private final AtomicLong decodes = new AtomicLong();
+
+  ImageService(long maxBytes, int threads) {
+    this.images = new BoundedImageCache<>("ImageService", maxBytes);
+    this.failed = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+        return size() > MAX_FAILED;
+      }
+    };
+    this.placeholders = new ConcurrentHashMap<>();
+    this.loading = new ConcurrentHashMap<>();
+
+    AtomicInteger count = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "IMAGE-LOADER-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+  public static ImageService getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Get an icon of an image scaled to a width, the height follows the aspect ratio of the image.
+   *
+   * @param source location of the image
+   * @param width the width of the icon
+   * @return the icon, a placeholder icon when called on the Event Dispatch Thread and the image is not loaded yet, or null when
+   * the image can't be read
+   */
+  public ImageIcon getIcon(URL source, int width) {
+    if (source == null) {
+      return null;
+    }
+    Key key = new Key(source.toExternalForm(), width);
+    BufferedImage image = get(key);
+    if (image != null) {
+      return new ImageIcon(image);
+    }
+    if (isFailed(key)) {
+      return null;
+    }
+
+    CompletableFuture<BufferedImage> future = load(key, source);
+    if (SwingUtilities.isEventDispatchThread() && !future.isDone()) {
+      return new AsyncImageIcon(placeholder(width), future);
+    }
+
+    try {
+      image = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      Logger.trace("Loading of " + source + " failed. Cause: " + e.getMessage());
+    }
+    return image != null ? new ImageIcon(image) : null;
+  }
+
+  /**
+   * Run a callback with the image of an icon once it is available.<br>
+   * For a placeholder icon the callback runs on the Event Dispatch Thread after the swap, with null when the image could not be
+   * read. For any other icon the callback runs right away.
+   *
+   * @param icon the icon, may be null
+   * @param callback receives the image
+   */
+  public static void whenLoaded(ImageIcon icon, Consumer<Image> callback) {
+    if (icon instanceof AsyncImageIcon asyncIcon) {
+      asyncIcon.whenLoaded(callback);
+    } else {
+      callback.accept(icon != null ? icon.getImage() : null);
+    }
+  }
+
+  /**
+   * Remove all cached images, for example after the icons are synchronized with the command station.
+   */
+  public void clear() {
+    images.clear();
+    synchronized (this) {
+      failed.clear();
+    }
+  }
+
+  CompletableFuture<BufferedImage> load(Key key, URL source) {
+    CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+    CompletableFuture<BufferedImage> existing = loading.putIfAbsent(key, created);
+    if (existing != null) {
+      return existing;
+    }
+
+    //An other load could have finished between the cache lookup and claiming the key
+    BufferedImage cached = get(key);
+    if (cached != null) {
+      loading.remove(key, created);
+      created.complete(cached);
+      return created;
+    }
+
+    executor.execute(() -> {
+      BufferedImage image = null;
+      try {
+        image = decode(source, key.width());
+      } catch (IOException | RuntimeException e) {
+        Logger.trace("Can't read image " + source + ". Cause: " + e.getMessage());
+      }
+      //Publish before releasing the key, so a new request finds either the load or the result
+      if (image != null) {
+        put(key, image);
+      } else {
+        markFailed(key);
+      }
+      loading.remove(key, created);
+      created.complete(image);
+    });
+    return created;
+  }
+
+  private BufferedImage decode(URL source, int width) throws IOException {
+    decodes.incrementAndGet();
+    BufferedImage image = ImageIO.read(source);
+    if (image == null) {
+      return null;
+    }
+    int height = Math.max(1, Math.round((float) width * image.getHeight() / image.getWidth()));
+    return ImageUtil.resizeImage(image, width, height);
+  }
+
+  private BufferedImage placeholder(int width) {
+    return placeholders.computeIfAbsent(width, w -> new BufferedImage(w, w, BufferedImage.TYPE_INT_ARGB));
+  }
+
+  BufferedImage get(Key key) {
+    return images.get(key);
+  }
+
+  void put(Key key, BufferedImage image) {
+    images.put(key, image);
+  }
+
+  private synchronized boolean isFailed(Key key) {
+    return failed.containsKey(key);
+  }
+
+  private synchronized void markFailed(Key key) {
+    failed.put(key, Boolean.TRUE);
+  }
+
+  int size() {
+    return images.size();
+  }
+
+  long getBytes() {
+    return images.getBytes();
+  }
+
+  long getDecodes() {
+    return decodes.get();
+  }
+
+  @Override
+  public String toString() {
+    return images + " decodes: " + decodes.get();
+  }
+}
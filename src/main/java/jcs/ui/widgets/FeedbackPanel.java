@@ -25,6 +25,7 @@ import javax.swing.JPanel;
 import javax.swing.SwingConstants;
 import javax.swing.border.TitledBorder;
 import jcs.JCS;
+import jcs.commandStation.SensorStateTable;
 import jcs.commandStation.events.SensorEvent;
 import jcs.commandStation.events.SensorEventListener;
 import jcs.entities.SensorBean;
@@ -249,10 +250,25 @@ public class FeedbackPanel extends JPanel {
 
   }
 
+  /**
+   * The sensor id and state are read from the sensor state table; only a sensor which is not in the table is read from the database.
+   */
   private void obtainSensorByContactAndPort(FeedbackPort feedbackPort) {
-    if (PersistenceFactory.getService() != null) {
+    SensorStateTable states = JCS.getJcsCommandStation() != null ? JCS.getJcsCommandStation().getSensorStateTable() : null;
+    Integer sensorId = states != null ? states.getSensorId(feedbackPort.deviceId, feedbackPort.contactId) : null;
+
+    if (sensorId != null) {
+      feedbackPort.setSensorId(sensorId);
+      feedbackPort.setValue(states.isActive(feedbackPort.deviceId, feedbackPort.contactId));
+    } else if (PersistenceFactory.getService() != null) {
       SensorBean sb = PersistenceFactory.getService().getSensor(feedbackPort.deviceId, feedbackPort.contactId);
-      feedbackPort.setSensorId(sb.getId());
+      if (sb != null) {
+        feedbackPort.setSensorId(sb.getId());
+        feedbackPort.setValue(sb.isActive());
+        if (states != null) {
+          states.register(sb);
+        }
+      }
     }
   }
 
@@ -296,6 +312,11 @@ public class FeedbackPanel extends JPanel {
       this.sensorId = sensorId;
     }
 
+    void setValue(boolean value) {
+      this.value = value;
+      label.setIcon(value ? ICON_ON : ICON_OFF);
+    }
+
   }
 
   /**
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import org.tinylog.Logger;
+
+/**
+ * Thread which blocks on a queue and hands every element to a handler.<br>
+ * The thread sleeps until an element arrives, so there is no polling delay and no CPU use while idle. Elements which are queued
+ * at the same time are taken in one batch with drainTo.<br>
+ * Shutdown puts the poison element in the queue. Every element which was queued before the poison is still handled, so no
+ * element is lost. When the thread is interrupted the elements which are still in the queue are handled before it stops.
+ *
+ * @param <T> the element type
+ */
+public class QueueDispatcher<T> extends Thread {
+
+  private final BlockingQueue<T> queue;
+  private final T poison;
+  private final Consumer<T> handler;
+  private final int maxBatch;
+
+  private volatile boolean running = false;
+  private volatile long dispatched;
+
+  /**
+   * @param group the thread group
+   * @param name the thread name
+   * @param queue the queue to take the elements from
+   * @param poison the element which stops the dispatcher, compared by identity
+   * @param handler handles the elements
+   */
+  public QueueDispatcher(ThreadGroup group, String name, BlockingQueue<T> queue, T poison, Consumer<T> handler) {
+    super(group, name);
+    this.queue = queue;
+    this.poison = poison;
+    this.handler = handler;
+    this.maxBatch = Math.max(1, Integer.getInteger("dispatcher.max.batch", 64));
+  }
+
+  /**
+   * Constructor for a subclass which overrides handle.
+   *
+   * @param group the thread group
+   * @param name the thread name
+   * @param queue the queue to take the elements from
+   * @param poison the element which stops the dispatcher, compared by identity
+   */
+  protected QueueDispatcher(ThreadGroup group, String name, BlockingQueue<T> queue, T poison) {
+    this(group, name, queue, poison, null);
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return the number of handled elements
+   */
+  public long getDispatched() {
+    return dispatched;
+  }
+
+  /**
+   * Stop the dispatcher after the elements which are queued now are handled.
+   */
+  public void shutdown() {
+    queue.offer(poison);
+  }
+
+  /**
+   * Stop the dispatcher and wait for it.
+   *
+   * @param timeoutMillis maximum time to wait
+   * @return true when the dispatcher has stopped
+   */
+  public boolean shutdown(long timeoutMillis) {
+    shutdown();
+    try {
+      join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return !isAlive();
+  }
+
+  @Override
+  public void run() {
+    running = true;
+    Logger.trace(getName() + " Started...");
+    List<T> batch = new ArrayList<>(maxBatch);
+    boolean stop = false;
+    try {
+      while (!stop) {
+        batch.add(queue.take());
+        queue.drainTo(batch, maxBatch - 1);
+        stop = dispatch(batch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      //Handle what is left, nothing may get lost
+      batch.clear();
+      queue.drainTo(batch);
+      dispatch(batch);
+      Thread.currentThread().interrupt();
+    } finally {
+      running = false;
+    }
+    Logger.trace(getName() + " stopped after " + dispatched + " elements.");
+  }
+
+  /**
+   * Handle a single element.
+   *
+   * @param element taken from the queue, never the poison
+   */
+  protected void handle(T element) {
+    handler.accept(element);
+  }
+
+  /**
+   * @return true when the poison was in the batch. The elements after the poison were already taken from the queue, so they
+   * are handled as well.
+   */
+  private boolean dispatch(List<T> batch) {
+    boolean stop = false;
+    for (T element : batch) {
+      if (element == poison) {
+        stop = true;
+      } else {
+        try {
+          handle(element);
+        } catch (RuntimeException e) {
+          Logger.error("Error in " + getName() + ". Cause: " + e.getMessage());
+          Logger.trace(e);
+        }
+        dispatched++;
+      }
+    }
+    return stop;
+  }
+}
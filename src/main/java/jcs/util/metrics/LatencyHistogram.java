@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free latency histogram in the style of an HDR histogram.<br>
+ * Values are recorded in nanoseconds in logarithmic buckets, each power of two is split in 16 linear sub buckets, so a percentile
+ * is accurate to about 6%. Values above about 18 minutes are counted in the last bucket.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts;
+  private final LongAdder count;
+  private final LongAdder sum;
+  private final AtomicLong max;
+
+  public LatencyHistogram() {
+    counts = new AtomicLongArray(BUCKETS);
+    count = new LongAdder();
+    sum = new LongAdder();
+    max = new AtomicLong();
+  }
+
+  /**
+   * @param nanos the latency to record, negative values are recorded as 0
+   */
+  public void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    counts.incrementAndGet(indexOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * Record the time passed since a System.nanoTime() timestamp.
+   *
+   * @param startNanos the start timestamp
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the upper bound in nanos of the bucket which contains the percentile
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total = total + snapshot[i];
+    }
+    return percentile(snapshot, total, percentile);
+  }
+
+  public Snapshot getSnapshot() {
+    long[] snapshot = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total = total + snapshot[i];
+    }
+    return new Snapshot(total, getMean(), percentile(snapshot, total, 50), percentile(snapshot, total, 90), percentile(snapshot, total, 99), max.get());
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  private long percentile(long[] snapshot, long total, double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen = seen + snapshot[i];
+      if (seen >= target) {
+        return Math.min(upperBoundOf(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long lowerBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int subBucket = index % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    return lowerBoundOf(index) + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  /**
+   * Point in time view of a histogram, all values in nanos.
+   */
+  public record Snapshot(long count, double mean, long p50, long p90, long p99, long max) {
+
+  }
+}
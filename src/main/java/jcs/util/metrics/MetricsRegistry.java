@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.util.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import org.tinylog.Logger;
+
+/**
+ * Registry of the counters, queue depth gauges and latency histograms of the event pipeline.<br>
+ * The registry and the metrics are lock free. A hot path should look up its metric once and keep the reference.<br>
+ * Metric names are dotted, the first part is the stage, like "cs", "jcs" or "automation".
+ */
+public final class MetricsRegistry {
+
+  public enum Type {
+    COUNTER, GAUGE, LATENCY
+  }
+
+  /**
+   * One metric in a snapshot of the registry.
+   *
+   * @param name of the metric
+   * @param type of the metric
+   * @param value the counter or gauge value, or the number of recorded latencies
+   * @param latency the latency statistics or null
+   */
+  public record Metric(String name, Type type, long value, LatencyHistogram.Snapshot latency) {
+
+  }
+
+  private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+  private static final Map<String, IntSupplier> GAUGES = new ConcurrentHashMap<>();
+  private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+  private MetricsRegistry() {
+  }
+
+  public static LongAdder counter(String name) {
+    return COUNTERS.computeIfAbsent(name, k -> new LongAdder());
+  }
+
+  public static LatencyHistogram histogram(String name) {
+    return HISTOGRAMS.computeIfAbsent(name, k -> new LatencyHistogram());
+  }
+
+  /**
+   * Register a gauge, a gauge with the same name is replaced.<br>
+   * The registry holds on to the supplier and so to its owner, an owner which is closed must remove its gauge.
+   *
+   * @param name of the gauge
+   * @param supplier of the current value, for example the size of a queue
+   */
+  public static void gauge(String name, IntSupplier supplier) {
+    GAUGES.put(name, supplier);
+  }
+
+  /**
+   * Remove a gauge, but only when it is still the supplier of the owner. A gauge which has been replaced by a new owner is
+   * kept.
+   *
+   * @param name of the gauge
+   * @param supplier which was registered by the owner
+   */
+  public static void removeGauge(String name, IntSupplier supplier) {
+    GAUGES.remove(name, supplier);
+  }
+
+  /**
+   * @return all metrics sorted by name
+   */
+  public static List<Metric> snapshot() {
+    Map<String, Metric> metrics = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> e : COUNTERS.entrySet()) {
+      metrics.put(e.getKey(), new Metric(e.getKey(), Type.COUNTER, e.getValue().sum(), null));
+    }
+    for (Map.Entry<String, IntSupplier> e : GAUGES.entrySet()) {
+      int value;
+      try {
+        value = e.getValue().getAsInt();
+      } catch (RuntimeException ex) {
+        value = -1;
+      }
+      metrics.put(e.getKey(), new Metric(e.getKey(), Type.GAUGE, value, null));
+    }
+    for (Map.Entry<String, LatencyHistogram> e : HISTOGRAMS.entrySet()) {
+      LatencyHistogram.Snapshot latency = e.getValue().getSnapshot();
+      metrics.put(e.getKey(), new Metric(e.getKey(), Type.LATENCY, latency.count(), latency));
+    }
+    return new ArrayList<>(metrics.values());
+  }
+
+  /**
+   * Reset the counters and histograms, the gauges show a current value and are kept.
+   */
+  public static void reset() {
+    for (LongAdder counter : COUNTERS.values()) {
+      counter.reset();
+    }
+    for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+      histogram.reset();
+    }
+  }
+
+  /**
+   * Write a snapshot of all metrics as a text table.
+   *
+   * @param file to write to
+   * @throws IOException when the file can not be written
+   */
+  public static void dump(File file) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && !dir.exists()) {
+      dir.mkdirs();
+    }
+    try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8)) {
+      writer.println("# JCS metrics " + LocalDateTime.now() + ", latencies in ms");
+      writer.println(String.format("%-40s %-8s %12s %10s %10s %10s %10s %10s", "name", "type", "value", "mean", "p50", "p90", "p99", "max"));
+      for (Metric metric : snapshot()) {
+        writer.println(format(metric));
+      }
+    }
+    Logger.debug("Dumped metrics to " + file.getAbsolutePath());
+  }
+
+  static String format(Metric metric) {
+    LatencyHistogram.Snapshot l = metric.latency();
+    if (l == null) {
+      return String.format("%-40s %-8s %12d", metric.name(), metric.type(), metric.value());
+    } else {
+      return String.format("%-40s %-8s %12d %10.3f %10.3f %10.3f %10.3f %10.3f", metric.name(), metric.type(), metric.value(),
+              toMillis(l.mean()), toMillis(l.p50()), toMillis(l.p90()), toMillis(l.p99()), toMillis(l.max()));
+    }
+  }
+
+  public static double toMillis(double nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation;
+
+import java.util.concurrent.TimeUnit;
+import jcs.commandStation.events.SensorEvent;
+import jcs.entities.SensorBean;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorEventDebouncerTest {
+
+  private static SensorEvent event(int contactId, boolean active) {
+    SensorBean sb = new SensorBean(null, 1, contactId, null, active ? 1 : 0, null, "marklin.cs", 0);
+    return new SensorEvent(sb);
+  }
+
+  @Test
+  public void testLatestStateWins() throws Exception {
+    System.out.println("latestStateWins");
+    SensorEventDebouncer instance = new SensorEventDebouncer(10, 50, SensorEventDebouncer.OverflowPolicy.BLOCK);
+    instance.offer(event(1, true));
+    instance.offer(event(1, false));
+    SensorEvent last = event(1, false);
+    instance.offer(last);
+
+    //Held for the hold time
+    assertNull(instance.poll(10, TimeUnit.MILLISECONDS));
+    assertSame(last, instance.poll(500, TimeUnit.MILLISECONDS));
+    assertNull(instance.poll(100, TimeUnit.MILLISECONDS));
+
+    assertEquals(3, instance.getReceivedCount());
+    assertEquals(1, instance.getDeliveredCount());
+    assertEquals(2, instance.getSuppressedCount());
+  }
+
+  @Test
+  public void testShortPulseIsDeliveredAsPair() throws Exception {
+    System.out.println("shortPulseIsDeliveredAsPair");
+    SensorEventDebouncer instance = new SensorEventDebouncer(10, 20, SensorEventDebouncer.OverflowPolicy.BLOCK);
+    instance.offer(event(1, false));
+    assertFalse(instance.poll(500, TimeUnit.MILLISECONDS).isActive());
+
+    //A wheel crossing a short contact, with some bounce, all within the hold time
+    SensorEvent on = event(1, true);
+    instance.offer(on);
+    instance.offer(event(1, false));
+    instance.offer(event(1, true));
+    SensorEvent off = event(1, false);
+    instance.offer(off);
+
+    assertSame(on, instance.poll(500, TimeUnit.MILLISECONDS));
+    assertSame(off, instance.poll(10, TimeUnit.MILLISECONDS));
+    assertNull(instance.poll(100, TimeUnit.MILLISECONDS));
+    assertEquals(0, instance.size());
+
+    assertEquals(5, instance.getReceivedCount());
+    assertEquals(3, instance.getDeliveredCount());
+    assertEquals(2, instance.getSuppressedCount());
+  }
+
+  @Test
+  public void testRepeatedStateIsSuppressed() throws Exception {
+    System.out.println("repeatedStateIsSuppressed");
+    SensorEventDebouncer instance = new SensorEventDebouncer(10, 20, SensorEventDebouncer.OverflowPolicy.BLOCK);
+    instance.offer(event(1, true));
+    assertTrue(instance.poll(500, TimeUnit.MILLISECONDS).isActive());
+
+    instance.offer(event(1, true));
+    instance.offer(event(1, true));
+    assertNull(instance.poll(200, TimeUnit.MILLISECONDS));
+    assertEquals(2, instance.getSuppressedCount());
+
+    //A single event is always delivered
+    instance.offer(event(1, true));
+    assertNotNull(instance.poll(500, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testPerSensorHoldTime() throws Exception {
+    System.out.println("perSensorHoldTime");
+    SensorEventDebouncer instance = new SensorEventDebouncer(10, 5000, SensorEventDebouncer.OverflowPolicy.BLOCK);
+    SensorEvent fast = event(2, true);
+    instance.setHoldTime(fast.getSensorBean(), 0);
+    instance.offer(event(1, true));
+    instance.offer(fast);
+
+    assertSame(fast, instance.poll(100, TimeUnit.MILLISECONDS));
+    assertEquals(1, instance.size());
+  }
+
+  @Test
+  public void testOverflowPolicies() throws Exception {
+    System.out.println("overflowPolicies");
+    SensorEventDebouncer dropNewest = new SensorEventDebouncer(2, 0, SensorEventDebouncer.OverflowPolicy.DROP_NEWEST);
+    assertTrue(dropNewest.offer(event(1, true)));
+    assertTrue(dropNewest.offer(event(2, true)));
+    //Coalescing does not need room
+    assertTrue(dropNewest.offer(event(2, false)));
+    assertFalse(dropNewest.offer(event(3, true)));
+    assertEquals(1, dropNewest.getDroppedCount());
+
+    SensorEventDebouncer dropOldest = new SensorEventDebouncer(2, 0, SensorEventDebouncer.OverflowPolicy.DROP_OLDEST);
+    dropOldest.offer(event(1, true));
+    dropOldest.offer(event(2, true));
+    assertTrue(dropOldest.offer(event(3, true)));
+    assertEquals(1, dropOldest.getDroppedCount());
+    assertEquals(2, (int) dropOldest.poll(100, TimeUnit.MILLISECONDS).getContactId());
+    assertEquals(3, (int) dropOldest.poll(100, TimeUnit.MILLISECONDS).getContactId());
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import jcs.entities.SensorBean;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorStateTableTest {
+
+  private static SensorBean sensor(int id, int deviceId, int contactId, boolean active) {
+    SensorBean sb = new SensorBean(id, deviceId, contactId, 0, active ? 1 : 0, 0, "test", 0);
+    sb.setLastUpdatedMillis(1000L);
+    return sb;
+  }
+
+  @Test
+  public void testUpdateDetectsChanges() {
+    System.out.println("updateDetectsChanges");
+    SensorStateTable instance = new SensorStateTable();
+    assertFalse(instance.isKnown(65, 1));
+
+    assertTrue(instance.update(65, 1, true, 2000L));
+    assertTrue(instance.isKnown(65, 1));
+    assertTrue(instance.isActive(65, 1));
+    assertEquals(2000L, instance.getLastChangeMillis(65, 1));
+
+    //Same state, the time of the last change is kept
+    assertFalse(instance.update(65, 1, true, 3000L));
+    assertEquals(2000L, instance.getLastChangeMillis(65, 1));
+
+    assertTrue(instance.update(65, 1, false, 4000L));
+    assertFalse(instance.isActive(65, 1));
+    assertEquals(4000L, instance.getLastChangeMillis(65, 1));
+
+    //Neighbouring contacts and other devices are not touched
+    assertFalse(instance.isKnown(65, 2));
+    assertFalse(instance.isKnown(66, 1));
+  }
+
+  @Test
+  public void testSensorIdMapping() {
+    System.out.println("sensorIdMapping");
+    SensorStateTable instance = new SensorStateTable();
+    instance.register(sensor(7, 0, 1000, true));
+
+    assertEquals(7, (int) instance.getSensorId(0, 1000));
+    assertNull(instance.getSensorId(0, 1001));
+    assertTrue(instance.isKnown(7));
+    assertTrue(instance.isActive(7));
+    assertEquals(1000L, instance.getLastChangeMillis(7));
+
+    assertFalse(instance.isKnown(8));
+    assertFalse(instance.isActive((Integer) null));
+  }
+
+  @Test
+  public void testRegisterDoesNotOverrideKnownState() {
+    System.out.println("registerDoesNotOverrideKnownState");
+    SensorStateTable instance = new SensorStateTable();
+    instance.update(1, 5, true, 5000L);
+
+    instance.register(sensor(3, 1, 5, false));
+    assertTrue(instance.isActive(3));
+    assertEquals(5000L, instance.getLastChangeMillis(3));
+
+    assertTrue(instance.update(sensor(3, 1, 5, false)));
+    assertFalse(instance.isActive(3));
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws InterruptedException {
+    System.out.println("concurrentUpdates");
+    SensorStateTable instance = new SensorStateTable();
+    int threads = 8;
+    int contacts = 200;
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger changes = new AtomicInteger();
+    List<Thread> workers = new ArrayList<>();
+
+    for (int t = 0; t < threads; t++) {
+      Thread worker = new Thread(() -> {
+        try {
+          start.await();
+          for (int c = 0; c < contacts; c++) {
+            if (instance.update(2, c, true, 100L)) {
+              changes.incrementAndGet();
+            }
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      workers.add(worker);
+      worker.start();
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      worker.join(5000);
+    }
+
+    //Exactly one thread wins the change of each contact
+    assertEquals(contacts, changes.get());
+    for (int c = 0; c < contacts; c++) {
+      assertTrue(instance.isActive(2, c));
+    }
+  }
+}
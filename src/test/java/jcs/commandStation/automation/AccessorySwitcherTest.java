@@ -0,0 +1,148 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import jcs.commandStation.events.AccessoryEvent;
+import jcs.commandStation.events.AccessoryEventListener;
+import jcs.entities.AccessoryBean;
+import jcs.entities.AccessoryBean.AccessoryValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccessorySwitcherTest {
+
+  private AccessorySwitcher instance;
+
+  /**
+   * Confirms every switch command at once, unless the accessory is muted.
+   */
+  private static class FakeCommandStation implements AccessorySwitcher.CommandStation {
+
+    final Map<String, List<AccessoryEventListener>> listeners = new ConcurrentHashMap<>();
+    final List<String> muted = new CopyOnWriteArrayList<>();
+    final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+
+    @Override
+    public void switchAccessory(AccessoryBean accessory, AccessoryValue value) {
+      sentAt.put(accessory.getId(), System.nanoTime());
+      if (muted.contains(accessory.getId())) {
+        return;
+      }
+      AccessoryBean state = accessory(accessory.getId(), accessory.getAddress(), accessory.getSwitchTime());
+      state.setAccessoryValue(value);
+      AccessoryEvent event = new AccessoryEvent(state);
+      for (AccessoryEventListener listener : listeners.getOrDefault(accessory.getId(), List.of())) {
+        listener.onAccessoryChange(event);
+      }
+    }
+
+    @Override
+    public void addAccessoryEventListener(String accessoryId, AccessoryEventListener listener) {
+      listeners.computeIfAbsent(accessoryId, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public void removeAccessoryEventListener(String accessoryId, AccessoryEventListener listener) {
+      listeners.getOrDefault(accessoryId, new ArrayList<>()).remove(listener);
+    }
+  }
+
+  static AccessoryBean accessory(String id, int address, Integer switchTime) {
+    AccessoryBean accessory = new AccessoryBean();
+    accessory.setId(id);
+    accessory.setAddress(address);
+    accessory.setSwitchTime(switchTime);
+    accessory.setProtocol(AccessoryBean.Protocol.DCC);
+    return accessory;
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (instance != null) {
+      instance.shutdown();
+    }
+  }
+
+  @Test
+  public void testDecoderKey() {
+    System.out.println("decoderKey");
+    assertEquals(AccessorySwitcher.decoderKey(accessory("1", 1, 200)), AccessorySwitcher.decoderKey(accessory("4", 4, 200)));
+    assertNotEquals(AccessorySwitcher.decoderKey(accessory("4", 4, 200)), AccessorySwitcher.decoderKey(accessory("5", 5, 200)));
+
+    AccessoryBean named = accessory("6", 6, 200);
+    named.setDecoder("k84-1");
+    assertEquals("dcc:k84-1", AccessorySwitcher.decoderKey(named));
+  }
+
+  @Test
+  public void testDifferentDecodersSwitchTogether() {
+    System.out.println("differentDecodersSwitchTogether");
+    FakeCommandStation commandStation = new FakeCommandStation();
+    instance = new AccessorySwitcher(commandStation);
+
+    List<AccessorySwitcher.Command> commands = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      //Every accessory on its own decoder
+      commands.add(new AccessorySwitcher.Command(accessory("sw-" + i, 1 + 4 * i, 250), AccessoryValue.GREEN));
+    }
+
+    assertTrue(instance.switchAll("r1", commands));
+    //Switched one by one this would take 10 x 250 ms
+    assertTrue(instance.getSetupTime("r1") < 1000, "Setup took " + instance.getSetupTime("r1") + " ms");
+    assertTrue(commandStation.listeners.values().stream().allMatch(List::isEmpty));
+  }
+
+  @Test
+  public void testSameDecoderIsPaced() {
+    System.out.println("sameDecoderIsPaced");
+    FakeCommandStation commandStation = new FakeCommandStation();
+    instance = new AccessorySwitcher(commandStation);
+
+    List<AccessorySwitcher.Command> commands = new ArrayList<>();
+    commands.add(new AccessorySwitcher.Command(accessory("sw-1", 1, 100), AccessoryValue.GREEN));
+    commands.add(new AccessorySwitcher.Command(accessory("sw-2", 2, 100), AccessoryValue.RED));
+
+    assertTrue(instance.switchAll("r2", commands));
+    long gap = Math.abs(commandStation.sentAt.get("sw-2") - commandStation.sentAt.get("sw-1")) / 1_000_000;
+    assertTrue(gap >= 90, "Gap was " + gap + " ms");
+  }
+
+  @Test
+  public void testUnconfirmedAccessoryTimesOut() {
+    System.out.println("unconfirmedAccessoryTimesOut");
+    System.setProperty("accessory.confirm.timeout", "200");
+    try {
+      FakeCommandStation commandStation = new FakeCommandStation();
+      commandStation.muted.add("sw-2");
+      instance = new AccessorySwitcher(commandStation);
+
+      List<AccessorySwitcher.Command> commands = new ArrayList<>();
+      commands.add(new AccessorySwitcher.Command(accessory("sw-1", 1, 50), AccessoryValue.GREEN));
+      commands.add(new AccessorySwitcher.Command(accessory("sw-2", 5, 50), AccessoryValue.GREEN));
+
+      assertFalse(instance.switchAll("r3", commands));
+      assertTrue(instance.getSetupTime("r3") >= 200);
+    } finally {
+      System.clearProperty("accessory.confirm.timeout");
+    }
+  }
+}
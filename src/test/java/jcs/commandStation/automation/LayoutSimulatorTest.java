@@ -0,0 +1,172 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.util.ArrayList;
+import java.util.List;
+import static jcs.commandStation.automation.RouteConflictMatrixTest.route;
+import static jcs.commandStation.automation.RouteConflictMatrixTest.tile;
+import jcs.entities.AccessoryBean;
+import jcs.entities.AccessoryBean.AccessoryValue;
+import jcs.entities.BlockBean;
+import jcs.entities.RouteBean;
+import jcs.entities.SensorBean;
+import jcs.entities.TileBean;
+import jcs.entities.TileBean.TileType;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LayoutSimulatorTest {
+
+  private static final long EIGHT_HOURS = 8 * 60 * 60 * 1000L;
+
+  private static SensorBean sensor(int contactId) {
+    SensorBean sensor = new SensorBean();
+    sensor.setId(contactId);
+    sensor.setName("S-" + contactId);
+    sensor.setDeviceId(65);
+    sensor.setContactId(contactId);
+    sensor.setStatus(0);
+    sensor.setPreviousStatus(0);
+    return sensor;
+  }
+
+  private static List<BlockBean> blocks(int count) {
+    List<BlockBean> blocks = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      BlockBean block = new BlockBean(tile("bk-" + i, TileType.BLOCK));
+      block.setMinSensorBean(sensor(2 * i - 1));
+      block.setPlusSensorBean(sensor(2 * i));
+      block.setMinWaitTime(2);
+      block.setMaxWaitTime(10);
+      block.setRandomWait(true);
+      block.setAlwaysStop(true);
+      blocks.add(block);
+    }
+    return blocks;
+  }
+
+  /**
+   * A circle of blocks, every route has a turnout and a straight between the blocks
+   */
+  private static List<RouteBean> circle(int count) {
+    List<RouteBean> routes = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      int next = i % count + 1;
+      TileBean sw = tile("sw-" + i, TileType.SWITCH);
+      sw.setAccessoryBean(new AccessoryBean("sw-" + i, i, null, "W" + i, "rechtsweiche", 0, 2, 200, "mm", "ecos"));
+      TileBean st = tile("st-" + i, TileType.STRAIGHT);
+      RouteBean route = route("bk-" + i, "bk-" + next, tile("bk-" + i, TileType.BLOCK), sw, st, tile("bk-" + next, TileType.BLOCK));
+      route.getRouteElements().get(1).setAccessoryValue(AccessoryValue.GREEN);
+      routes.add(route);
+    }
+    return routes;
+  }
+
+  private static List<LayoutSimulator.Train> trains(int count) {
+    List<LayoutSimulator.Train> trains = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      trains.add(new LayoutSimulator.Train("train-" + i, 800, 300, false, "bk-" + (2 * i - 1)));
+    }
+    return trains;
+  }
+
+  @Test
+  public void testHoursInSeconds() {
+    System.out.println("hoursInSeconds");
+    long start = System.currentTimeMillis();
+    LayoutSimulator instance = new LayoutSimulator(circle(6), blocks(6), trains(3), 42L);
+    LayoutSimulator.Report report = instance.run(EIGHT_HOURS);
+    long duration = System.currentTimeMillis() - start;
+    System.out.println(report + "Took " + duration + " ms");
+
+    assertFalse(report.isDeadlocked());
+    assertEquals(EIGHT_HOURS, report.simulatedMillis());
+    assertTrue(report.blockTransitions() > 1000);
+    assertTrue(report.getTransitionsPerMinute() > 0);
+    assertTrue(duration < 10000);
+    for (int transitions : report.transitionsPerTrain().values()) {
+      assertTrue(transitions > 0);
+    }
+  }
+
+  @Test
+  public void testReproducibleFromSeed() {
+    System.out.println("reproducibleFromSeed");
+    LayoutSimulator.Report first = new LayoutSimulator(circle(6), blocks(6), trains(3), 7L).run(EIGHT_HOURS);
+    LayoutSimulator.Report second = new LayoutSimulator(circle(6), blocks(6), trains(3), 7L).run(EIGHT_HOURS);
+    assertEquals(first, second);
+
+    LayoutSimulator.Report other = new LayoutSimulator(circle(6), blocks(6), trains(3), 8L).run(EIGHT_HOURS);
+    assertNotEquals(first, other);
+  }
+
+  @Test
+  public void testRouteWaitsWhenTheNextBlockIsOccupied() {
+    System.out.println("routeWaitsWhenTheNextBlockIsOccupied");
+    List<LayoutSimulator.Train> trains = List.of(
+            new LayoutSimulator.Train("train-1", 800, 300, false, "bk-1"),
+            new LayoutSimulator.Train("train-2", 800, 300, false, "bk-2"),
+            new LayoutSimulator.Train("train-3", 800, 300, false, "bk-3"));
+    LayoutSimulator.Report report = new LayoutSimulator(circle(4), blocks(4), trains, 1L).run(EIGHT_HOURS);
+
+    assertFalse(report.isDeadlocked());
+    assertTrue(report.failedSearches() > 0);
+    assertTrue(report.maxRouteWaitMillis() > 0);
+    assertTrue(report.getAverageRouteWaitMillis() > 0);
+  }
+
+  @Test
+  public void testDeadlock() {
+    System.out.println("deadlock");
+    List<LayoutSimulator.Train> trains = List.of(
+            new LayoutSimulator.Train("train-1", 800, 300, false, "bk-1"),
+            new LayoutSimulator.Train("train-2", 800, 300, false, "bk-2"),
+            new LayoutSimulator.Train("train-3", 800, 300, false, "bk-3"));
+    LayoutSimulator.Report report = new LayoutSimulator(circle(3), blocks(3), trains, 1L).run(EIGHT_HOURS);
+
+    assertTrue(report.isDeadlocked());
+    assertEquals(0, report.blockTransitions());
+    assertEquals("bk-2", report.deadlock().positions().get("train-2"));
+    assertTrue(report.simulatedMillis() < EIGHT_HOURS);
+  }
+
+  @Test
+  public void testRouteWhichCanNotBeLockedIsNotReserved() {
+    System.out.println("routeWhichCanNotBeLockedIsNotReserved");
+    List<RouteBean> routes = circle(4);
+    //An other dispatcher locks a conflicting route between the search and the lock
+    RouteConflictMatrix refusing = new RouteConflictMatrix(() -> routes) {
+      private int refused;
+
+      @Override
+      boolean tryLock(RouteBean route) {
+        if (refused < 2) {
+          refused++;
+          return false;
+        }
+        return super.tryLock(route);
+      }
+    };
+    List<LayoutSimulator.Train> trains = List.of(new LayoutSimulator.Train("train-1", 800, 300, false, "bk-1"));
+    LayoutSimulator.Report report = new LayoutSimulator(routes, blocks(4), trains, 1L, refusing).run(EIGHT_HOURS);
+
+    assertEquals(2, report.failedLocks());
+    assertEquals(2, report.failedSearches());
+    assertFalse(report.isDeadlocked());
+    assertTrue(report.blockTransitions() > 0);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import jcs.entities.RouteBean;
+import jcs.entities.RouteElementBean;
+import jcs.entities.TileBean;
+import jcs.entities.TileBean.Orientation;
+import jcs.entities.TileBean.TileType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteConflictMatrixTest {
+
+  private List<RouteBean> routes;
+  private AtomicInteger reads;
+  private RouteConflictMatrix instance;
+
+  static RouteBean route(String from, String to, TileBean... tiles) {
+    String id = "[" + from + "+]->[" + to + "-]";
+    List<RouteElementBean> elements = new ArrayList<>();
+    int order = 0;
+    for (TileBean tile : tiles) {
+      RouteElementBean element = new RouteElementBean(id, tile.getId(), tile.getId(), null, order++);
+      element.setTileBean(tile);
+      elements.add(element);
+    }
+    return new RouteBean(id, from, "+", to, "-", null, false, elements);
+  }
+
+  static TileBean tile(String id, TileType type) {
+    return new TileBean(id, type, Orientation.EAST, 0, 0);
+  }
+
+  @BeforeEach
+  public void setUp() {
+    TileBean bk1 = tile("bk-1", TileType.BLOCK);
+    TileBean bk2 = tile("bk-2", TileType.BLOCK);
+    TileBean bk3 = tile("bk-3", TileType.BLOCK);
+    TileBean bk4 = tile("bk-4", TileType.BLOCK);
+    TileBean sw1 = tile("sw-1", TileType.SWITCH);
+    TileBean cr1 = tile("cr-1", TileType.CROSSING);
+    TileBean st1 = tile("st-1", TileType.STRAIGHT);
+
+    routes = new ArrayList<>();
+    //0 and 1 share the switch, 2 crosses 1 on the crossing, 3 shares only a straight with 0
+    routes.add(route("bk-1", "bk-2", bk1, st1, sw1, bk2));
+    routes.add(route("bk-3", "bk-4", bk3, sw1, cr1, bk4));
+    routes.add(route("bk-2", "bk-1", bk2, cr1, bk1));
+    routes.add(route("bk-4", "bk-3", bk4, st1, bk3));
+    reads = new AtomicInteger();
+    instance = new RouteConflictMatrix(() -> {
+      reads.incrementAndGet();
+      return new ArrayList<>(routes);
+    });
+  }
+
+  @Test
+  public void testConflicts() {
+    System.out.println("conflicts");
+    assertFalse(instance.isValid());
+    assertEquals(List.of("[bk-3+]->[bk-4-]"), instance.getConflicts("[bk-1+]->[bk-2-]"));
+    assertEquals(2, instance.getConflicts("[bk-3+]->[bk-4-]").size());
+    //Only the destination block is occupied, bk-4 -> bk-3 ends where bk-3 -> bk-4 starts
+    assertTrue(instance.getConflicts("[bk-4+]->[bk-3-]").isEmpty());
+    assertEquals(1, reads.get());
+    assertEquals(4, instance.size());
+  }
+
+  @Test
+  public void testLockedRoutesFollowEvents() {
+    System.out.println("lockedRoutesFollowEvents");
+    RouteBean r0 = routes.get(0);
+    RouteBean r1 = routes.get(1);
+    RouteBean r2 = routes.get(2);
+    assertTrue(instance.isFree(r1));
+
+    r0.setLocked(true);
+    instance.propertyChange(new PropertyChangeEvent(this, "data.route", null, r0));
+    assertFalse(instance.isFree(r0));
+    assertFalse(instance.isFree(r1));
+    assertTrue(instance.isFree(r2));
+
+    r0.setLocked(false);
+    instance.propertyChange(new PropertyChangeEvent(this, "data.route", null, r0));
+    assertTrue(instance.isFree(r1));
+    assertEquals(1, reads.get());
+  }
+
+  @Test
+  public void testTryLock() {
+    System.out.println("tryLock");
+    assertTrue(instance.tryLock(routes.get(1)));
+    assertFalse(instance.tryLock(routes.get(1)));
+    assertFalse(instance.tryLock(routes.get(0)));
+    assertFalse(instance.tryLock(routes.get(2)));
+    assertTrue(instance.tryLock(routes.get(3)));
+  }
+
+  @Test
+  public void testChangedRouteInvalidates() {
+    System.out.println("changedRouteInvalidates");
+    instance.isFree(routes.get(0));
+    RouteBean changed = route("bk-1", "bk-2", tile("bk-1", TileType.BLOCK), tile("bk-2", TileType.BLOCK));
+    instance.propertyChange(new PropertyChangeEvent(this, "data.route", routes.get(0), changed));
+    assertFalse(instance.isValid());
+
+    routes.set(0, changed);
+    assertTrue(instance.getConflicts(changed.getId()).isEmpty());
+    assertEquals(2, reads.get());
+  }
+}
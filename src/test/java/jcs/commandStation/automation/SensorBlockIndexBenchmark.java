@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jcs.entities.BlockBean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ghost detection lookups per second on a layout with 120 blocks and 240 sensors.<br>
+ * scanBlocks is the former lookup, a scan over a fresh list of all blocks per event; indexLookup uses the sensor block index.<br>
+ * The database query which produced the list for every event is not part of the scan, so the real gain is larger.<br>
+ * Run with the benchmark profile, see BUILDING.md.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorBlockIndexBenchmark {
+
+  private static final int BLOCKS = 120;
+
+  private List<BlockBean> blocks;
+  private SensorBlockIndex index;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    blocks = new ArrayList<>();
+    for (int i = 0; i < BLOCKS; i++) {
+      blocks.add(SensorBlockIndexTest.block("bk-" + i, 2 * i, 2 * i + 1));
+    }
+    index = new SensorBlockIndex(() -> blocks);
+    index.getBlock(0);
+  }
+
+  private Integer nextSensorId() {
+    next = (next + 7) % (2 * BLOCKS);
+    return next;
+  }
+
+  @Benchmark
+  public void scanBlocks(Blackhole bh) {
+    Integer sensorId = nextSensorId();
+    List<BlockBean> all = new ArrayList<>(blocks);
+    for (BlockBean block : all) {
+      if ((block.getMinSensorId().equals(sensorId) || block.getPlusSensorId().equals(sensorId)) && block.getLocomotiveId() == null) {
+        bh.consume(block);
+        break;
+      }
+    }
+  }
+
+  @Benchmark
+  public void indexLookup(Blackhole bh) {
+    BlockBean block = index.getBlock(nextSensorId());
+    if (block != null && block.getLocomotiveId() == null) {
+      bh.consume(block);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder().include(SensorBlockIndexBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
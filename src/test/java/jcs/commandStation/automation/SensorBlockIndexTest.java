@@ -0,0 +1,103 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import jcs.entities.BlockBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorBlockIndexTest {
+
+  private List<BlockBean> blocks;
+  private AtomicInteger reads;
+  private SensorBlockIndex instance;
+
+  static BlockBean block(String id, Integer plusSensorId, Integer minSensorId) {
+    BlockBean block = new BlockBean();
+    block.setId(id);
+    block.setTileId(id);
+    block.setPlusSensorId(plusSensorId);
+    block.setMinSensorId(minSensorId);
+    return block;
+  }
+
+  @BeforeEach
+  public void setUp() {
+    blocks = new ArrayList<>();
+    blocks.add(block("bk-1", 1, 2));
+    blocks.add(block("bk-2", 3, 4));
+    reads = new AtomicInteger();
+    instance = new SensorBlockIndex(() -> {
+      reads.incrementAndGet();
+      return new ArrayList<>(blocks);
+    });
+  }
+
+  @Test
+  public void testLookupBuildsOnce() {
+    System.out.println("lookupBuildsOnce");
+    assertFalse(instance.isValid());
+
+    assertEquals("bk-1", instance.getBlock(1).getId());
+    assertEquals("bk-1", instance.getBlock(2).getId());
+    assertEquals("bk-2", instance.getBlock(4).getId());
+    assertNull(instance.getBlock(5));
+    assertNull(instance.getBlock(null));
+
+    assertEquals(1, reads.get());
+    assertEquals(4, instance.size());
+  }
+
+  @Test
+  public void testBlockChangeIsAppliedIncrementally() {
+    System.out.println("blockChangeIsAppliedIncrementally");
+    instance.getBlock(1);
+
+    //bk-2 is moved to other sensors
+    BlockBean changed = block("bk-2", 5, 6);
+    instance.propertyChange(new PropertyChangeEvent(this, "data.block", blocks.get(1), changed));
+
+    assertNull(instance.getBlock(3));
+    assertNull(instance.getBlock(4));
+    assertSame(changed, instance.getBlock(5));
+    assertSame(changed, instance.getBlock(6));
+
+    instance.propertyChange(new PropertyChangeEvent(this, "data.block.deleted", blocks.get(0), null));
+    assertNull(instance.getBlock(1));
+
+    assertEquals(1, reads.get());
+  }
+
+  @Test
+  public void testInvalidatedIndexIsRebuilt() {
+    System.out.println("invalidatedIndexIsRebuilt");
+    instance.getBlock(1);
+
+    blocks.clear();
+    blocks.add(block("bk-3", 7, 8));
+    instance.propertyChange(new PropertyChangeEvent(this, "data.block.deleted", null, null));
+    assertFalse(instance.isValid());
+
+    assertNull(instance.getBlock(1));
+    assertEquals("bk-3", instance.getBlock(7).getId());
+    assertEquals(2, reads.get());
+  }
+}
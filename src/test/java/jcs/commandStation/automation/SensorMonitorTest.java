@@ -276,6 +276,40 @@ public class SensorMonitorTest {
 
   @Order(7)
   @Test
+  public void testGhostIsDetectedAgainAfterReset() {
+    System.out.println("ghostIsDetectedAgainAfterReset");
+    SensorMonitor instance = new SensorMonitor();
+    instance.registerAllSensors();
+
+    SensorBean sensor0 = instance.getSensorBeans().get(0);
+    sensor0.setActive(true);
+    sensor0.setPreviousActive(false);
+    instance.handleSensorEvent(new SensorEvent(sensor0));
+    assertTrue(instance.isGhostDetected());
+    assertFalse(JCS.getJcsCommandStation().isPowerOn());
+
+    //Reset the ghost like the layout canvas does, only the block state changes
+    BlockBean block1 = ps.getBlockByTileId("bk-1");
+    block1.setBlockState(BlockBean.BlockState.FREE);
+    ps.persist(block1);
+    JCS.getJcsCommandStation().switchPower(true);
+    assertFalse(instance.isGhostDetected());
+
+    //The sensor is released and activated again, the indexed block must be free now
+    sensor0.setActive(false);
+    sensor0.setPreviousActive(true);
+    instance.handleSensorEvent(new SensorEvent(sensor0));
+    sensor0.setActive(true);
+    sensor0.setPreviousActive(false);
+    instance.handleSensorEvent(new SensorEvent(sensor0));
+
+    assertTrue(instance.isGhostDetected());
+    assertFalse(JCS.getJcsCommandStation().isPowerOn());
+    assertEquals(BlockBean.BlockState.GHOST, ps.getBlockByTileId("bk-1").getBlockState());
+  }
+
+  @Order(8)
+  @Test
   public void testOnSensorChangeNoGhost() {
     System.out.println("onSensorChangeNoGhost");
     SensorMonitor instance = new SensorMonitor();
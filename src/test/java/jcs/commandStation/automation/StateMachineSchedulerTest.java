@@ -0,0 +1,118 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.automation;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StateMachineSchedulerTest {
+
+  @Test
+  public void testTriggerRunsOnVirtualThread() throws InterruptedException {
+    System.out.println("triggerRunsOnVirtualThread");
+    CountDownLatch done = new CountDownLatch(1);
+    AtomicInteger virtual = new AtomicInteger();
+    StateMachineScheduler.SerialTask task = new StateMachineScheduler.SerialTask("STM->TEST", () -> {
+      if (Thread.currentThread().isVirtual()) {
+        virtual.incrementAndGet();
+      }
+      done.countDown();
+    });
+
+    task.trigger();
+    assertTrue(done.await(2, TimeUnit.SECONDS));
+    assertTrue(task.awaitIdle(2000));
+    assertEquals(1, virtual.get());
+    assertFalse(task.isRunning());
+  }
+
+  @Test
+  public void testTriggersDuringRunAreCoalesced() throws InterruptedException {
+    System.out.println("triggersDuringRunAreCoalesced");
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger runs = new AtomicInteger();
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+
+    StateMachineScheduler.SerialTask task = new StateMachineScheduler.SerialTask("STM->TEST", () -> {
+      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+      runs.incrementAndGet();
+      started.countDown();
+      try {
+        release.await(2, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      active.decrementAndGet();
+    });
+
+    task.trigger();
+    assertTrue(started.await(2, TimeUnit.SECONDS));
+    //Triggers while the first run is blocked lead to exactly one more run
+    for (int i = 0; i < 10; i++) {
+      task.trigger();
+    }
+    release.countDown();
+
+    assertTrue(task.awaitIdle(2000));
+    assertEquals(2, runs.get());
+    assertEquals(1, maxActive.get());
+  }
+
+  @Test
+  public void testNoTriggerIsLost() throws InterruptedException {
+    System.out.println("noTriggerIsLost");
+    AtomicInteger pending = new AtomicInteger();
+    AtomicInteger handled = new AtomicInteger();
+    StateMachineScheduler.SerialTask task = new StateMachineScheduler.SerialTask("STM->TEST", () -> {
+      handled.addAndGet(pending.getAndSet(0));
+    });
+
+    Thread[] producers = new Thread[4];
+    for (int p = 0; p < producers.length; p++) {
+      producers[p] = Thread.ofPlatform().start(() -> {
+        for (int i = 0; i < 1000; i++) {
+          pending.incrementAndGet();
+          task.trigger();
+        }
+      });
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    long deadline = System.currentTimeMillis() + 2000;
+    while (handled.get() < 4000 && System.currentTimeMillis() < deadline) {
+      task.awaitIdle(100);
+    }
+    assertEquals(4000, handled.get());
+  }
+
+  @Test
+  public void testSharedTimer() throws InterruptedException {
+    System.out.println("sharedTimer");
+    CountDownLatch ticks = new CountDownLatch(3);
+    Future<?> future = StateMachineScheduler.SHARED.scheduleAtFixedRate(ticks::countDown, 0, 10, TimeUnit.MILLISECONDS);
+    assertTrue(ticks.await(2, TimeUnit.SECONDS));
+    future.cancel(false);
+    assertTrue(future.isCancelled());
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.dccex.connection;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DccExCommandPipelineTest {
+
+  private final List<String> written = new CopyOnWriteArrayList<>();
+  private DccExCommandPipeline instance;
+
+  @AfterEach
+  public void tearDown() {
+    if (instance != null) {
+      instance.close();
+    }
+  }
+
+  private void awaitWritten(int count) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 2000;
+    while (written.size() < count && System.currentTimeMillis() < timeout) {
+      Thread.sleep(5);
+    }
+    assertEquals(count, written.size(), "Written: " + written);
+  }
+
+  private void awaitWritten(String expected) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 2000;
+    while (!expected.equals(String.join("", written)) && System.currentTimeMillis() < timeout) {
+      Thread.sleep(5);
+    }
+    assertEquals(expected, String.join("", written));
+  }
+
+  @Test
+  public void testResponsesAreCorrelatedByOpcode() throws Exception {
+    System.out.println("responsesAreCorrelatedByOpcode");
+    instance = new DccExCommandPipeline("TEST", written::add, 4, 2000);
+    instance.start();
+
+    CompletableFuture<String> power = instance.submit("<1>");
+    CompletableFuture<String> version = instance.submit("<s>");
+    awaitWritten("<1><s>");
+
+    assertTrue(instance.onResponse("<iDCC-EX V-5.0.7 / MEGA / STANDARD_MOTOR_SHIELD G-9db6d36>\n"));
+    assertTrue(instance.onResponse("<p1 MAIN>"));
+    assertEquals("<p1 MAIN>", power.get(1, TimeUnit.SECONDS));
+    assertEquals("<iDCC-EX V-5.0.7 / MEGA / STANDARD_MOTOR_SHIELD G-9db6d36>", version.get(1, TimeUnit.SECONDS));
+
+    //Nothing is waiting anymore
+    assertFalse(instance.onResponse("<p0>"));
+  }
+
+  @Test
+  public void testBroadcastsAreNotConsumed() throws Exception {
+    System.out.println("broadcastsAreNotConsumed");
+    instance = new DccExCommandPipeline("TEST", written::add, 4, 2000);
+    instance.start();
+
+    CompletableFuture<String> power = instance.submit("<1>");
+    awaitWritten("<1>");
+    assertFalse(instance.onResponse("<l 3 1 150 0>"));
+    assertFalse(instance.onResponse("<Q 5>"));
+    assertFalse(power.isDone());
+    assertTrue(instance.onResponse("<p1>"));
+    assertTrue(power.isDone());
+  }
+
+  @Test
+  public void testThrottleCommandsAreCoalescedPerCab() throws Exception {
+    System.out.println("throttleCommandsAreCoalescedPerCab");
+    CountDownLatch firstWrite = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    instance = new DccExCommandPipeline("TEST", messages -> {
+      written.add(messages);
+      firstWrite.countDown();
+      try {
+        release.await(2, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, 4, 2000);
+    instance.start();
+
+    CompletableFuture<String> first = instance.submit("<t 3 10 1>");
+    assertTrue(firstWrite.await(2, TimeUnit.SECONDS));
+
+    //The writer is busy, so these are queued
+    CompletableFuture<String> second = instance.submit("<t 3 20 1>");
+    CompletableFuture<String> other = instance.submit("<t 4 5 0>");
+    CompletableFuture<String> third = instance.submit("<t 3 30 1>");
+    CompletableFuture<String> update = instance.submit("<t 3>");
+    assertSame(second, third);
+    release.countDown();
+
+    awaitWritten(2);
+    assertEquals("<t 3 10 1>", written.get(0));
+    //The superseding command is queued at the tail, after the command for cab 4
+    assertEquals("<t 4 5 0><t 3 30 1><t 3>", written.get(1));
+    assertEquals("<t 3 10 1>", first.get(1, TimeUnit.SECONDS));
+    assertEquals("<t 3 30 1>", second.get(1, TimeUnit.SECONDS));
+    assertEquals("<t 4 5 0>", other.get(1, TimeUnit.SECONDS));
+    assertEquals("<t 3>", update.get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testEmergencyStopIsNotCoalesced() throws Exception {
+    System.out.println("emergencyStopIsNotCoalesced");
+    CountDownLatch firstWrite = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    instance = new DccExCommandPipeline("TEST", messages -> {
+      written.add(messages);
+      firstWrite.countDown();
+      try {
+        release.await(2, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, 4, 2000);
+    instance.start();
+
+    instance.submit("<1>");
+    assertTrue(firstWrite.await(2, TimeUnit.SECONDS));
+
+    //The writer is busy, so these are queued
+    CompletableFuture<String> speed = instance.submit("<t 3 50 1>");
+    CompletableFuture<String> stop = instance.submit("<t 3 -1 1>");
+    CompletableFuture<String> next = instance.submit("<t 3 20 1>");
+    CompletableFuture<String> last = instance.submit("<t 3 10 1>");
+    assertSame(speed, stop);
+    assertNotSame(stop, next);
+    assertSame(next, last);
+    release.countDown();
+
+    awaitWritten(2);
+    assertEquals("<t 3 -1 1><t 3 10 1>", written.get(1));
+  }
+
+  @Test
+  public void testInFlightLimitAndTimeout() throws Exception {
+    System.out.println("inFlightLimitAndTimeout");
+    instance = new DccExCommandPipeline("TEST", written::add, 1, 200);
+    instance.start();
+
+    CompletableFuture<String> power = instance.submit("<1>");
+    CompletableFuture<String> version = instance.submit("<s>");
+    CompletableFuture<String> function = instance.submit("<F 3 0 1>");
+    awaitWritten("<1>");
+
+    //The response frees the in flight slot
+    assertTrue(instance.onResponse("<p1>"));
+    assertEquals("<p1>", power.get(1, TimeUnit.SECONDS));
+    awaitWritten("<1><s><F 3 0 1>");
+    assertEquals("<F 3 0 1>", function.get(1, TimeUnit.SECONDS));
+
+    //No response for the version request
+    ExecutionException ex = assertThrows(ExecutionException.class, () -> version.get(2, TimeUnit.SECONDS));
+    assertTrue(ex.getCause() instanceof TimeoutException);
+  }
+
+  @Test
+  public void testThrottleCab() {
+    System.out.println("throttleCab");
+    assertEquals("3", DccExCommandPipeline.getThrottleCab("<t 3 10 1>"));
+    assertNull(DccExCommandPipeline.getThrottleCab("<t 3>"));
+    assertNull(DccExCommandPipeline.getThrottleCab("<T 1 0>"));
+    assertNull(DccExCommandPipeline.getThrottleCab("<1>"));
+    assertTrue(DccExCommandPipeline.isEmergencyStop("<t 3 -1 1>"));
+    assertFalse(DccExCommandPipeline.isEmergencyStop("<t 3 0 1>"));
+    assertFalse(DccExCommandPipeline.isEmergencyStop("<t 3>"));
+  }
+}
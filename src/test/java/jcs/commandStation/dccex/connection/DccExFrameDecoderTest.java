@@ -0,0 +1,37 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.dccex.connection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DccExFrameDecoderTest {
+
+  @Test
+  public void testDecode() {
+    System.out.println("decode");
+    DccExFrameDecoder instance = new DccExFrameDecoder();
+    ByteBuffer buffer = ByteBuffer.wrap("\n<p1 MAIN>\r\n<* a -> b *>\n<l 3 1 128 0>\n<H 1".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("<p1 MAIN>", instance.decode(buffer));
+    assertEquals("<* a -> b *>", instance.decode(buffer));
+    assertEquals("<l 3 1 128 0>", instance.decode(buffer));
+    assertNull(instance.decode(buffer));
+    assertEquals("<H 1", StandardCharsets.UTF_8.decode(buffer).toString());
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.esu.ecos;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the former string splitting of ECoS replies into a value map with the single pass EcosReplyParser.<br>
+ * The replies have the format the EcosVirtualConnection answers with: the details of a locomotive with 32 functions and an
+ * accessory list of 100 accessories.<br>
+ * Run with the benchmark profile, see BUILDING.md. Add -prof gc to the options to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EcosReplyParserBenchmark {
+
+  private String locomotiveDetails;
+  private String accessoryList;
+  private EcosReplyParser parser;
+
+  @Setup
+  public void setUp() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("<REPLY get(1001, name, addr, protocol,dir,speed,speedstep,active,locodesc,func)>");
+    sb.append("1001 name[\"SNCB/NMBS HLE 27\"]1001 addr[3]1001 protocol[DCC28]1001 dir[0]1001 speed[0]1001 speedstep[0]");
+    sb.append("1001 active[0]1001 locodesc[\"LOCO_TYPE_E,IMAGE_TYPE_INT,2\"]");
+    for (int f = 0; f < 32; f++) {
+      sb.append("1001 func[").append(f).append(",").append(f % 2).append("]");
+    }
+    for (int f = 0; f < 32; f++) {
+      sb.append("1001 funcdesc[").append(f).append(",").append(f + 7).append("]");
+    }
+    sb.append("<END 0 (OK)>");
+    locomotiveDetails = sb.toString();
+
+    sb = new StringBuilder();
+    sb.append("<REPLY queryObjects(11, name1,addr,protocol,symbol)>");
+    for (int i = 0; i < 100; i++) {
+      int id = AccessoryManager.ACCESSORY_OFFSET + i;
+      sb.append(id).append(" name1[\"W").append(i + 1).append("\"]");
+      sb.append(id).append(" addr[").append(i + 1).append("]");
+      sb.append(id).append(" protocol[DCC]");
+      sb.append(id).append(" symbol[").append(i % 3).append("]");
+    }
+    sb.append("<END 0 (OK)>");
+    accessoryList = sb.toString();
+
+    parser = new EcosReplyParser();
+  }
+
+  @Benchmark
+  public void legacyLocomotiveDetails(Blackhole bh) {
+    bh.consume(legacyValueMap(locomotiveDetails, "1001"));
+  }
+
+  @Benchmark
+  public void parserLocomotiveDetails(Blackhole bh) {
+    consume(parser.reset(locomotiveDetails), bh);
+  }
+
+  @Benchmark
+  public void legacyAccessoryList(Blackhole bh) {
+    bh.consume(legacyValueMap(accessoryList, "11"));
+  }
+
+  @Benchmark
+  public void parserAccessoryList(Blackhole bh) {
+    consume(parser.reset(accessoryList), bh);
+  }
+
+  private static void consume(EcosReplyParser values, Blackhole bh) {
+    while (values.next()) {
+      bh.consume(values.getObjectId());
+      for (int i = 0; i < values.size(); i++) {
+        bh.consume(values.getValue(i));
+      }
+    }
+  }
+
+  /**
+   * The former EcosMessage.getValueMap.
+   */
+  private static Map<String, Object> legacyValueMap(String reply, String id) {
+    Map<String, Object> valueMap = new HashMap<>();
+    String content = reply.substring(reply.indexOf(")>") + 2, reply.indexOf(EcosMessage.END));
+    content = content.replace("]", "]\n");
+    String[] lines = content.split("\n");
+    String dId = null;
+    for (String line : lines) {
+      int idEnd = line.indexOf(" ");
+      if (idEnd > 0) {
+        dId = line.substring(0, idEnd);
+        if (dId.equals(id)) {
+          valueMap.put("id", dId);
+        } else {
+          Map<String, Object> vm = new HashMap<>();
+          vm.put("id", dId);
+          valueMap.put(dId, vm);
+        }
+      }
+      int valKeyStart = idEnd + 1;
+      int valStart = line.indexOf("[");
+      int valEnd = line.indexOf("]");
+      if (valStart >= 0 && valEnd > 0) {
+        String valKey = line.substring(valKeyStart, valStart);
+        String value = line.substring(valStart + 1, valEnd).replaceAll("\"", "");
+        if (dId != null && !dId.equals(id)) {
+          Map<String, Object> vm = (Map<String, Object>) valueMap.get(dId);
+          vm.put(valKey, value);
+        } else if (Ecos.FUNCTION.equals(valKey) || Ecos.FUNCTION_DESC.equals(valKey)) {
+          Object functions = valueMap.get(valKey);
+          valueMap.put(valKey, (functions == null ? "" : functions + ",") + "[" + value + "]");
+        } else {
+          valueMap.put(valKey, value);
+        }
+      }
+    }
+    return valueMap;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder().include(EcosReplyParserBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
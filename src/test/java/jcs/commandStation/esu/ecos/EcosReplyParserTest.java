@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.esu.ecos;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EcosReplyParserTest {
+
+  @Test
+  public void testObjectsWithInheritedIds() {
+    System.out.println("objectsWithInheritedIds");
+    String rx = "<REPLY queryObjects(11, name1,addr)>20000 name1[\"W1\"] addr[1]20001 name1[\"W2\"] addr[2]<END 0 (OK)>";
+    EcosReplyParser instance = new EcosReplyParser(rx);
+
+    assertTrue(instance.next());
+    assertEquals("20000", instance.getId());
+    assertEquals(20000, instance.getObjectId());
+    assertEquals(2, instance.size());
+    assertEquals("W1", instance.get(Ecos.NAME1));
+    assertEquals(1, instance.getInt(Ecos.ADDRESS, -1));
+
+    assertTrue(instance.next());
+    assertTrue(instance.isObject(20001));
+    assertEquals("W2", instance.get(Ecos.NAME1));
+    assertEquals(2, instance.getInt(Ecos.ADDRESS, -1));
+
+    assertFalse(instance.next());
+  }
+
+  @Test
+  public void testRepeatedIdsAreOneObject() {
+    System.out.println("repeatedIdsAreOneObject");
+    String rx = "<REPLY get(1001,name,func)>\r\n1001 name[\"SNCB/NMBS HLE 27\"]\r\n1001 func[0,1]\r\n1001 func[1,0]\r\n<END 0 (OK)>\r\n";
+    EcosReplyParser instance = new EcosReplyParser(rx);
+
+    assertTrue(instance.next());
+    assertEquals(3, instance.size());
+    assertEquals("SNCB/NMBS HLE 27", instance.get(Ecos.NAME));
+    assertTrue(instance.isKey(1, Ecos.FUNCTION));
+    assertEquals("0,1", instance.getValue(1));
+    assertEquals("1,0", instance.getValue(2));
+    assertFalse(instance.next());
+  }
+
+  @Test
+  public void testQuotedValuesAndKeysWithSpaces() {
+    System.out.println("quotedValuesAndKeysWithSpaces");
+    String rx = "<EVENT 11>11 msg[LIST_CHANGED]20006 appended11 size[7]20006 name3[\">0001[<\"]<END 0 (OK)>";
+    EcosReplyParser instance = new EcosReplyParser(rx);
+
+    assertTrue(instance.next());
+    assertTrue(instance.isObject(11));
+    assertEquals("LIST_CHANGED", instance.get(Ecos.MSG));
+
+    assertTrue(instance.next());
+    assertEquals("20006", instance.getId());
+    assertEquals(7, instance.getInt("appended11 size", -1));
+    assertEquals(">0001[<", instance.get(Ecos.NAME3));
+    assertFalse(instance.has(Ecos.MSG));
+    assertFalse(instance.next());
+  }
+
+  @Test
+  public void testHexadecimalValue() {
+    System.out.println("hexadecimalValue");
+    EcosReplyParser instance = new EcosReplyParser("<EVENT 100>100 state[0x8001]<END 0 (OK)>");
+
+    assertTrue(instance.next());
+    assertEquals(0x8001, instance.getInt(Ecos.STATE, -1));
+    assertEquals(-1, instance.getInt(Ecos.PORTS, -1));
+
+    instance.reset("<EVENT 100>100 state[on]<END 0 (OK)>");
+    assertTrue(instance.next());
+    assertThrows(NumberFormatException.class, () -> instance.getInt(Ecos.STATE, -1));
+  }
+
+  @Test
+  public void testReset() {
+    System.out.println("reset");
+    EcosReplyParser instance = new EcosReplyParser("<REPLY get(26,size)>26 size[3]<END 0 (OK)>");
+    assertTrue(instance.next());
+    assertEquals(3, instance.getInt(Ecos.SIZE, -1));
+
+    instance.reset("<REPLY get(27,size)>27 size[2]<END 0 (OK)>");
+    assertTrue(instance.next());
+    assertTrue(instance.isObject(27));
+    assertEquals(2, instance.getInt(Ecos.SIZE, -1));
+    assertFalse(instance.next());
+  }
+}
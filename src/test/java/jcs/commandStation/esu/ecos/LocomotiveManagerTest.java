@@ -159,4 +159,29 @@ public class LocomotiveManagerTest {
 
   }
 
+  @Test
+  public void testFunctionEvent() {
+    System.out.println("functionEvent");
+    String tx = "get(1001,name,addr,protocol,dir,speed,speedstep,active,locodesc,func,funcdesc)";
+    String rx = "<REPLY get(1001,name,addr,protocol,dir,speed,speedstep,active,locodesc,func,funcdesc)>1001 name[\"SNCB/NMBS HLE 27\"]1001 addr[3]1001 protocol[DCC128]1001 dir[0]1001 speed[0]1001 speedstep[0]1001 active[1]1001 locodesc[LOCO_TYPE_E,IMAGE_TYPE_INT,2]1001 func[0,0]1001 func[1,0]1001 func[2,0]1001 funcdesc[0,3]1001 funcdesc[1,7]1001 funcdesc[2,37,moment]<END 0 (OK)>";
+
+    EcosMessage get = new EcosMessage(tx);
+    get.addResponse(rx);
+    LocomotiveManager instance = new LocomotiveManager(null, get);
+
+    FunctionBean f1 = instance.getLocomotives().get(1001L).getFunctions().get(1);
+    assertFalse(f1.isOn());
+    assertEquals((Integer) 7, f1.getFunctionType());
+
+    instance.update(new EcosMessage("<EVENT 1001>1001 func[1,1]<END 0 (OK)>"));
+
+    Map<Integer, FunctionBean> functions = instance.getLocomotives().get(1001L).getFunctions();
+    assertEquals(3, functions.size());
+    assertTrue(functions.get(1).isOn());
+    assertEquals((Integer) 7, functions.get(1).getFunctionType());
+    //The other functions are not in the event so they keep their value
+    assertFalse(functions.get(0).isOn());
+    assertEquals((Integer) 37, functions.get(2).getFunctionType());
+  }
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.esu.ecos.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EcosFrameDecoderTest {
+
+  private static ByteBuffer buffer(String text) {
+    return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testDecodeReplyAndEvent() {
+    System.out.println("decodeReplyAndEvent");
+    EcosFrameDecoder instance = new EcosFrameDecoder();
+    ByteBuffer buffer = buffer("<REPLY get(1, status)>\r\n1 status[GO]\r\n<END 0 (OK)>\r\n<EVENT 1>\n1 status[STOP]\n<END 0 (OK)>\n");
+
+    assertEquals("<REPLY get(1, status)>\n1 status[GO]\n<END 0 (OK)>\n", instance.decode(buffer));
+    assertEquals("<EVENT 1>\n1 status[STOP]\n<END 0 (OK)>\n", instance.decode(buffer));
+    assertNull(instance.decode(buffer));
+    assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void testIncompleteBlockIsNotConsumed() {
+    System.out.println("incompleteBlockIsNotConsumed");
+    EcosFrameDecoder instance = new EcosFrameDecoder();
+    ByteBuffer buffer = buffer("garbage\n<REPLY queryObjects(10, name)>\n1000 name[\"BR 86\"]\n");
+
+    assertNull(instance.decode(buffer));
+    //The unrecognised line is skipped, the partial reply is kept
+    assertEquals(8, buffer.position());
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.marklin.cs.can;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the former CAN frame decoding and encoding, which created temporary arrays and a response list per frame, with the
+ * ByteBuffer based codec used by the CS connection.<br>
+ * Run with the benchmark profile, see BUILDING.md. Add -prof gc to the options to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CanMessageCodecBenchmark {
+
+  //Feedback event of S88 contact 1 with response bit and the GFP hash
+  private static final byte[] FRAME = new byte[]{0x00, 0x23, 0x37, 0x7e, 0x08, 0x00, 0x00, 0x00, 0x01, 0x00, 0x01, 0x00, 0x64};
+
+  private ByteBuffer rxFrame;
+  private ByteBuffer txFrame;
+  private CanMessage message;
+
+  @Setup
+  public void setUp() {
+    rxFrame = ByteBuffer.wrap(FRAME.clone());
+    txFrame = ByteBuffer.allocate(CanMessage.MESSAGE_SIZE);
+    message = new CanMessage(FRAME);
+  }
+
+  @Benchmark
+  public void legacyDecode(Blackhole bh) {
+    byte[] frame = new byte[CanMessage.MESSAGE_SIZE];
+    System.arraycopy(FRAME, 0, frame, 0, CanMessage.MESSAGE_SIZE);
+    byte[] h = new byte[CanMessage.HASH_SIZE];
+    h[0] = frame[2];
+    h[1] = frame[3];
+    byte[] data = new byte[CanMessage.DATA_SIZE];
+    System.arraycopy(frame, 5, data, 0, CanMessage.DATA_SIZE);
+    byte[] uid = new byte[4];
+    System.arraycopy(data, 0, uid, 0, uid.length);
+
+    bh.consume(new LinkedList<CanMessage>());
+    bh.consume(frame[1]);
+    bh.consume(CanMessage.toInt(h));
+    bh.consume(CanMessage.toInt(uid));
+  }
+
+  @Benchmark
+  public void bufferDecode(Blackhole bh) {
+    rxFrame.clear();
+    CanMessage m = new CanMessage(rxFrame);
+    bh.consume(m.getCommand());
+    bh.consume(m.getDeviceUidNumberFromMessage());
+  }
+
+  @Benchmark
+  public void legacyEncode(Blackhole bh) {
+    byte[] msg = new byte[CanMessage.MESSAGE_SIZE];
+    msg[0] = (byte) message.getPriority();
+    msg[1] = (byte) message.getCommand();
+    byte[] h = CanMessage.to2Bytes(CanMessage.toInt(message.getHash()));
+    msg[2] = h[0];
+    msg[3] = h[1];
+    msg[4] = (byte) message.getDlc();
+    System.arraycopy(message.getData(), 0, msg, 5, CanMessage.DATA_SIZE);
+    bh.consume(msg);
+  }
+
+  @Benchmark
+  public void bufferEncode(Blackhole bh) {
+    txFrame.clear();
+    message.writeTo(txFrame);
+    bh.consume(txFrame.position());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder().include(CanMessageCodecBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
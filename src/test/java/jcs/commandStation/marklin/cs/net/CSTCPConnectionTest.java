@@ -0,0 +1,116 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.marklin.cs.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import jcs.commandStation.marklin.cs.can.CanMessage;
+import jcs.commandStation.marklin.cs.can.CanMessageFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the pipelined request handling of the CSTCPConnection against a local stand-in for the Central Station.<br>
+ * The stand-in echoes every request with the response bit set, except for config data requests, which are never answered.
+ */
+public class CSTCPConnectionTest {
+
+  private static final int GFP_UID = 1668498828;
+
+  private ServerSocket serverSocket;
+  private Thread standIn;
+  private CSTCPConnection connection;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    serverSocket = new ServerSocket(CSConnection.CS_RX_PORT, 1, InetAddress.getLoopbackAddress());
+    standIn = new Thread(this::serve, "CS-STAND-IN");
+    standIn.start();
+
+    connection = new CSTCPConnection(InetAddress.getLoopbackAddress());
+  }
+
+  @AfterEach
+  public void tearDown() throws Exception {
+    connection.close();
+    serverSocket.close();
+    standIn.join(1000);
+  }
+
+  private void serve() {
+    try (Socket socket = serverSocket.accept()) {
+      DataInputStream din = new DataInputStream(socket.getInputStream());
+      DataOutputStream dos = new DataOutputStream(socket.getOutputStream());
+      byte[] frame = new byte[CanMessage.MESSAGE_SIZE];
+      while (true) {
+        din.readFully(frame);
+        CanMessage request = new CanMessage(frame);
+        if (request.getCommand() != CanMessage.REQUEST_CONFIG_DATA) {
+          byte[] response = request.getMessage();
+          response[1] = (byte) (request.getCommand() + 1);
+          dos.write(response);
+          dos.flush();
+        }
+      }
+    } catch (IOException ex) {
+      //Stand-in closed
+    }
+  }
+
+  @Test
+  public void testSpeedChangeIsNotBlockedByConfigDataRequest() throws Exception {
+    System.out.println("speedChangeIsNotBlockedByConfigDataRequest");
+    assertTrue(connection.isConnected());
+
+    CompletableFuture<CanMessage> configRequest = connection.sendCanMessageAsync(CanMessageFactory.requestConfigData(GFP_UID, "loks"));
+
+    long start = System.currentTimeMillis();
+    CanMessage speedMessage = connection.sendCanMessage(CanMessageFactory.setLocSpeed(16390, 500, GFP_UID));
+    long elapsed = System.currentTimeMillis() - start;
+
+    assertTrue(speedMessage.isResponseComplete());
+    assertEquals(CanMessage.LOC_VELOCITY_RESP, speedMessage.getResponse().getCommand());
+    assertTrue(elapsed < 1000, "Speed change took " + elapsed + " ms");
+    assertFalse(configRequest.isDone());
+
+    //The unanswered config data request completes after the long timeout without responses
+    CanMessage configMessage = configRequest.get(6, TimeUnit.SECONDS);
+    assertTrue(configMessage.getResponses().isEmpty());
+  }
+
+  @Test
+  public void testResponsesAreMatchedByUid() throws Exception {
+    System.out.println("responsesAreMatchedByUid");
+    CompletableFuture<CanMessage> loc1 = connection.sendCanMessageAsync(CanMessageFactory.setLocSpeed(16390, 100, GFP_UID));
+    CompletableFuture<CanMessage> loc2 = connection.sendCanMessageAsync(CanMessageFactory.setLocSpeed(16391, 200, GFP_UID));
+
+    CanMessage m1 = loc1.get(2, TimeUnit.SECONDS);
+    CanMessage m2 = loc2.get(2, TimeUnit.SECONDS);
+
+    assertEquals(1, m1.getResponses().size());
+    assertEquals(1, m2.getResponses().size());
+    assertEquals(16390, m1.getResponse().getDeviceUidNumberFromMessage());
+    assertEquals(16391, m2.getResponse().getDeviceUidNumberFromMessage());
+  }
+}
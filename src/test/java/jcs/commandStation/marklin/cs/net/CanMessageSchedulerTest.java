@@ -0,0 +1,178 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.marklin.cs.net;
+
+import java.util.List;
+import jcs.commandStation.marklin.cs.can.CanMessage;
+import jcs.commandStation.marklin.cs.can.CanMessageFactory;
+import jcs.entities.AccessoryBean.AccessoryValue;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CanMessageSchedulerTest {
+
+  private static final int GFP_UID = 1668498828;
+
+  private static CSTCPConnection.PendingRequest request(CanMessage message) {
+    return new CSTCPConnection.PendingRequest(message, 1000L);
+  }
+
+  @Test
+  public void testLaneOrder() {
+    System.out.println("laneOrder");
+    CanMessageScheduler instance = new CanMessageScheduler(10);
+    CSTCPConnection.PendingRequest config = request(CanMessageFactory.statusDataConfig(GFP_UID, 0));
+    CSTCPConnection.PendingRequest accessory = request(CanMessageFactory.switchAccessory(12288, AccessoryValue.GREEN, true, 200, GFP_UID));
+    CSTCPConnection.PendingRequest speed = request(CanMessageFactory.setLocSpeed(16390, 500, GFP_UID));
+    CSTCPConnection.PendingRequest stop = request(CanMessageFactory.systemStopGo(false, GFP_UID));
+
+    instance.offer(config);
+    instance.offer(accessory);
+    instance.offer(speed);
+    instance.offer(stop);
+
+    assertSame(stop, instance.poll(r -> false, false));
+    assertSame(speed, instance.poll(r -> false, false));
+    assertSame(accessory, instance.poll(r -> false, false));
+    assertSame(config, instance.poll(r -> false, false));
+    assertNull(instance.poll(r -> false, false));
+  }
+
+  @Test
+  public void testSpeedChangesAreCoalesced() {
+    System.out.println("speedChangesAreCoalesced");
+    CanMessageScheduler instance = new CanMessageScheduler(10);
+    CSTCPConnection.PendingRequest first = request(CanMessageFactory.setLocSpeed(16390, 100, GFP_UID));
+    CSTCPConnection.PendingRequest other = request(CanMessageFactory.setLocSpeed(16391, 200, GFP_UID));
+    CSTCPConnection.PendingRequest second = request(CanMessageFactory.setLocSpeed(16390, 300, GFP_UID));
+
+    assertTrue(instance.offer(first).isEmpty());
+    assertTrue(instance.offer(other).isEmpty());
+    assertEquals(List.of(first), instance.offer(second));
+    assertEquals(2, instance.size());
+
+    //The superseded speed change is dropped, the newer one is queued at the end
+    assertSame(other, instance.poll(r -> false, false));
+    assertSame(second, instance.poll(r -> false, false));
+
+    List<CanMessageScheduler.LaneStatistics> stats = instance.getStatistics();
+    CanMessageScheduler.LaneStatistics loco = stats.get(CanMessageScheduler.Lane.LOCOMOTIVE.ordinal());
+    assertEquals(3, loco.getEnqueued());
+    assertEquals(2, loco.getSent());
+    assertEquals(1, loco.getCoalesced());
+    assertEquals(0, loco.getQueueDepth());
+  }
+
+  @Test
+  public void testSpeedAfterDirectionChangeIsKept() {
+    System.out.println("speedAfterDirectionChangeIsKept");
+    CanMessageScheduler instance = new CanMessageScheduler(10);
+    CSTCPConnection.PendingRequest speed40 = request(CanMessageFactory.setLocSpeed(16390, 400, GFP_UID));
+    CSTCPConnection.PendingRequest direction = request(CanMessageFactory.setDirection(16390, 2, GFP_UID));
+    CSTCPConnection.PendingRequest speed60 = request(CanMessageFactory.setLocSpeed(16390, 600, GFP_UID));
+
+    instance.offer(speed40);
+    instance.offer(direction);
+    assertEquals(List.of(speed40), instance.offer(speed60));
+
+    //The CS sets the speed to 0 on a direction change, so the last speed must be sent after the direction
+    assertSame(direction, instance.poll(r -> false, false));
+    assertSame(speed60, instance.poll(r -> false, false));
+    assertNull(instance.poll(r -> false, false));
+  }
+
+  @Test
+  public void testLocomotiveStopSupersedesWaitingSpeedAndDirection() {
+    System.out.println("locomotiveStopSupersedesWaitingSpeedAndDirection");
+    CanMessageScheduler instance = new CanMessageScheduler(10);
+    CSTCPConnection.PendingRequest speed = request(CanMessageFactory.setLocSpeed(16390, 500, GFP_UID));
+    CSTCPConnection.PendingRequest direction = request(CanMessageFactory.setDirection(16390, 1, GFP_UID));
+    CSTCPConnection.PendingRequest function = request(CanMessageFactory.setFunction(16390, 0, true, GFP_UID));
+    CSTCPConnection.PendingRequest other = request(CanMessageFactory.setLocSpeed(16391, 200, GFP_UID));
+    CSTCPConnection.PendingRequest stop = request(locomotiveStop(16390, CanMessage.LOC_STOP_SUB_CMD));
+
+    instance.offer(speed);
+    instance.offer(direction);
+    instance.offer(function);
+    instance.offer(other);
+    assertEquals(List.of(speed, direction), instance.offer(stop));
+
+    //The stop is sent first and nothing can start the locomotive again after it
+    assertSame(stop, instance.poll(r -> false, false));
+    assertSame(function, instance.poll(r -> false, false));
+    assertSame(other, instance.poll(r -> false, false));
+    assertNull(instance.poll(r -> false, false));
+
+    //A speed change after the stop is a new command
+    CSTCPConnection.PendingRequest restart = request(CanMessageFactory.setLocSpeed(16390, 300, GFP_UID));
+    assertTrue(instance.offer(restart).isEmpty());
+    assertSame(restart, instance.poll(r -> false, false));
+  }
+
+  @Test
+  public void testCycleStopOfAllLocomotives() {
+    System.out.println("cycleStopOfAllLocomotives");
+    CanMessageScheduler instance = new CanMessageScheduler(10);
+    instance.offer(request(CanMessageFactory.setLocSpeed(16390, 500, GFP_UID)));
+    instance.offer(request(CanMessageFactory.setLocSpeed(16391, 200, GFP_UID)));
+    CSTCPConnection.PendingRequest stop = request(locomotiveStop(0, CanMessage.SYSTEM_SUB_LOC_CYCLE_STOP));
+
+    assertEquals(2, instance.offer(stop).size());
+    assertEquals(1, instance.size());
+    assertSame(stop, instance.poll(r -> false, false));
+  }
+
+  private static CanMessage locomotiveStop(int uid, int subCommand) {
+    byte[] data = new byte[CanMessage.DATA_SIZE];
+    System.arraycopy(CanMessage.to4Bytes(uid), 0, data, 0, 4);
+    data[CanMessage.SUBCMD_IDX] = (byte) subCommand;
+    return new CanMessage(CanMessage.PRIO_1, CanMessage.SYSTEM_COMMAND, CanMessage.generateHash(GFP_UID), CanMessage.DLC_5, data);
+  }
+
+  @Test
+  public void testEmergencyPassesFullQueueAndInFlightLimit() {
+    System.out.println("emergencyPassesFullQueueAndInFlightLimit");
+    CanMessageScheduler instance = new CanMessageScheduler(1);
+    instance.offer(request(CanMessageFactory.statusDataConfig(GFP_UID, 0)));
+
+    CSTCPConnection.PendingRequest speed = request(CanMessageFactory.setLocSpeed(16390, 500, GFP_UID));
+    CSTCPConnection.PendingRequest stop = request(CanMessageFactory.systemStopGo(false, GFP_UID));
+    assertTrue(instance.isFull(speed));
+    assertFalse(instance.isFull(stop));
+
+    instance.offer(stop);
+    assertSame(stop, instance.poll(r -> false, true));
+    assertNull(instance.poll(r -> false, true));
+  }
+
+  @Test
+  public void testCollidingRequestsKeepTheirOrder() {
+    System.out.println("collidingRequestsKeepTheirOrder");
+    CanMessageScheduler instance = new CanMessageScheduler(10);
+    CSTCPConnection.PendingRequest direction1 = request(CanMessageFactory.setDirection(16390, 1, GFP_UID));
+    CSTCPConnection.PendingRequest direction2 = request(CanMessageFactory.setDirection(16390, 2, GFP_UID));
+    CSTCPConnection.PendingRequest function = request(CanMessageFactory.setFunction(16390, 0, true, GFP_UID));
+    instance.offer(direction1);
+    instance.offer(direction2);
+    instance.offer(function);
+
+    //The first direction change is blocked by an in flight request, the second must wait behind it
+    assertSame(function, instance.poll(r -> r == direction1, false));
+    assertNull(instance.poll(r -> r == direction1, false));
+    assertSame(direction1, instance.poll(r -> false, false));
+    assertSame(direction2, instance.poll(r -> false, false));
+  }
+}
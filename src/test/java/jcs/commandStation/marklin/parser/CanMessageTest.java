@@ -15,6 +15,7 @@
  */
 package jcs.commandStation.marklin.parser;
 
+import java.nio.ByteBuffer;
 import jcs.commandStation.marklin.cs.can.CanMessage;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -284,6 +285,40 @@ public class CanMessageTest {
   
   
   
+  /**
+   * Test of the ByteBuffer encode and decode, of class CanMessage.
+   */
+  @Test
+  public void testByteBufferRoundTrip() {
+    System.out.println("byteBufferRoundTrip");
+    CanMessage instance = CanMessage.parse("0x00 0x23 0x7b 0x79 0x08 0x00 0x41 0x00 0x01 0x00 0x01 0xe5 0x10");
+
+    ByteBuffer buffer = ByteBuffer.allocate(2 * CanMessage.MESSAGE_SIZE);
+    instance.writeTo(buffer);
+    assertEquals(CanMessage.MESSAGE_SIZE, buffer.position());
+    assertArrayEquals(instance.getMessage(), java.util.Arrays.copyOf(buffer.array(), CanMessage.MESSAGE_SIZE));
+
+    buffer.flip();
+    CanMessage result = new CanMessage(buffer);
+    assertEquals(instance, result);
+    assertEquals(CanMessage.S88_EVENT_RESPONSE, result.getCommand());
+    assertEquals(0x7b79, CanMessage.toInt(result.getHash()));
+    assertEquals(0x00410001, result.getDeviceUidNumberFromMessage());
+    assertTrue(result.getResponses().isEmpty());
+  }
+
+  /**
+   * Test of the to2Bytes and to4Bytes methods which write in a given array, of class CanMessage.
+   */
+  @Test
+  public void testToBytesInPlace() {
+    System.out.println("toBytesInPlace");
+    byte[] dest = new byte[6];
+    CanMessage.to4Bytes(0x0637348c, dest, 0);
+    CanMessage.to2Bytes(0x0326, dest, 4);
+    assertArrayEquals(new byte[]{(byte) 0x06, (byte) 0x37, (byte) 0x34, (byte) 0x8c, (byte) 0x03, (byte) 0x26}, dest);
+  }
+
   //@Test
   public void testGenerateHashInt() {
     System.out.println("generateHashInt");
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the synchronization against a local HTTP server which stands in for the central station.
+ */
+public class ImageSyncEngineTest {
+
+  private static final int ICONS = 300;
+
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private String baseUrl;
+  private Path cacheDir;
+
+  private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+  private final Set<String> broken = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    for (int i = 0; i < ICONS; i++) {
+      files.put("icon" + i + ".png", ("image " + i).getBytes(StandardCharsets.UTF_8));
+    }
+
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    serverExecutor = Executors.newFixedThreadPool(16);
+    server.setExecutor(serverExecutor);
+    server.createContext("/", this::handle);
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+    File dir = File.createTempFile("jcs-sync", "");
+    dir.delete();
+    cacheDir = dir.toPath();
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+    if (Files.exists(cacheDir)) {
+      try (var paths = Files.walk(cacheDir)) {
+        paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+      }
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+    try {
+      //Some latency, like a real command station
+      Thread.sleep(5);
+      String name = exchange.getRequestURI().getPath().substring(1);
+      byte[] body;
+      if (name.isEmpty()) {
+        StringBuilder html = new StringBuilder("<html><body>");
+        for (String file : files.keySet()) {
+          html.append("<a href=\"").append(file).append("\">").append(file).append("</a>");
+        }
+        html.append("<a href=\"../other/up.png\">up</a></body></html>");
+        body = html.toString().getBytes(StandardCharsets.UTF_8);
+      } else {
+        body = files.get(name);
+      }
+
+      if (body == null || broken.contains(name)) {
+        exchange.sendResponseHeaders(body == null ? 404 : 500, -1);
+        return;
+      }
+
+      String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        notModified.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+      exchange.getResponseHeaders().add("ETag", etag);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      active.decrementAndGet();
+      exchange.close();
+    }
+  }
+
+  private List<ImageSyncEngine.Task> tasks() {
+    List<ImageSyncEngine.Task> tasks = new ArrayList<>();
+    for (String name : files.keySet()) {
+      tasks.add(ImageSyncEngine.Task.download(URI.create(baseUrl + name), cacheDir.resolve(name)));
+    }
+    return tasks;
+  }
+
+  @Test
+  public void testParallelThenConditionalSync() throws Exception {
+    System.out.println("parallelThenConditionalSync");
+    ImageSyncEngine instance = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 8, 0);
+
+    AtomicInteger progress = new AtomicInteger();
+    ImageSyncEngine.Result result = instance.sync(tasks(), n -> progress.accumulateAndGet(n, Math::max));
+    assertEquals(ICONS, result.downloaded());
+    assertEquals(0, result.failed());
+    assertEquals(ICONS, progress.get());
+    assertTrue(maxActive.get() > 1);
+    assertTrue(maxActive.get() <= 8);
+    assertArrayEquals(files.get("icon7.png"), Files.readAllBytes(cacheDir.resolve("icon7.png")));
+
+    //Nothing changed, every request is answered with 304
+    result = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 8, 0).sync(tasks(), null);
+    assertEquals(0, result.downloaded());
+    assertEquals(ICONS, result.unchanged());
+    assertEquals(ICONS, notModified.get());
+
+    //One image changed on the command station
+    files.put("icon42.png", "new image".getBytes(StandardCharsets.UTF_8));
+    result = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 8, 0).sync(tasks(), null);
+    assertEquals(1, result.downloaded());
+    assertEquals(ICONS - 1, result.unchanged());
+    assertEquals("new image", Files.readString(cacheDir.resolve("icon42.png")));
+  }
+
+  @Test
+  public void testInterruptedSyncResumes() throws Exception {
+    System.out.println("interruptedSyncResumes");
+    broken.add("icon3.png");
+    broken.add("icon99.png");
+    ImageSyncEngine instance = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 4, 60_000);
+    ImageSyncEngine.Result result = instance.sync(tasks(), null);
+    assertEquals(ICONS - 2, result.downloaded());
+    assertEquals(2, result.failed());
+    assertFalse(instance.getManifest().isComplete());
+    assertFalse(Files.exists(cacheDir.resolve("icon3.png")));
+
+    //The next run only fetches what is missing
+    broken.clear();
+    requests.set(0);
+    ImageSyncEngine resumed = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 4, 60_000);
+    result = resumed.sync(tasks(), null);
+    assertEquals(2, result.downloaded());
+    assertEquals(ICONS - 2, result.unchanged());
+    assertEquals(2, requests.get());
+    assertTrue(resumed.getManifest().isComplete());
+  }
+
+  @Test
+  public void testCompletedSyncChecksAllImages() throws Exception {
+    System.out.println("completedSyncChecksAllImages");
+    ImageSyncEngine instance = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 4, 60_000);
+    ImageSyncEngine.Result result = instance.sync(tasks(), null);
+    assertEquals(ICONS, result.downloaded());
+    assertTrue(instance.getManifest().isComplete());
+
+    //The previous run completed, so the recently verified images are not skipped
+    files.put("icon42.png", "new image".getBytes(StandardCharsets.UTF_8));
+    requests.set(0);
+    result = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 4, 60_000).sync(tasks(), null);
+    assertEquals(ICONS, requests.get());
+    assertEquals(1, result.downloaded());
+    assertEquals(ICONS - 1, result.unchanged());
+    assertEquals("new image", Files.readString(cacheDir.resolve("icon42.png")));
+  }
+
+  @Test
+  public void testProducedImageOnlyWrittenWhenChanged() throws Exception {
+    System.out.println("producedImageOnlyWrittenWhenChanged");
+    Path target = cacheDir.resolve("zfunctions").resolve("fkticon_a_001.png");
+    BufferedImage image = new BufferedImage(30, 30, BufferedImage.TYPE_INT_ARGB);
+    image.setRGB(5, 5, 0xFF00FF00);
+
+    ImageSyncEngine instance = new ImageSyncEngine(cacheDir.resolve(ImageSyncEngine.MANIFEST_FILE), 2, 0);
+    List<ImageSyncEngine.Task> tasks = List.of(ImageSyncEngine.Task.produce(() -> image, target),
+            ImageSyncEngine.Task.produce(() -> null, cacheDir.resolve("missing.png")));
+    ImageSyncEngine.Result result = instance.sync(tasks, null);
+    assertEquals(1, result.downloaded());
+    assertEquals(1, result.failed());
+    assertEquals(ImageSyncEngine.Status.DOWNLOADED, tasks.get(0).getStatus());
+    assertTrue(Files.exists(target));
+
+    long modified = Files.getLastModifiedTime(target).toMillis();
+    result = instance.sync(List.of(ImageSyncEngine.Task.produce(() -> image, target)), null);
+    assertEquals(1, result.unchanged());
+    assertEquals(modified, Files.getLastModifiedTime(target).toMillis());
+  }
+
+  @Test
+  public void testFunctionIconDownloader() throws Exception {
+    System.out.println("functionIconDownloader");
+    FunctionIconDownloader instance = new FunctionIconDownloader(cacheDir, baseUrl);
+    assertFalse(instance.areIconsCached());
+
+    assertEquals(ICONS, instance.downloadIcons());
+    assertTrue(instance.areIconsCached());
+    assertNotNull(instance.getCachedIcon("icon0.png"));
+
+    requests.set(0);
+    assertEquals(0, instance.downloadIcons());
+    assertEquals(0, requests.get());
+  }
+}
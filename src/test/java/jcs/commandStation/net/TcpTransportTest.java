@@ -0,0 +1,161 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TcpTransportTest {
+
+  private ServerSocket serverSocket;
+  private TcpTransport<String> transport;
+  private BlockingQueue<String> frames;
+  private CountDownLatch reconnected;
+  private CountDownLatch disconnected;
+
+  /**
+   * Frames are text lines.
+   */
+  private static class LineDecoder implements FrameDecoder<String> {
+
+    @Override
+    public String decode(ByteBuffer buffer) {
+      for (int i = buffer.position(); i < buffer.limit(); i++) {
+        if (buffer.get(i) == '\n') {
+          byte[] line = new byte[i - buffer.position()];
+          buffer.get(line);
+          buffer.get();
+          return new String(line, StandardCharsets.UTF_8);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void reset() {
+    }
+  }
+
+  private class Listener implements TransportListener<String> {
+
+    @Override
+    public void onFrame(String frame, int bufferedBytes) {
+      frames.offer(frame);
+    }
+
+    @Override
+    public void onReconnect() {
+      reconnected.countDown();
+    }
+
+    @Override
+    public void onDisconnect() {
+      disconnected.countDown();
+    }
+  }
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    System.setProperty("connection.reconnect.delay", "10");
+    System.setProperty("connection.reconnect.attempts", "3");
+    serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    frames = new LinkedBlockingQueue<>();
+    reconnected = new CountDownLatch(1);
+    disconnected = new CountDownLatch(1);
+    transport = new TcpTransport<>("TEST", InetAddress.getLoopbackAddress(), serverSocket.getLocalPort(), new LineDecoder(), new Listener());
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    transport.close();
+    serverSocket.close();
+    System.clearProperty("connection.reconnect.delay");
+    System.clearProperty("connection.reconnect.attempts");
+  }
+
+  @Test
+  public void testFramesSplitOverPackets() throws Exception {
+    System.out.println("framesSplitOverPackets");
+    transport.connect();
+    try (Socket socket = serverSocket.accept()) {
+      OutputStream out = socket.getOutputStream();
+      out.write("fir".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      Thread.sleep(50);
+      out.write("st\nsecond\nthi".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+      Thread.sleep(50);
+      out.write("rd\n".getBytes(StandardCharsets.UTF_8));
+      out.flush();
+
+      assertEquals("first", frames.poll(1, TimeUnit.SECONDS));
+      assertEquals("second", frames.poll(1, TimeUnit.SECONDS));
+      assertEquals("third", frames.poll(1, TimeUnit.SECONDS));
+
+      transport.write("hello\n");
+      byte[] received = new byte[6];
+      socket.getInputStream().readNBytes(received, 0, 6);
+      assertEquals("hello\n", new String(received, StandardCharsets.UTF_8));
+
+      TransportStatistics stats = transport.getStatistics();
+      assertEquals(3, stats.getFramesReceived());
+      assertEquals(1, stats.getFramesSent());
+      assertEquals(6, stats.getBytesSent());
+    }
+  }
+
+  @Test
+  public void testReconnectAfterConnectionLoss() throws Exception {
+    System.out.println("reconnectAfterConnectionLoss");
+    transport.connect();
+    serverSocket.accept().close();
+
+    try (Socket socket = serverSocket.accept()) {
+      assertTrue(reconnected.await(2, TimeUnit.SECONDS));
+      assertTrue(transport.isConnected());
+      assertEquals(1, transport.getStatistics().getReconnects());
+
+      socket.getOutputStream().write("after\n".getBytes(StandardCharsets.UTF_8));
+      assertEquals("after", frames.poll(1, TimeUnit.SECONDS));
+    }
+    assertEquals(1, disconnected.getCount());
+  }
+
+  @Test
+  public void testDisconnectWhenReconnectFails() throws Exception {
+    System.out.println("disconnectWhenReconnectFails");
+    transport.connect();
+    Socket socket = serverSocket.accept();
+    serverSocket.close();
+    socket.close();
+
+    assertTrue(disconnected.await(2, TimeUnit.SECONDS));
+    assertFalse(transport.isConnected());
+  }
+}
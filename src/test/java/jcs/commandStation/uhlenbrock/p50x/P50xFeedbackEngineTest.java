@@ -0,0 +1,263 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.commandStation.uhlenbrock.p50x;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import jcs.commandStation.events.SensorEvent;
+import jcs.commandStation.uhlenbrock.connection.P50xTransport;
+import jcs.commandStation.uhlenbrock.connection.P50xVirtualTransport;
+import jcs.entities.SensorBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class P50xFeedbackEngineTest {
+
+  private P50xVirtualTransport transport;
+  private BlockingQueue<SensorEvent> events;
+  private P50xFeedbackEngine instance;
+
+  @BeforeEach
+  public void setUp() {
+    transport = new P50xVirtualTransport();
+    events = new LinkedBlockingQueue<>();
+    instance = new P50xFeedbackEngine(transport, "intellibox", events::add, 5, 40);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    assertTrue(instance.shutdown(1000));
+    transport.close();
+  }
+
+  private SensorEvent nextEvent() throws InterruptedException {
+    SensorEvent event = events.poll(2, TimeUnit.SECONDS);
+    assertNotNull(event, "No sensor event received");
+    return event;
+  }
+
+  @Test
+  public void testInitialStateIsReported() throws InterruptedException {
+    System.out.println("initialStateIsReported");
+    transport.setContact(1, 3, true);
+    transport.setContact(33, 16, true);
+    instance.start();
+
+    SensorEvent first = nextEvent();
+    assertEquals(Integer.valueOf(1), first.getDeviceId());
+    assertEquals(Integer.valueOf(3), first.getContactId());
+    assertTrue(first.isActive());
+
+    SensorEvent second = nextEvent();
+    assertEquals(Integer.valueOf(33), second.getDeviceId());
+    assertEquals(Integer.valueOf(16), second.getContactId());
+    assertTrue(second.isActive());
+
+    assertEquals(1, transport.getCommandCount(P50x.X_SENS_OFF));
+    assertEquals(2, instance.getFeedbackModules().size());
+  }
+
+  @Test
+  public void testChangedContactsAreDecoded() throws InterruptedException {
+    System.out.println("changedContactsAreDecoded");
+    instance.start();
+
+    transport.setContact(2, 9, true);
+    SensorEvent on = nextEvent();
+    assertEquals(Integer.valueOf(2), on.getDeviceId());
+    assertEquals(Integer.valueOf(9), on.getContactId());
+    assertTrue(on.isActive());
+    assertTrue(on.isChanged());
+    assertEquals(Integer.valueOf(16 + 8), on.getSensorId());
+
+    transport.setContact(2, 9, false);
+    SensorEvent off = nextEvent();
+    assertEquals(Integer.valueOf(9), off.getContactId());
+    assertFalse(off.isActive());
+
+    SensorBean query = new SensorBean(null, 2, 9, 0, null, null, "intellibox", 0);
+    SensorBean status = instance.getSensorStatus(query);
+    assertNotNull(status);
+    assertFalse(status.isActive());
+    assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testModulesAreOnlyReadAfterASensorEvent() throws InterruptedException {
+    System.out.println("modulesAreOnlyReadAfterASensorEvent");
+    instance.start();
+    Thread.sleep(300);
+
+    //Idle layout: only XEvent polls, backing off to the maximum period
+    assertEquals(0, transport.getCommandCount(P50x.X_EVT_SEN));
+    int polls = transport.getCommandCount(P50x.X_EVENT);
+    assertTrue(polls > 0);
+    assertTrue(polls < 20, "Poll period did not back off, polls: " + polls);
+
+    transport.setContact(5, 1, true);
+    nextEvent();
+    assertEquals(1, transport.getCommandCount(P50x.X_EVT_SEN));
+  }
+
+  @Test
+  public void testEventFlags() throws Exception {
+    System.out.println("eventFlags");
+    assertEquals(0, instance.pollEvent());
+
+    transport.powerOff();
+    transport.setContact(1, 1, true);
+    int flags = instance.pollEvent();
+    assertTrue((flags & P50x.X_EVENT_PW_OFF) != 0);
+    assertTrue((flags & P50x.X_EVENT_SEN) != 0);
+
+    assertEquals(1, instance.readSensorEvents(System.nanoTime()));
+    assertEquals(0, instance.pollEvent());
+  }
+
+  @Test
+  public void testCommandsAreSentWithTheLead() throws Exception {
+    System.out.println("commandsAreSentWithTheLead");
+    transport.setContact(1, 1, true);
+    instance.requestAllSensors();
+    instance.pollEvent();
+    instance.readSensorEvents(System.nanoTime());
+
+    List<byte[]> frames = transport.getFrames();
+    assertEquals(3, frames.size());
+    assertArrayEquals(new byte[]{'x', (byte) 0x99}, frames.get(0));
+    assertArrayEquals(new byte[]{'x', (byte) 0xC8}, frames.get(1));
+    assertArrayEquals(new byte[]{'x', (byte) 0xCB}, frames.get(2));
+  }
+
+  @Test
+  public void testCommandWithoutLeadIsRejected() throws Exception {
+    System.out.println("commandWithoutLeadIsRejected");
+    assertThrows(IOException.class, () -> transport.write((byte) P50x.X_EVENT));
+    assertEquals(0, transport.getCommandCount(P50x.X_EVENT));
+    assertEquals(P50xTransport.TIMEOUT, transport.read(50));
+  }
+
+  @Test
+  public void testLateReplyIsDrained() throws Exception {
+    System.out.println("lateReplyIsDrained");
+    SlowTransport slow = new SlowTransport(transport);
+    instance = new P50xFeedbackEngine(slow, "intellibox", events::add, 5, 40);
+
+    transport.setContact(2, 9, true);
+    assertTrue((instance.pollEvent() & P50x.X_EVENT_SEN) != 0);
+
+    //The XEvtSen reply arrives after the reply timeout
+    slow.delayMillis = P50xFeedbackEngine.REPLY_TIMEOUT + 50;
+    assertThrows(IOException.class, () -> instance.readSensorEvents(System.nanoTime()));
+    slow.delayMillis = 0;
+    //Wait until the late reply has arrived
+    Thread.sleep(100);
+    instance.drain();
+
+    //The late bytes are not taken as the reply of the next commands
+    assertEquals(0, instance.pollEvent());
+    transport.setContact(2, 10, true);
+    assertTrue((instance.pollEvent() & P50x.X_EVENT_SEN) != 0);
+    assertEquals(2, instance.readSensorEvents(System.nanoTime()));
+    assertEquals(Integer.valueOf(2), nextEvent().getDeviceId());
+    assertEquals(Integer.valueOf(2), nextEvent().getDeviceId());
+  }
+
+  @Test
+  public void testDrainOfAChatteringLineEnds() throws Exception {
+    System.out.println("drainOfAChatteringLineEnds");
+    P50xTransport chattering = new SlowTransport(transport) {
+      @Override
+      public int read(long timeoutMillis) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        return 0x55;
+      }
+    };
+
+    long start = System.currentTimeMillis();
+    int discarded = chattering.drain(20);
+    long elapsed = System.currentTimeMillis() - start;
+    assertTrue(discarded > 0);
+    assertTrue(elapsed < 20 * P50xTransport.DRAIN_PERIODS + 100, "Drain took " + elapsed + " ms");
+  }
+
+  /**
+   * Stand-in for a serial port, hands out the reply of a command only after a delay.
+   */
+  private static class SlowTransport implements P50xTransport {
+
+    private final P50xVirtualTransport delegate;
+    private final BlockingQueue<Integer> replies = new LinkedBlockingQueue<>();
+    volatile long delayMillis;
+
+    SlowTransport(P50xVirtualTransport delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void write(byte... bytes) throws IOException {
+      delegate.write(bytes);
+      List<Integer> reply = new ArrayList<>();
+      int b;
+      while ((b = delegate.read(0)) != TIMEOUT) {
+        reply.add(b);
+      }
+      long delay = delayMillis;
+      if (delay == 0) {
+        replies.addAll(reply);
+      } else {
+        Thread late = new Thread(() -> {
+          try {
+            Thread.sleep(delay);
+            replies.addAll(reply);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+        late.setDaemon(true);
+        late.start();
+      }
+    }
+
+    @Override
+    public int read(long timeoutMillis) throws IOException {
+      try {
+        Integer b = replies.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        return b != null ? b : TIMEOUT;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public boolean isOpen() {
+      return delegate.isOpen();
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.persistence;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jcs.entities.BlockBean;
+import jcs.entities.SensorBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the caching decorator against an in memory stand-in for the database, which counts the calls it gets.
+ */
+public class CachingPersistenceServiceTest {
+
+  private Map<String, Integer> calls;
+  private Map<Integer, SensorBean> sensorTable;
+  private Map<String, BlockBean> blockTable;
+  private boolean failBatch;
+  private CachingPersistenceService instance;
+
+  @BeforeEach
+  public void setUp() {
+    calls = new HashMap<>();
+    failBatch = false;
+    sensorTable = new HashMap<>();
+    blockTable = new HashMap<>();
+    for (int i = 1; i <= 4; i++) {
+      sensorTable.put(i, new SensorBean(i, 0, i, 0, 0, 0, "test", 0));
+    }
+    for (int i = 1; i <= 2; i++) {
+      BlockBean block = new BlockBean();
+      block.setId("bk-" + i);
+      block.setTileId("bk-" + i);
+      block.setBlockState(BlockBean.BlockState.FREE);
+      blockTable.put(block.getId(), block);
+    }
+
+    PersistenceService database = (PersistenceService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PersistenceService.class}, (proxy, method, args) -> {
+      String call = method.getName() + (args != null && args.length > 0 ? ":" + args[0].getClass().getSimpleName() : "");
+      calls.merge(call, 1, Integer::sum);
+      return switch (call) {
+        case "getSensor:Integer" ->
+          copy(sensorTable.get((Integer) args[0]));
+        case "getAllSensors" -> {
+          List<SensorBean> all = new ArrayList<>();
+          sensorTable.values().forEach(s -> all.add(copy(s)));
+          yield all;
+        }
+        case "persist:SensorBean" -> {
+          sensorTable.put(((SensorBean) args[0]).getId(), copy((SensorBean) args[0]));
+          yield args[0];
+        }
+        case "getBlocks" ->
+          new ArrayList<>(blockTable.values());
+        case "persist:BlockBean" -> {
+          blockTable.put(((BlockBean) args[0]).getId(), (BlockBean) args[0]);
+          yield args[0];
+        }
+        case "persistAll:ArrayList" -> {
+          if (failBatch) {
+            throw new IllegalStateException("Batch failed");
+          }
+          for (Object bean : (List<?>) args[0]) {
+            if (bean instanceof SensorBean sensor) {
+              sensorTable.put(sensor.getId(), copy(sensor));
+            } else if (bean instanceof BlockBean block) {
+              blockTable.put(block.getId(), block);
+            }
+          }
+          yield args[0];
+        }
+        default ->
+          null;
+      };
+    });
+    instance = new CachingPersistenceService(database, 60000, 1000);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    instance.close();
+  }
+
+  private static SensorBean copy(SensorBean sensor) {
+    if (sensor == null) {
+      return null;
+    }
+    return new SensorBean(sensor.getId(), sensor.getDeviceId(), sensor.getContactId(), 0, sensor.getStatus(), sensor.getPreviousStatus(), "test", 0);
+  }
+
+  private int calls(String call) {
+    return calls.getOrDefault(call, 0);
+  }
+
+  @Test
+  public void testLookupsAreIdentityMapped() {
+    System.out.println("lookupsAreIdentityMapped");
+    SensorBean first = instance.getSensor(1);
+    SensorBean second = instance.getSensor(1);
+    SensorBean byAddress = instance.getSensor(0, 1);
+
+    assertSame(first, second);
+    assertSame(first, byAddress);
+    assertEquals(1, calls("getSensor:Integer"));
+
+    CacheStatistics stats = instance.getStatistics();
+    assertEquals(2, stats.getHits());
+    assertEquals(1, stats.getMisses());
+  }
+
+  @Test
+  public void testUpdatesAreWrittenBehindAndCoalesced() {
+    System.out.println("updatesAreWrittenBehindAndCoalesced");
+    SensorBean sensor = instance.getSensor(2);
+    for (int i = 0; i < 5; i++) {
+      sensor.setActive(i % 2 == 0);
+      instance.persist(sensor);
+    }
+    assertEquals(0, calls("persistAll:ArrayList"));
+    assertTrue(instance.getSensor(2).isActive());
+    assertEquals(1, instance.getStatistics().getPending());
+
+    instance.flush();
+    assertEquals(1, calls("persistAll:ArrayList"));
+    assertTrue(sensorTable.get(2).isActive());
+
+    CacheStatistics stats = instance.getStatistics();
+    assertEquals(5, stats.getQueued());
+    assertEquals(4, stats.getCoalesced());
+    assertEquals(1, stats.getWritten());
+    assertEquals(0, stats.getPending());
+  }
+
+  @Test
+  public void testUncachedReadSeesQueuedUpdates() {
+    System.out.println("uncachedReadSeesQueuedUpdates");
+    SensorBean sensor = instance.getSensor(3);
+    sensor.setActive(true);
+    instance.persist(sensor);
+
+    List<SensorBean> all = instance.getAllSensors();
+    assertEquals(1, calls("persistAll:ArrayList"));
+    //The list holds the cached instance
+    assertTrue(all.stream().anyMatch(s -> s == sensor));
+  }
+
+  @Test
+  public void testBlockStateFromCache() {
+    System.out.println("blockStateFromCache");
+    assertEquals(0L, (long) instance.getGhostBlockCount());
+
+    BlockBean block = instance.getBlockByTileId("bk-1");
+    block.setBlockState(BlockBean.BlockState.GHOST);
+    instance.persist(block);
+
+    assertEquals(1L, (long) instance.getGhostBlockCount());
+    assertSame(block, instance.getBlock("bk-1"));
+    assertEquals(1, calls("getBlocks"));
+    assertEquals(0, calls("persistAll:ArrayList"));
+
+    instance.removeAllBlocks();
+    assertEquals(1, calls("persistAll:ArrayList"));
+    instance.getBlocks();
+    assertEquals(2, calls("getBlocks"));
+  }
+
+  @Test
+  public void testFailedBatchIsWrittenOneByOne() {
+    System.out.println("failedBatchIsWrittenOneByOne");
+    failBatch = true;
+    SensorBean sensor1 = instance.getSensor(1);
+    SensorBean sensor2 = instance.getSensor(2);
+    sensor1.setActive(true);
+    sensor2.setActive(true);
+    instance.persist(sensor1);
+    instance.persist(sensor2);
+
+    instance.flush();
+    assertEquals(1, calls("persistAll:ArrayList"));
+    assertEquals(2, calls("persist:SensorBean"));
+    assertTrue(sensorTable.get(1).isActive());
+    assertEquals(2, instance.getStatistics().getWritten());
+    assertEquals(0, instance.getStatistics().getWriteErrors());
+  }
+}
@@ -437,6 +437,36 @@ public class PersistenceServiceTest {
     assertNull(s3);
   }
 
+  /**
+   * Test of persistAll and removeAll methods, of class PersistenceService.
+   */
+  @Test
+  @Order(9)
+  public void testPersistAllAndRemoveAllSensorBeans() {
+    System.out.println("persistAllAndRemoveAllSensorBeans");
+    PersistenceService instance = PersistenceFactory.getService();
+    int count = instance.getAllSensors().size();
+
+    List<SensorBean> batch = new ArrayList<>();
+    for (int i = 10; i < 110; i++) {
+      batch.add(new SensorBean(i, "M2P" + i, 2, i, 65, 0, 1, 0, "marklin.cs", 2));
+    }
+    List<SensorBean> result = instance.persistAll(batch);
+    assertEquals(batch, result);
+    assertEquals(count + batch.size(), instance.getAllSensors().size());
+    assertEquals(batch.get(5), instance.getSensor(2, 15));
+
+    //Existing rows are updated
+    batch.get(5).setStatus(1);
+    instance.persistAll(batch);
+    assertEquals(count + batch.size(), instance.getAllSensors().size());
+    assertEquals(Integer.valueOf(1), instance.getSensor(15).getStatus());
+
+    instance.removeAll(batch);
+    assertEquals(count, instance.getAllSensors().size());
+    assertNull(instance.getSensor(15));
+  }
+
   /**
    * Test of getLocomotives method, of class PersistenceService.
    */
@@ -612,6 +642,41 @@ public class PersistenceServiceTest {
     assertNull(loco);
   }
 
+  /**
+   * Test of persistAll method with locomotive functions, of class PersistenceService.
+   */
+  @Test
+  @Order(14)
+  public void testPersistAllUpdatesLocomotiveFunctions() {
+    System.out.println("persistAllUpdatesLocomotiveFunctions");
+    LocomotiveBean locomotive = new LocomotiveBean(71L, "Batch Loco", 16371L, 71, "Batch Loco", "mfx", 80, 5, 0, 0, false, true, false);
+    locomotive.setCommandStationId("marklin.cs");
+    locomotive.addFunction(new FunctionBean(71L, 0, 1, 0));
+    locomotive.addFunction(new FunctionBean(71L, 1, 2, 0));
+
+    PersistenceService instance = PersistenceFactory.getService();
+    instance.persistAll(List.of(locomotive));
+    Long f0Id = instance.getLocomotiveFunction(71L, 0).getId();
+    assertNotNull(f0Id);
+    assertNotNull(instance.getLocomotiveFunction(71L, 1));
+
+    //Function 0 is switched on, function 1 is removed and function 2 is new
+    LocomotiveBean changed = new LocomotiveBean(71L, "Batch Loco", 16371L, 71, "Batch Loco", "mfx", 80, 5, 0, 0, false, true, false);
+    changed.setCommandStationId("marklin.cs");
+    changed.addFunction(new FunctionBean(71L, 0, 1, 1));
+    changed.addFunction(new FunctionBean(71L, 2, 3, 0));
+    instance.persistAll(List.of(changed));
+
+    FunctionBean f0 = instance.getLocomotiveFunction(71L, 0);
+    assertEquals(f0Id, f0.getId());
+    assertTrue(f0.isOn());
+    assertNull(instance.getLocomotiveFunction(71L, 1));
+    assertNotNull(instance.getLocomotiveFunction(71L, 2));
+
+    instance.removeAll(List.of(changed));
+    assertNull(instance.getLocomotive(71L));
+  }
+
   /**
    * Test of getTurnouts method, of class PersistenceService.
    */
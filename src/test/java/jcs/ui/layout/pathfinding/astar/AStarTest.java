@@ -17,11 +17,16 @@ package jcs.ui.layout.pathfinding.astar;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import jcs.entities.RouteBean;
 import jcs.persistence.util.PersistenceTestHelper;
 import jcs.ui.layout.tiles.Tile;
+import jcs.ui.layout.tiles.TileCache;
 import org.junit.After;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -177,4 +182,73 @@ public class AStarTest {
     assertEquals(expPath, resultPath);
   }
 
+  /**
+   * Test of routeAll method, of class AStar.<br>
+   * The routes of the single source searches must be the same as the routes of a findPath per pair of block sides.
+   */
+  @Test
+  public void testRouteAllMatchesPairwiseFindPath() {
+    System.out.println("routeAllMatchesPairwiseFindPath");
+    List<Tile> tiles = TileCache.loadTiles(false);
+    AStar instance = new AStar();
+    instance.buildGraph(tiles);
+    List<RouteBean> routes = instance.routeAll();
+    assertFalse(routes.isEmpty());
+
+    AStar pairwise = new AStarTester();
+    pairwise.buildGraph(tiles);
+    pairwise.routeAll();
+
+    assertEquals(new TreeSet<>(pairwise.getRoutes().keySet()), new TreeSet<>(instance.getRoutes().keySet()));
+    for (RouteBean route : pairwise.getRoutes().values()) {
+      assertEquals(route.toLogString(), instance.getRoute(route.getId()).toLogString());
+    }
+  }
+
+  /**
+   * Test of updateRoutes method, of class AStar.
+   */
+  @Test
+  public void testUpdateRoutes() {
+    System.out.println("updateRoutes");
+    List<Tile> tiles = TileCache.loadTiles(false);
+    AStar instance = new AStar();
+    instance.buildGraph(tiles);
+    instance.routeAll();
+    assertTrue(instance.isCurrent());
+    int routeCount = instance.getRoutes().size();
+
+    //Cut the track between bk-2+ and bk-3-
+    Tile st12 = TileCache.findTile("st-12");
+    TileCache.deleteTile(st12);
+    Set<String> changed = TileCache.takeChangedTileIds();
+    assertEquals(Set.of("st-12"), changed);
+
+    RouteDiff diff = instance.updateRoutes(changed);
+    assertFalse(diff.getRemovedRoutes().isEmpty());
+    assertRoutes(instance);
+
+    //Restore the track
+    TileCache.addAndSaveTile(st12);
+    diff = instance.updateRoutes(TileCache.takeChangedTileIds());
+    assertTrue(diff.getRemovedRoutes().isEmpty());
+    assertFalse(diff.getChangedRoutes().isEmpty());
+    assertEquals(routeCount, instance.getRoutes().size());
+    assertRoutes(instance);
+
+    //Nothing changed
+    assertTrue(instance.updateRoutes(TileCache.takeChangedTileIds()).isEmpty());
+  }
+
+  //The incremental routes must be the same as the routes of a full rebuild
+  private static void assertRoutes(AStar instance) {
+    AStar full = new AStar();
+    full.buildGraph(TileCache.getTiles());
+    full.routeAll();
+
+    assertEquals(new TreeSet<>(full.getRoutes().keySet()), new TreeSet<>(instance.getRoutes().keySet()));
+    for (RouteBean route : full.getRoutes().values()) {
+      assertEquals(route.toLogString(), instance.getRoute(route.getId()).toLogString());
+    }
+  }
 }
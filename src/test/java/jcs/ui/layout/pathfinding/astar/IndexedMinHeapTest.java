@@ -0,0 +1,57 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.pathfinding.astar;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexedMinHeapTest {
+
+  @Test
+  public void testPollInKeyOrder() {
+    System.out.println("pollInKeyOrder");
+    IndexedMinHeap instance = new IndexedMinHeap(5);
+    instance.offer(0, 4.0);
+    instance.offer(1, 1.0);
+    instance.offer(2, 3.0);
+    instance.offer(3, 2.0);
+
+    assertEquals(4, instance.size());
+    assertEquals(1, instance.poll());
+    assertEquals(3, instance.poll());
+    assertEquals(2, instance.poll());
+    assertEquals(0, instance.poll());
+    assertTrue(instance.isEmpty());
+  }
+
+  @Test
+  public void testDecreaseKey() {
+    System.out.println("decreaseKey");
+    IndexedMinHeap instance = new IndexedMinHeap(3);
+    instance.offer(0, 5.0);
+    instance.offer(1, 6.0);
+    instance.offer(2, 7.0);
+
+    //An index which is offered again moves in place, it is not added twice
+    instance.offer(2, 1.0);
+    assertEquals(3, instance.size());
+    assertTrue(instance.contains(2));
+    assertEquals(2, instance.poll());
+    assertFalse(instance.contains(2));
+    assertEquals(0, instance.poll());
+    assertEquals(1, instance.poll());
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.pathfinding.astar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jcs.entities.TileBean;
+import jcs.entities.TileBean.Direction;
+import jcs.entities.TileBean.Orientation;
+import jcs.entities.TileBean.TileType;
+import jcs.persistence.PersistenceFactory;
+import jcs.persistence.util.PersistenceTestHelper;
+import jcs.ui.layout.tiles.Tile;
+import jcs.ui.layout.tiles.TileCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Routing of all blocks on a generated layout, a serpentine of rows with blocks and straights joined by curves.<br>
+ * pairwise is the former routing, one A* search per pair of block sides; routeAll runs one search per block side in parallel.<br>
+ * The layout is stored in the test database, like the AStar tests do. Run with the benchmark profile, see BUILDING.md.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteAllBenchmark {
+
+  private static final int BLOCKS_PER_ROW = 10;
+
+  @Param({"30", "150"})
+  private int blocks;
+
+  private AStar astar;
+  private AStarTester pairwise;
+
+  @Setup
+  public void setUp() {
+    System.setProperty("persistenceService", "jcs.persistence.TestH2PersistenceService");
+    PersistenceTestHelper.getInstance().insertSimpleLayoutTestData();
+    PersistenceFactory.getService().persist(createLayout(blocks));
+
+    List<Tile> tiles = TileCache.loadTiles(false);
+    astar = new AStar();
+    astar.buildGraph(tiles);
+    pairwise = new AStarTester();
+    pairwise.buildGraph(tiles);
+  }
+
+  /**
+   * Each row is a straight followed by blocks and straights. Even rows run to the east, odd rows back to the west, the rows
+   * are joined by 2 curves on alternating sides.
+   */
+  public static List<TileBean> createLayout(int blocks) {
+    List<TileBean> tiles = new ArrayList<>();
+    int rows = (blocks + BLOCKS_PER_ROW - 1) / BLOCKS_PER_ROW;
+    int leftX = 20;
+    int rightX = 260 + 160 * (BLOCKS_PER_ROW - 1);
+    int st = 0;
+    int bk = 0;
+    int ct = 0;
+
+    for (int r = 0; r < rows; r++) {
+      int y = 20 + 40 * r;
+      tiles.add(new TileBean("st-" + (++st), TileType.STRAIGHT, Orientation.EAST, Direction.CENTER, 60, y));
+      for (int i = 0; i < BLOCKS_PER_ROW; i++) {
+        if (bk < blocks) {
+          tiles.add(new TileBean("bk-" + (++bk), TileType.BLOCK, Orientation.EAST, Direction.CENTER, 140 + 160 * i, y));
+        } else {
+          tiles.add(new TileBean("st-" + (++st), TileType.STRAIGHT, Orientation.EAST, Direction.CENTER, 100 + 160 * i, y));
+          tiles.add(new TileBean("st-" + (++st), TileType.STRAIGHT, Orientation.EAST, Direction.CENTER, 140 + 160 * i, y));
+          tiles.add(new TileBean("st-" + (++st), TileType.STRAIGHT, Orientation.EAST, Direction.CENTER, 180 + 160 * i, y));
+        }
+        tiles.add(new TileBean("st-" + (++st), TileType.STRAIGHT, Orientation.EAST, Direction.CENTER, 220 + 160 * i, y));
+      }
+
+      if (r + 1 < rows) {
+        if (r % 2 == 0) {
+          tiles.add(new TileBean("ct-" + (++ct), TileType.CURVED, Orientation.SOUTH, Direction.CENTER, rightX, y));
+          tiles.add(new TileBean("ct-" + (++ct), TileType.CURVED, Orientation.WEST, Direction.CENTER, rightX, y + 40));
+        } else {
+          tiles.add(new TileBean("ct-" + (++ct), TileType.CURVED, Orientation.EAST, Direction.CENTER, leftX, y));
+          tiles.add(new TileBean("ct-" + (++ct), TileType.CURVED, Orientation.NORTH, Direction.CENTER, leftX, y + 40));
+        }
+      }
+    }
+    return tiles;
+  }
+
+  @Benchmark
+  public void pairwise(Blackhole bh) {
+    bh.consume(pairwise.routeAll());
+  }
+
+  @Benchmark
+  public void routeAll(Blackhole bh) {
+    bh.consume(astar.routeAll());
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder().include(RouteAllBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
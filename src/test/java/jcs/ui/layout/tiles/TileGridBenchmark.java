@@ -0,0 +1,148 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.tiles;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import jcs.entities.TileBean;
+import jcs.persistence.util.PersistenceTestHelper;
+import jcs.ui.layout.pathfinding.astar.AStar;
+import jcs.ui.layout.pathfinding.astar.RouteAllBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the former Point keyed center and alternative point maps of the TileCache with the TileGrid.<br>
+ * pointMapLoad and gridLoad fill the index with all tiles of a generated layout, like loading a layout does.<br>
+ * pointMapNeighbors and gridNeighbors look up all neighbor points of all tiles, like the neighbor discovery of
+ * AStar.buildGraph does; buildGraph is the complete graph build on the grid.<br>
+ * TileCache needs a persistence service, so the test database is used, like the AStar tests do. Run with the benchmark
+ * profile, see BUILDING.md.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileGridBenchmark {
+
+  @Param({"150", "1000"})
+  private int blocks;
+
+  private List<Tile> tiles;
+  private List<Point> neighborPoints;
+  private Map<Point, Tile> centerPointMap;
+  private Map<Point, Tile> altPointMap;
+
+  @Setup
+  public void setUp() {
+    System.setProperty("persistenceService", "jcs.persistence.TestH2PersistenceService");
+    PersistenceTestHelper.getInstance();
+
+    TileCache.flush();
+    tiles = new ArrayList<>();
+    neighborPoints = new ArrayList<>();
+    for (TileBean tb : RouteAllBenchmark.createLayout(blocks)) {
+      Tile tile = TileCache.createTile(tb, false);
+      TileCache.addTile(tile);
+      tiles.add(tile);
+      neighborPoints.addAll(tile.getNeighborPoints().values());
+    }
+
+    centerPointMap = new ConcurrentHashMap<>();
+    altPointMap = new ConcurrentHashMap<>();
+    for (Tile tile : tiles) {
+      centerPointMap.put(tile.getCenter(), tile);
+      for (Point ap : tile.getAltPoints()) {
+        altPointMap.put(ap, tile);
+      }
+    }
+  }
+
+  @Benchmark
+  public void pointMapLoad(Blackhole bh) {
+    Map<Point, Tile> center = new ConcurrentHashMap<>();
+    Map<Point, Tile> alt = new ConcurrentHashMap<>();
+    for (Tile tile : tiles) {
+      center.put(tile.getCenter(), tile);
+      if (!tile.getAltPoints().isEmpty()) {
+        for (Point ap : tile.getAltPoints()) {
+          alt.put(ap, tile);
+        }
+      }
+    }
+    bh.consume(center);
+    bh.consume(alt);
+  }
+
+  @Benchmark
+  public void gridLoad(Blackhole bh) {
+    TileGrid grid = new TileGrid();
+    for (Tile tile : tiles) {
+      grid.put(tile);
+    }
+    bh.consume(grid);
+  }
+
+  @Benchmark
+  public void pointMapNeighbors(Blackhole bh) {
+    for (Point p : neighborPoints) {
+      if (centerPointMap.containsKey(p) || altPointMap.containsKey(p)) {
+        Tile tile = centerPointMap.get(p);
+        if (tile == null) {
+          tile = altPointMap.get(p);
+        }
+        bh.consume(tile);
+      }
+    }
+  }
+
+  @Benchmark
+  public void gridNeighbors(Blackhole bh) {
+    for (Point p : neighborPoints) {
+      bh.consume(TileCache.findTile(p.x, p.y));
+    }
+  }
+
+  @Benchmark
+  public void buildGraph(Blackhole bh) {
+    bh.consume(new AStar().buildGraph(tiles));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder().include(TileGridBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.tiles;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.List;
+import jcs.entities.TileBean.Orientation;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileGridTest {
+
+  @Test
+  public void testBlockOccupiesThreeCells() {
+    System.out.println("blockOccupiesThreeCells");
+    TileGrid instance = new TileGrid();
+    Tile block = new Block(Orientation.EAST, new Point(140, 20));
+    instance.put(block);
+
+    assertSame(block, instance.get(100, 20));
+    assertSame(block, instance.get(140, 20));
+    assertSame(block, instance.get(180, 20));
+    //Any point within the cell
+    assertSame(block, instance.get(161, 39));
+    assertNull(instance.get(220, 20));
+    assertNull(instance.get(140, 60));
+  }
+
+  @Test
+  public void testQueryReturnsEachTileOnce() {
+    System.out.println("queryReturnsEachTileOnce");
+    TileGrid instance = new TileGrid();
+    Tile block = new Block(Orientation.EAST, new Point(140, 20));
+    Tile west = new Straight(Orientation.EAST, new Point(60, 20));
+    Tile far = new Straight(Orientation.EAST, new Point(1020, 1020));
+    instance.put(block);
+    instance.put(west);
+    instance.put(far);
+
+    List<Tile> result = instance.query(new Rectangle(0, 0, 400, 40));
+    assertEquals(2, result.size());
+    assertTrue(result.contains(block));
+    assertTrue(result.contains(west));
+
+    //Across chunk borders
+    result = instance.query(new Rectangle(0, 0, 1100, 1100));
+    assertEquals(3, result.size());
+  }
+
+  @Test
+  public void testPutAgainMovesTheTile() {
+    System.out.println("putAgainMovesTheTile");
+    TileGrid instance = new TileGrid();
+    Tile straight = new Straight(Orientation.EAST, new Point(60, 20));
+    instance.put(straight);
+
+    straight.setCenter(new Point(-60, -20));
+    instance.put(straight);
+    assertNull(instance.get(60, 20));
+    assertSame(straight, instance.get(-60, -20));
+    assertEquals(1, instance.size());
+
+    assertTrue(instance.remove(straight));
+    assertNull(instance.get(-60, -20));
+    assertFalse(instance.remove(straight));
+  }
+}
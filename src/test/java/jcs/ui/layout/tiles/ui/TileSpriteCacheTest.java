@@ -0,0 +1,63 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.layout.tiles.ui;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import jcs.entities.TileBean.Orientation;
+import jcs.entities.TileBean.TileType;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileSpriteCacheTest {
+
+  private static TileSpriteCache.Key key(Orientation orientation, boolean route, Color routeColor) {
+    return TileSpriteCache.Key.of(TileType.STRAIGHT, orientation, false, Color.white, Color.yellow, Color.lightGray, route, orientation, routeColor, false, 40);
+  }
+
+  @Test
+  public void testRouteColorOnlyCountsWhenRouteIsShown() {
+    System.out.println("routeColorOnlyCountsWhenRouteIsShown");
+    assertEquals(key(Orientation.EAST, false, Color.green), key(Orientation.EAST, false, Color.red));
+    assertNotEquals(key(Orientation.EAST, true, Color.green), key(Orientation.EAST, true, Color.red));
+    assertNotEquals(key(Orientation.EAST, false, null), key(Orientation.NORTH, false, null));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() {
+    System.out.println("leastRecentlyUsedIsEvicted");
+    //Room for 2 images of 40 x 40
+    TileSpriteCache instance = new TileSpriteCache(2 * 40 * 40 * 4);
+    TileSpriteCache.Key east = key(Orientation.EAST, false, null);
+    TileSpriteCache.Key west = key(Orientation.WEST, false, null);
+    TileSpriteCache.Key north = key(Orientation.NORTH, false, null);
+
+    BufferedImage image = new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB);
+    instance.put(east, image);
+    instance.put(west, new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB));
+    //Use east, so west is the eldest
+    assertSame(image, instance.get(east));
+    instance.put(north, new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB));
+
+    assertEquals(2, instance.size());
+    assertNotNull(instance.get(east));
+    assertNull(instance.get(west));
+    assertNotNull(instance.get(north));
+    assertEquals(2 * 40 * 40 * 4, instance.getBytes());
+    assertEquals(3, instance.getHits());
+    assertEquals(1, instance.getMisses());
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.ui.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageServiceTest {
+
+  private static URL createImage(int width, int height) throws IOException {
+    File file = File.createTempFile("jcs-icon", ".png");
+    file.deleteOnExit();
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", file);
+    return file.toURI().toURL();
+  }
+
+  @Test
+  public void testScaledToWidthKeepingAspect() throws IOException {
+    System.out.println("scaledToWidthKeepingAspect");
+    ImageService instance = new ImageService(1024 * 1024, 2);
+    URL source = createImage(200, 80);
+
+    ImageIcon icon = instance.getIcon(source, 100);
+    assertNotNull(icon);
+    assertEquals(100, icon.getIconWidth());
+    assertEquals(40, icon.getIconHeight());
+
+    //Other size is an other entry
+    ImageIcon small = instance.getIcon(source, 30);
+    assertEquals(30, small.getIconWidth());
+    assertEquals(2, instance.size());
+    assertEquals(2, instance.getDecodes());
+  }
+
+  @Test
+  public void testConcurrentRequestsDecodeOnce() throws Exception {
+    System.out.println("concurrentRequestsDecodeOnce");
+    ImageService instance = new ImageService(1024 * 1024, 4);
+    URL source = createImage(400, 400);
+
+    int threads = 16;
+    CountDownLatch start = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(threads);
+    List<ImageIcon> icons = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread.ofPlatform().start(() -> {
+        try {
+          start.await();
+          ImageIcon icon = instance.getIcon(source, 30);
+          synchronized (icons) {
+            icons.add(icon);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      });
+    }
+    start.countDown();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+
+    assertEquals(threads, icons.size());
+    for (ImageIcon icon : icons) {
+      assertNotNull(icon);
+      assertEquals(30, icon.getIconWidth());
+    }
+    assertEquals(1, instance.getDecodes());
+  }
+
+  @Test
+  public void testCacheIsBoundedLeastRecentlyUsed() throws IOException {
+    System.out.println("cacheIsBoundedLeastRecentlyUsed");
+    //Room for two images of 100 x 100
+    ImageService instance = new ImageService(2 * 100 * 100 * 4, 1);
+    URL first = createImage(100, 100);
+    URL second = createImage(100, 100);
+    URL third = createImage(100, 100);
+
+    instance.getIcon(first, 100);
+    instance.getIcon(second, 100);
+    //Use the first, so the second is the least recently used
+    instance.getIcon(first, 100);
+    instance.getIcon(third, 100);
+
+    assertEquals(2, instance.size());
+    assertTrue(instance.getBytes() <= 2 * 100 * 100 * 4);
+    assertEquals(3, instance.getDecodes());
+
+    instance.getIcon(first, 100);
+    assertEquals(3, instance.getDecodes());
+    instance.getIcon(second, 100);
+    assertEquals(4, instance.getDecodes());
+  }
+
+  @Test
+  public void testUnreadableImageIsRememberedAsFailed() throws IOException {
+    System.out.println("unreadableImageIsRememberedAsFailed");
+    ImageService instance = new ImageService(1024 * 1024, 1);
+    File file = File.createTempFile("jcs-icon", ".png");
+    file.deleteOnExit();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[]{1, 2, 3, 4});
+    }
+    URL source = file.toURI().toURL();
+
+    assertNull(instance.getIcon(source, 30));
+    assertNull(instance.getIcon(source, 30));
+    assertEquals(1, instance.getDecodes());
+    assertNull(instance.getIcon(null, 30));
+  }
+}
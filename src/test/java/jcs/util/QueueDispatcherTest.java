@@ -0,0 +1,133 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueueDispatcherTest {
+
+  private static final Integer POISON = Integer.valueOf(-1);
+
+  @Test
+  public void testNoEventsLostDuringShutdown() throws InterruptedException {
+    System.out.println("noEventsLostDuringShutdown");
+    int producers = 8;
+    int events = 20000;
+    BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+    AtomicLong handled = new AtomicLong();
+    AtomicLong sum = new AtomicLong();
+    QueueDispatcher<Integer> instance = new QueueDispatcher<>(null, "TEST-DISPATCHER", queue, POISON, e -> {
+      handled.incrementAndGet();
+      sum.addAndGet(e);
+    });
+    instance.start();
+
+    CountDownLatch done = new CountDownLatch(producers);
+    for (int p = 0; p < producers; p++) {
+      Thread.ofPlatform().start(() -> {
+        for (int i = 0; i < events; i++) {
+          queue.offer(i);
+        }
+        done.countDown();
+      });
+    }
+    assertTrue(done.await(30, TimeUnit.SECONDS));
+
+    //Shutdown while the dispatcher is still busy with the backlog
+    assertTrue(instance.shutdown(30000));
+    assertFalse(instance.isRunning());
+    assertEquals((long) producers * events, handled.get());
+    assertEquals((long) producers * events, instance.getDispatched());
+    assertEquals((long) producers * events * (events - 1) / 2, sum.get());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void testBlockingWakeUp() throws InterruptedException {
+    System.out.println("blockingWakeUp");
+    BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+    CountDownLatch received = new CountDownLatch(1);
+    QueueDispatcher<Integer> instance = new QueueDispatcher<>(null, "TEST-DISPATCHER", queue, POISON, e -> received.countDown());
+    instance.start();
+
+    Thread.sleep(50);
+    //Idle the dispatcher waits in take
+    assertEquals(Thread.State.WAITING, instance.getState());
+
+    queue.offer(1);
+    assertTrue(received.await(1, TimeUnit.SECONDS));
+    assertTrue(instance.shutdown(1000));
+  }
+
+  @Test
+  public void testHandlerErrorDoesNotStopDispatcher() throws InterruptedException {
+    System.out.println("handlerErrorDoesNotStopDispatcher");
+    BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+    AtomicInteger handled = new AtomicInteger();
+    QueueDispatcher<Integer> instance = new QueueDispatcher<>(null, "TEST-DISPATCHER", queue, POISON, e -> {
+      handled.incrementAndGet();
+      if (e == 2) {
+        throw new IllegalStateException("Test error");
+      }
+    });
+    queue.offer(1);
+    queue.offer(2);
+    queue.offer(3);
+    instance.start();
+
+    assertTrue(instance.shutdown(1000));
+    assertEquals(3, handled.get());
+  }
+
+  @Test
+  public void testInterruptHandlesRemainingEvents() throws InterruptedException {
+    System.out.println("interruptHandlesRemainingEvents");
+    BlockingQueue<Integer> queue = new LinkedBlockingQueue<>();
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger handled = new AtomicInteger();
+    QueueDispatcher<Integer> instance = new QueueDispatcher<>(null, "TEST-DISPATCHER", queue, POISON, e -> {
+      if (e == 0) {
+        blocked.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      handled.incrementAndGet();
+    });
+    instance.start();
+    queue.offer(0);
+    assertTrue(blocked.await(1, TimeUnit.SECONDS));
+    for (int i = 1; i <= 10; i++) {
+      queue.offer(i);
+    }
+    //The interrupt ends the wait of the handler, the next take sees the interrupt
+    instance.interrupt();
+    instance.join(1000);
+
+    assertFalse(instance.isAlive());
+    assertEquals(11, handled.get());
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 Frans Jacobs.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcs.util.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.function.IntSupplier;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testBuckets() {
+    System.out.println("buckets");
+    for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789L, 1L << 40}) {
+      int index = LatencyHistogram.indexOf(value);
+      assertTrue(LatencyHistogram.lowerBoundOf(index) <= value, "lower " + value);
+      assertTrue(LatencyHistogram.upperBoundOf(index) >= value, "upper " + value);
+    }
+    //Bucket width is at most 1/16 of its value
+    int index = LatencyHistogram.indexOf(1_000_000);
+    long width = LatencyHistogram.upperBoundOf(index) - LatencyHistogram.lowerBoundOf(index) + 1;
+    assertTrue(width <= 1_000_000 / 16);
+  }
+
+  @Test
+  public void testPercentiles() {
+    System.out.println("percentiles");
+    LatencyHistogram instance = new LatencyHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      instance.record(i * 1000L);
+    }
+    LatencyHistogram.Snapshot snapshot = instance.getSnapshot();
+    assertEquals(1000, snapshot.count());
+    assertEquals(500_500, snapshot.mean(), 0.001);
+    assertEquals(1_000_000, snapshot.max());
+    assertEquals(500_000, snapshot.p50(), 500_000 / 16.0);
+    assertEquals(900_000, snapshot.p90(), 900_000 / 16.0);
+    assertEquals(990_000, snapshot.p99(), 990_000 / 16.0);
+
+    instance.reset();
+    assertEquals(0, instance.getCount());
+    assertEquals(0, instance.getPercentile(99));
+  }
+
+  @Test
+  public void testConcurrentRecording() throws InterruptedException {
+    System.out.println("concurrentRecording");
+    LatencyHistogram instance = new LatencyHistogram();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = Thread.ofPlatform().start(() -> {
+        for (int i = 0; i < 10000; i++) {
+          instance.record(i);
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40000, instance.getCount());
+    assertEquals(9999, instance.getMax());
+  }
+
+  @Test
+  public void testRegistryDump() throws IOException {
+    System.out.println("registryDump");
+    MetricsRegistry.counter("test.events").add(3);
+    MetricsRegistry.histogram("test.latency").record(2_000_000);
+    IntSupplier gauge = () -> 7;
+    MetricsRegistry.gauge("test.queue", gauge);
+
+    List<MetricsRegistry.Metric> metrics = MetricsRegistry.snapshot();
+    MetricsRegistry.Metric events = metrics.stream().filter(m -> m.name().equals("test.events")).findFirst().orElseThrow();
+    assertEquals(3, events.value());
+    MetricsRegistry.Metric queue = metrics.stream().filter(m -> m.name().equals("test.queue")).findFirst().orElseThrow();
+    assertEquals(MetricsRegistry.Type.GAUGE, queue.type());
+    assertEquals(7, queue.value());
+
+    File file = File.createTempFile("metrics", ".txt");
+    file.deleteOnExit();
+    MetricsRegistry.dump(file);
+    String dump = Files.readString(file.toPath());
+    assertTrue(dump.contains("test.events"));
+    assertTrue(dump.contains("test.latency"));
+    assertTrue(dump.contains("test.queue"));
+
+    MetricsRegistry.reset();
+    assertEquals(0, MetricsRegistry.counter("test.events").sum());
+    MetricsRegistry.removeGauge("test.queue", gauge);
+    assertTrue(MetricsRegistry.snapshot().stream().noneMatch(m -> m.name().equals("test.queue")));
+  }
+
+  @Test
+  public void testRemoveReplacedGauge() {
+    System.out.println("removeReplacedGauge");
+    IntSupplier closed = () -> 1;
+    IntSupplier current = () -> 2;
+    MetricsRegistry.gauge("test.replaced", closed);
+    MetricsRegistry.gauge("test.replaced", current);
+
+    //The closed owner does not remove the gauge of the new owner
+    MetricsRegistry.removeGauge("test.replaced", closed);
+    MetricsRegistry.Metric gauge = MetricsRegistry.snapshot().stream().filter(m -> m.name().equals("test.replaced")).findFirst().orElseThrow();
+    assertEquals(2, gauge.value());
+
+    MetricsRegistry.removeGauge("test.replaced", current);
+    assertTrue(MetricsRegistry.snapshot().stream().noneMatch(m -> m.name().equals("test.replaced")));
+  }
+}